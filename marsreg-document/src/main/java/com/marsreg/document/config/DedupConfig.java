@@ -0,0 +1,58 @@
+package com.marsreg.document.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "marsreg.document.dedup")
+public class DedupConfig {
+    /**
+     * 是否在入库时检测近似重复分块
+     */
+    private boolean enabled = true;
+
+    /**
+     * MinHash 签名长度
+     */
+    private int numHashes = 128;
+
+    /**
+     * LSH 分段数，numHashes 须能被整除；段数越多候选召回越高
+     */
+    private int bands = 32;
+
+    /**
+     * 字符 shingle 长度
+     */
+    private int shingleSize = 5;
+
+    /**
+     * 估计 Jaccard 相似度不低于该值视为重复
+     */
+    private double threshold = 0.9;
+
+    /**
+     * 规范化后短于该长度的分块不参与检测
+     */
+    private int minTextLength = 50;
+
+    /**
+     * 内存索引最多保存的代表分块数，超出时淘汰最久未被命中的代表，不大于0时不限制。
+     * 按默认参数每个代表约占 2.5KB 堆内存：128 个 long 的签名约 1KB，32 个分段桶中的条目约 1.2KB，
+     * 其余为ID和哈希表开销，默认上限约占 125MB；被淘汰的代表不再参与去重，之后与它重复的分块会单独向量化
+     */
+    private int maxEntries = 50000;
+
+    /**
+     * 启动时是否从已入库的代表分块（duplicate_of 为空）重建索引。索引只在各实例的内存中，
+     * 不重建时重启后新入库的分块不会与已有语料去重；多实例部署时各实例只在启动时与数据库对齐
+     */
+    private boolean rebuildOnStartup = true;
+
+    /**
+     * 重建索引时每次从数据库读取的分块数
+     */
+    private int rebuildBatchSize = 1000;
+}
@@ -13,6 +13,7 @@ import com.marsreg.document.service.DocumentChunkMetadataService;
 import com.marsreg.document.service.DocumentProcessService;
 import com.marsreg.document.service.DocumentService;
 import com.marsreg.document.service.DocumentVectorService;
+import com.marsreg.vector.model.VectorFilter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -128,6 +129,25 @@ public class DocumentController {
         return Result.success(documentVectorService.searchChunksByDocument(documentId, query, limit, minScore));
     }
 
+    @Operation(summary = "同义词扩展查询后语义搜索分块")
+    @GetMapping("/search/expanded")
+    public Result<List<Map<String, Object>>> searchChunksExpanded(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "0.7") float minScore) {
+        return Result.success(documentVectorService.searchChunksExpanded(query, limit, minScore));
+    }
+
+    @Operation(summary = "按文档ID、类型、租户和时间范围过滤后语义搜索分块")
+    @PostMapping("/search")
+    public Result<List<Map<String, Object>>> searchChunksFiltered(
+            @RequestParam String query,
+            @RequestBody VectorFilter filter,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "0.7") float minScore) {
+        return Result.success(documentVectorService.searchChunksFiltered(query, filter, limit, minScore));
+    }
+
     @PostMapping("/batch-upload")
     public ResponseEntity<List<DocumentDTO>> batchUpload(@RequestParam("files") List<MultipartFile> files) {
         try {
@@ -0,0 +1,106 @@
+package com.marsreg.document.dedup;
+
+import java.util.Arrays;
+
+/**
+ * 基于字符 shingle 的 MinHash 签名。文本先规范化为只含小写字母和数字的序列，
+ * 按字符切分 shingle，因此同样适用于不分词的中文。两个签名相同位置取值相等的比例是 Jaccard 相似度的无偏估计
+ */
+public class MinHasher {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int shingleSize;
+    private final long[] seeds;
+
+    public MinHasher(int numHashes, int shingleSize, long seed) {
+        if (numHashes <= 0 || shingleSize <= 0) {
+            throw new IllegalArgumentException("签名长度和shingle长度必须大于0");
+        }
+        this.shingleSize = shingleSize;
+        this.seeds = new long[numHashes];
+        long state = seed;
+        for (int i = 0; i < numHashes; i++) {
+            state += 0x9e3779b97f4a7c15L;
+            seeds[i] = mix(state);
+        }
+    }
+
+    public int getNumHashes() {
+        return seeds.length;
+    }
+
+    /**
+     * 去掉空白、标点并转为小写，只保留字母和数字
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 对已规范化的文本计算签名，文本短于 shingle 长度时整体作为一个 shingle
+     */
+    public long[] signature(String normalized) {
+        long[] signature = new long[seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        int shingles = Math.max(1, normalized.length() - shingleSize + 1);
+        for (int start = 0; start < shingles; start++) {
+            long shingle = hash(normalized, start, Math.min(start + shingleSize, normalized.length()));
+            for (int h = 0; h < seeds.length; h++) {
+                long value = mix(shingle ^ seeds[h]);
+                if (value < signature[h]) {
+                    signature[h] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 两个签名估计的 Jaccard 相似度
+     */
+    public static double similarity(long[] a, long[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    /**
+     * 整段规范化文本的 64 位哈希，用于精确重复的快速判断
+     */
+    public static long hash(String text, int from, int to) {
+        long hash = FNV_OFFSET;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            hash ^= c & 0xff;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * SplitMix64 终结函数，把输入打散为近似均匀的 64 位值
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
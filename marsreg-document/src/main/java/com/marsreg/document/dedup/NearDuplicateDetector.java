@@ -0,0 +1,235 @@
+package com.marsreg.document.dedup;
+
+import com.marsreg.document.config.DedupConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 入库时的近似重复分块检测：精确重复按规范化文本哈希直接命中，
+ * 近似重复用 MinHash 签名加 LSH 分段索引召回候选，再按估计的 Jaccard 相似度确认。
+ * 索引保存在内存中，条目数超过 maxEntries 时淘汰最久未被命中的代表；
+ * 启动时由 {@link NearDuplicateIndexLoader} 从已入库的代表分块重建
+ */
+@Slf4j
+@Component
+public class NearDuplicateDetector {
+
+    private final DedupConfig config;
+    private final MinHasher hasher;
+    private final int bands;
+    private final int rows;
+
+    // 按最近登记或命中的顺序排列，最早的先被淘汰
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<Long, String> exact = new HashMap<>();
+    private final List<Map<Long, Set<String>>> buckets;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder exactDuplicates = new LongAdder();
+    private final LongAdder nearDuplicates = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    // 重建期间被移除的ID，重建读到的旧数据不能把它们加回来
+    private Set<String> removedDuringRestore;
+
+    public NearDuplicateDetector(DedupConfig config) {
+        if (config.getBands() <= 0 || config.getNumHashes() % config.getBands() != 0) {
+            throw new IllegalArgumentException("numHashes必须能被bands整除: numHashes=" + config.getNumHashes()
+                + ", bands=" + config.getBands());
+        }
+        this.config = config;
+        this.hasher = new MinHasher(config.getNumHashes(), config.getShingleSize(), 42L);
+        this.bands = config.getBands();
+        this.rows = config.getNumHashes() / config.getBands();
+        this.buckets = new ArrayList<>(bands);
+        for (int b = 0; b < bands; b++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 检测文本是否与已登记的分块重复。重复时返回已登记分块的ID且不登记当前分块，
+     * 否则把当前分块登记为新的代表并返回null。同一ID重复登记时先移除旧记录
+     */
+    public synchronized String register(String id, String text) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        remove(id);
+        return index(id, text, true);
+    }
+
+    /**
+     * 开始从已入库的代表分块重建索引，之后移除的ID不会被 {@link #restore} 加回
+     */
+    public synchronized void beginRestore() {
+        removedDuringRestore = new HashSet<>();
+    }
+
+    /**
+     * 登记一个已入库的代表分块，已登记或重建期间被移除的ID跳过，不计入检测统计
+     */
+    public synchronized void restore(String id, String text) {
+        if (!config.isEnabled() || entries.containsKey(id)
+            || removedDuringRestore != null && removedDuringRestore.contains(id)) {
+            return;
+        }
+        index(id, text, false);
+    }
+
+    public synchronized void endRestore() {
+        removedDuringRestore = null;
+    }
+
+    private String index(String id, String text, boolean count) {
+        String normalized = MinHasher.normalize(text);
+        if (normalized.length() < config.getMinTextLength()) {
+            return null;
+        }
+        if (count) {
+            checked.increment();
+        }
+
+        long textHash = MinHasher.hash(normalized, 0, normalized.length());
+        String exactMatch = exact.get(textHash);
+        if (exactMatch != null) {
+            if (count) {
+                exactDuplicates.increment();
+            }
+            touch(exactMatch);
+            return exactMatch;
+        }
+
+        long[] signature = hasher.signature(normalized);
+        long[] bandKeys = bandKeys(signature);
+        String best = null;
+        double bestScore = config.getThreshold();
+        Set<String> seen = new HashSet<>();
+        for (int b = 0; b < bands; b++) {
+            Set<String> bucket = buckets.get(b).get(bandKeys[b]);
+            if (bucket == null) {
+                continue;
+            }
+            for (String candidate : bucket) {
+                if (!seen.add(candidate)) {
+                    continue;
+                }
+                double score = MinHasher.similarity(signature, entries.get(candidate).signature);
+                if (score >= bestScore) {
+                    best = candidate;
+                    bestScore = score;
+                }
+            }
+        }
+        if (best != null) {
+            if (count) {
+                nearDuplicates.increment();
+            }
+            log.debug("检测到近似重复分块: id={}, duplicateOf={}, similarity={}", id, best, bestScore);
+            touch(best);
+            return best;
+        }
+
+        entries.put(id, new Entry(textHash, signature));
+        exact.put(textHash, id);
+        for (int b = 0; b < bands; b++) {
+            buckets.get(b).computeIfAbsent(bandKeys[b], k -> new HashSet<>()).add(id);
+        }
+        evictOverflow();
+        return null;
+    }
+
+    /**
+     * 被命中的代表移到淘汰顺序的末尾
+     */
+    private void touch(String id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            entries.put(id, entry);
+        }
+    }
+
+    private void evictOverflow() {
+        int maxEntries = config.getMaxEntries();
+        while (maxEntries > 0 && entries.size() > maxEntries) {
+            unindex(entries.keySet().iterator().next());
+            evicted.increment();
+        }
+    }
+
+    public synchronized void remove(Collection<String> ids) {
+        ids.forEach(this::remove);
+    }
+
+    public synchronized void remove(String id) {
+        if (removedDuringRestore != null) {
+            removedDuringRestore.add(id);
+        }
+        unindex(id);
+    }
+
+    private void unindex(String id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        exact.remove(entry.textHash, id);
+        // 分段键由签名重新计算，不随条目保存
+        long[] bandKeys = bandKeys(entry.signature);
+        for (int b = 0; b < bands; b++) {
+            Map<Long, Set<String>> band = buckets.get(b);
+            Set<String> bucket = band.get(bandKeys[b]);
+            if (bucket != null) {
+                bucket.remove(id);
+                if (bucket.isEmpty()) {
+                    band.remove(bandKeys[b]);
+                }
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("indexed", size());
+        stats.put("checked", checked.sum());
+        stats.put("exactDuplicates", exactDuplicates.sum());
+        stats.put("nearDuplicates", nearDuplicates.sum());
+        stats.put("evicted", evicted.sum());
+        stats.put("maxEntries", config.getMaxEntries());
+        return stats;
+    }
+
+    private long[] bandKeys(long[] signature) {
+        long[] keys = new long[bands];
+        for (int b = 0; b < bands; b++) {
+            long key = b;
+            for (int r = 0; r < rows; r++) {
+                key = MinHasher.mix(key * 31 + signature[b * rows + r]);
+            }
+            keys[b] = key;
+        }
+        return keys;
+    }
+
+    private record Entry(long textHash, long[] signature) {
+    }
+}
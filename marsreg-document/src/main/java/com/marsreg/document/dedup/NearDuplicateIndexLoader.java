@@ -0,0 +1,69 @@
+package com.marsreg.document.dedup;
+
+import com.marsreg.document.config.DedupConfig;
+import com.marsreg.document.repository.DocumentChunkRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 启动后在后台线程中从已入库的代表分块重建近似重复索引，使重启前入库的语料继续参与去重。
+ * 按分块ID升序读取，超出索引容量时较早的代表先被淘汰；重建期间新入库和删除的分块照常处理
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NearDuplicateIndexLoader {
+
+    private final DedupConfig config;
+    private final NearDuplicateDetector detector;
+    private final DocumentChunkRepository documentChunkRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!config.isEnabled() || !config.isRebuildOnStartup()) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "dedup-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void rebuild() {
+        long start = System.currentTimeMillis();
+        long loaded = 0;
+        detector.beginRestore();
+        try {
+            int batchSize = Math.max(1, config.getRebuildBatchSize());
+            long afterId = 0;
+            while (true) {
+                List<Object[]> rows = documentChunkRepository.findRepresentativeContents(afterId,
+                    PageRequest.of(0, batchSize));
+                for (Object[] row : rows) {
+                    Long chunkId = (Long) row[0];
+                    Long documentId = (Long) row[1];
+                    String content = (String) row[2];
+                    if (content != null) {
+                        detector.restore(documentId + "_" + chunkId, content);
+                    }
+                    afterId = chunkId;
+                }
+                loaded += rows.size();
+                if (rows.size() < batchSize) {
+                    break;
+                }
+            }
+            log.info("近似重复索引重建完成: 读取分块数={}, 索引条目数={}, 耗时={}ms", loaded, detector.size(),
+                System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("近似重复索引重建失败，已读取分块数=" + loaded, e);
+        } finally {
+            detector.endRestore();
+        }
+    }
+}
@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 @Data
 @Slf4j
 @Entity
-@Table(name = "document_chunks")
+@Table(name = "document_chunks", indexes = @Index(name = "idx_document_chunks_duplicate_of", columnList = "duplicate_of"))
 public class DocumentChunk {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -30,6 +30,12 @@ public class DocumentChunk {
     @Column(name = "vector", columnDefinition = "TEXT")
     private String vector;
 
+    /**
+     * 与已入库分块近似重复时，复用其向量ID，本分块不单独向量化和存储
+     */
+    @Column(name = "duplicate_of")
+    private String duplicateOf;
+
     @Column(name = "word_count")
     private Integer wordCount;
 
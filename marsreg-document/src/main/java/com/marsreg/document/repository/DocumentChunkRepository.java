@@ -8,6 +8,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -52,4 +54,41 @@ public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Lo
     List<DocumentChunk> findByDocumentId(Long documentId);
 
     List<DocumentChunk> findByDocumentIdOrderByChunkIndex(Long documentId);
+
+    /**
+     * 查找复用了指定向量的重复分块
+     */
+    List<DocumentChunk> findByDuplicateOfIn(Collection<String> vectorIds);
+
+    /**
+     * 查找文档中复用其他向量的重复分块
+     */
+    List<DocumentChunk> findByDocumentIdAndDuplicateOfIsNotNull(Long documentId);
+
+    /**
+     * 按分块ID升序分批读取持有自己向量的代表分块，每行依次为分块ID、文档ID和内容。处理失败的文档不返回
+     */
+    @Query("SELECT c.id, d.id, c.content FROM DocumentChunk c JOIN c.document d WHERE c.duplicateOf IS NULL AND " +
+           "c.id > :afterId AND (d.status IS NULL OR d.status <> com.marsreg.common.enums.DocumentStatus.FAILED) " +
+           "ORDER BY c.id")
+    List<Object[]> findRepresentativeContents(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 按所在文档的元数据筛出重复分块复用的向量ID，只取 duplicate_of 一列。
+     * 集合条件为空时由对应的 any 参数跳过，时间取文档更新时间，没有时取创建时间
+     */
+    @Query("SELECT DISTINCT c.duplicateOf FROM DocumentChunk c JOIN c.document d WHERE c.duplicateOf IS NOT NULL AND " +
+           "(:anyDocument = true OR d.id IN :documentIds) AND " +
+           "(:anyCategory = true OR d.category IN :categories) AND " +
+           "(:anyCreator = true OR d.createdBy IN :creators) AND " +
+           "(:from IS NULL OR COALESCE(d.updatedAt, d.createdAt) >= :from) AND " +
+           "(:to IS NULL OR COALESCE(d.updatedAt, d.createdAt) <= :to)")
+    List<String> findDuplicateVectorIds(@Param("anyDocument") boolean anyDocument,
+                                        @Param("documentIds") Collection<Long> documentIds,
+                                        @Param("anyCategory") boolean anyCategory,
+                                        @Param("categories") Collection<String> categories,
+                                        @Param("anyCreator") boolean anyCreator,
+                                        @Param("creators") Collection<String> creators,
+                                        @Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to);
 } 
\ No newline at end of file
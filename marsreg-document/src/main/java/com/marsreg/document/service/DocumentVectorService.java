@@ -2,6 +2,7 @@ package com.marsreg.document.service;
 
 import com.marsreg.document.entity.DocumentEntity;
 import com.marsreg.document.entity.DocumentChunk;
+import com.marsreg.vector.model.VectorFilter;
 
 import java.util.List;
 import java.util.Map;
@@ -69,6 +70,34 @@ public interface DocumentVectorService {
      */
     List<Map<String, Object>> searchChunks(String query, int limit, float minScore);
 
+    /**
+     * 批量搜索相似的分块，所有查询一次向量化并一次提交向量检索
+     * @param queries 查询文本列表，如查询扩展生成的多个查询
+     * @param limit 每个查询返回结果数量限制
+     * @param minScore 最小相似度分数
+     * @return 与查询顺序一致的相似分块列表
+     */
+    List<List<Map<String, Object>>> searchChunksBatch(List<String> queries, int limit, float minScore);
+
+    /**
+     * 用原查询和同义词扩展出的查询一起搜索相似分块，每个分块取各查询中的最高分
+     * @param query 查询文本
+     * @param limit 返回结果数量限制
+     * @param minScore 最小相似度分数
+     * @return 相似分块列表，包含分块ID和相似度分数
+     */
+    List<Map<String, Object>> searchChunksExpanded(String query, int limit, float minScore);
+
+    /**
+     * 在满足元数据条件的分块中搜索相似分块，条件在向量检索时生效
+     * @param query 查询文本
+     * @param filter 文档ID、类型、租户和时间范围条件
+     * @param limit 返回结果数量限制
+     * @param minScore 最小相似度分数
+     * @return 相似分块列表，包含分块ID和相似度分数
+     */
+    List<Map<String, Object>> searchChunksFiltered(String query, VectorFilter filter, int limit, float minScore);
+
     /**
      * 在指定文档中搜索相似的分块
      * @param documentId 文档ID
@@ -1,22 +1,30 @@
 package com.marsreg.document.service.impl;
 
+import com.marsreg.document.dedup.NearDuplicateDetector;
 import com.marsreg.document.entity.DocumentEntity;
 import com.marsreg.document.entity.DocumentChunk;
 import com.marsreg.document.repository.DocumentChunkRepository;
 import com.marsreg.document.service.DocumentVectorService;
+import com.marsreg.search.service.SearchExpansionService;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+import com.marsreg.vector.scheduler.EmbeddingLane;
 import com.marsreg.vector.service.VectorizationService;
 import com.marsreg.vector.service.VectorStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -27,9 +35,12 @@ public class DocumentVectorServiceImpl implements DocumentVectorService {
     private final VectorizationService vectorizationService;
     private final VectorStorageService vectorStorageService;
     private final DocumentChunkRepository documentChunkRepository;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    private final NearDuplicateDetector duplicateDetector;
     private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectProvider<SearchExpansionService> searchExpansionService;
     private static final String VECTOR_KEY_PREFIX = "doc:vector:";
+    // 同义词组合数随词数指数增长，扩展查询只取前几个
+    private static final int MAX_EXPANDED_QUERIES = 8;
 
     @Autowired
     private ElasticsearchOperations elasticsearchOperations;
@@ -38,16 +49,14 @@ public class DocumentVectorServiceImpl implements DocumentVectorService {
     @Transactional
     public void vectorizeAndStore(DocumentEntity document, List<DocumentChunk> chunks) {
         try {
-            // 生成文档向量
-            float[] documentVector = vectorizationService.vectorize(document.getContent());
+            // 生成文档向量，入库的向量化在调度器的入库通道排队，不挤占在线查询
+            float[] documentVector = EmbeddingLane.INGEST.call(() -> vectorizationService.vectorize(document.getContent()));
             document.setVector(documentVector);
             
-            // 生成并存储分块向量
-            for (DocumentChunk chunk : chunks) {
-                float[] chunkVector = vectorizationService.vectorize(chunk.getContent());
-                String vectorId = generateVectorId(document.getId(), chunk.getId());
-                vectorStorageService.storeVector(vectorId, chunkVector);
-            }
+            // 生成分块向量后一次性批量写入，重复分块复用已有向量
+            Map<String, float[]> chunkVectors = vectorizeChunks(document.getId(), chunks, EmbeddingLane.INGEST);
+            unregisterOnFailure(vectorStorageService.storeDocumentVectorsAsync(String.valueOf(document.getId()),
+                chunkVectors, metadataOf(document)), chunkVectors.keySet()).join();
             
             log.info("文档向量化成功: {}", document.getId());
         } catch (Exception e) {
@@ -58,7 +67,7 @@ public class DocumentVectorServiceImpl implements DocumentVectorService {
 
     @Override
     public float[] generateVector(DocumentEntity document) {
-        return vectorizationService.vectorize(document.getContent());
+        return EmbeddingLane.INGEST.call(() -> vectorizationService.vectorize(document.getContent()));
     }
 
     @Override
@@ -79,16 +88,20 @@ public class DocumentVectorServiceImpl implements DocumentVectorService {
     @Transactional
     public void batchVectorizeAndStore(Map<Long, List<DocumentChunk>> documentChunksMap) {
         try {
+            // 每个文档的分块向量异步提交，向量化下一个文档时上一批在后台写入；批量重建走优先级最低的通道
+            List<CompletableFuture<Void>> pendingWrites = new ArrayList<>();
             for (Map.Entry<Long, List<DocumentChunk>> entry : documentChunksMap.entrySet()) {
                 Long documentId = entry.getKey();
                 List<DocumentChunk> chunks = entry.getValue();
                 
-                for (DocumentChunk chunk : chunks) {
-                    float[] chunkVector = vectorizationService.vectorize(chunk.getContent());
-                    String vectorId = generateVectorId(documentId, chunk.getId());
-                    vectorStorageService.storeVector(vectorId, chunkVector);
-                }
+                Map<String, float[]> chunkVectors = vectorizeChunks(documentId, chunks, EmbeddingLane.BACKFILL);
+                DocumentEntity document = chunks.isEmpty() ? null : chunks.get(0).getDocument();
+                pendingWrites.add(unregisterOnFailure(document != null
+                    ? vectorStorageService.storeDocumentVectorsAsync(String.valueOf(documentId), chunkVectors, metadataOf(document))
+                    : vectorStorageService.storeDocumentVectorsAsync(String.valueOf(documentId), chunkVectors),
+                    chunkVectors.keySet()));
             }
+            CompletableFuture.allOf(pendingWrites.toArray(new CompletableFuture[0])).join();
             
             log.info("批量文档向量化成功");
         } catch (Exception e) {
@@ -101,14 +114,11 @@ public class DocumentVectorServiceImpl implements DocumentVectorService {
     @Transactional
     public void deleteDocumentVectors(Long documentId) {
         try {
-            // 获取文档的所有分块
-            List<DocumentChunk> chunks = documentChunkRepository.findByDocumentId(documentId);
-            
-            // 删除所有分块向量
-            for (DocumentChunk chunk : chunks) {
-                String vectorId = generateVectorId(documentId, chunk.getId());
-                vectorStorageService.deleteVector(vectorId);
-            }
+            // 一次删除所有分块向量，重复分块没有自己的向量
+            List<String> vectorIds = ownVectorIds(documentId);
+            vectorStorageService.deleteDocumentVectors(String.valueOf(documentId), vectorIds);
+            duplicateDetector.remove(vectorIds);
+            promoteOrphanedDuplicates(documentId, vectorIds);
             
             log.info("文档向量删除成功: {}", documentId);
         } catch (Exception e) {
@@ -121,9 +131,15 @@ public class DocumentVectorServiceImpl implements DocumentVectorService {
     @Transactional
     public void updateChunkVector(Long documentId, Long chunkId, String content) {
         try {
-            float[] chunkVector = vectorizationService.vectorize(content);
+            float[] chunkVector = EmbeddingLane.INGEST.call(() -> vectorizationService.vectorize(content));
             String vectorId = generateVectorId(documentId, chunkId);
-            vectorStorageService.storeVector(vectorId, chunkVector);
+            // 带上文档的过滤元数据，更新后的分块仍能按类型、租户和时间过滤
+            DocumentEntity document = documentChunkRepository.findById(chunkId)
+                .map(DocumentChunk::getDocument)
+                .orElse(null);
+            vectorStorageService.storeDocumentVectorsAsync(String.valueOf(documentId),
+                Collections.singletonMap(vectorId, chunkVector),
+                document != null ? metadataOf(document) : VectorMetadata.ofDocument(String.valueOf(documentId))).join();
             
             log.info("分块向量更新成功: documentId={}, chunkId={}", documentId, chunkId);
         } catch (Exception e) {
@@ -153,23 +169,144 @@ public class DocumentVectorServiceImpl implements DocumentVectorService {
     }
 
     @Override
-    public List<Map<String, Object>> searchChunksByDocument(Long documentId, String query, int limit, float minScore) {
+    public List<List<Map<String, Object>>> searchChunksBatch(List<String> queries, int limit, float minScore) {
+        try {
+            List<float[]> queryVectors = vectorizationService.batchVectorize(queries);
+            List<Map<String, Float>> batchResults = vectorStorageService.searchSimilarBatch(queryVectors, limit, minScore);
+            
+            return batchResults.stream()
+                .map(results -> results.entrySet().stream()
+                    .map(entry -> {
+                        Map<String, Object> result = new HashMap<>();
+                        result.put("chunkId", extractChunkId(entry.getKey()));
+                        result.put("score", entry.getValue());
+                        return result;
+                    })
+                    .collect(Collectors.toList()))
+                .collect(Collectors.toList());
+        } catch (Exception e) {
+            log.error("批量分块搜索失败", e);
+            throw new RuntimeException("批量分块搜索失败", e);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> searchChunksExpanded(String query, int limit, float minScore) {
+        try {
+            List<String> queries = new ArrayList<>();
+            queries.add(query);
+            SearchExpansionService expansion = searchExpansionService.getIfAvailable();
+            if (expansion != null) {
+                expansion.expandQuery(query).stream()
+                    .filter(expanded -> !expanded.equalsIgnoreCase(query.trim()))
+                    .distinct()
+                    .limit(MAX_EXPANDED_QUERIES)
+                    .forEach(queries::add);
+            }
+            
+            // 所有查询一次批量向量化和检索，同一分块保留最高分
+            Map<Long, Float> bestScores = new HashMap<>();
+            for (List<Map<String, Object>> results : searchChunksBatch(queries, limit, minScore)) {
+                for (Map<String, Object> result : results) {
+                    bestScores.merge((Long) result.get("chunkId"), (Float) result.get("score"), Math::max);
+                }
+            }
+            
+            return bestScores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Float>comparingByValue().reversed())
+                .limit(limit)
+                .map(entry -> {
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("chunkId", entry.getKey());
+                    result.put("score", entry.getValue());
+                    return result;
+                })
+                .collect(Collectors.toList());
+        } catch (Exception e) {
+            log.error("扩展查询分块搜索失败", e);
+            throw new RuntimeException("扩展查询分块搜索失败", e);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> searchChunksFiltered(String query, VectorFilter filter, int limit, float minScore) {
         try {
             float[] queryVector = vectorizationService.vectorize(query);
+            Map<String, Float> results = new HashMap<>(vectorStorageService.searchSimilarFiltered(queryVector, filter, limit, minScore));
+            
+            // 重复分块没有自己的向量，代表向量带的是另一个文档的元数据；
+            // 在数据库中按重复分块所在文档的元数据筛出它们复用的向量，再按ID范围搜索
+            Set<String> reusedVectorIds = duplicateVectorIdsOf(filter).stream()
+                .filter(vectorId -> !results.containsKey(vectorId))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+            if (!reusedVectorIds.isEmpty()) {
+                results.putAll(vectorStorageService.searchSimilarInRange(queryVector,
+                    new ArrayList<>(reusedVectorIds), limit, minScore));
+            }
+            
+            // 过滤搜索命中的代表分块自身满足条件，只为重复分块搜到的代表不返回；
+            // 复用这些向量的重复分块逐个按所在文档校验后展开
+            Map<Long, Float> chunkScores = new HashMap<>();
+            for (Map.Entry<String, Float> entry : results.entrySet()) {
+                if (!reusedVectorIds.contains(entry.getKey())) {
+                    chunkScores.put(extractChunkId(entry.getKey()), entry.getValue());
+                }
+            }
+            if (!results.isEmpty()) {
+                for (DocumentChunk duplicate : documentChunkRepository.findByDuplicateOfIn(new ArrayList<>(results.keySet()))) {
+                    if (duplicate.getDocument() != null && filter.matches(metadataOf(duplicate.getDocument()))) {
+                        chunkScores.merge(duplicate.getId(), results.get(duplicate.getDuplicateOf()), Math::max);
+                    }
+                }
+            }
             
-            // 获取文档的所有分块ID
-            List<DocumentChunk> chunks = documentChunkRepository.findByDocumentId(documentId);
-            List<String> vectorIds = chunks.stream()
-                .map(chunk -> generateVectorId(documentId, chunk.getId()))
+            return chunkScores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Float>comparingByValue().reversed())
+                .limit(limit)
+                .map(entry -> {
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("chunkId", entry.getKey());
+                    result.put("score", entry.getValue());
+                    return result;
+                })
                 .collect(Collectors.toList());
+        } catch (Exception e) {
+            log.error("过滤分块搜索失败", e);
+            throw new RuntimeException("过滤分块搜索失败", e);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> searchChunksByDocument(Long documentId, String query, int limit, float minScore) {
+        try {
+            float[] queryVector = vectorizationService.vectorize(query);
+            String documentKey = String.valueOf(documentId);
             
-            // 在指定范围内搜索相似向量
-            Map<String, Float> results = vectorStorageService.searchSimilarInRange(queryVector, vectorIds, limit, minScore);
+            // 文档自己的向量按分区键搜索，只有不支持分区键的存储才加载分块ID限定范围
+            Map<String, Float> results = vectorStorageService.searchSimilarInDocument(documentKey,
+                () -> ownVectorIds(documentId), queryVector, limit, minScore);
+            
+            // 复用其他文档向量的重复分块单独按ID范围搜索，映射回本文档的分块后合并
+            Map<String, Long> reusedChunkIds = new LinkedHashMap<>();
+            for (DocumentChunk chunk : documentChunkRepository.findByDocumentIdAndDuplicateOfIsNotNull(documentId)) {
+                if (!chunk.getDuplicateOf().startsWith(documentKey + "_")) {
+                    reusedChunkIds.putIfAbsent(chunk.getDuplicateOf(), chunk.getId());
+                }
+            }
+            if (!reusedChunkIds.isEmpty()) {
+                Map<String, Float> merged = new HashMap<>(results);
+                merged.putAll(vectorStorageService.searchSimilarInRange(queryVector,
+                    new ArrayList<>(reusedChunkIds.keySet()), limit, minScore));
+                results = merged.entrySet().stream()
+                    .sorted(Map.Entry.<String, Float>comparingByValue().reversed())
+                    .limit(limit)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+            }
             
             return results.entrySet().stream()
                 .map(entry -> {
                     Map<String, Object> result = new HashMap<>();
-                    result.put("chunkId", extractChunkId(entry.getKey()));
+                    result.put("chunkId", reusedChunkIds.getOrDefault(entry.getKey(), extractChunkId(entry.getKey())));
                     result.put("score", entry.getValue());
                     return result;
                 })
@@ -180,11 +317,44 @@ public class DocumentVectorServiceImpl implements DocumentVectorService {
         }
     }
 
+    /**
+     * 所在文档满足过滤条件的重复分块复用的向量ID，条件与 {@link #metadataOf} 的字段对应，在数据库中求值
+     */
+    private List<String> duplicateVectorIdsOf(VectorFilter filter) {
+        Set<String> documentIds = filter.getDocumentIds();
+        boolean anyDocument = documentIds == null || documentIds.isEmpty();
+        boolean anyCategory = filter.getTypes() == null || filter.getTypes().isEmpty();
+        boolean anyCreator = filter.getTenants() == null || filter.getTenants().isEmpty();
+        // 不参与比较的集合参数也要绑定非空值，避免生成空的 IN 列表
+        return documentChunkRepository.findDuplicateVectorIds(
+            anyDocument, anyDocument ? List.of(0L) : documentIds.stream().map(Long::valueOf).collect(Collectors.toList()),
+            anyCategory, anyCategory ? List.of("") : filter.getTypes(),
+            anyCreator, anyCreator ? List.of("") : filter.getTenants(),
+            toDateTime(filter.getFromTimestamp(), 0),
+            // 元数据时间戳截断到毫秒，结束时间补足该毫秒内的部分
+            toDateTime(filter.getToTimestamp(), 999_999));
+    }
+
+    private LocalDateTime toDateTime(Long timestamp, int extraNanos) {
+        return timestamp == null ? null
+            : LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()).plusNanos(extraNanos);
+    }
+
+    /**
+     * 文档自己持有向量的分块ID，重复分块没有自己的向量
+     */
+    private List<String> ownVectorIds(Long documentId) {
+        return documentChunkRepository.findByDocumentId(documentId).stream()
+            .filter(chunk -> chunk.getDuplicateOf() == null)
+            .map(chunk -> generateVectorId(documentId, chunk.getId()))
+            .collect(Collectors.toList());
+    }
+
     @Override
     @Transactional
     public void updateDocumentVector(DocumentEntity document) {
         try {
-            float[] vector = vectorizationService.vectorize(document.getContent());
+            float[] vector = EmbeddingLane.INGEST.call(() -> vectorizationService.vectorize(document.getContent()));
             document.setVector(vector);
             log.info("文档向量更新成功: {}", document.getId());
         } catch (Exception e) {
@@ -240,6 +410,106 @@ public class DocumentVectorServiceImpl implements DocumentVectorService {
         }
     }
 
+    /**
+     * 在指定通道向量化一个文档的分块，近似重复的分块记录复用的向量ID，不再向量化；
+     * 其余分块合并为一次批量向量化
+     * @return 需要写入的向量ID到向量的映射
+     */
+    private Map<String, float[]> vectorizeChunks(Long documentId, List<DocumentChunk> chunks, EmbeddingLane lane) {
+        List<String> vectorIds = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        List<DocumentChunk> changed = new ArrayList<>();
+        for (DocumentChunk chunk : chunks) {
+            String vectorId = generateVectorId(documentId, chunk.getId());
+            String duplicateOf = duplicateDetector.register(vectorId, chunk.getContent());
+            if (!Objects.equals(duplicateOf, chunk.getDuplicateOf())) {
+                chunk.setDuplicateOf(duplicateOf);
+                changed.add(chunk);
+            }
+            if (duplicateOf == null) {
+                vectorIds.add(vectorId);
+                contents.add(chunk.getContent());
+            }
+        }
+        if (!changed.isEmpty()) {
+            documentChunkRepository.saveAll(changed);
+        }
+        
+        Map<String, float[]> chunkVectors = new LinkedHashMap<>();
+        if (!contents.isEmpty()) {
+            try {
+                List<float[]> vectors = lane.call(() -> vectorizationService.batchVectorize(contents));
+                if (vectors.size() != contents.size()) {
+                    throw new IllegalStateException("批量向量化结果数量不匹配: 期望" + contents.size() + ", 实际" + vectors.size());
+                }
+                for (int i = 0; i < vectorIds.size(); i++) {
+                    chunkVectors.put(vectorIds.get(i), vectors.get(i));
+                }
+            } catch (RuntimeException e) {
+                // 没有向量的分块不能作为代表，否则后续重复分块会复用一个不存在的向量
+                duplicateDetector.remove(vectorIds);
+                throw e;
+            }
+        }
+        if (chunkVectors.size() < chunks.size()) {
+            log.info("文档分块去重: documentId={}, 分块数={}, 复用向量数={}",
+                documentId, chunks.size(), chunks.size() - chunkVectors.size());
+        }
+        return chunkVectors;
+    }
+
+    /**
+     * 向量写入失败时撤销这些分块在去重索引中的代表登记
+     */
+    private CompletableFuture<Void> unregisterOnFailure(CompletableFuture<Void> write, Collection<String> vectorIds) {
+        List<String> registered = new ArrayList<>(vectorIds);
+        return write.whenComplete((result, error) -> {
+            if (error != null) {
+                duplicateDetector.remove(registered);
+            }
+        });
+    }
+
+    /**
+     * 被删除的向量仍被其他文档的重复分块复用时，每组选一个分块重新向量化作为新的代表，其余改为复用它
+     */
+    private void promoteOrphanedDuplicates(Long documentId, List<String> deletedVectorIds) {
+        if (deletedVectorIds.isEmpty()) {
+            return;
+        }
+        Map<String, List<DocumentChunk>> orphans = documentChunkRepository.findByDuplicateOfIn(deletedVectorIds).stream()
+            .filter(chunk -> chunk.getDocument() != null && !documentId.equals(chunk.getDocument().getId()))
+            .collect(Collectors.groupingBy(DocumentChunk::getDuplicateOf, LinkedHashMap::new, Collectors.toList()));
+        for (List<DocumentChunk> group : orphans.values()) {
+            DocumentChunk promoted = group.get(0);
+            Long promotedDocumentId = promoted.getDocument().getId();
+            String vectorId = generateVectorId(promotedDocumentId, promoted.getId());
+            float[] vector = EmbeddingLane.BACKFILL.call(() -> vectorizationService.vectorize(promoted.getContent()));
+            vectorStorageService.storeDocumentVectorsAsync(String.valueOf(promotedDocumentId),
+                Collections.singletonMap(vectorId, vector), metadataOf(promoted.getDocument())).join();
+            duplicateDetector.register(vectorId, promoted.getContent());
+            promoted.setDuplicateOf(null);
+            for (int i = 1; i < group.size(); i++) {
+                group.get(i).setDuplicateOf(vectorId);
+            }
+            documentChunkRepository.saveAll(group);
+            log.info("重复分块提升为新的向量代表: vectorId={}, 复用分块数={}", vectorId, group.size() - 1);
+        }
+    }
+
+    /**
+     * 分块向量的过滤元数据：类型取文档分类，租户取文档创建者，时间取最后更新时间
+     */
+    private VectorMetadata metadataOf(DocumentEntity document) {
+        LocalDateTime time = document.getUpdatedAt() != null ? document.getUpdatedAt() : document.getCreatedAt();
+        return VectorMetadata.builder()
+            .documentId(String.valueOf(document.getId()))
+            .type(document.getCategory())
+            .tenant(document.getCreatedBy())
+            .timestamp(time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : null)
+            .build();
+    }
+
     private String generateVectorId(Long documentId, Long chunkId) {
         return documentId + "_" + chunkId;
     }
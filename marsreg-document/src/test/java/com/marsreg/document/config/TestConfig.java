@@ -60,6 +60,13 @@ public class TestConfig {
                 // 模拟更新模型
             }
 
+            @Override
+            public Map<String, Object> getModelUpdateStatus() {
+                Map<String, Object> status = new HashMap<>();
+                status.put("state", "IDLE");
+                return status;
+            }
+
             @Override
             public void warmupModel() {
                 // 模拟预热模型
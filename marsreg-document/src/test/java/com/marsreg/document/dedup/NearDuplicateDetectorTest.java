@@ -0,0 +1,127 @@
+package com.marsreg.document.dedup;
+
+import com.marsreg.document.config.DedupConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NearDuplicateDetectorTest {
+
+    private static final String DISCLAIMER = "本文档所含信息仅供参考，不构成任何投资建议。未经书面许可，任何单位和个人不得以任何方式复制、转载或引用本文档的全部或部分内容，"
+        + "否则将依法追究法律责任。公司保留对本声明的最终解释权。";
+
+    @Test
+    void testExactDuplicateIgnoresWhitespaceAndPunctuation() {
+        NearDuplicateDetector detector = new NearDuplicateDetector(new DedupConfig());
+        assertNull(detector.register("1_1", DISCLAIMER));
+        assertEquals("1_1", detector.register("2_7", "  " + DISCLAIMER.replace("，", " , ") + "\n"));
+        assertEquals(1, detector.size());
+    }
+
+    @Test
+    void testNearDuplicateDetected() {
+        NearDuplicateDetector detector = new NearDuplicateDetector(new DedupConfig());
+        assertNull(detector.register("1_1", DISCLAIMER + "第1页"));
+        // 只有页码不同的页脚
+        assertEquals("1_1", detector.register("1_2", DISCLAIMER + "第2页"));
+    }
+
+    @Test
+    void testDistinctTextsNotMerged() {
+        NearDuplicateDetector detector = new NearDuplicateDetector(new DedupConfig());
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            assertNull(detector.register("d_" + i, randomText(random, 200)));
+        }
+        assertEquals(200, detector.size());
+        assertEquals(0L, detector.getStats().get("nearDuplicates"));
+    }
+
+    @Test
+    void testShortTextsSkippedAndRemovalForgetsRepresentative() {
+        NearDuplicateDetector detector = new NearDuplicateDetector(new DedupConfig());
+        assertNull(detector.register("1_1", "目录"));
+        assertNull(detector.register("1_2", "目录"));
+
+        assertNull(detector.register("1_3", DISCLAIMER));
+        detector.remove(List.of("1_3"));
+        assertEquals(0, detector.size());
+        assertNull(detector.register("2_1", DISCLAIMER));
+    }
+
+    @Test
+    void testReRegisteringSameIdIsNotADuplicateOfItself() {
+        NearDuplicateDetector detector = new NearDuplicateDetector(new DedupConfig());
+        assertNull(detector.register("1_1", DISCLAIMER));
+        assertNull(detector.register("1_1", DISCLAIMER));
+        assertEquals(1, detector.size());
+    }
+
+    @Test
+    void testDisabledDetectorNeverReportsDuplicates() {
+        DedupConfig config = new DedupConfig();
+        config.setEnabled(false);
+        NearDuplicateDetector detector = new NearDuplicateDetector(config);
+        assertNull(detector.register("1_1", DISCLAIMER));
+        assertNull(detector.register("1_2", DISCLAIMER));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyHitRepresentative() {
+        DedupConfig config = new DedupConfig();
+        config.setMaxEntries(2);
+        NearDuplicateDetector detector = new NearDuplicateDetector(config);
+        Random random = new Random(11);
+        String first = randomText(random, 200);
+        String second = randomText(random, 200);
+        assertNull(detector.register("1_1", first));
+        assertNull(detector.register("1_2", second));
+        // 命中后 1_1 变为最近使用，超出容量时淘汰 1_2
+        assertEquals("1_1", detector.register("2_1", first));
+        assertNull(detector.register("1_3", randomText(random, 200)));
+        assertEquals(2, detector.size());
+        assertEquals(1L, detector.getStats().get("evicted"));
+        assertEquals("1_1", detector.register("2_2", first));
+        assertNull(detector.register("2_3", second));
+    }
+
+    @Test
+    void testRestoreSkipsIdsRemovedDuringRebuild() {
+        NearDuplicateDetector detector = new NearDuplicateDetector(new DedupConfig());
+        detector.beginRestore();
+        // 重建读到的旧数据晚于删除到达，不能把已删除的代表加回
+        detector.remove(List.of("1_1"));
+        detector.restore("1_1", DISCLAIMER);
+        assertEquals(0, detector.size());
+        detector.restore("2_1", DISCLAIMER);
+        detector.restore("2_2", DISCLAIMER + "第2页");
+        detector.endRestore();
+        assertEquals(1, detector.size());
+
+        assertEquals("2_1", detector.register("3_1", DISCLAIMER));
+        assertEquals(1L, detector.getStats().get("checked"));
+    }
+
+    @Test
+    void testSignatureSimilarityTracksJaccard() {
+        MinHasher hasher = new MinHasher(256, 5, 7L);
+        Random random = new Random(9);
+        String base = randomText(random, 400);
+        // 替换末尾四分之一，shingle 集合的 Jaccard 约为 0.6
+        String edited = base.substring(0, 300) + randomText(random, 100);
+        double estimate = MinHasher.similarity(hasher.signature(MinHasher.normalize(base)),
+            hasher.signature(MinHasher.normalize(edited)));
+        assertTrue(estimate > 0.45 && estimate < 0.75, "estimate=" + estimate);
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('一' + random.nextInt(3000)));
+        }
+        return sb.toString();
+    }
+}
@@ -4,6 +4,9 @@ import com.marsreg.document.config.TestConfig;
 import com.marsreg.document.entity.DocumentEntity;
 import com.marsreg.document.entity.DocumentChunk;
 import com.marsreg.document.repository.DocumentChunkRepository;
+import com.marsreg.search.service.SearchExpansionService;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
 import com.marsreg.vector.service.VectorizationService;
 import com.marsreg.vector.service.VectorStorageService;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,6 +21,11 @@ import org.springframework.test.context.ActiveProfiles;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -45,6 +53,9 @@ public class DocumentVectorServiceTest {
     @MockBean
     private ElasticsearchOperations elasticsearchOperations;
 
+    @MockBean
+    private SearchExpansionService searchExpansionService;
+
     private DocumentEntity testDocument;
     private List<DocumentChunk> testChunks;
 
@@ -75,7 +86,13 @@ public class DocumentVectorServiceTest {
 
         // 模拟向量化服务的行为
         when(vectorizationService.vectorize(anyString())).thenReturn(new float[]{0.1f, 0.2f, 0.3f});
+        when(vectorizationService.batchVectorize(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(text -> new float[]{0.1f, 0.2f, 0.3f}).collect(Collectors.toList());
+        });
         when(vectorizationService.calculateSimilarity(any(float[].class), any(float[].class))).thenReturn(0.8f);
+        when(vectorStorageService.storeDocumentVectorsAsync(anyString(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
+        when(vectorStorageService.storeDocumentVectorsAsync(anyString(), anyMap(), any(VectorMetadata.class))).thenReturn(CompletableFuture.completedFuture(null));
     }
 
     @Test
@@ -123,8 +140,13 @@ public class DocumentVectorServiceTest {
         // 执行测试
         documentVectorService.vectorizeAndStore(testDocument, testChunks);
 
-        // 验证VectorStorageService的调用
-        verify(vectorStorageService, times(2)).storeVector(anyString(), any(float[].class));
+        // 验证分块向量合并为一次批量写入
+        verify(vectorStorageService, times(1)).storeDocumentVectorsAsync(eq("1"), argThat(vectors -> vectors.size() == 2),
+            argThat(metadata -> "1".equals(metadata.getDocumentId())));
+        verify(vectorStorageService, never()).storeVector(anyString(), any(float[].class));
+        // 一个文档的分块只做一次批量向量化
+        verify(vectorizationService, times(1)).batchVectorize(List.of("这是第一个分块的内容", "这是第二个分块的内容"));
+        verify(vectorizationService, never()).vectorize(anyString());
     }
 
     @Test
@@ -137,8 +159,9 @@ public class DocumentVectorServiceTest {
         // 执行测试
         documentVectorService.batchVectorizeAndStore(documentChunksMap);
 
-        // 验证VectorStorageService的调用
-        verify(vectorStorageService, times(2)).storeVector(anyString(), any(float[].class));
+        // 验证每个文档的分块向量合并为一次批量写入
+        verify(vectorStorageService, times(1)).storeDocumentVectorsAsync(eq("1"), argThat(vectors -> vectors.size() == 2),
+            argThat(metadata -> "1".equals(metadata.getDocumentId())));
     }
 
     @Test
@@ -150,7 +173,63 @@ public class DocumentVectorServiceTest {
         documentVectorService.deleteDocumentVectors(testDocument.getId());
 
         // 验证VectorStorageService的调用
-        verify(vectorStorageService, times(2)).deleteVector(anyString());
+        verify(vectorStorageService, times(1)).deleteDocumentVectors(eq("1"), eq(List.of("1_1", "1_2")));
+    }
+
+    @Test
+    void testFailedStoreReleasesDedupRegistration() {
+        String content = "向量写入失败后，这段足够长的分块内容不应继续作为去重代表，否则之后入库的相同内容会复用一个已经不存在的向量，检索时就找不到这些分块。";
+        DocumentEntity failed = new DocumentEntity();
+        failed.setId(10L);
+        DocumentChunk failedChunk = new DocumentChunk();
+        failedChunk.setId(100L);
+        failedChunk.setDocument(failed);
+        failedChunk.setContent(content);
+        when(vectorStorageService.storeDocumentVectorsAsync(eq("10"), anyMap(), any(VectorMetadata.class)))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("写入失败")));
+
+        assertThrows(RuntimeException.class, () -> documentVectorService.vectorizeAndStore(failed, List.of(failedChunk)));
+
+        // 相同内容再次入库时作为新的代表写入自己的向量
+        DocumentEntity retry = new DocumentEntity();
+        retry.setId(11L);
+        DocumentChunk retryChunk = new DocumentChunk();
+        retryChunk.setId(110L);
+        retryChunk.setDocument(retry);
+        retryChunk.setContent(content);
+        documentVectorService.vectorizeAndStore(retry, List.of(retryChunk));
+
+        assertNull(retryChunk.getDuplicateOf());
+        verify(vectorStorageService).storeDocumentVectorsAsync(eq("11"), argThat(vectors -> vectors.containsKey("11_110")),
+            any(VectorMetadata.class));
+    }
+
+    @Test
+    void testDeletePromotesOrphanedDuplicates() {
+        // 文档2的两个分块复用文档1的向量 1_1
+        DocumentEntity other = new DocumentEntity();
+        other.setId(2L);
+        DocumentChunk promoted = new DocumentChunk();
+        promoted.setId(5L);
+        promoted.setDocument(other);
+        promoted.setContent("这是第一个分块的内容");
+        promoted.setDuplicateOf("1_1");
+        DocumentChunk follower = new DocumentChunk();
+        follower.setId(6L);
+        follower.setDocument(other);
+        follower.setContent("这是第一个分块的内容");
+        follower.setDuplicateOf("1_1");
+        when(documentChunkRepository.findByDocumentId(1L)).thenReturn(testChunks);
+        when(documentChunkRepository.findByDuplicateOfIn(List.of("1_1", "1_2"))).thenReturn(List.of(promoted, follower));
+
+        documentVectorService.deleteDocumentVectors(1L);
+
+        // 第一个重复分块重新向量化成为代表，其余改为复用它
+        verify(vectorStorageService).storeDocumentVectorsAsync(eq("2"), argThat(vectors -> vectors.keySet().equals(Set.of("2_5"))),
+            argThat(metadata -> "2".equals(metadata.getDocumentId())));
+        assertNull(promoted.getDuplicateOf());
+        assertEquals("2_5", follower.getDuplicateOf());
+        verify(documentChunkRepository).saveAll(List.of(promoted, follower));
     }
 
     @Test
@@ -159,12 +238,18 @@ public class DocumentVectorServiceTest {
         Long documentId = testDocument.getId();
         Long chunkId = testChunks.get(0).getId();
         String content = "更新后的内容";
+        testDocument.setCategory("report");
+        testDocument.setCreatedBy("tenant-a");
+        when(documentChunkRepository.findById(chunkId)).thenReturn(Optional.of(testChunks.get(0)));
 
         // 执行测试
         documentVectorService.updateChunkVector(documentId, chunkId, content);
 
-        // 验证VectorStorageService的调用
-        verify(vectorStorageService, times(1)).storeVector(anyString(), any(float[].class));
+        // 验证更新的向量带上文档的过滤元数据
+        verify(vectorStorageService, times(1)).storeDocumentVectorsAsync(eq("1"), argThat(vectors -> vectors.containsKey("1_1")),
+            argThat(metadata -> "1".equals(metadata.getDocumentId())
+                && "report".equals(metadata.getType()) && "tenant-a".equals(metadata.getTenant())));
+        verify(vectorStorageService, never()).storeDocumentVectorsAsync(anyString(), anyMap());
     }
 
     @Test
@@ -199,11 +284,8 @@ public class DocumentVectorServiceTest {
         int limit = 10;
         float minScore = 0.5f;
 
-        // 模拟文档分块查询
-        when(documentChunkRepository.findByDocumentId(documentId)).thenReturn(testChunks);
-
         // 模拟搜索结果
-        when(vectorStorageService.searchSimilarInRange(any(float[].class), any(List.class), eq(limit), eq(minScore)))
+        when(vectorStorageService.searchSimilarInDocument(eq("1"), any(Supplier.class), any(float[].class), eq(limit), eq(minScore)))
             .thenReturn(Map.of(
                 "1_1", 0.8f,
                 "1_2", 0.7f
@@ -212,10 +294,115 @@ public class DocumentVectorServiceTest {
         // 执行测试
         List<Map<String, Object>> results = documentVectorService.searchChunksByDocument(documentId, query, limit, minScore);
 
-        // 验证结果
+        // 验证结果：支持分区键的存储不需要加载文档的全部分块
         assertNotNull(results);
         assertFalse(results.isEmpty());
         assertEquals(2, results.size());
-        verify(vectorStorageService, times(1)).searchSimilarInRange(any(float[].class), any(List.class), eq(limit), eq(minScore));
+        verify(vectorStorageService, times(1)).searchSimilarInDocument(eq("1"), any(Supplier.class), any(float[].class), eq(limit), eq(minScore));
+        verify(documentChunkRepository, never()).findByDocumentId(documentId);
+        verify(vectorStorageService, never()).searchSimilarInRange(any(float[].class), anyList(), anyInt(), anyFloat());
+    }
+
+    @Test
+    void testSearchChunksByDocumentMapsReusedVectors() {
+        // 第三个分块复用了文档2的向量
+        DocumentChunk duplicate = new DocumentChunk();
+        duplicate.setId(3L);
+        duplicate.setDocument(testDocument);
+        duplicate.setDuplicateOf("2_5");
+        when(documentChunkRepository.findByDocumentIdAndDuplicateOfIsNotNull(1L)).thenReturn(List.of(duplicate));
+        when(vectorStorageService.searchSimilarInDocument(eq("1"), any(Supplier.class), any(float[].class), eq(2), eq(0.5f)))
+            .thenReturn(Map.of("1_1", 0.8f, "1_2", 0.6f));
+        when(vectorStorageService.searchSimilarInRange(any(float[].class), eq(List.of("2_5")), eq(2), eq(0.5f)))
+            .thenReturn(Map.of("2_5", 0.9f));
+
+        List<Map<String, Object>> results = documentVectorService.searchChunksByDocument(1L, "测试查询", 2, 0.5f);
+
+        // 复用的向量映射回本文档的分块，合并后只保留前 limit 个
+        assertEquals(2, results.size());
+        assertEquals(3L, results.get(0).get("chunkId"));
+        assertEquals(0.9f, results.get(0).get("score"));
+        assertEquals(1L, results.get(1).get("chunkId"));
+    }
+
+    @Test
+    void testSearchChunksFilteredExpandsDuplicates() {
+        // 文档2的分块7复用了文档1的向量 1_1，文档3的分块8也复用它但不在过滤范围内
+        DocumentEntity other = new DocumentEntity();
+        other.setId(2L);
+        DocumentChunk duplicate = new DocumentChunk();
+        duplicate.setId(7L);
+        duplicate.setDocument(other);
+        duplicate.setDuplicateOf("1_1");
+        DocumentEntity excluded = new DocumentEntity();
+        excluded.setId(3L);
+        DocumentChunk excludedDuplicate = new DocumentChunk();
+        excludedDuplicate.setId(8L);
+        excludedDuplicate.setDocument(excluded);
+        excludedDuplicate.setDuplicateOf("1_1");
+        VectorFilter filter = VectorFilter.builder().documentIds(Set.of("1", "2")).build();
+        when(vectorStorageService.searchSimilarFiltered(any(float[].class), eq(filter), eq(10), eq(0.5f)))
+            .thenReturn(Map.of("1_1", 0.9f, "1_2", 0.6f));
+        when(documentChunkRepository.findDuplicateVectorIds(eq(false), argThat(ids -> Set.copyOf(ids).equals(Set.of(1L, 2L))),
+            eq(true), anyCollection(), eq(true), anyCollection(), isNull(), isNull())).thenReturn(List.of("1_1"));
+        when(documentChunkRepository.findByDuplicateOfIn(anyList())).thenReturn(List.of(duplicate, excludedDuplicate));
+
+        List<Map<String, Object>> results = documentVectorService.searchChunksFiltered("测试查询", filter, 10, 0.5f);
+
+        // 代表向量已由过滤搜索命中，不再按ID范围搜索；重复分块只展开到满足条件的文档
+        assertEquals(3, results.size());
+        assertEquals(Set.of(1L, 7L), Set.of(results.get(0).get("chunkId"), results.get(1).get("chunkId")));
+        assertEquals(0.9f, results.get(1).get("score"));
+        assertEquals(2L, results.get(2).get("chunkId"));
+        verify(vectorStorageService, never()).searchSimilarInRange(any(float[].class), anyList(), anyInt(), anyFloat());
+    }
+
+    @Test
+    void testSearchChunksFilteredFindsDuplicatesOfUnmatchedVectors() {
+        // 租户B的文档2复用了租户A文档1的向量，代表向量的元数据不满足过滤条件
+        testDocument.setCreatedBy("tenant-a");
+        DocumentEntity other = new DocumentEntity();
+        other.setId(2L);
+        other.setCreatedBy("tenant-b");
+        DocumentChunk duplicate = new DocumentChunk();
+        duplicate.setId(7L);
+        duplicate.setDocument(other);
+        duplicate.setDuplicateOf("1_1");
+        VectorFilter filter = VectorFilter.builder().tenants(Set.of("tenant-b")).build();
+        when(vectorStorageService.searchSimilarFiltered(any(float[].class), eq(filter), eq(10), eq(0.5f)))
+            .thenReturn(Map.of("2_3", 0.7f));
+        // 按租户筛重复分块在数据库中完成，只返回复用的向量ID
+        when(documentChunkRepository.findDuplicateVectorIds(eq(true), anyCollection(), eq(true), anyCollection(),
+            eq(false), eq(Set.of("tenant-b")), isNull(), isNull())).thenReturn(List.of("1_1"));
+        when(vectorStorageService.searchSimilarInRange(any(float[].class), eq(List.of("1_1")), eq(10), eq(0.5f)))
+            .thenReturn(Map.of("1_1", 0.8f));
+        when(documentChunkRepository.findByDuplicateOfIn(anyList())).thenReturn(List.of(duplicate));
+
+        List<Map<String, Object>> results = documentVectorService.searchChunksFiltered("测试查询", filter, 10, 0.5f);
+
+        // 复用的向量映射回重复分块，代表分块本身不满足条件不返回
+        assertEquals(List.of(7L, 3L), results.stream().map(result -> result.get("chunkId")).collect(Collectors.toList()));
+        assertEquals(0.8f, results.get(0).get("score"));
+    }
+
+    @Test
+    void testSearchChunksExpanded() {
+        // 扩展结果包含原查询本身，只应额外搜索一次同义词查询
+        when(searchExpansionService.expandQuery("文档")).thenReturn(List.of("文档", "文件"));
+        when(vectorizationService.batchVectorize(List.of("文档", "文件")))
+            .thenReturn(List.of(new float[]{0.1f, 0.2f, 0.3f}, new float[]{0.3f, 0.2f, 0.1f}));
+        when(vectorStorageService.searchSimilarBatch(anyList(), eq(2), eq(0.5f)))
+            .thenReturn(List.of(
+                Map.of("1_1", 0.6f, "1_2", 0.7f),
+                Map.of("1_1", 0.9f, "1_3", 0.55f)));
+
+        List<Map<String, Object>> results = documentVectorService.searchChunksExpanded("文档", 2, 0.5f);
+
+        // 同一分块取各查询中的最高分，合并后只保留前 limit 个
+        assertEquals(2, results.size());
+        assertEquals(1L, results.get(0).get("chunkId"));
+        assertEquals(0.9f, results.get(0).get("score"));
+        assertEquals(2L, results.get(1).get("chunkId"));
+        verify(vectorizationService, times(1)).batchVectorize(List.of("文档", "文件"));
     }
-} 
\ No newline at end of file
+}
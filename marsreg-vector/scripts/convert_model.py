@@ -1,5 +1,6 @@
 import torch
 from sentence_transformers import SentenceTransformer
+from onnxruntime.quantization import QuantType, quantize_dynamic
 import os
 
 def convert_to_onnx(model_name, output_dir):
@@ -10,36 +11,77 @@ def convert_to_onnx(model_name, output_dir):
     """
     print(f"正在加载模型: {model_name}")
     model = SentenceTransformer(model_name)
-    
+
     # 创建输出目录
     os.makedirs(output_dir, exist_ok=True)
-    
+
     # 准备示例输入
     dummy_input = ["这是一个测试文本"]
-    
+
     # 导出模型
     print("正在导出模型...")
     model.save(output_dir)
-    
+
+    # 导出 ONNX：输出 token 级向量，平均池化在 Java 端按 attention_mask 完成
+    print("正在导出ONNX模型...")
+    onnx_path = os.path.join(output_dir, "model.onnx")
+    export_onnx(model, dummy_input, onnx_path)
+
+    # int8 动态量化：权重离线量化，激活在推理时按批量化，不需要校准数据
+    print("正在量化ONNX模型...")
+    quantized_path = os.path.join(output_dir, "model_quantized.onnx")
+    quantize_dynamic(onnx_path, quantized_path, weight_type=QuantType.QInt8)
+
     # 保存模型信息
     model_info = {
         "name": model_name,
         "version": "1.0.0",
         "dimension": model.get_sentence_embedding_dimension(),
-        "max_seq_length": model.max_seq_length
+        "max_seq_length": model.max_seq_length,
+        "onnx": "model.onnx",
+        "onnx_quantized": "model_quantized.onnx"
     }
-    
+
     # 保存模型信息到文件
     with open(os.path.join(output_dir, "model_info.txt"), "w") as f:
         for key, value in model_info.items():
             f.write(f"{key}={value}\n")
-    
+
     print(f"模型已保存到: {output_dir}")
     print(f"模型信息: {model_info}")
 
+def export_onnx(model, texts, onnx_path):
+    """
+    导出 transformer 主干，batch 和序列长度均为动态维度
+    :param model: SentenceTransformer 模型
+    :param texts: 示例输入
+    :param onnx_path: 输出文件
+    """
+    transformer = model[0].auto_model
+    transformer.eval()
+    features = model.tokenize(texts)
+    input_names = ["input_ids", "attention_mask"]
+    # BERT 类模型需要 token_type_ids，Java 端会根据模型输入自动提供
+    if "token_type_ids" in features:
+        input_names.append("token_type_ids")
+    inputs = tuple(features[name] for name in input_names)
+    dynamic_axes = {name: {0: "batch", 1: "sequence"} for name in input_names}
+    dynamic_axes["last_hidden_state"] = {0: "batch", 1: "sequence"}
+    with torch.no_grad():
+        torch.onnx.export(
+            transformer,
+            inputs,
+            onnx_path,
+            input_names=input_names,
+            output_names=["last_hidden_state"],
+            dynamic_axes=dynamic_axes,
+            opset_version=14,
+            do_constant_folding=True
+        )
+
 if __name__ == "__main__":
     # 使用 all-MiniLM-L6-v2 模型
     model_name = "sentence-transformers/all-MiniLM-L6-v2"
     output_dir = "models/all-MiniLM-L6-v2"
-    
-    convert_to_onnx(model_name, output_dir) 
\ No newline at end of file
+
+    convert_to_onnx(model_name, output_dir)
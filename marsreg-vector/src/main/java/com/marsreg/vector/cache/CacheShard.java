@@ -0,0 +1,21 @@
+package com.marsreg.vector.cache;
+
+/**
+ * 缓存分片。实现自行加锁，容量变化通过 {@link VectorCacheManager.Listener} 回调汇总
+ */
+interface CacheShard {
+
+    /**
+     * 读取未过期的向量，过期条目在读取时淘汰
+     */
+    float[] get(String key, int hash, long now);
+
+    /**
+     * 写入或替换条目，超出容量时按分片的淘汰策略淘汰
+     */
+    void put(String key, int hash, float[] value, long weight, long now, long expireAt);
+
+    boolean remove(String key);
+
+    void clear();
+}
@@ -0,0 +1,129 @@
+package com.marsreg.vector.cache;
+
+import com.marsreg.vector.cache.eviction.CacheEvictionStrategy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 由 {@link CacheEvictionStrategy} 决定淘汰顺序的缓存分片，所有新条目均被准入
+ */
+final class StrategyCacheShard implements CacheShard {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry> map = new HashMap<>();
+    private final CacheEvictionStrategy strategy;
+    private final long maxEntries;
+    private final long maxWeight;
+    private final VectorCacheManager.Listener listener;
+    private long weight;
+
+    StrategyCacheShard(long maxEntries, long maxWeight, CacheEvictionStrategy strategy,
+                       VectorCacheManager.Listener listener) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxWeight = Math.max(1, maxWeight);
+        this.strategy = strategy;
+        this.listener = listener;
+    }
+
+    @Override
+    public float[] get(String key, int hash, long now) {
+        lock.lock();
+        try {
+            Entry entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.expireAt >= 0) {
+                map.remove(key);
+                weight -= entry.weight;
+                strategy.recordRemoval(key);
+                listener.onEviction(entry.weight, true);
+                return null;
+            }
+            strategy.recordAccess(key);
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(String key, int hash, float[] value, long entryWeight, long now, long expireAt) {
+        lock.lock();
+        try {
+            if (entryWeight > maxWeight) {
+                remove(key);
+                return;
+            }
+            Entry previous = map.put(key, new Entry(value, entryWeight, expireAt));
+            if (previous != null) {
+                weight -= previous.weight;
+                listener.onRemoval(previous.weight);
+                strategy.recordAccess(key);
+            } else {
+                strategy.recordInsert(key);
+            }
+            weight += entryWeight;
+            listener.onInsert(entryWeight);
+            while (weight > maxWeight || map.size() > maxEntries) {
+                String victim = strategy.evict();
+                if (victim == null) {
+                    break;
+                }
+                Entry evicted = map.remove(victim);
+                if (evicted != null) {
+                    weight -= evicted.weight;
+                    listener.onEviction(evicted.weight, now - evicted.expireAt >= 0);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String key) {
+        lock.lock();
+        try {
+            Entry entry = map.remove(key);
+            if (entry == null) {
+                return false;
+            }
+            weight -= entry.weight;
+            strategy.recordRemoval(key);
+            listener.onRemoval(entry.weight);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (Map.Entry<String, Entry> entry : map.entrySet()) {
+                strategy.recordRemoval(entry.getKey());
+                listener.onRemoval(entry.getValue().weight);
+            }
+            map.clear();
+            weight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        final float[] value;
+        final long weight;
+        final long expireAt;
+
+        Entry(float[] value, long weight, long expireAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.marsreg.vector.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * W-TinyLFU 缓存分片：新条目先进入约占1%容量的窗口LRU，
+ * 溢出后进入主区的试用段，只有频率估计高于试用段淘汰候选的条目才会留下；
+ * 试用段再次命中的条目晋升到受保护段。所有操作均为 O(1)，由分片锁保护
+ */
+final class TinyLfuCacheShard implements CacheShard {
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Node> map = new HashMap<>();
+    private final AccessList window = new AccessList();
+    private final AccessList probation = new AccessList();
+    private final AccessList protectedList = new AccessList();
+    private final FrequencySketch sketch;
+    private final long maxWeight;
+    private final long maxEntries;
+    private final long windowMaxWeight;
+    private final long protectedMaxWeight;
+    private final long windowMaxEntries;
+    private final long protectedMaxEntries;
+    private final VectorCacheManager.Listener listener;
+
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+    private int windowCount;
+    private int protectedCount;
+
+    TinyLfuCacheShard(long maxEntries, long maxWeight, VectorCacheManager.Listener listener) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxWeight = Math.max(1, maxWeight);
+        this.windowMaxWeight = Math.max(1, this.maxWeight / 100);
+        this.protectedMaxWeight = (this.maxWeight - windowMaxWeight) / 10 * 8;
+        this.windowMaxEntries = Math.max(1, this.maxEntries / 100);
+        this.protectedMaxEntries = (this.maxEntries - windowMaxEntries) / 10 * 8;
+        this.sketch = new FrequencySketch(this.maxEntries);
+        this.listener = listener;
+    }
+
+    @Override
+    public float[] get(String key, int hash, long now) {
+        lock.lock();
+        try {
+            sketch.increment(hash);
+            Node node = map.get(key);
+            if (node == null) {
+                return null;
+            }
+            if (now - node.expireAt >= 0) {
+                remove(node);
+                listener.onEviction(node.weight, true);
+                return null;
+            }
+            onAccess(node);
+            return node.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(String key, int hash, float[] value, long weight, long now, long expireAt) {
+        lock.lock();
+        try {
+            sketch.increment(hash);
+            Node node = map.get(key);
+            if (node != null) {
+                remove(node);
+                listener.onRemoval(node.weight);
+            }
+            if (weight > maxWeight) {
+                return;
+            }
+            node = new Node(key, hash, value, weight, expireAt);
+            map.put(key, node);
+            node.queue = WINDOW;
+            window.addLast(node);
+            windowWeight += weight;
+            windowCount++;
+            listener.onInsert(weight);
+            evictExpired(now);
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String key) {
+        lock.lock();
+        try {
+            Node node = map.get(key);
+            if (node == null) {
+                return false;
+            }
+            remove(node);
+            listener.onRemoval(node.weight);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (Node node : map.values()) {
+                listener.onRemoval(node.weight);
+            }
+            map.clear();
+            window.clear();
+            probation.clear();
+            protectedList.clear();
+            windowWeight = 0;
+            probationWeight = 0;
+            protectedWeight = 0;
+            windowCount = 0;
+            protectedCount = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onAccess(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                probationWeight -= node.weight;
+                node.queue = PROTECTED;
+                protectedList.addLast(node);
+                protectedWeight += node.weight;
+                protectedCount++;
+                // 受保护段超限时把最久未访问的条目降级回试用段
+                while ((protectedWeight > protectedMaxWeight || protectedCount > protectedMaxEntries)
+                        && protectedList.first() != node) {
+                    Node demoted = protectedList.pollFirst();
+                    protectedWeight -= demoted.weight;
+                    protectedCount--;
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                    probationWeight += demoted.weight;
+                }
+                break;
+            default:
+                protectedList.moveToLast(node);
+                break;
+        }
+    }
+
+    /**
+     * 淘汰各段队首已过期的条目，队首是最久未访问的条目，过期的概率最大
+     */
+    private void evictExpired(long now) {
+        for (AccessList list : new AccessList[]{window, probation, protectedList}) {
+            Node head = list.first();
+            while (head != null && now - head.expireAt >= 0) {
+                remove(head);
+                listener.onEviction(head.weight, true);
+                head = list.first();
+            }
+        }
+    }
+
+    private void evict() {
+        // 窗口溢出的条目进入试用段队尾，成为准入候选
+        while ((windowWeight > windowMaxWeight || windowCount > windowMaxEntries) && window.first() != null) {
+            Node node = window.pollFirst();
+            windowWeight -= node.weight;
+            windowCount--;
+            node.queue = PROBATION;
+            probation.addLast(node);
+            probationWeight += node.weight;
+        }
+        while (windowWeight + probationWeight + protectedWeight > maxWeight || map.size() > maxEntries) {
+            Node victim = probation.first();
+            Node candidate = probation.last();
+            if (victim == null) {
+                victim = protectedList.first() != null ? protectedList.first() : window.first();
+            } else if (candidate != victim && sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash)) {
+                // 候选的访问频率不高于淘汰对象时拒绝准入
+                victim = candidate;
+            }
+            remove(victim);
+            listener.onEviction(victim.weight, false);
+        }
+    }
+
+    private void remove(Node node) {
+        map.remove(node.key);
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowWeight -= node.weight;
+                windowCount--;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                probationWeight -= node.weight;
+                break;
+            default:
+                protectedList.remove(node);
+                protectedWeight -= node.weight;
+                protectedCount--;
+                break;
+        }
+    }
+
+    private static final class Node {
+        final String key;
+        final int hash;
+        final float[] value;
+        final long weight;
+        final long expireAt;
+        byte queue;
+        Node prev;
+        Node next;
+
+        Node(String key, int hash, float[] value, long weight, long expireAt) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 侵入式双向链表，队首为最久未访问的条目
+     */
+    private static final class AccessList {
+        private Node head;
+        private Node tail;
+
+        Node first() {
+            return head;
+        }
+
+        Node last() {
+            return tail;
+        }
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        Node pollFirst() {
+            Node node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void moveToLast(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+}
@@ -1,86 +1,184 @@
 package com.marsreg.vector.cache;
 
-import com.marsreg.vector.cache.eviction.CacheEvictionStrategy;
+import com.marsreg.vector.cache.eviction.ARCEvictionStrategy;
+import com.marsreg.vector.cache.eviction.LFUEvictionStrategy;
 import com.marsreg.vector.cache.eviction.LRUEvictionStrategy;
+import com.marsreg.vector.cache.simulator.CacheTraceRecorder;
+import com.marsreg.vector.config.VectorizationConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * 向量缓存管理器。按键哈希分片，每个分片独立加锁，默认采用 W-TinyLFU 淘汰，
+ * 也可配置为 ARC/LFU/LRU，读写均为 O(1)；按条目实际占用的堆内存计量容量，过期时间基于 {@link System#nanoTime()}
+ */
 @Slf4j
 @Component
 public class VectorCacheManager {
-    private final Map<String, CacheEntry> cache;
-    private final CacheEvictionStrategy evictionStrategy;
-    
-    @Value("${vector.cache.max-size:1000}")
-    private int maxSize;
-    
-    @Value("${vector.cache.max-memory:1000000}")
-    private long maxMemory;
-    
-    private long currentMemory;
 
-    public VectorCacheManager() {
-        this.cache = new ConcurrentHashMap<>();
-        this.evictionStrategy = new LRUEvictionStrategy();
-        this.currentMemory = 0;
+    /**
+     * 64位JVM开启压缩指针时的对象布局（对象头12字节，引用4字节，按8字节对齐）
+     */
+    private static final long ARRAY_HEADER = 16;
+    private static final long STRING_SHALLOW = 24;
+    private static final long SHARD_NODE_SHALLOW = 56;
+    private static final long HASH_MAP_NODE = 32;
+    private static final long HASH_MAP_SLOT = 8;
+
+    public static final String POLICY_TINY_LFU = "tinylfu";
+    public static final String POLICY_ARC = "arc";
+    public static final String POLICY_LFU = "lfu";
+    public static final String POLICY_LRU = "lru";
+    public static final List<String> POLICIES = List.of(POLICY_TINY_LFU, POLICY_ARC, POLICY_LFU, POLICY_LRU);
+
+    private final CacheShard[] shards;
+    private final int shardMask;
+    private final boolean enabled;
+    private final long maxEntries;
+    private final long maxMemory;
+    private final long expireNanos;
+    private final String policy;
+    private CacheTraceRecorder traceRecorder;
+
+    private final AtomicLong currentMemory = new AtomicLong();
+    private final AtomicLong entryCount = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    @Autowired
+    public VectorCacheManager(VectorizationConfig config, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(config.getCache().getPolicy(), config.getCache().getMaxEntries(), config.getCache().getMaxMemory(),
+            config.getCache().getExpire(), config.getCache().getShards(),
+            !Boolean.FALSE.equals(config.getCache().getEnabled()));
+        meterRegistry.ifAvailable(this::registerMetrics);
+        String traceFile = config.getCache().getTraceFile();
+        if (traceFile != null && !traceFile.isBlank()) {
+            try {
+                traceRecorder = new CacheTraceRecorder(Paths.get(traceFile));
+                log.info("记录向量缓存访问轨迹: {}", traceFile);
+            } catch (IOException e) {
+                log.error("创建缓存访问轨迹文件失败: {}", traceFile, e);
+            }
+        }
+        log.info("初始化向量缓存管理器: policy={}, maxEntries={}, maxMemory={}, shards={}, expire={}s",
+            policy, maxEntries, maxMemory, shards.length, config.getCache().getExpire());
     }
 
-    @PostConstruct
-    public void init() {
-        log.info("初始化向量缓存管理器: maxSize={}, maxMemory={}", maxSize, maxMemory);
+    public VectorCacheManager(long maxEntries, long maxMemory, long expireSeconds, int shardCount) {
+        this(POLICY_TINY_LFU, maxEntries, maxMemory, expireSeconds, shardCount);
+    }
+
+    public VectorCacheManager(String policy, long maxEntries, long maxMemory, long expireSeconds, int shardCount) {
+        this(policy, maxEntries, maxMemory, expireSeconds, shardCount, true);
+    }
+
+    private VectorCacheManager(String policy, long maxEntries, long maxMemory, long expireSeconds,
+                               int shardCount, boolean enabled) {
+        // 条目上限小于分片数时减少分片，保证每个分片至少一个条目且总容量不超过上限
+        long entryLimit = Math.max(1, maxEntries);
+        int count = Integer.highestOneBit(Math.max(1, shardCount) * 2 - 1);
+        count = (int) Math.min(count, Long.highestOneBit(entryLimit));
+        this.policy = policy == null ? POLICY_TINY_LFU : policy.toLowerCase();
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxMemory = maxMemory;
+        this.expireNanos = expireSeconds > 0 ? TimeUnit.SECONDS.toNanos(expireSeconds) : Long.MAX_VALUE / 2;
+        this.shardMask = count - 1;
+        this.shards = new CacheShard[count];
+        Listener listener = new Listener() {
+            @Override
+            public void onInsert(long weight) {
+                currentMemory.addAndGet(weight);
+                entryCount.incrementAndGet();
+            }
+
+            @Override
+            public void onRemoval(long weight) {
+                currentMemory.addAndGet(-weight);
+                entryCount.decrementAndGet();
+            }
+
+            @Override
+            public void onEviction(long weight, boolean expired) {
+                onRemoval(weight);
+                (expired ? expirations : evictions).increment();
+            }
+        };
+        for (int i = 0; i < count; i++) {
+            shards[i] = createShard(entryLimit / count, Math.max(1, maxMemory / count), listener);
+        }
     }
 
     public float[] getVector(String text) {
-        CacheEntry entry = cache.get(text);
-        if (entry != null && !entry.isExpired()) {
-            return entry.getVector();
+        if (!enabled || text == null) {
+            return null;
+        }
+        if (traceRecorder != null) {
+            traceRecorder.record(text);
         }
-        return null;
+        int hash = text.hashCode();
+        float[] vector = shardFor(hash).get(text, hash, System.nanoTime());
+        (vector != null ? hits : misses).increment();
+        return vector;
     }
 
-    public void put(String key, float[] value) {
-        CacheEntry entry = new CacheEntry(key, value);
-        
-        // 如果缓存已满，执行淘汰策略
-        while (cache.size() >= maxSize || currentMemory + entry.getSize() > maxMemory) {
-            String evictedKey = evictionStrategy.evict(cache);
-            if (evictedKey != null) {
-                CacheEntry evictedEntry = cache.remove(evictedKey);
-                currentMemory -= evictedEntry.getSize();
-            } else {
-                break;
+    @PreDestroy
+    public void destroy() {
+        if (traceRecorder != null) {
+            try {
+                traceRecorder.close();
+            } catch (IOException e) {
+                log.error("关闭缓存访问轨迹文件失败", e);
             }
         }
-        
-        cache.put(key, entry);
-        currentMemory += entry.getSize();
+    }
+
+    public void put(String key, float[] value) {
+        if (!enabled || key == null || value == null) {
+            return;
+        }
+        int hash = key.hashCode();
+        long now = System.nanoTime();
+        shardFor(hash).put(key, hash, value, weigh(key, value), now, now + expireNanos);
     }
 
     public void remove(String key) {
-        CacheEntry entry = cache.remove(key);
-        if (entry != null) {
-            currentMemory -= entry.getSize();
+        if (key == null) {
+            return;
         }
+        int hash = key.hashCode();
+        shardFor(hash).remove(key);
     }
 
     public void clear() {
-        cache.clear();
-        currentMemory = 0;
+        for (CacheShard shard : shards) {
+            shard.clear();
+        }
     }
 
     public int size() {
-        return cache.size();
+        return (int) entryCount.get();
     }
 
     public long getCurrentMemory() {
-        return currentMemory;
+        return currentMemory.get();
     }
 
     public Map<String, float[]> batchGet(List<String> keys) {
@@ -101,11 +199,94 @@ public class VectorCacheManager {
     }
 
     public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
         Map<String, Object> stats = new HashMap<>();
         stats.put("cacheSize", size());
         stats.put("currentMemory", getCurrentMemory());
-        stats.put("maxSize", maxSize);
+        stats.put("maxSize", maxEntries);
         stats.put("maxMemory", maxMemory);
+        stats.put("shards", shards.length);
+        stats.put("policy", policy);
+        stats.put("hitCount", hitCount);
+        stats.put("missCount", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictionCount", evictions.sum());
+        stats.put("expirationCount", expirations.sum());
         return stats;
     }
-} 
\ No newline at end of file
+
+    /**
+     * 估算条目占用的堆内存：向量数组、键字符串及其字节数组、分片链表节点和哈希表节点
+     */
+    static long weigh(String key, float[] value) {
+        boolean latin1 = true;
+        for (int i = 0; i < key.length() && latin1; i++) {
+            latin1 = key.charAt(i) < 256;
+        }
+        long keyBytes = align(ARRAY_HEADER + (long) key.length() * (latin1 ? 1 : 2));
+        long vectorBytes = align(ARRAY_HEADER + (long) value.length * Float.BYTES);
+        return vectorBytes + STRING_SHALLOW + keyBytes + SHARD_NODE_SHALLOW + HASH_MAP_NODE + HASH_MAP_SLOT;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private CacheShard createShard(long shardEntries, long shardMemory, Listener listener) {
+        switch (policy) {
+            case POLICY_TINY_LFU:
+                return new TinyLfuCacheShard(shardEntries, shardMemory, listener);
+            case POLICY_ARC:
+                return new StrategyCacheShard(shardEntries, shardMemory,
+                    new ARCEvictionStrategy((int) Math.min(Integer.MAX_VALUE, shardEntries)), listener);
+            case POLICY_LFU:
+                return new StrategyCacheShard(shardEntries, shardMemory, new LFUEvictionStrategy(), listener);
+            case POLICY_LRU:
+                return new StrategyCacheShard(shardEntries, shardMemory, new LRUEvictionStrategy(), listener);
+            default:
+                throw new IllegalArgumentException("不支持的缓存淘汰策略: " + policy);
+        }
+    }
+
+    private CacheShard shardFor(int hash) {
+        return shards[(hash ^ (hash >>> 16)) & shardMask];
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("vector.cache.requests", hits, LongAdder::sum)
+            .tag("result", "hit")
+            .description("向量缓存命中次数")
+            .register(registry);
+        FunctionCounter.builder("vector.cache.requests", misses, LongAdder::sum)
+            .tag("result", "miss")
+            .description("向量缓存未命中次数")
+            .register(registry);
+        FunctionCounter.builder("vector.cache.evictions", evictions, LongAdder::sum)
+            .tag("cause", "size")
+            .description("因容量淘汰的条目数")
+            .register(registry);
+        FunctionCounter.builder("vector.cache.evictions", expirations, LongAdder::sum)
+            .tag("cause", "expired")
+            .description("因过期淘汰的条目数")
+            .register(registry);
+        Gauge.builder("vector.cache.size", entryCount, AtomicLong::get)
+            .description("向量缓存条目数")
+            .register(registry);
+        Gauge.builder("vector.cache.memory", currentMemory, AtomicLong::get)
+            .baseUnit("bytes")
+            .description("向量缓存占用的堆内存")
+            .register(registry);
+    }
+
+    /**
+     * 分片在持锁期间回调，用于维护全局的条目数、内存和淘汰计数
+     */
+    interface Listener {
+        void onInsert(long weight);
+
+        void onRemoval(long weight);
+
+        void onEviction(long weight, boolean expired);
+    }
+}
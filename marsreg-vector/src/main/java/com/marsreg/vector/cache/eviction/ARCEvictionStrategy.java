@@ -0,0 +1,126 @@
+package com.marsreg.vector.cache.eviction;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * 自适应替换缓存（ARC）。T1保存只访问过一次的键，T2保存访问过多次的键，
+ * B1/B2分别记录最近从T1/T2淘汰的键；命中B1说明应给T1更多空间，命中B2则相反，
+ * 目标大小p据此自适应调整
+ */
+public class ARCEvictionStrategy implements CacheEvictionStrategy {
+
+    private final int capacity;
+    private final LinkedHashSet<String> t1 = new LinkedHashSet<>(); // 最近访问一次
+    private final LinkedHashSet<String> t2 = new LinkedHashSet<>(); // 最近访问多次
+    private final LinkedHashSet<String> b1 = new LinkedHashSet<>(); // 从t1淘汰的历史
+    private final LinkedHashSet<String> b2 = new LinkedHashSet<>(); // 从t2淘汰的历史
+    private int p = 0; // t1的目标大小
+    private boolean lastInsertFromB2;
+
+    /**
+     * @param capacity 缓存的条目容量，历史列表的总长度不超过该值
+     */
+    public ARCEvictionStrategy(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    @Override
+    public void recordInsert(String key) {
+        lastInsertFromB2 = false;
+        if (t1.contains(key) || t2.contains(key)) {
+            recordAccess(key);
+        } else if (b1.remove(key)) {
+            p = Math.min(capacity, p + Math.max(b2.size() / Math.max(1, b1.size() + 1), 1));
+            t2.add(key);
+        } else if (b2.remove(key)) {
+            p = Math.max(0, p - Math.max(b1.size() / Math.max(1, b2.size() + 1), 1));
+            t2.add(key);
+            lastInsertFromB2 = true;
+        } else {
+            trimHistory();
+            t1.add(key);
+        }
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        if (t1.remove(key) || t2.remove(key)) {
+            t2.add(key);
+        }
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        if (!t1.remove(key)) {
+            t2.remove(key);
+        }
+    }
+
+    @Override
+    public String evict() {
+        String key;
+        if (!t1.isEmpty() && (t1.size() > p || (t1.size() == p && lastInsertFromB2) || t2.isEmpty())) {
+            key = pollFirst(t1);
+            // T1 独占全部容量时直接丢弃，不进入历史，保证 |T1|+|B1| 不超过c
+            if (t1.size() + b1.size() >= capacity) {
+                if (b1.isEmpty()) {
+                    return key;
+                }
+                pollFirst(b1);
+            }
+            b1.add(key);
+        } else if (!t2.isEmpty()) {
+            key = pollFirst(t2);
+            b2.add(key);
+        } else {
+            return null;
+        }
+        return key;
+    }
+
+    @Override
+    public String getStrategyName() {
+        return "ARC";
+    }
+
+    /**
+     * 当前t1的目标大小
+     */
+    public int getTarget() {
+        return p;
+    }
+
+    /**
+     * |T1|+|B1|，不超过c
+     */
+    int recencySize() {
+        return t1.size() + b1.size();
+    }
+
+    /**
+     * 四个列表的总长，不超过2c
+     */
+    int totalSize() {
+        return t1.size() + t2.size() + b1.size() + b2.size();
+    }
+
+    /**
+     * 全新的键进入t1前为其腾出历史空间，使淘汰后 |T1|+|B1| 不超过c，四个列表总长不超过2c
+     */
+    private void trimHistory() {
+        while (!b1.isEmpty() && t1.size() + b1.size() >= capacity) {
+            pollFirst(b1);
+        }
+        while (!b2.isEmpty() && t1.size() + t2.size() + b1.size() + b2.size() >= 2 * capacity) {
+            pollFirst(b2);
+        }
+    }
+
+    private static String pollFirst(LinkedHashSet<String> set) {
+        Iterator<String> iterator = set.iterator();
+        String key = iterator.next();
+        iterator.remove();
+        return key;
+    }
+}
@@ -1,22 +1,34 @@
 package com.marsreg.vector.cache.eviction;
 
-import com.marsreg.vector.cache.CacheEntry;
-import java.util.List;
-import java.util.Map;
-
+/**
+ * 缓存淘汰策略。策略只维护键的元数据，所有操作均为 O(1)；
+ * 非线程安全，由调用方（缓存分片）的锁保护
+ */
 public interface CacheEvictionStrategy {
+
     /**
-     * 选择要淘汰的缓存项
-     * @param entries 所有缓存项
-     * @param maxSize 最大缓存大小
-     * @return 要淘汰的缓存项列表
+     * 新键写入缓存
      */
-    List<String> selectEvictionEntries(Map<String, CacheEntry> entries, int maxSize);
-    
+    void recordInsert(String key);
+
+    /**
+     * 已缓存的键被命中或覆盖写入
+     */
+    void recordAccess(String key);
+
+    /**
+     * 键被显式删除或过期，不计入淘汰历史
+     */
+    void recordRemoval(String key);
+
+    /**
+     * 选出一个淘汰对象并从策略中移除
+     * @return 被淘汰的键，策略为空时返回null
+     */
+    String evict();
+
     /**
      * 获取策略名称
      */
     String getStrategyName();
-
-    String evict(Map<String, CacheEntry> cache);
-} 
\ No newline at end of file
+}
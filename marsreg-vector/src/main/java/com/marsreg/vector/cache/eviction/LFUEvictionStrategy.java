@@ -1,33 +1,118 @@
 package com.marsreg.vector.cache.eviction;
 
-import com.marsreg.vector.cache.CacheEntry;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.stream.Collectors;
 
+/**
+ * 最不经常使用淘汰，采用频率桶链表实现 O(1) 的访问和淘汰：
+ * 相同访问次数的键位于同一个桶内，桶按次数升序链接，同一桶内按最近访问排序
+ */
 public class LFUEvictionStrategy implements CacheEvictionStrategy {
-    
+
+    private final Map<String, Bucket> buckets = new HashMap<>();
+    // 哨兵，head.next 为访问次数最少的桶
+    private final Bucket head = new Bucket(0);
+
+    @Override
+    public void recordInsert(String key) {
+        if (buckets.containsKey(key)) {
+            recordAccess(key);
+            return;
+        }
+        Bucket first = head.next;
+        if (first == null || first.frequency != 1) {
+            first = head.insertAfter(1);
+        }
+        first.keys.add(key);
+        buckets.put(key, first);
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            return;
+        }
+        Bucket next = bucket.next;
+        if (next == null || next.frequency != bucket.frequency + 1) {
+            next = bucket.insertAfter(bucket.frequency + 1);
+        }
+        next.keys.add(key);
+        buckets.put(key, next);
+        bucket.keys.remove(key);
+        if (bucket.keys.isEmpty()) {
+            bucket.unlink();
+        }
+    }
+
+    @Override
+    public void recordRemoval(String key) {
+        Bucket bucket = buckets.remove(key);
+        if (bucket != null) {
+            bucket.keys.remove(key);
+            if (bucket.keys.isEmpty()) {
+                bucket.unlink();
+            }
+        }
+    }
+
     @Override
-    public List<String> selectEvictionEntries(Map<String, CacheEntry> entries, int maxSize) {
-        return entries.entrySet().stream()
-            .sorted(Map.Entry.comparingByValue((e1, e2) -> 
-                Integer.compare(e1.getAccessCount(), e2.getAccessCount())))
-            .limit(entries.size() - maxSize + 1)
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toList());
+    public String evict() {
+        Bucket bucket = head.next;
+        if (bucket == null) {
+            return null;
+        }
+        Iterator<String> iterator = bucket.keys.iterator();
+        String key = iterator.next();
+        iterator.remove();
+        if (bucket.keys.isEmpty()) {
+            bucket.unlink();
+        }
+        buckets.remove(key);
+        return key;
     }
-    
+
     @Override
     public String getStrategyName() {
         return "LFU";
     }
 
-    @Override
-    public String evict(Map<String, CacheEntry> cache) {
-        // 最少使用淘汰策略
-        return cache.entrySet().stream()
-                .min((e1, e2) -> Integer.compare(e1.getValue().getAccessCount(), e2.getValue().getAccessCount()))
-                .map(Map.Entry::getKey)
-                .orElse(null);
+    /**
+     * 返回键当前的访问次数，未缓存时返回0
+     */
+    public int frequency(String key) {
+        Bucket bucket = buckets.get(key);
+        return bucket == null ? 0 : bucket.frequency;
+    }
+
+    private static final class Bucket {
+        final int frequency;
+        final LinkedHashSet<String> keys = new LinkedHashSet<>();
+        Bucket prev;
+        Bucket next;
+
+        Bucket(int frequency) {
+            this.frequency = frequency;
+        }
+
+        Bucket insertAfter(int frequency) {
+            Bucket bucket = new Bucket(frequency);
+            bucket.prev = this;
+            bucket.next = next;
+            if (next != null) {
+                next.prev = bucket;
+            }
+            next = bucket;
+            return bucket;
+        }
+
+        void unlink() {
+            prev.next = next;
+            if (next != null) {
+                next.prev = prev;
+            }
+        }
     }
-} 
\ No newline at end of file
+}
@@ -1,47 +1,46 @@
 package com.marsreg.vector.cache.eviction;
 
-import com.marsreg.vector.cache.CacheEntry;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.Comparator;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 
+/**
+ * 最近最少使用淘汰
+ */
 public class LRUEvictionStrategy implements CacheEvictionStrategy {
-    
+
+    // 按访问顺序排列，队首最久未访问
+    private final LinkedHashSet<String> order = new LinkedHashSet<>();
+
     @Override
-    public List<String> selectEvictionEntries(Map<String, CacheEntry> entries, int maxSize) {
-        return entries.entrySet().stream()
-            .sorted(Map.Entry.comparingByValue((e1, e2) -> 
-                Long.compare(e1.getLastAccessTime(), e2.getLastAccessTime())))
-            .limit(entries.size() - maxSize + 1)
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toList());
+    public void recordInsert(String key) {
+        order.add(key);
     }
-    
+
     @Override
-    public String getStrategyName() {
-        return "LRU";
+    public void recordAccess(String key) {
+        if (order.remove(key)) {
+            order.add(key);
+        }
     }
 
     @Override
-    public String evict(Map<String, CacheEntry> cache) {
-        if (cache.isEmpty()) {
+    public void recordRemoval(String key) {
+        order.remove(key);
+    }
+
+    @Override
+    public String evict() {
+        Iterator<String> iterator = order.iterator();
+        if (!iterator.hasNext()) {
             return null;
         }
-
-        return cache.entrySet().stream()
-            .min(Comparator.comparingLong(e -> e.getValue().getLastAccessTime()))
-            .map(Map.Entry::getKey)
-            .orElse(null);
+        String key = iterator.next();
+        iterator.remove();
+        return key;
     }
 
-    public String selectKeyToEvict(Map<String, CacheEntry> cache) {
-        return cache.entrySet().stream()
-                .min(Comparator.comparingLong(entry -> 
-                    entry.getValue().getAccessCount()))
-                .map(Map.Entry::getKey)
-                .orElse(null);
+    @Override
+    public String getStrategyName() {
+        return "LRU";
     }
-} 
\ No newline at end of file
+}
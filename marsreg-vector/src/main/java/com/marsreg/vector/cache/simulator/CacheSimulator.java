@@ -0,0 +1,106 @@
+package com.marsreg.vector.cache.simulator;
+
+import com.marsreg.vector.cache.VectorCacheManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 离线缓存模拟器：把记录的键访问序列依次回放到各淘汰策略的缓存中（未命中即写入），
+ * 统计不同容量下的命中率，用于为实际的查询分布选择淘汰策略。
+ * <p>
+ * 命令行用法：{@code CacheSimulator <轨迹文件> <容量,容量,...> [策略,策略,...]}
+ */
+public final class CacheSimulator {
+
+    private static final float[] EMPTY = new float[0];
+
+    private CacheSimulator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: CacheSimulator <轨迹文件> <容量,容量,...> [策略,策略,...]");
+            System.exit(1);
+        }
+        List<String> trace = readTrace(Paths.get(args[0]));
+        List<Integer> sizes = Arrays.stream(args[1].split(","))
+            .map(String::trim)
+            .map(Integer::valueOf)
+            .collect(Collectors.toList());
+        List<String> policies = args.length > 2
+            ? Arrays.asList(args[2].split(","))
+            : VectorCacheManager.POLICIES;
+        System.out.print(format(simulate(trace, policies, sizes), trace.size()));
+    }
+
+    /**
+     * 读取轨迹文件，每行取第一个字段作为键，忽略空行和#开头的注释
+     */
+    public static List<String> readTrace(Path path) throws IOException {
+        try (Stream<String> lines = Files.lines(path, StandardCharsets.UTF_8)) {
+            return lines.map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .map(line -> line.split("[,\\s]", 2)[0])
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return 策略 -> (容量 -> 命中率)
+     */
+    public static Map<String, Map<Integer, Double>> simulate(List<String> trace, Collection<String> policies,
+                                                             Collection<Integer> sizes) {
+        Map<String, Map<Integer, Double>> result = new LinkedHashMap<>();
+        for (String policy : policies) {
+            Map<Integer, Double> ratios = new LinkedHashMap<>();
+            for (int size : sizes) {
+                ratios.put(size, hitRatio(policy, trace, size));
+            }
+            result.put(policy, ratios);
+        }
+        return result;
+    }
+
+    public static double hitRatio(String policy, List<String> trace, int size) {
+        if (trace.isEmpty()) {
+            return 0.0;
+        }
+        // 单分片、不按字节限制、不过期，只比较淘汰策略本身
+        VectorCacheManager cache = new VectorCacheManager(policy, size, Long.MAX_VALUE / 4, 0, 1);
+        long hits = 0;
+        for (String key : trace) {
+            if (cache.getVector(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, EMPTY);
+            }
+        }
+        return (double) hits / trace.size();
+    }
+
+    public static String format(Map<String, Map<Integer, Double>> result, int accesses) {
+        Set<Integer> sizes = new TreeSet<>();
+        result.values().forEach(ratios -> sizes.addAll(ratios.keySet()));
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("访问次数: %d%n", accesses));
+        sb.append(String.format("%-10s", "容量"));
+        result.keySet().forEach(policy -> sb.append(String.format("%10s", policy)));
+        sb.append(System.lineSeparator());
+        for (int size : sizes) {
+            sb.append(String.format("%-10d", size));
+            for (Map<Integer, Double> ratios : result.values()) {
+                Double ratio = ratios.get(size);
+                sb.append(ratio == null ? String.format("%10s", "-") : String.format("%9.2f%%", ratio * 100));
+            }
+            sb.append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,154 @@
+package com.marsreg.vector.cache.simulator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 记录缓存键的访问序列，每行一个键的64位FNV-1a哈希（十六进制），不落盘原始文本。
+ * 生成的文件可交给 {@link CacheSimulator} 回放
+ *
+ * <p>读缓存的线程只把哈希写入无锁环形缓冲区，由后台线程按申请顺序写文件；
+ * 缓冲区满时丢弃本次记录，不阻塞缓存读取。</p>
+ */
+@Slf4j
+public class CacheTraceRecorder implements Closeable {
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final BufferedWriter writer;
+    private final long[] hashes;
+    /**
+     * 每个槽位已发布的序号加一，写线程据此判断槽位内容是否可读
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLongArray published;
+    private final int mask;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread drainer;
+    private volatile long consumed;
+    private volatile boolean closed;
+    private volatile boolean failed;
+
+    public CacheTraceRecorder(Path path) throws IOException {
+        this(path, DEFAULT_CAPACITY);
+    }
+
+    CacheTraceRecorder(Path path, int capacity) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.hashes = new long[size];
+        this.published = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.drainer = new Thread(this::drainLoop, "cache-trace-writer");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    public void record(String key) {
+        if (failed || closed) {
+            return;
+        }
+        long hash = hash(key);
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= hashes.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int slot = (int) sequence & mask;
+        hashes[slot] = hash;
+        published.lazySet(slot, sequence + 1);
+    }
+
+    /**
+     * 因缓冲区已满丢弃的记录数
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.sum() > 0) {
+            log.warn("缓存访问轨迹缓冲区已满，丢弃记录数: {}", dropped.sum());
+        }
+        writer.close();
+    }
+
+    private void drainLoop() {
+        while (true) {
+            // 先读关闭标志再排空，关闭前已发布的记录都会写出
+            boolean stopping = closed;
+            if (drain() == 0) {
+                if (stopping) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            log.error("写入缓存访问轨迹失败", e);
+        }
+    }
+
+    private int drain() {
+        long next = consumed;
+        int count = 0;
+        while (!failed) {
+            int slot = (int) next & mask;
+            if (published.get(slot) != next + 1) {
+                break;
+            }
+            long hash = hashes[slot];
+            try {
+                writer.write(Long.toHexString(hash));
+                writer.newLine();
+            } catch (IOException e) {
+                failed = true;
+                log.error("写入缓存访问轨迹失败，停止记录", e);
+            }
+            next++;
+            count++;
+            consumed = next;
+        }
+        return count;
+    }
+
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash = (hash ^ (c & 0xFF)) * 0x100000001b3L;
+            hash = (hash ^ (c >>> 8)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -1,18 +1,34 @@
 package com.marsreg.vector.config;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "marsreg.vector")
 public class VectorizationConfig {
     
     private Model model = new Model();
-    private Integer threadPoolSize = 4;
+    private Scheduler scheduler = new Scheduler();
     private Cache cache = new Cache();
     private Milvus milvus = new Milvus();
+    private Storage storage = new Storage();
+    private Transfer transfer = new Transfer();
+    
+    /**
+     * 进程内存储使用的向量维度：启用投影时为投影维度，否则为模型输出维度
+     */
+    public int storedDimension() {
+        return Boolean.TRUE.equals(storage.getProjection().getEnabled())
+            ? storage.getProjection().getDimension()
+            : model.getDimension();
+    }
     
     @Data
     public static class Model {
@@ -22,12 +38,162 @@ public class VectorizationConfig {
         private String path;
         private String device = "cpu";
         private Integer batchSize = 32;
+        /**
+         * 推理后端：djl（PyTorch全精度）/onnx（ONNX Runtime，配合int8量化模型）
+         */
+        private String backend = "djl";
+        /**
+         * 分词后的最大token数，超出部分截断
+         */
+        private Integer maxSequenceLength = 256;
+        /**
+         * 模型输入是否包含 token_type_ids
+         */
+        private Boolean includeTokenTypes = false;
+        /**
+         * 切换模型后等待旧版本进行中请求结束的最长秒数，超时后旧版本在最后一个请求结束时关闭
+         */
+        private Integer drainTimeoutSeconds = 60;
+        private MicroBatch microBatch = new MicroBatch();
+        private Bucketing bucketing = new Bucketing();
+        private Pool pool = new Pool();
+        private Onnx onnx = new Onnx();
+        
+        @Data
+        public static class MicroBatch {
+            /**
+             * 是否把并发的单条向量化请求合并为批量推理
+             */
+            private Boolean enabled = true;
+            /**
+             * 每批最大条数
+             */
+            private Integer maxBatchSize = 32;
+            /**
+             * 第一条请求到达后最多等待的毫秒数
+             */
+            private Long maxDelayMillis = 5L;
+        }
+        
+        @Data
+        public static class Bucketing {
+            /**
+             * 按token长度分批的策略：none/sorted/boundaries
+             */
+            private String strategy = "sorted";
+            /**
+             * 每批条数乘以批内最长token数的上限，0表示只按batch-size限制；
+             * 大于0时短文本的批次可以超过batch-size
+             */
+            private Integer maxTokensPerBatch = 8192;
+            /**
+             * 启用token预算时每批的最大条数
+             */
+            private Integer maxBatchRows = 256;
+            /**
+             * boundaries策略的长度边界
+             */
+            private List<Integer> boundaries = new ArrayList<>(List.of(16, 32, 64, 128, 256, 512));
+        }
+        
+        @Data
+        public static class Pool {
+            /**
+             * 预测器数量上限，每个预测器持有独立的原生推理资源
+             */
+            private Integer size = 4;
+            /**
+             * 借用预测器的最长等待时间（毫秒）
+             */
+            private Long borrowTimeoutMillis = 30000L;
+        }
+        
+        @Data
+        public static class Onnx {
+            /**
+             * 模型目录下的ONNX文件名，path 直接指向 .onnx 文件时忽略
+             */
+            private String modelFile = "model_quantized.onnx";
+            /**
+             * 单次推理的算子内并行线程数，0表示由ONNX Runtime决定
+             */
+            private Integer intraOpThreads = 0;
+            /**
+             * 算子间并行线程数，0表示由ONNX Runtime决定
+             */
+            private Integer interOpThreads = 1;
+        }
+    }
+    
+    @Data
+    public static class Scheduler {
+        /**
+         * 执行推理的工作线程数，建议与预测器池大小一致
+         */
+        private Integer workers = 4;
+        /**
+         * 在线查询通道，队列满时立即拒绝
+         */
+        private Lane interactive = new Lane(8, 256, "reject", 0L);
+        /**
+         * 文档入库通道，队列满时阻塞提交方
+         */
+        private Lane ingest = new Lane(2, 1024, "block", 30000L);
+        /**
+         * 批量重建通道
+         */
+        private Lane backfill = new Lane(1, 1024, "block", 60000L);
+        
+        @Data
+        @NoArgsConstructor
+        @AllArgsConstructor
+        public static class Lane {
+            /**
+             * 权重，积压时各通道按权重比例分配推理条数
+             */
+            private Integer weight = 1;
+            /**
+             * 队列中最多等待的任务数
+             */
+            private Integer queueCapacity = 1024;
+            /**
+             * 队列满时的处理：block（阻塞提交方，超时后拒绝）/reject（立即拒绝）
+             */
+            private String overflow = "block";
+            /**
+             * block 模式下提交方最长等待的毫秒数
+             */
+            private Long offerTimeoutMillis = 30000L;
+        }
     }
     
     @Data
     public static class Cache {
         private Boolean enabled = true;
+        /**
+         * 过期时间（秒），不大于0表示不过期
+         */
         private Integer expire = 3600;
+        /**
+         * 最大条目数
+         */
+        private Long maxEntries = 100000L;
+        /**
+         * 最大占用堆内存（字节），包含向量、键和索引结构
+         */
+        private Long maxMemory = 134217728L;
+        /**
+         * 分片数，向上取整为2的幂
+         */
+        private Integer shards = 16;
+        /**
+         * 淘汰策略：tinylfu/arc/lfu/lru
+         */
+        private String policy = "tinylfu";
+        /**
+         * 访问轨迹文件，非空时记录每次读取的键哈希，供 CacheSimulator 离线回放
+         */
+        private String traceFile;
     }
     
     @Data
@@ -52,4 +218,265 @@ public class VectorizationConfig {
             private String metricType = "COSINE";
         }
     }
-} 
\ No newline at end of file
+    
+    @Data
+    public static class Storage {
+        /**
+         * 存储类型：milvus/hnsw/ivf/mmap/quantized/sharded
+         */
+        private String type = "milvus";
+        private Hnsw hnsw = new Hnsw();
+        private Ivf ivf = new Ivf();
+        private Mmap mmap = new Mmap();
+        private Quantization quantization = new Quantization();
+        private Projection projection = new Projection();
+        private Filter filter = new Filter();
+        private Tuning tuning = new Tuning();
+        private Sharding sharding = new Sharding();
+        
+        @Data
+        public static class Hnsw {
+            /**
+             * 每个节点的最大连接数（第0层为2倍）
+             */
+            private Integer m = 16;
+            /**
+             * 构建时的候选集大小
+             */
+            private Integer efConstruction = 200;
+            /**
+             * 查询时的候选集大小
+             */
+            private Integer efSearch = 64;
+            /**
+             * 压缩检查间隔（秒）
+             */
+            private Integer compactionInterval = 60;
+            /**
+             * 触发压缩的已删除节点比例
+             */
+            private Double compactionDeletedRatio = 0.2;
+        }
+        
+        @Data
+        public static class Ivf {
+            /**
+             * 倒排表数（聚类中心数），训练样本不足时按每表至少39个样本缩减
+             */
+            private Integer nlist = 256;
+            /**
+             * 默认每次查询扫描的倒排表数
+             */
+            private Integer nprobe = 8;
+            /**
+             * 训练样本数，存储的向量达到该数量后自动训练
+             */
+            private Integer trainingSampleSize = 20000;
+            /**
+             * k-means迭代轮数
+             */
+            private Integer kmeansIterations = 25;
+            /**
+             * mini-batch k-means每轮的样本数
+             */
+            private Integer kmeansBatchSize = 4096;
+            /**
+             * 不均衡检查间隔（秒）
+             */
+            private Integer retrainCheckInterval = 300;
+            /**
+             * 倒排表不均衡系数超过该值时重新训练
+             */
+            private Double maxImbalance = 2.0;
+        }
+        
+        @Data
+        public static class Mmap {
+            /**
+             * 段文件目录
+             */
+            private String path = "data/vectors";
+            /**
+             * 每个段的最大行数
+             */
+            private Integer segmentCapacity = 65536;
+            /**
+             * 刷盘间隔（秒）
+             */
+            private Integer flushInterval = 10;
+            /**
+             * 合并检查间隔（秒）
+             */
+            private Integer mergeInterval = 300;
+            /**
+             * 有效行比例低于该值的封存段会被合并
+             */
+            private Double mergeLiveRatio = 0.5;
+        }
+        
+        @Data
+        public static class Quantization {
+            /**
+             * 量化方式：sq8/pq
+             */
+            private String mode = "sq8";
+            /**
+             * PQ子空间数，需能整除向量维度，每个子空间编码为1字节
+             */
+            private Integer pqSubspaces = 96;
+            /**
+             * PQ的k-means迭代次数
+             */
+            private Integer pqIterations = 20;
+            /**
+             * 训练样本数，存储的向量达到该数量后自动训练
+             */
+            private Integer trainingSampleSize = 10000;
+            /**
+             * 量化域召回的候选数为返回数量的倍数，候选再用原始向量精排
+             */
+            private Integer rerankFactor = 4;
+        }
+        
+        @Data
+        public static class Projection {
+            /**
+             * 是否在写入和查询前把向量投影到低维，进程内存储自动使用 dimension，Milvus 集合维度需手动保持一致
+             */
+            private Boolean enabled = false;
+            /**
+             * 投影方式：pca（从已存储的向量抽样训练）/random（按种子生成的随机正交投影）
+             */
+            private String method = "pca";
+            /**
+             * 投影后的维度
+             */
+            private Integer dimension = 128;
+            /**
+             * 随机投影的种子
+             */
+            private Long seed = 42L;
+            /**
+             * 训练时从存储中抽样的向量数
+             */
+            private Integer sampleSize = 10000;
+            /**
+             * 投影矩阵及版本记录的目录，每个集合使用独立目录。为新集合训练时在训练接口的 targetPath 中指定新集合的目录
+             */
+            private String path = "data/projection";
+            /**
+             * 训练后评估召回率的查询数
+             */
+            private Integer evalQueries = 200;
+            /**
+             * 评估召回率的k
+             */
+            private Integer evalK = 10;
+        }
+        
+        @Data
+        public static class Filter {
+            /**
+             * 满足条件的向量数不超过该值时直接对过滤集合精确计算，不走近似遍历
+             */
+            private Integer bruteForceThreshold = 2000;
+            /**
+             * 时间戳位图的分桶宽度（毫秒）
+             */
+            private Long timeBucketMillis = 86400000L;
+            /**
+             * mmap 存储下元数据索引文件名，与段文件放在同一目录
+             */
+            private String indexFile = "metadata.idx";
+        }
+        
+        @Data
+        public static class Tuning {
+            /**
+             * 是否在后台按抽样查询的召回率调节 nprobe / ef，支持 milvus、hnsw、ivf 存储
+             */
+            private Boolean enabled = false;
+            /**
+             * 目标 recall@k
+             */
+            private Double targetRecall = 0.95;
+            /**
+             * 计算召回率的k
+             */
+            private Integer k = 10;
+            /**
+             * 线上查询的抽样比例
+             */
+            private Double sampleRate = 0.01;
+            /**
+             * 保留的抽样查询数
+             */
+            private Integer sampleCapacity = 256;
+            /**
+             * 每轮重放的查询数
+             */
+            private Integer queriesPerRound = 32;
+            /**
+             * 调节间隔（秒）
+             */
+            private Integer interval = 60;
+            /**
+             * 图索引 ef 的上限
+             */
+            private Integer maxEf = 1024;
+            /**
+             * 连续多少轮都选出更小的参数才降低，召回率不达标时立即提高
+             */
+            private Integer lowerAfterRounds = 3;
+        }
+        
+        @Data
+        public static class Sharding {
+            /**
+             * 分片数，向量按ID哈希分配到分片，修改后需要重新导入向量
+             */
+            private Integer shards = 4;
+            /**
+             * 每个分片的存储类型：milvus/hnsw/ivf/mmap/quantized。milvus 分片使用集合 {collection}_{i}，
+             * mmap/quantized 分片使用目录 {mmap.path}/shard-{i}
+             */
+            private String backend = "mmap";
+            /**
+             * 单个分片的搜索超时（毫秒），所有分片并行执行，超时的分片不计入结果
+             */
+            private Long searchTimeoutMillis = 500L;
+            /**
+             * 部分分片超时或失败时是否返回其余分片的结果，为false时抛出异常
+             */
+            private Boolean allowPartialResults = true;
+            /**
+             * 分片搜索线程数
+             */
+            private Integer searchThreads = 16;
+            /**
+             * 分片搜索任务的排队上限，队列满时新的分片搜索直接记为失败
+             */
+            private Integer searchQueueCapacity = 256;
+        }
+    }
+    
+    @Data
+    public static class Transfer {
+        /**
+         * 导入导出文件的根目录，请求中的路径相对于该目录解析，不能越出该目录
+         */
+        private String baseDir = "data/transfer";
+        /**
+         * 导入时每批写入存储的向量数
+         */
+        private Integer batchSize = 1000;
+        /**
+         * 导入时同时在途的写入批次数，异步写入的存储（如 Milvus 写缓冲）据此流水线化
+         */
+        private Integer maxInFlightBatches = 4;
+        /**
+         * 进度日志间隔（秒）
+         */
+        private Integer progressLogInterval = 10;
+    }
+}
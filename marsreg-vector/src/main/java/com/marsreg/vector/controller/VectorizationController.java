@@ -3,19 +3,45 @@ package com.marsreg.vector.controller;
 import com.marsreg.common.annotation.Log;
 import com.marsreg.common.annotation.RateLimit;
 import com.marsreg.common.response.ApiResponse;
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.projection.ProjectionRegistry;
+import com.marsreg.vector.scheduler.EmbeddingLane;
+import com.marsreg.vector.scheduler.EmbeddingScheduler;
+import com.marsreg.vector.service.VectorStorageService;
 import com.marsreg.vector.service.VectorizationService;
+import com.marsreg.vector.service.impl.ProjectedVectorStorageService;
+import com.marsreg.vector.similarity.SimilarityMatrix;
+import com.marsreg.vector.similarity.SimilarityNeighbors;
+import com.marsreg.vector.transfer.VectorTransferService;
+import com.marsreg.vector.transport.VectorCodec;
+import com.marsreg.vector.tuning.SearchParameterTuner;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/v1/vectorization")
 @RequiredArgsConstructor
 public class VectorizationController {
     
     private final VectorizationService vectorizationService;
+    private final VectorizationConfig config;
+    private final EmbeddingScheduler scheduler;
+    private final VectorStorageService vectorStorageService;
+    private final ProjectionRegistry projectionRegistry;
+    private final ObjectProvider<SearchParameterTuner> searchParameterTuner;
+    private final VectorTransferService vectorTransferService;
     
     @PostMapping("/vectorize")
     @Log(module = "向量化", operation = "向量化", description = "文本向量化")
@@ -33,6 +59,80 @@ public class VectorizationController {
         return ApiResponse.success(result);
     }
     
+    /**
+     * Accept: application/octet-stream 时返回小端序 float32，格式见 {@link VectorCodec}
+     */
+    @PostMapping(value = "/vectorize", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Log(module = "向量化", operation = "向量化", description = "文本向量化（二进制）")
+    @RateLimit(limit = 100, time = 60)
+    public ResponseEntity<byte[]> vectorizeBinary(@RequestBody String text) {
+        float[] result = vectorizationService.vectorize(text);
+        return ResponseEntity.ok()
+            .header(VectorCodec.DIMENSION_HEADER, String.valueOf(result.length))
+            .body(VectorCodec.encode(result));
+    }
+    
+    @PostMapping(value = "/batch-vectorize", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Log(module = "向量化", operation = "批量向量化", description = "批量文本向量化（二进制）")
+    @RateLimit(limit = 50, time = 60)
+    public ResponseEntity<byte[]> batchVectorizeBinary(@RequestBody List<String> texts) {
+        List<float[]> result = vectorizationService.batchVectorize(texts);
+        return ResponseEntity.ok()
+            .header(VectorCodec.COUNT_HEADER, String.valueOf(result.size()))
+            .body(VectorCodec.encodeBatch(result));
+    }
+    
+    /**
+     * Accept: application/x-ndjson 时按 batch-size 切分后在入库通道并发向量化，按输入顺序每完成一批就写出对应的行
+     */
+    @PostMapping(value = "/batch-vectorize", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Log(module = "向量化", operation = "批量向量化", description = "批量文本向量化（NDJSON流）")
+    @RateLimit(limit = 50, time = 60)
+    public ResponseEntity<StreamingResponseBody> batchVectorizeStream(@RequestBody List<String> texts) {
+        int batchSize = Math.max(1, config.getModel().getBatchSize());
+        List<CompletableFuture<List<float[]>>> batches = new ArrayList<>();
+        try {
+            for (int start = 0; start < texts.size(); start += batchSize) {
+                List<String> batch = texts.subList(start, Math.min(start + batchSize, texts.size()));
+                batches.add(scheduler.submit(EmbeddingLane.INGEST, batch.size(), () -> vectorizationService.batchVectorize(batch)));
+            }
+        } catch (RuntimeException e) {
+            // 队列已满时放弃已提交的分片
+            batches.forEach(future -> future.cancel(false));
+            throw e;
+        }
+        StreamingResponseBody body = output -> {
+            int index = 0;
+            boolean finished = false;
+            try {
+                for (int b = 0; b < batches.size(); b++) {
+                    List<float[]> vectors;
+                    try {
+                        vectors = batches.get(b).join();
+                    } catch (CompletionException e) {
+                        log.error("流式批量向量化失败: batch={}", b, e.getCause());
+                        output.write(VectorCodec.ndjsonError(index, "批量向量化失败: " + e.getCause().getMessage()));
+                        return;
+                    }
+                    for (float[] vector : vectors) {
+                        output.write(VectorCodec.ndjsonLine(index++, vector));
+                    }
+                    output.flush();
+                }
+                finished = true;
+            } finally {
+                // 出错或客户端断开导致写出失败时，放弃还在排队的分片
+                if (!finished) {
+                    batches.forEach(future -> future.cancel(false));
+                }
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .header(VectorCodec.COUNT_HEADER, String.valueOf(texts.size()))
+            .body(body);
+    }
+    
     @PostMapping("/vectorize-with-cache")
     @Log(module = "向量化", operation = "缓存向量化", description = "带缓存的文本向量化")
     @RateLimit(limit = 200, time = 60)
@@ -49,6 +149,22 @@ public class VectorizationController {
         return ApiResponse.success(result);
     }
     
+    @PostMapping("/similarity-matrix")
+    @Log(module = "向量化", operation = "相似度矩阵", description = "计算向量相似度矩阵（上三角紧凑存放）")
+    @RateLimit(limit = 20, time = 60)
+    public ApiResponse<SimilarityMatrix> similarityMatrix(@RequestBody List<float[]> vectors) {
+        return ApiResponse.success(vectorizationService.computeSimilarityMatrix(vectors));
+    }
+    
+    @PostMapping("/similarity-topk")
+    @Log(module = "向量化", operation = "相似近邻", description = "计算每个向量最相似的k个向量")
+    @RateLimit(limit = 20, time = 60)
+    public ApiResponse<SimilarityNeighbors> similarityTopK(@RequestBody List<float[]> vectors,
+                                                           @RequestParam(defaultValue = "10") int k,
+                                                           @RequestParam(defaultValue = "-1") float minScore) {
+        return ApiResponse.success(vectorizationService.computeSimilarityTopK(vectors, k, minScore));
+    }
+    
     @GetMapping("/model-info")
     @Log(module = "向量化", operation = "获取模型信息", description = "获取向量化模型信息")
     public ApiResponse<Map<String, Object>> getModelInfo() {
@@ -58,9 +174,15 @@ public class VectorizationController {
     
     @PostMapping("/update-model")
     @Log(module = "向量化", operation = "更新模型", description = "更新向量化模型")
-    public ApiResponse<Void> updateModel(@RequestBody String modelPath) {
+    public ApiResponse<Map<String, Object>> updateModel(@RequestBody String modelPath) {
         vectorizationService.updateModel(modelPath);
-        return ApiResponse.success(null);
+        return ApiResponse.success(vectorizationService.getModelUpdateStatus());
+    }
+    
+    @GetMapping("/update-model/status")
+    @Log(module = "向量化", operation = "模型更新状态", description = "获取向量化模型更新进度")
+    public ApiResponse<Map<String, Object>> getModelUpdateStatus() {
+        return ApiResponse.success(vectorizationService.getModelUpdateStatus());
     }
     
     @PostMapping("/warmup")
@@ -69,6 +191,103 @@ public class VectorizationController {
         vectorizationService.warmupModel();
         return ApiResponse.success(null);
     }
+    
+    @GetMapping("/projection")
+    @Log(module = "向量化", operation = "投影状态", description = "获取向量降维投影状态")
+    public ApiResponse<Map<String, Object>> getProjection() {
+        return ApiResponse.success(projectionRegistry.getStatus());
+    }
+    
+    /**
+     * 从当前未投影的存储中抽样训练新的投影版本。已启用投影时存储中是降维后的向量，不能用于训练。
+     * 为新集合训练时 targetPath 传入新集合的投影目录
+     */
+    @PostMapping("/projection/train")
+    @Log(module = "向量化", operation = "训练投影", description = "训练向量降维投影")
+    @RateLimit(limit = 1, time = 60)
+    public ApiResponse<Map<String, Object>> trainProjection(@RequestParam(required = false) String method,
+                                                            @RequestParam(required = false) Integer dimension,
+                                                            @RequestParam(required = false) Integer sampleSize,
+                                                            @RequestParam(required = false) String targetPath) {
+        if (vectorStorageService instanceof ProjectedVectorStorageService) {
+            return ApiResponse.error("已启用向量投影，请在未启用投影的实例上训练");
+        }
+        VectorizationConfig.Storage.Projection projection = config.getStorage().getProjection();
+        List<float[]> samples = vectorStorageService.sampleVectors(
+            sampleSize != null ? sampleSize : projection.getSampleSize(), projection.getSeed());
+        return ApiResponse.success(projectionRegistry.train(
+            method != null ? method : projection.getMethod(),
+            dimension != null ? dimension : projection.getDimension(),
+            samples, targetPath));
+    }
+    
+    @GetMapping("/search-tuning")
+    @Log(module = "向量化", operation = "搜索参数调节状态", description = "获取nprobe/ef自动调节状态和召回率")
+    public ApiResponse<Map<String, Object>> getSearchTuning() {
+        SearchParameterTuner tuner = searchParameterTuner.getIfAvailable();
+        if (tuner == null) {
+            return ApiResponse.error("未启用搜索参数自动调节");
+        }
+        return ApiResponse.success(tuner.getStatus());
+    }
+    
+    /**
+     * 立即执行一轮调节，抽样的查询不足时不修改参数
+     */
+    @PostMapping("/search-tuning/run")
+    @Log(module = "向量化", operation = "执行搜索参数调节", description = "按抽样查询的召回率调节nprobe/ef")
+    @RateLimit(limit = 1, time = 10)
+    public ApiResponse<Map<String, Object>> runSearchTuning() {
+        SearchParameterTuner tuner = searchParameterTuner.getIfAvailable();
+        if (tuner == null) {
+            return ApiResponse.error("未启用搜索参数自动调节");
+        }
+        if (!tuner.tune()) {
+            return ApiResponse.error("抽样的查询不足，暂不调节");
+        }
+        return ApiResponse.success(tuner.getStatus());
+    }
+    
+    /**
+     * 从导入导出目录中的 .fvecs / .npy 文件批量导入向量，任务在后台执行
+     */
+    @PostMapping("/vectors/import")
+    @Log(module = "向量化", operation = "批量导入向量", description = "从fvecs/npy文件导入向量")
+    @RateLimit(limit = 5, time = 60)
+    public ApiResponse<Map<String, Object>> importVectors(@RequestParam String vectorsFile,
+                                                          @RequestParam(required = false) String idsFile,
+                                                          @RequestParam(required = false) String idPrefix) {
+        return ApiResponse.success(vectorTransferService.startImport(vectorsFile, idsFile, idPrefix));
+    }
+    
+    /**
+     * 把当前存储中的全部向量导出到导入导出目录，任务在后台执行
+     */
+    @PostMapping("/vectors/export")
+    @Log(module = "向量化", operation = "批量导出向量", description = "导出向量到fvecs/npy文件")
+    @RateLimit(limit = 5, time = 60)
+    public ApiResponse<Map<String, Object>> exportVectors(@RequestParam String vectorsFile,
+                                                          @RequestParam(required = false) String idsFile) {
+        return ApiResponse.success(vectorTransferService.startExport(vectorsFile, idsFile));
+    }
+    
+    @GetMapping("/vectors/transfers")
+    @Log(module = "向量化", operation = "导入导出任务列表", description = "获取向量导入导出任务")
+    public ApiResponse<List<Map<String, Object>>> listTransfers() {
+        return ApiResponse.success(vectorTransferService.listJobs());
+    }
+    
+    @GetMapping("/vectors/transfers/{jobId}")
+    @Log(module = "向量化", operation = "导入导出进度", description = "获取向量导入导出任务进度")
+    public ApiResponse<Map<String, Object>> getTransfer(@PathVariable String jobId) {
+        return ApiResponse.success(vectorTransferService.getStatus(jobId));
+    }
+    
+    @PostMapping("/vectors/transfers/{jobId}/cancel")
+    @Log(module = "向量化", operation = "取消导入导出", description = "取消向量导入导出任务")
+    public ApiResponse<Map<String, Object>> cancelTransfer(@PathVariable String jobId) {
+        return ApiResponse.success(vectorTransferService.cancel(jobId));
+    }
 }
 
 class VectorizationRequest {
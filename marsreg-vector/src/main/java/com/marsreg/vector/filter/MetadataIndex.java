@@ -0,0 +1,425 @@
+package com.marsreg.vector.filter;
+
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 向量标量元数据的位图倒排索引。每个向量ID分配一个稠密的整数序号，文档ID、类型、租户的每个取值对应一个序号位图，
+ * 时间戳按固定宽度分桶，每桶一个位图。过滤条件先在位图上求交并得到候选序号集合，再交给存储在遍历时判断。
+ *
+ * <p>序号在ID删除后回收复用，调用方在遍历时需同时确认向量本身未被删除。读写通过读写锁隔离，
+ * {@link #evaluate(VectorFilter)} 返回的位图是独立副本，可在锁外使用</p>
+ */
+public class MetadataIndex {
+
+    private static final int MAGIC = 0x4d524d49;
+    private static final int FORMAT_VERSION = 1;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final long bucketMillis;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private final Map<String, RoaringBitmap> byDocument = new HashMap<>();
+    private final Map<String, RoaringBitmap> byType = new HashMap<>();
+    private final Map<String, RoaringBitmap> byTenant = new HashMap<>();
+    private final TreeMap<Long, RoaringBitmap> byTimeBucket = new TreeMap<>();
+    private final RoaringBitmap live = new RoaringBitmap();
+    private final RoaringBitmap freeOrdinals = new RoaringBitmap();
+    private final AtomicLong modifications = new AtomicLong();
+    private String[] keys = new String[1024];
+    private VectorMetadata[] values = new VectorMetadata[1024];
+    private long[] timestamps = new long[1024];
+    private int nextOrdinal;
+
+    public MetadataIndex(long bucketMillis) {
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("时间分桶宽度必须大于0");
+        }
+        this.bucketMillis = bucketMillis;
+    }
+
+    /**
+     * 写入或替换ID的元数据，返回其序号
+     */
+    public int put(String key, VectorMetadata metadata) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = ordinals.get(key);
+            int ordinal;
+            if (existing != null) {
+                ordinal = existing;
+                unindex(ordinal);
+            } else {
+                ordinal = allocate(key);
+            }
+            index(ordinal, metadata);
+            modifications.incrementAndGet();
+            return ordinal;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * ID没有元数据时写入，已有时保留原值，返回其序号
+     */
+    public int putIfAbsent(String key, VectorMetadata metadata) {
+        Integer existing = ordinals.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        lock.writeLock().lock();
+        try {
+            existing = ordinals.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            int ordinal = allocate(key);
+            index(ordinal, metadata);
+            modifications.incrementAndGet();
+            return ordinal;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String key) {
+        if (!ordinals.containsKey(key)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(key);
+            if (ordinal == null) {
+                return;
+            }
+            unindex(ordinal);
+            keys[ordinal] = null;
+            values[ordinal] = null;
+            freeOrdinals.add(ordinal);
+            modifications.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按存储中实际存在的ID修正索引：删除存储中已不存在的ID，补上索引中缺失的ID。
+     * 快照之后写入的向量在崩溃后只能从 {@code 文档ID_分块ID} 形式的ID推导出文档ID，其余字段为空
+     * @param liveIds 接收遍历回调的遍历函数，依次给出存储中的每个ID
+     * @return 补上的ID数
+     */
+    public int reconcile(Consumer<Consumer<String>> liveIds) {
+        Set<String> seen = new HashSet<>();
+        int[] added = {0};
+        liveIds.accept(key -> {
+            seen.add(key);
+            if (!ordinals.containsKey(key)) {
+                putIfAbsent(key, VectorMetadata.ofDocument(VectorMetadata.documentIdOf(key)));
+                added[0]++;
+            }
+        });
+        for (String key : new ArrayList<>(ordinals.keySet())) {
+            if (!seen.contains(key)) {
+                remove(key);
+            }
+        }
+        return added[0];
+    }
+
+    /**
+     * ID的序号，没有元数据时返回-1。不加锁，可在遍历的热路径中调用
+     */
+    public int ordinal(String key) {
+        Integer ordinal = ordinals.get(key);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    public VectorMetadata get(String key) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(key);
+            return ordinal == null ? null : values[ordinal];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把序号集合还原为ID列表，已回收的序号被跳过
+     */
+    public List<String> keys(RoaringBitmap ordinalSet) {
+        List<String> result = new ArrayList<>(ordinalSet.cardinality());
+        lock.readLock().lock();
+        try {
+            ordinalSet.forEach(ordinal -> {
+                String key = ordinal < nextOrdinal ? keys[ordinal] : null;
+                if (key != null) {
+                    result.add(key);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 计算满足条件的序号集合，条件为空时返回全部序号
+     */
+    public RoaringBitmap evaluate(VectorFilter filter) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = live;
+            if (filter != null) {
+                result = intersect(result, filter.getDocumentIds(), byDocument);
+                result = intersect(result, filter.getTypes(), byType);
+                result = intersect(result, filter.getTenants(), byTenant);
+                if (!result.isEmpty() && (filter.getFromTimestamp() != null || filter.getToTimestamp() != null)) {
+                    result = RoaringBitmap.and(result, timeRange(
+                        filter.getFromTimestamp() != null ? filter.getFromTimestamp() : Long.MIN_VALUE + 1,
+                        filter.getToTimestamp() != null ? filter.getToTimestamp() : Long.MAX_VALUE));
+                }
+            }
+            return result == live ? live.copy() : result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return ordinals.size();
+    }
+
+    /**
+     * 每次写入递增，用于判断是否需要重新持久化
+     */
+    public long modificationCount() {
+        return modifications.get();
+    }
+
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = live.sizeInBytes() + freeOrdinals.sizeInBytes()
+                + (long) keys.length * (8 + 8 + Long.BYTES);
+            for (Map<?, RoaringBitmap> bitmaps : List.of(byDocument, byType, byTenant, byTimeBucket)) {
+                for (RoaringBitmap bitmap : bitmaps.values()) {
+                    bytes += bitmap.sizeInBytes();
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 先写临时文件再原子替换。只保存ID和元数据，序号在加载时重新分配
+     */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(ordinals.size());
+            for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+                if (keys[ordinal] == null) {
+                    continue;
+                }
+                VectorMetadata metadata = values[ordinal];
+                out.writeUTF(keys[ordinal]);
+                writeNullable(out, metadata.getDocumentId());
+                writeNullable(out, metadata.getType());
+                writeNullable(out, metadata.getTenant());
+                out.writeLong(metadata.getTimestamp() != null ? metadata.getTimestamp() : NO_TIMESTAMP);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 从文件加载，文件不存在时返回空索引
+     */
+    public static MetadataIndex read(Path file, long bucketMillis) throws IOException {
+        MetadataIndex index = new MetadataIndex(bucketMillis);
+        if (!Files.exists(file)) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("不是元数据索引文件: " + file);
+            }
+            int format = in.readInt();
+            if (format != FORMAT_VERSION) {
+                throw new IOException("不支持的元数据索引文件版本: " + format);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                String documentId = readNullable(in);
+                String type = readNullable(in);
+                String tenant = readNullable(in);
+                long timestamp = in.readLong();
+                index.put(key, new VectorMetadata(documentId, type, tenant, timestamp == NO_TIMESTAMP ? null : timestamp));
+            }
+        }
+        return index;
+    }
+
+    private int allocate(String key) {
+        int ordinal;
+        if (!freeOrdinals.isEmpty()) {
+            ordinal = freeOrdinals.first();
+            freeOrdinals.remove(ordinal);
+        } else {
+            ordinal = nextOrdinal++;
+            if (ordinal == keys.length) {
+                int capacity = keys.length * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+            }
+        }
+        keys[ordinal] = key;
+        ordinals.put(key, ordinal);
+        return ordinal;
+    }
+
+    private void index(int ordinal, VectorMetadata metadata) {
+        VectorMetadata value = metadata != null ? metadata : new VectorMetadata();
+        values[ordinal] = value;
+        live.add(ordinal);
+        addTo(byDocument, value.getDocumentId(), ordinal);
+        addTo(byType, value.getType(), ordinal);
+        addTo(byTenant, value.getTenant(), ordinal);
+        if (value.getTimestamp() != null) {
+            timestamps[ordinal] = value.getTimestamp();
+            byTimeBucket.computeIfAbsent(bucketOf(value.getTimestamp()), bucket -> new RoaringBitmap()).add(ordinal);
+        } else {
+            timestamps[ordinal] = NO_TIMESTAMP;
+        }
+    }
+
+    private void unindex(int ordinal) {
+        VectorMetadata value = values[ordinal];
+        live.remove(ordinal);
+        if (value == null) {
+            return;
+        }
+        removeFrom(byDocument, value.getDocumentId(), ordinal);
+        removeFrom(byType, value.getType(), ordinal);
+        removeFrom(byTenant, value.getTenant(), ordinal);
+        if (timestamps[ordinal] != NO_TIMESTAMP) {
+            removeFrom(byTimeBucket, bucketOf(timestamps[ordinal]), ordinal);
+            timestamps[ordinal] = NO_TIMESTAMP;
+        }
+    }
+
+    /**
+     * 与某个字段的取值并集求交，取值为空时不限制
+     */
+    private static RoaringBitmap intersect(RoaringBitmap current, Collection<String> accepted,
+                                           Map<String, RoaringBitmap> bitmaps) {
+        if (accepted == null || accepted.isEmpty() || current.isEmpty()) {
+            return current;
+        }
+        RoaringBitmap union = new RoaringBitmap();
+        for (String value : accepted) {
+            RoaringBitmap bitmap = bitmaps.get(value);
+            if (bitmap != null) {
+                union = RoaringBitmap.or(union, bitmap);
+            }
+        }
+        return RoaringBitmap.and(current, union);
+    }
+
+    /**
+     * 完全落在范围内的桶直接合并，两端只部分重叠的桶逐个比较时间戳
+     */
+    private RoaringBitmap timeRange(long from, long to) {
+        RoaringBitmap result = new RoaringBitmap();
+        if (from > to) {
+            return result;
+        }
+        NavigableMap<Long, RoaringBitmap> buckets = byTimeBucket.subMap(bucketOf(from), true, bucketOf(to), true);
+        for (Map.Entry<Long, RoaringBitmap> entry : buckets.entrySet()) {
+            long bucketStart = entry.getKey() * bucketMillis;
+            long bucketEnd = bucketStart + bucketMillis - 1;
+            if (bucketStart >= from && bucketEnd <= to) {
+                result = RoaringBitmap.or(result, entry.getValue());
+            } else {
+                RoaringBitmap partial = result;
+                entry.getValue().forEach(ordinal -> {
+                    long timestamp = timestamps[ordinal];
+                    if (timestamp >= from && timestamp <= to) {
+                        partial.add(ordinal);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    private long bucketOf(long timestamp) {
+        return Math.floorDiv(timestamp, bucketMillis);
+    }
+
+    private static <K> void addTo(Map<K, RoaringBitmap> bitmaps, K value, int ordinal) {
+        if (value != null) {
+            bitmaps.computeIfAbsent(value, k -> new RoaringBitmap()).add(ordinal);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, RoaringBitmap> bitmaps, K value, int ordinal) {
+        if (value == null) {
+            return;
+        }
+        RoaringBitmap bitmap = bitmaps.get(value);
+        if (bitmap != null) {
+            bitmap.remove(ordinal);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(value);
+            }
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
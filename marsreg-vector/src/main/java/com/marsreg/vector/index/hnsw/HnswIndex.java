@@ -0,0 +1,634 @@
+package com.marsreg.vector.index.hnsw;
+
+import com.marsreg.vector.filter.RoaringBitmap;
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.similarity.VectorMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+/**
+ * HNSW（分层可导航小世界图）近似最近邻索引，使用余弦相似度。
+ *
+ * <p>并发模型：插入可以并发执行，每个节点的邻居表在该节点上加锁后以写时复制方式替换，
+ * 查询无锁读取邻居表。删除只打墓碑标记，节点仍参与图遍历但不会出现在结果中，
+ * 物理清理由调用方通过 {@link #forEachLive(BiConsumer)} 重建索引完成。</p>
+ *
+ * <p>每个节点可以带一个非负整数标签（如元数据序号），过滤搜索只返回标签在给定位图中的节点，
+ * 但遍历时仍经过其他节点，保持图的连通性。</p>
+ */
+public class HnswIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+
+    private final Map<String, Integer> keyToNode = new ConcurrentHashMap<>();
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private final AtomicInteger deletedCount = new AtomicInteger();
+    private final Object growLock = new Object();
+    private final Object entryLock = new Object();
+
+    private volatile Node[] nodes = new Node[INITIAL_CAPACITY];
+    // 入口节点和最高层作为一个不可变对象整体发布，读取方不会看到层数与入口不匹配的中间状态
+    private volatile EntryPoint entry = EntryPoint.NONE;
+    private volatile int dimension = -1;
+
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    public HnswIndex(int m, int efConstruction) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW参数M必须大于等于2");
+        }
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    /**
+     * 插入或覆盖向量
+     */
+    public void add(String key, float[] vector) {
+        add(key, vector, -1);
+    }
+
+    /**
+     * 插入或覆盖带标签的向量，标签为负数表示不参与过滤搜索
+     */
+    public void add(String key, float[] vector, int tag) {
+        checkDimension(vector);
+        float invNorm = inverseNorm(vector);
+        int level = randomLevel();
+        Node node = new Node(key, vector, invNorm, level, tag);
+        int id = publish(node);
+
+        Integer previous = keyToNode.put(key, id);
+        if (previous != null) {
+            markDeleted(previous);
+        }
+
+        EntryPoint currentEntry = entry;
+        if (currentEntry.id < 0) {
+            synchronized (entryLock) {
+                if (entry.id < 0) {
+                    entry = new EntryPoint(id, level);
+                    return;
+                }
+                currentEntry = entry;
+            }
+        }
+
+        int topLevel = currentEntry.level;
+        int current = currentEntry.id;
+        for (int lc = topLevel; lc > level; lc--) {
+            current = greedyClosest(vector, invNorm, current, lc);
+        }
+
+        List<Candidate> entryPoints = new ArrayList<>();
+        entryPoints.add(new Candidate(current, similarity(vector, invNorm, getNode(current))));
+        for (int lc = Math.min(level, topLevel); lc >= 0; lc--) {
+            PriorityQueue<Candidate> found = searchLayer(vector, invNorm, entryPoints, efConstruction, lc);
+            List<Candidate> sorted = sortDescending(found);
+            // 并发插入时其他线程可能已经把当前节点连入图中
+            sorted.removeIf(candidate -> candidate.id == id);
+            int maxConnections = lc == 0 ? maxM0 : m;
+            int[] selected = selectNeighbors(sorted, m);
+
+            synchronized (node) {
+                node.links.set(lc, merge(node.links.get(lc), selected, maxConnections, node));
+            }
+            for (int neighborId : selected) {
+                connect(getNode(neighborId), id, lc, maxConnections);
+            }
+            entryPoints = sorted;
+        }
+
+        if (level > topLevel) {
+            synchronized (entryLock) {
+                if (level > entry.level) {
+                    entry = new EntryPoint(id, level);
+                }
+            }
+        }
+    }
+
+    /**
+     * 打上墓碑标记，返回是否存在该向量
+     */
+    public boolean remove(String key) {
+        Integer id = keyToNode.remove(key);
+        if (id == null) {
+            return false;
+        }
+        markDeleted(id);
+        return true;
+    }
+
+    public float[] get(String key) {
+        Integer id = keyToNode.get(key);
+        return id == null ? null : getNode(id).vector;
+    }
+
+    public boolean contains(String key) {
+        return keyToNode.containsKey(key);
+    }
+
+    /**
+     * 近似搜索，结果按相似度降序排列
+     */
+    public LinkedHashMap<String, Float> search(float[] query, int k, int ef, float minScore) {
+        LinkedHashMap<String, Float> results = new LinkedHashMap<>();
+        EntryPoint currentEntry = entry;
+        if (currentEntry.id < 0 || k <= 0) {
+            return results;
+        }
+        checkDimension(query);
+        float invNorm = inverseNorm(query);
+
+        int current = currentEntry.id;
+        for (int lc = currentEntry.level; lc > 0; lc--) {
+            current = greedyClosest(query, invNorm, current, lc);
+        }
+        List<Candidate> entryPoints = new ArrayList<>(1);
+        entryPoints.add(new Candidate(current, similarity(query, invNorm, getNode(current))));
+        // 墓碑节点会占用候选位置，按删除比例放大ef
+        int effectiveEf = Math.max(ef, k);
+        int live = size();
+        if (live > 0) {
+            effectiveEf = (int) Math.min((long) effectiveEf * (live + deletedCount.get()) / live, nodeCount.get());
+            effectiveEf = Math.max(effectiveEf, k);
+        }
+        PriorityQueue<Candidate> found = searchLayer(query, invNorm, entryPoints, effectiveEf, 0);
+
+        for (Candidate candidate : sortDescending(found)) {
+            if (results.size() >= k || candidate.score < minScore) {
+                break;
+            }
+            Node node = getNode(candidate.id);
+            if (!node.deleted) {
+                results.put(node.key, candidate.score);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 过滤搜索：只返回标签在 allowedTags 中的节点。第0层遍历所有邻居，但只有满足条件的节点进入结果集，
+     * 结果集未满时会继续扩展候选。条件越严格需要访问的节点越多，访问数超过 visitLimit 时放弃并返回null，
+     * 由调用方改为对过滤集合精确计算
+     */
+    public LinkedHashMap<String, Float> search(float[] query, int k, int ef, float minScore,
+                                               RoaringBitmap allowedTags, int visitLimit) {
+        LinkedHashMap<String, Float> results = new LinkedHashMap<>();
+        EntryPoint currentEntry = entry;
+        if (currentEntry.id < 0 || k <= 0 || allowedTags.isEmpty()) {
+            return results;
+        }
+        checkDimension(query);
+        float invNorm = inverseNorm(query);
+
+        int current = currentEntry.id;
+        for (int lc = currentEntry.level; lc > 0; lc--) {
+            current = greedyClosest(query, invNorm, current, lc);
+        }
+        Candidate entry = new Candidate(current, similarity(query, invNorm, getNode(current)));
+        PriorityQueue<Candidate> found = searchLayerFiltered(query, invNorm, entry, Math.max(ef, k),
+            allowedTags, visitLimit);
+        if (found == null) {
+            return null;
+        }
+        for (Candidate candidate : sortDescending(found)) {
+            if (results.size() >= k || candidate.score < minScore) {
+                break;
+            }
+            results.put(getNode(candidate.id).key, candidate.score);
+        }
+        return results;
+    }
+
+    /**
+     * 对指定的向量精确计算相似度，用于范围搜索
+     */
+    public float score(float[] query, String key) {
+        return score(query, inverseNorm(query), key);
+    }
+
+    /**
+     * 使用调用方预先算好的查询范数倒数计算相似度，对多个ID打分时查询范数只需计算一次
+     */
+    public float score(float[] query, float queryInvNorm, String key) {
+        Integer id = keyToNode.get(key);
+        if (id == null) {
+            return Float.NaN;
+        }
+        return similarity(query, queryInvNorm, getNode(id));
+    }
+
+    /**
+     * 遍历所有未删除的向量精确计算相似度，存储向量使用写入时缓存的范数倒数
+     */
+    public LinkedHashMap<String, Float> exactSearch(float[] query, int k, float minScore) {
+        TopKCollector collector = new TopKCollector(k, minScore);
+        int count = nodeCount.get();
+        if (count == 0) {
+            return collector.drainDescending();
+        }
+        checkDimension(query);
+        float invNorm = inverseNorm(query);
+        for (int i = 0; i < count; i++) {
+            Node node = getNode(i);
+            if (node != null && !node.deleted) {
+                collector.offer(node.key, similarity(query, invNorm, node));
+            }
+        }
+        return collector.drainDescending();
+    }
+
+    /**
+     * 遍历所有未删除的向量
+     */
+    public void forEachLive(BiConsumer<String, float[]> consumer) {
+        int count = nodeCount.get();
+        for (int i = 0; i < count; i++) {
+            Node node = getNode(i);
+            if (node != null && !node.deleted) {
+                consumer.accept(node.key, node.vector);
+            }
+        }
+    }
+
+    public int size() {
+        return keyToNode.size();
+    }
+
+    public int deletedCount() {
+        return deletedCount.get();
+    }
+
+    public double deletedRatio() {
+        int total = nodeCount.get();
+        return total == 0 ? 0 : (double) deletedCount.get() / total;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    private void markDeleted(int id) {
+        Node node = getNode(id);
+        synchronized (node) {
+            if (node.deleted) {
+                return;
+            }
+            node.deleted = true;
+        }
+        deletedCount.incrementAndGet();
+    }
+
+    private int publish(Node node) {
+        synchronized (growLock) {
+            int id = nodeCount.get();
+            Node[] current = nodes;
+            if (id >= current.length) {
+                Node[] grown = new Node[current.length * 2];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            current[id] = node;
+            nodes = current;
+            nodeCount.set(id + 1);
+            return id;
+        }
+    }
+
+    private Node getNode(int id) {
+        return nodes[id];
+    }
+
+    private void connect(Node neighbor, int newId, int level, int maxConnections) {
+        synchronized (neighbor) {
+            int[] existing = neighbor.links.get(level);
+            neighbor.links.set(level, merge(existing, new int[]{newId}, maxConnections, neighbor));
+        }
+    }
+
+    /**
+     * 合并邻居表，超出上限时按启发式规则裁剪
+     */
+    private int[] merge(int[] existing, int[] additions, int maxConnections, Node owner) {
+        int[] merged = new int[existing.length + additions.length];
+        System.arraycopy(existing, 0, merged, 0, existing.length);
+        int size = existing.length;
+        outer:
+        for (int addition : additions) {
+            for (int i = 0; i < size; i++) {
+                if (merged[i] == addition) {
+                    continue outer;
+                }
+            }
+            merged[size++] = addition;
+        }
+        if (size <= maxConnections) {
+            return size == merged.length ? merged : Arrays.copyOf(merged, size);
+        }
+        List<Candidate> candidates = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            candidates.add(new Candidate(merged[i], similarity(owner.vector, owner.invNorm, getNode(merged[i]))));
+        }
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        return selectNeighbors(candidates, maxConnections);
+    }
+
+    /**
+     * 启发式邻居选择：优先保留与已选邻居方向差异较大的候选，不足时用被裁剪的候选补齐
+     */
+    private int[] selectNeighbors(List<Candidate> sortedDescending, int maxConnections) {
+        if (sortedDescending.size() <= maxConnections) {
+            int[] ids = new int[sortedDescending.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = sortedDescending.get(i).id;
+            }
+            return ids;
+        }
+        List<Candidate> selected = new ArrayList<>(maxConnections);
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : sortedDescending) {
+            if (selected.size() >= maxConnections) {
+                break;
+            }
+            Node candidateNode = getNode(candidate.id);
+            boolean keep = true;
+            for (Candidate chosen : selected) {
+                float between = similarity(candidateNode.vector, candidateNode.invNorm, getNode(chosen.id));
+                if (between > candidate.score) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected.add(candidate);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < maxConnections; i++) {
+            selected.add(pruned.get(i));
+        }
+        int[] ids = new int[selected.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = selected.get(i).id;
+        }
+        return ids;
+    }
+
+    private int greedyClosest(float[] query, float invNorm, int start, int level) {
+        int current = start;
+        float best = similarity(query, invNorm, getNode(current));
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Node node = getNode(current);
+            if (level > node.level) {
+                break;
+            }
+            for (int neighborId : node.links.get(level)) {
+                float score = similarity(query, invNorm, getNode(neighborId));
+                if (score > best) {
+                    best = score;
+                    current = neighborId;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在单层内做束搜索，返回以最差结果为堆顶的结果集
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, float invNorm, List<Candidate> entryPoints,
+                                                 int ef, int level) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(nodeCount.get());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(
+            Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(c -> c.score));
+
+        for (Candidate entry : entryPoints) {
+            if (visited.visit(entry.id)) {
+                candidates.add(entry);
+                results.add(entry);
+                if (results.size() > ef) {
+                    results.poll();
+                }
+            }
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.score < results.peek().score) {
+                break;
+            }
+            Node node = getNode(current.id);
+            if (level > node.level) {
+                continue;
+            }
+            for (int neighborId : node.links.get(level)) {
+                if (!visited.visit(neighborId)) {
+                    continue;
+                }
+                float score = similarity(query, invNorm, getNode(neighborId));
+                if (results.size() < ef || score > results.peek().score) {
+                    Candidate candidate = new Candidate(neighborId, score);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 第0层的过滤束搜索，结果集只保留满足条件且未删除的节点，以最差结果为堆顶；访问数超限时返回null
+     */
+    private PriorityQueue<Candidate> searchLayerFiltered(float[] query, float invNorm, Candidate entry, int ef,
+                                                         RoaringBitmap allowedTags, int visitLimit) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(nodeCount.get());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(
+            Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(c -> c.score));
+
+        visited.visit(entry.id);
+        candidates.add(entry);
+        if (matches(getNode(entry.id), allowedTags)) {
+            results.add(entry);
+        }
+        int visits = 1;
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.score < results.peek().score) {
+                break;
+            }
+            for (int neighborId : getNode(current.id).links.get(0)) {
+                if (!visited.visit(neighborId)) {
+                    continue;
+                }
+                if (++visits > visitLimit) {
+                    return null;
+                }
+                Node neighbor = getNode(neighborId);
+                float score = similarity(query, invNorm, neighbor);
+                if (results.size() < ef || score > results.peek().score) {
+                    Candidate candidate = new Candidate(neighborId, score);
+                    candidates.add(candidate);
+                    if (matches(neighbor, allowedTags)) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private static boolean matches(Node node, RoaringBitmap allowedTags) {
+        return !node.deleted && node.tag >= 0 && allowedTags.contains(node.tag);
+    }
+
+    private static List<Candidate> sortDescending(PriorityQueue<Candidate> heap) {
+        List<Candidate> sorted = new ArrayList<>(heap);
+        sorted.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        return sorted;
+    }
+
+    private int randomLevel() {
+        double r = ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(1.0 - r) * levelMultiplier);
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            throw new IllegalArgumentException("向量不能为空");
+        }
+        int current = dimension;
+        if (current < 0) {
+            synchronized (entryLock) {
+                if (dimension < 0) {
+                    dimension = vector.length;
+                }
+                current = dimension;
+            }
+        }
+        if (vector.length != current) {
+            throw new IllegalArgumentException("向量维度不一致: 期望 " + current + ", 实际 " + vector.length);
+        }
+    }
+
+    private static float similarity(float[] query, float queryInvNorm, Node node) {
+        return VectorMath.dot(query, 0, node.vector, 0, query.length) * queryInvNorm * node.invNorm;
+    }
+
+    private static float inverseNorm(float[] vector) {
+        return VectorMath.inverseNorm(vector);
+    }
+
+    private static final class Node {
+        final String key;
+        final float[] vector;
+        final float invNorm;
+        final int level;
+        final int tag;
+        final AtomicReferenceArray<int[]> links;
+        volatile boolean deleted;
+
+        Node(String key, float[] vector, float invNorm, int level, int tag) {
+            this.key = key;
+            this.vector = vector;
+            this.invNorm = invNorm;
+            this.level = level;
+            this.tag = tag;
+            this.links = new AtomicReferenceArray<>(level + 1);
+            for (int i = 0; i <= level; i++) {
+                links.set(i, new int[0]);
+            }
+        }
+    }
+
+    private static final class EntryPoint {
+        static final EntryPoint NONE = new EntryPoint(-1, -1);
+
+        final int id;
+        final int level;
+
+        EntryPoint(int id, int level) {
+            this.id = id;
+            this.level = level;
+        }
+    }
+
+    private static final class Candidate {
+        final int id;
+        final float score;
+
+        Candidate(int id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 线程私有的访问标记，使用代数计数避免每次查询清空数组
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[INITIAL_CAPACITY];
+        private int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                epoch = 0;
+            }
+            epoch++;
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean visit(int id) {
+            if (id >= marks.length) {
+                marks = Arrays.copyOf(marks, Math.max(id + 1, marks.length * 2));
+            }
+            if (marks[id] == epoch) {
+                return false;
+            }
+            marks[id] = epoch;
+            return true;
+        }
+    }
+}
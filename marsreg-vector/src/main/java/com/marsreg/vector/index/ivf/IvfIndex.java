@@ -0,0 +1,354 @@
+package com.marsreg.vector.index.ivf;
+
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.similarity.VectorMath;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * IVF-Flat 倒排索引，使用余弦相似度。
+ *
+ * <p>向量按最近的聚类中心分到倒排表中，每个倒排表把原始向量按行连续存放并保存逆范数，
+ * 查询只扫描与查询向量最接近的 nprobe 个倒排表。删除时用表尾的行填补空位，倒排表始终保持连续。</p>
+ *
+ * <p>并发模型：每个倒排表有独立的读写锁，查询持读锁扫描；同一个ID的写操作在ID到倒排表的映射上串行执行，
+ * 映射的更新过程中只获取倒排表的锁，不会反向等待。</p>
+ */
+public class IvfIndex {
+
+    private static final int INITIAL_LIST_CAPACITY = 16;
+
+    private final int dimension;
+    private final int nlist;
+    private final float[] centroids;
+    private final InvertedList[] lists;
+    private final Map<String, Integer> keyToList = new ConcurrentHashMap<>();
+
+    /**
+     * @param centroids 按行连续存放的归一化聚类中心，长度为 dimension 的整数倍
+     */
+    public IvfIndex(int dimension, float[] centroids) {
+        if (dimension <= 0 || centroids.length == 0 || centroids.length % dimension != 0) {
+            throw new IllegalArgumentException("聚类中心与向量维度不匹配");
+        }
+        this.dimension = dimension;
+        this.nlist = centroids.length / dimension;
+        this.centroids = centroids;
+        this.lists = new InvertedList[nlist];
+        for (int i = 0; i < nlist; i++) {
+            lists[i] = new InvertedList(dimension);
+        }
+    }
+
+    /**
+     * 只有一个倒排表的索引，等价于精确扫描，用于聚类中心训练之前
+     */
+    public static IvfIndex flat(int dimension) {
+        return new IvfIndex(dimension, new float[dimension]);
+    }
+
+    /**
+     * 插入或覆盖向量，分配到最近的倒排表
+     */
+    public void add(String key, float[] vector) {
+        checkDimension(vector);
+        int target = nlist == 1 ? 0 : KMeans.nearest(centroids, nlist, vector);
+        float invNorm = VectorMath.inverseNorm(vector);
+        keyToList.compute(key, (k, previous) -> {
+            if (previous != null && previous != target) {
+                lists[previous].remove(k);
+            }
+            lists[target].put(k, vector, invNorm);
+            return target;
+        });
+    }
+
+    /**
+     * 返回是否存在该向量
+     */
+    public boolean remove(String key) {
+        boolean[] removed = {false};
+        keyToList.computeIfPresent(key, (k, list) -> {
+            removed[0] = lists[list].remove(k);
+            return null;
+        });
+        return removed[0];
+    }
+
+    public float[] get(String key) {
+        Integer list = keyToList.get(key);
+        return list == null ? null : lists[list].get(key);
+    }
+
+    /**
+     * 查询向量与指定ID的余弦相似度，ID不存在时返回NaN
+     */
+    public float score(float[] query, String key) {
+        return score(query, VectorMath.inverseNorm(query), key);
+    }
+
+    /**
+     * 使用调用方预先算好的查询范数倒数打分，对多个ID打分时查询范数只需计算一次
+     */
+    public float score(float[] query, float queryInvNorm, String key) {
+        Integer list = keyToList.get(key);
+        if (list == null) {
+            return Float.NaN;
+        }
+        return lists[list].score(query, queryInvNorm, key);
+    }
+
+    /**
+     * 近似搜索，结果按相似度降序排列
+     * @param nprobe 扫描的倒排表数，不小于 nlist 时为精确搜索
+     */
+    public LinkedHashMap<String, Float> search(float[] query, int k, int nprobe, float minScore) {
+        return search(query, k, nprobe, minScore, null);
+    }
+
+    /**
+     * 带过滤条件的近似搜索，只对得分能进入结果集的行判断过滤条件
+     */
+    public LinkedHashMap<String, Float> search(float[] query, int k, int nprobe, float minScore, Predicate<String> filter) {
+        checkDimension(query);
+        TopKCollector collector = new TopKCollector(k, minScore);
+        if (k <= 0) {
+            return collector.drainDescending();
+        }
+        float invNorm = VectorMath.inverseNorm(query);
+        float[] scores = new float[INITIAL_LIST_CAPACITY];
+        for (int list : probe(query, nprobe)) {
+            scores = lists[list].scan(query, invNorm, collector, filter, scores);
+        }
+        return collector.drainDescending();
+    }
+
+    /**
+     * 与查询向量内积最大的 nprobe 个倒排表下标
+     */
+    int[] probe(float[] query, int nprobe) {
+        int count = Math.max(1, Math.min(nprobe, nlist));
+        if (count == nlist) {
+            int[] all = new int[nlist];
+            for (int i = 0; i < nlist; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        float[] scores = new float[nlist];
+        VectorMath.dotBatch(query, centroids, 0, nlist, scores);
+        PriorityQueue<Integer> heap = new PriorityQueue<>(count + 1, (a, b) -> Float.compare(scores[a], scores[b]));
+        for (int i = 0; i < nlist; i++) {
+            if (heap.size() < count) {
+                heap.add(i);
+            } else if (scores[i] > scores[heap.peek()]) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        return heap.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public void forEachLive(BiConsumer<String, float[]> consumer) {
+        for (InvertedList list : lists) {
+            list.forEach(consumer);
+        }
+    }
+
+    public int size() {
+        return keyToList.size();
+    }
+
+    public int getNlist() {
+        return nlist;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int[] listSizes() {
+        int[] sizes = new int[nlist];
+        for (int i = 0; i < nlist; i++) {
+            sizes[i] = lists[i].size();
+        }
+        return sizes;
+    }
+
+    /**
+     * 不均衡系数：nlist * Σsize² / (Σsize)²，各表大小相同时为1，
+     * 等于按倒排表大小加权后单次探测的期望扫描行数与平均表大小之比
+     */
+    public double imbalanceFactor() {
+        long total = 0;
+        double squares = 0;
+        for (InvertedList list : lists) {
+            int size = list.size();
+            total += size;
+            squares += (double) size * size;
+        }
+        return total == 0 ? 1.0 : nlist * squares / ((double) total * total);
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不一致: 期望 " + dimension);
+        }
+    }
+
+    /**
+     * 单个倒排表：向量、逆范数和ID按行连续存放
+     */
+    private static final class InvertedList {
+
+        private final int dimension;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Integer> keyToRow = new HashMap<>();
+        private float[] vectors;
+        private float[] invNorms;
+        private String[] keys;
+        private int size;
+
+        InvertedList(int dimension) {
+            this.dimension = dimension;
+            this.vectors = new float[INITIAL_LIST_CAPACITY * dimension];
+            this.invNorms = new float[INITIAL_LIST_CAPACITY];
+            this.keys = new String[INITIAL_LIST_CAPACITY];
+        }
+
+        void put(String key, float[] vector, float invNorm) {
+            lock.writeLock().lock();
+            try {
+                Integer row = keyToRow.get(key);
+                if (row == null) {
+                    if (size == keys.length) {
+                        grow();
+                    }
+                    row = size++;
+                    keyToRow.put(key, row);
+                    keys[row] = key;
+                }
+                System.arraycopy(vector, 0, vectors, row * dimension, dimension);
+                invNorms[row] = invNorm;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        boolean remove(String key) {
+            lock.writeLock().lock();
+            try {
+                Integer row = keyToRow.remove(key);
+                if (row == null) {
+                    return false;
+                }
+                int last = --size;
+                if (row != last) {
+                    System.arraycopy(vectors, last * dimension, vectors, row * dimension, dimension);
+                    invNorms[row] = invNorms[last];
+                    keys[row] = keys[last];
+                    keyToRow.put(keys[row], row);
+                }
+                keys[last] = null;
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        float[] get(String key) {
+            lock.readLock().lock();
+            try {
+                Integer row = keyToRow.get(key);
+                if (row == null) {
+                    return null;
+                }
+                float[] vector = new float[dimension];
+                System.arraycopy(vectors, row * dimension, vector, 0, dimension);
+                return vector;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        float score(float[] query, float queryInvNorm, String key) {
+            lock.readLock().lock();
+            try {
+                Integer row = keyToRow.get(key);
+                if (row == null) {
+                    return Float.NaN;
+                }
+                return VectorMath.dot(query, 0, vectors, row * dimension, dimension) * queryInvNorm * invNorms[row];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 扫描整个倒排表，返回可复用的得分缓冲区
+         */
+        float[] scan(float[] query, float queryInvNorm, TopKCollector collector, Predicate<String> filter, float[] scores) {
+            lock.readLock().lock();
+            try {
+                if (size == 0) {
+                    return scores;
+                }
+                if (scores.length < size) {
+                    scores = new float[keys.length];
+                }
+                VectorMath.dotBatch(query, vectors, 0, size, scores);
+                for (int row = 0; row < size; row++) {
+                    float score = scores[row] * queryInvNorm * invNorms[row];
+                    if (collector.accepts(score) && (filter == null || filter.test(keys[row]))) {
+                        collector.offer(keys[row], score);
+                    }
+                }
+                return scores;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void forEach(BiConsumer<String, float[]> consumer) {
+            lock.readLock().lock();
+            try {
+                for (int row = 0; row < size; row++) {
+                    float[] vector = new float[dimension];
+                    System.arraycopy(vectors, row * dimension, vector, 0, dimension);
+                    consumer.accept(keys[row], vector);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void grow() {
+            int capacity = keys.length * 2;
+            float[] grownVectors = new float[capacity * dimension];
+            System.arraycopy(vectors, 0, grownVectors, 0, size * dimension);
+            vectors = grownVectors;
+            float[] grownNorms = new float[capacity];
+            System.arraycopy(invNorms, 0, grownNorms, 0, size);
+            invNorms = grownNorms;
+            String[] grownKeys = new String[capacity];
+            System.arraycopy(keys, 0, grownKeys, 0, size);
+            keys = grownKeys;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.marsreg.vector.index.ivf;
+
+import com.marsreg.vector.similarity.VectorMath;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * 球面 mini-batch k-means：样本和质心都归一化，按内积（余弦）分配。
+ * 每轮随机取一批样本并行分配到最近质心，质心按各自累计分配次数的倒数作为学习率更新后重新归一化，
+ * 每轮的开销只与批大小有关，适合在较大样本上训练倒排索引的聚类中心
+ */
+public final class KMeans {
+
+    private KMeans() {
+    }
+
+    /**
+     * @param samples 训练样本，不会被修改
+     * @param k 质心数，超过样本数时取样本数
+     * @param iterations 迭代轮数
+     * @param batchSize 每轮的样本数，不小于样本数时等价于标准k-means
+     * @return 按行连续存放的归一化质心，行数为实际质心数
+     */
+    public static float[] train(List<float[]> samples, int k, int iterations, int batchSize, long seed) {
+        int n = samples.size();
+        if (n == 0 || k <= 0) {
+            throw new IllegalArgumentException("k-means训练样本和质心数必须大于0");
+        }
+        int dimension = samples.get(0).length;
+        int count = Math.min(k, n);
+        Random random = new Random(seed);
+
+        float[][] points = new float[n][];
+        for (int i = 0; i < n; i++) {
+            points[i] = VectorMath.normalize(samples.get(i));
+        }
+        float[] centroids = new float[count * dimension];
+        int[] picks = random.ints(0, n).distinct().limit(count).toArray();
+        for (int c = 0; c < count; c++) {
+            System.arraycopy(points[picks[c]], 0, centroids, c * dimension, dimension);
+        }
+
+        int batch = Math.min(Math.max(batchSize, count), n);
+        long[] counts = new long[count];
+        int[] members = new int[batch];
+        int[] assignment = new int[batch];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int b = 0; b < batch; b++) {
+                members[b] = batch == n ? b : random.nextInt(n);
+            }
+            IntStream.range(0, batch).parallel()
+                .forEach(b -> assignment[b] = nearest(centroids, count, points[members[b]]));
+            for (int b = 0; b < batch; b++) {
+                int c = assignment[b];
+                float rate = 1f / ++counts[c];
+                float[] point = points[members[b]];
+                int base = c * dimension;
+                for (int d = 0; d < dimension; d++) {
+                    centroids[base + d] += rate * (point[d] - centroids[base + d]);
+                }
+            }
+            for (int c = 0; c < count; c++) {
+                if (counts[c] == 0) {
+                    // 一直没有分到样本的质心换成随机样本
+                    System.arraycopy(points[random.nextInt(n)], 0, centroids, c * dimension, dimension);
+                } else {
+                    normalizeRow(centroids, c * dimension, dimension);
+                }
+            }
+        }
+        return centroids;
+    }
+
+    /**
+     * 与向量内积最大的质心下标
+     */
+    public static int nearest(float[] centroids, int k, float[] vector) {
+        int dimension = vector.length;
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < k; c++) {
+            float score = VectorMath.dot(vector, 0, centroids, c * dimension, dimension);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static void normalizeRow(float[] block, int offset, int dimension) {
+        float sum = VectorMath.dot(block, offset, block, offset, dimension);
+        if (sum <= 0) {
+            return;
+        }
+        float inv = (float) (1.0 / Math.sqrt(sum));
+        for (int d = 0; d < dimension; d++) {
+            block[offset + d] *= inv;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.marsreg.vector.milvus;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * float[] 的只读 List 视图，供 Milvus SDK 的 List&lt;Float&gt; 参数使用，避免逐元素复制到新的列表
+ */
+public final class FloatListView extends AbstractList<Float> implements RandomAccess {
+
+    private final float[] values;
+
+    public FloatListView(float[] values) {
+        this.values = values;
+    }
+
+    @Override
+    public Float get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    public float[] array() {
+        return values;
+    }
+}
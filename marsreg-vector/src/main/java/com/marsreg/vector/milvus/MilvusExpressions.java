@@ -0,0 +1,100 @@
+package com.marsreg.vector.milvus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Milvus 布尔表达式构造工具
+ */
+public final class MilvusExpressions {
+
+    /**
+     * 单个 in 表达式的最大元素数，超出时由调用方分批执行
+     */
+    public static final int MAX_IN_SIZE = 1000;
+
+    private MilvusExpressions() {
+    }
+
+    /**
+     * 构造 field in ["a", "b"] 表达式，字符串值会转义引号和反斜杠
+     */
+    public static String in(String field, Collection<String> values) {
+        StringBuilder expr = new StringBuilder(field.length() + 8 + values.size() * 24);
+        expr.append(field).append(" in [");
+        boolean first = true;
+        for (String value : values) {
+            if (!first) {
+                expr.append(',');
+            }
+            appendQuoted(expr, value);
+            first = false;
+        }
+        return expr.append(']').toString();
+    }
+
+    public static String eq(String field, String value) {
+        StringBuilder expr = new StringBuilder(field).append(" == ");
+        appendQuoted(expr, value);
+        return expr.toString();
+    }
+
+    /**
+     * 构造 field > "value" 表达式，字符串按字典序比较，用于按主键分页
+     */
+    public static String gt(String field, String value) {
+        StringBuilder expr = new StringBuilder(field).append(" > ");
+        appendQuoted(expr, value);
+        return expr.toString();
+    }
+
+    public static String ge(String field, long value) {
+        return field + " >= " + value;
+    }
+
+    public static String le(String field, long value) {
+        return field + " <= " + value;
+    }
+
+    /**
+     * 用 and 连接各子表达式，跳过空表达式，全部为空时返回null
+     */
+    public static String and(List<String> clauses) {
+        StringBuilder expr = new StringBuilder();
+        int count = 0;
+        for (String clause : clauses) {
+            if (clause == null || clause.isEmpty()) {
+                continue;
+            }
+            if (count++ > 0) {
+                expr.append(" and ");
+            }
+            expr.append('(').append(clause).append(')');
+        }
+        return count == 0 ? null : expr.toString();
+    }
+
+    /**
+     * 把列表切分为不超过 size 的连续子列表
+     */
+    public static <T> List<List<T>> partition(List<T> values, int size) {
+        List<List<T>> parts = new ArrayList<>((values.size() + size - 1) / size);
+        for (int start = 0; start < values.size(); start += size) {
+            parts.add(values.subList(start, Math.min(values.size(), start + size)));
+        }
+        return parts;
+    }
+
+    private static void appendQuoted(StringBuilder expr, String value) {
+        expr.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                expr.append('\\');
+            }
+            expr.append(c);
+        }
+        expr.append('"');
+    }
+}
@@ -0,0 +1,308 @@
+package com.marsreg.vector.milvus;
+
+import com.marsreg.vector.model.VectorMetadata;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Milvus 写缓冲：单条写入先进入内存队列，按行数、字节数或最大等待时间触发批量插入。
+ * 多个批次可并发写入，失败时按指数退避重试，调用方通过返回的 future 得到写入确认。
+ *
+ * <p>进行中的批次数（含等待重试的批次）受许可数限制：写入方在许可耗尽时阻塞形成反压，
+ * 定时线程拿不到许可则跳过本轮。写入和退避等待都不会占用提交线程或定时线程，
+ * 重试由独立的调度线程在退避到期后重新提交到写入线程池。</p>
+ */
+@Slf4j
+public class MilvusWriteBuffer implements Closeable {
+
+    /**
+     * 批量写入的实际执行者，三个列表按行对齐，抛出异常视为本批次失败
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+        void write(List<String> ids, List<VectorMetadata> metadata, List<float[]> vectors) throws Exception;
+    }
+
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+
+    private final BatchWriter writer;
+    private final int maxRows;
+    private final long maxBytes;
+    private final long maxDelayNanos;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+
+    private final Object lock = new Object();
+    private List<PendingWrite> buffer = new ArrayList<>();
+    private long bufferedBytes;
+    private long oldestNanos;
+    private final Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+    private final Semaphore batchPermits;
+    private final ThreadPoolExecutor flushExecutor;
+    private final ScheduledExecutorService timer;
+    private final ScheduledExecutorService retryScheduler;
+
+    public MilvusWriteBuffer(BatchWriter writer, int maxRows, long maxBytes, long maxDelayMillis,
+                             int flushConcurrency, int maxRetries, long retryBackoffMillis) {
+        this.writer = writer;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = retryBackoffMillis;
+        // 队列长度由许可数约束，线程池本身不需要拒绝策略
+        this.batchPermits = new Semaphore(flushConcurrency * 3);
+        this.flushExecutor = new ThreadPoolExecutor(flushConcurrency, flushConcurrency, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), daemonThreads("milvus-write-flush"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("milvus-write-timer"));
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("milvus-write-retry"));
+        long period = Math.max(1, maxDelayMillis / 2);
+        this.timer.scheduleWithFixedDelay(this::flushExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 提交一批向量，返回的 future 在全部行写入 Milvus 后完成
+     * @param documentId 向量所属文档，作为分区键写入
+     */
+    public CompletableFuture<Void> submit(String documentId, Map<String, float[]> vectors) {
+        return submit(VectorMetadata.ofDocument(documentId), vectors);
+    }
+
+    /**
+     * 提交一批共用元数据的向量，元数据随每行写入对应的标量字段
+     */
+    public CompletableFuture<Void> submit(VectorMetadata metadata, Map<String, float[]> vectors) {
+        if (vectors.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<CompletableFuture<Void>> acks = new ArrayList<>(vectors.size());
+        List<List<PendingWrite>> ready = new ArrayList<>();
+        synchronized (lock) {
+            for (Map.Entry<String, float[]> entry : vectors.entrySet()) {
+                PendingWrite write = new PendingWrite(entry.getKey(), metadata, entry.getValue());
+                acks.add(write.ack);
+                if (buffer.isEmpty()) {
+                    oldestNanos = System.nanoTime();
+                }
+                buffer.add(write);
+                bufferedBytes += write.bytes();
+                if (buffer.size() >= maxRows || bufferedBytes >= maxBytes) {
+                    ready.add(drain());
+                }
+            }
+        }
+        for (List<PendingWrite> batch : ready) {
+            acquireAndDispatch(batch);
+        }
+        return acks.size() == 1 ? acks.get(0) : CompletableFuture.allOf(acks.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * 立即写出缓冲区，返回的 future 在当前所有进行中的批次完成后完成
+     */
+    public CompletableFuture<Void> flush() {
+        List<PendingWrite> batch;
+        synchronized (lock) {
+            batch = drain();
+        }
+        acquireAndDispatch(batch);
+        return CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0]));
+    }
+
+    public int pendingRows() {
+        synchronized (lock) {
+            return buffer.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        try {
+            flush().join();
+        } catch (CompletionException e) {
+            log.error("关闭时写出Milvus缓冲区失败", e.getCause());
+        }
+        retryScheduler.shutdown();
+        flushExecutor.shutdown();
+    }
+
+    private void flushExpired() {
+        // 所有许可都被进行中的批次占用时不阻塞定时线程，留到下一轮再检查
+        if (!batchPermits.tryAcquire()) {
+            return;
+        }
+        List<PendingWrite> batch = Collections.emptyList();
+        synchronized (lock) {
+            if (!buffer.isEmpty() && System.nanoTime() - oldestNanos >= maxDelayNanos) {
+                batch = drain();
+            }
+        }
+        dispatch(batch);
+    }
+
+    private List<PendingWrite> drain() {
+        List<PendingWrite> batch = buffer;
+        buffer = new ArrayList<>();
+        bufferedBytes = 0;
+        return batch;
+    }
+
+    /**
+     * 阻塞等待许可后写出，用于提交线程和显式 flush，许可耗尽时形成反压
+     */
+    private void acquireAndDispatch(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            batchPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.forEach(write -> write.ack.completeExceptionally(e));
+            return;
+        }
+        dispatch(batch);
+    }
+
+    /**
+     * 调用方已持有一个许可，批次结束（成功或最终失败）时归还
+     */
+    private void dispatch(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            batchPermits.release();
+            return;
+        }
+        WriteBatch writeBatch = new WriteBatch(batch);
+        inFlight.add(writeBatch.done);
+        writeBatch.done.whenComplete((v, e) -> {
+            inFlight.remove(writeBatch.done);
+            batchPermits.release();
+        });
+        execute(writeBatch, 0);
+    }
+
+    private void execute(WriteBatch batch, int attempt) {
+        try {
+            flushExecutor.execute(() -> attempt(batch, attempt));
+        } catch (RejectedExecutionException e) {
+            batch.fail(e);
+        }
+    }
+
+    private void attempt(WriteBatch batch, int attempt) {
+        try {
+            writer.write(batch.ids, batch.metadata, batch.vectors);
+            batch.complete();
+        } catch (Exception e) {
+            if (attempt >= maxRetries) {
+                log.error("Milvus批量写入失败: rows={}, 已重试{}次", batch.ids.size(), attempt, e);
+                batch.fail(e);
+                return;
+            }
+            long backoff = Math.min(MAX_BACKOFF_MILLIS, retryBackoffMillis << attempt);
+            backoff += ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            log.warn("Milvus批量写入失败，{}ms后重试: rows={}, attempt={}, error={}",
+                backoff, batch.ids.size(), attempt + 1, e.getMessage());
+            try {
+                retryScheduler.schedule(() -> execute(batch, attempt + 1), backoff, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException rejected) {
+                batch.fail(e);
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        return new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + "-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * 一个写出批次，三个列表只构建一次，重试时复用
+     */
+    private static final class WriteBatch {
+        final List<PendingWrite> writes;
+        final List<String> ids;
+        final List<VectorMetadata> metadata;
+        final List<float[]> vectors;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        WriteBatch(List<PendingWrite> writes) {
+            this.writes = writes;
+            this.ids = new ArrayList<>(writes.size());
+            this.metadata = new ArrayList<>(writes.size());
+            this.vectors = new ArrayList<>(writes.size());
+            for (PendingWrite write : writes) {
+                ids.add(write.id);
+                metadata.add(write.metadata);
+                vectors.add(write.vector);
+            }
+        }
+
+        void complete() {
+            writes.forEach(write -> write.ack.complete(null));
+            done.complete(null);
+        }
+
+        void fail(Throwable cause) {
+            writes.forEach(write -> write.ack.completeExceptionally(cause));
+            done.completeExceptionally(cause);
+        }
+    }
+
+    private static final class PendingWrite {
+        final String id;
+        final VectorMetadata metadata;
+        final float[] vector;
+        final long bytes;
+        final CompletableFuture<Void> ack = new CompletableFuture<>();
+
+        PendingWrite(String id, VectorMetadata metadata, float[] vector) {
+            this.id = id;
+            this.metadata = metadata;
+            this.vector = vector;
+            this.bytes = (long) vector.length * Float.BYTES + utf8Length(id) + utf8Length(metadata.getDocumentId())
+                + utf8Length(metadata.getType()) + utf8Length(metadata.getTenant()) + Long.BYTES;
+        }
+
+        long bytes() {
+            return bytes;
+        }
+
+        /**
+         * 字符串按 UTF-8 编码后的字节数，Milvus 的 VarChar 字段按该长度计入请求大小
+         */
+        private static int utf8Length(String value) {
+            if (value == null) {
+                return 0;
+            }
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    length++;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.marsreg.vector.model;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.translate.NoBatchifyTranslator;
+import ai.djl.translate.TranslatorContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 批量文本向量化转换器：输入为已分词的一批文本，填充到批内最长长度后组成 [batch, length] 张量做一次前向计算，
+ * 输出为 token 级向量时按 attention mask 做平均池化。
+ * 不使用 DJL 默认的逐条 Batchifier，因为各条文本的 token 数不同，无法直接堆叠
+ */
+class BatchEmbeddingTranslator implements NoBatchifyTranslator<List<Encoding>, List<float[]>> {
+
+    private static final String ATTENTION_MASK = "attentionMask";
+
+    private final boolean includeTokenTypes;
+
+    BatchEmbeddingTranslator(boolean includeTokenTypes) {
+        this.includeTokenTypes = includeTokenTypes;
+    }
+
+    @Override
+    public NDList processInput(TranslatorContext ctx, List<Encoding> inputs) {
+        Encoding[] encodings = inputs.toArray(new Encoding[0]);
+        int batch = encodings.length;
+        int length = 0;
+        for (Encoding encoding : encodings) {
+            length = Math.max(length, encoding.getIds().length);
+        }
+        long[] ids = new long[batch * length];
+        long[] mask = new long[batch * length];
+        long[] types = includeTokenTypes ? new long[batch * length] : null;
+        for (int i = 0; i < batch; i++) {
+            long[] encodingIds = encodings[i].getIds();
+            System.arraycopy(encodingIds, 0, ids, i * length, encodingIds.length);
+            System.arraycopy(encodings[i].getAttentionMask(), 0, mask, i * length, encodingIds.length);
+            if (types != null) {
+                System.arraycopy(encodings[i].getTypeIds(), 0, types, i * length, encodingIds.length);
+            }
+        }
+
+        NDManager manager = ctx.getNDManager();
+        Shape shape = new Shape(batch, length);
+        NDArray inputIds = manager.create(ids, shape);
+        inputIds.setName("input_ids");
+        NDArray attentionMask = manager.create(mask, shape);
+        attentionMask.setName("attention_mask");
+        ctx.setAttachment(ATTENTION_MASK, attentionMask);
+
+        NDList list = new NDList(inputIds, attentionMask);
+        if (types != null) {
+            NDArray tokenTypes = manager.create(types, shape);
+            tokenTypes.setName("token_type_ids");
+            list.add(tokenTypes);
+        }
+        return list;
+    }
+
+    @Override
+    public List<float[]> processOutput(TranslatorContext ctx, NDList list) {
+        NDArray embeddings = list.get("sentence_embedding");
+        if (embeddings == null) {
+            embeddings = list.get(0);
+        }
+        if (embeddings.getShape().dimension() == 3) {
+            NDArray mask = ((NDArray) ctx.getAttachment(ATTENTION_MASK)).toType(DataType.FLOAT32, false).expandDims(-1);
+            NDArray sum = embeddings.mul(mask).sum(new int[]{1});
+            NDArray count = mask.sum(new int[]{1}).clip(1e-9f, Float.MAX_VALUE);
+            embeddings = sum.div(count);
+        }
+        int batch = (int) embeddings.getShape().get(0);
+        int dimension = (int) embeddings.getShape().get(1);
+        float[] flat = embeddings.toFloatArray();
+        List<float[]> result = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            result.add(Arrays.copyOfRange(flat, i * dimension, (i + 1) * dimension));
+        }
+        return result;
+    }
+}
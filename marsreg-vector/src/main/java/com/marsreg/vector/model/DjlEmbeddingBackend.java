@@ -0,0 +1,74 @@
+package com.marsreg.vector.model;
+
+import ai.djl.Device;
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.inference.Predictor;
+import ai.djl.modality.Input;
+import ai.djl.modality.Output;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.training.util.ProgressBar;
+import com.marsreg.vector.config.VectorizationConfig;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 DJL PyTorch 引擎的全精度推理后端，预测器由 {@link PredictorPool} 复用
+ */
+class DjlEmbeddingBackend implements EmbeddingBackend {
+
+    private final ZooModel<Input, Output> model;
+    private final PredictorPool<Predictor<List<Encoding>, List<float[]>>> predictorPool;
+
+    private DjlEmbeddingBackend(ZooModel<Input, Output> model, VectorizationConfig.Model config) {
+        this.model = model;
+        boolean includeTokenTypes = Boolean.TRUE.equals(config.getIncludeTokenTypes());
+        this.predictorPool = new PredictorPool<>(
+            () -> model.newPredictor(new BatchEmbeddingTranslator(includeTokenTypes)),
+            config.getPool().getSize(), config.getPool().getBorrowTimeoutMillis());
+    }
+
+    static DjlEmbeddingBackend load(String path, VectorizationConfig.Model config) throws Exception {
+        Criteria<Input, Output> criteria = Criteria.builder()
+            .setTypes(Input.class, Output.class)
+            .optModelPath(Paths.get(path))
+            .optDevice(Device.cpu())
+            .optProgress(new ProgressBar())
+            .build();
+        return new DjlEmbeddingBackend(criteria.loadModel(), config);
+    }
+
+    @Override
+    public String getName() {
+        return DJL;
+    }
+
+    @Override
+    public List<float[]> embed(List<Encoding> encodings) throws Exception {
+        Predictor<List<Encoding>, List<float[]>> predictor = predictorPool.borrow();
+        try {
+            List<float[]> result = predictor.predict(encodings);
+            predictorPool.release(predictor);
+            return result;
+        } catch (Exception e) {
+            // 推理失败的预测器可能处于异常状态，不再复用
+            predictorPool.invalidate(predictor);
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = predictorPool.getStats();
+        stats.put("backend", DJL);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        predictorPool.close();
+        model.close();
+    }
+}
@@ -0,0 +1,34 @@
+package com.marsreg.vector.model;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 向量化推理后端：输入一批已分词的文本，输出与输入顺序一致的句向量。
+ * 分词、分桶和版本切换由 {@link ModelVersion} 和 {@link SentenceTransformerModel} 负责，后端只做前向计算和池化
+ */
+interface EmbeddingBackend extends AutoCloseable {
+
+    String DJL = "djl";
+    String ONNX = "onnx";
+
+    /**
+     * 后端名称
+     */
+    String getName();
+
+    /**
+     * 批量推理，实现需支持多线程并发调用
+     */
+    List<float[]> embed(List<Encoding> encodings) throws Exception;
+
+    /**
+     * 运行统计
+     */
+    Map<String, Object> getStats();
+
+    @Override
+    void close();
+}
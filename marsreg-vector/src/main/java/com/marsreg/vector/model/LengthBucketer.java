@@ -0,0 +1,140 @@
+package com.marsreg.vector.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按 token 长度规划推理批次。每批只填充到批内最长长度，长度相近的输入分在同一批可减少填充浪费：
+ * <ul>
+ *     <li>none：保持原始顺序切分</li>
+ *     <li>sorted：按长度排序后切分，填充最少</li>
+ *     <li>boundaries：按长度边界分桶，桶内保持原始顺序</li>
+ * </ul>
+ * maxTokensPerBatch 为0时每批条数不超过 maxBatchSize；大于0时批次大小由 token 预算决定，
+ * 批内条数乘以最长长度不超过该值，短文本因此可以组成超过 maxBatchSize 的批，条数上限为 maxBatchRows
+ */
+public class LengthBucketer {
+
+    public static final String NONE = "none";
+    public static final String SORTED = "sorted";
+    public static final String BOUNDARIES = "boundaries";
+
+    private final String strategy;
+    private final int maxBatchRows;
+    private final int maxTokensPerBatch;
+    private final int[] boundaries;
+
+    public LengthBucketer(String strategy, int maxBatchSize, int maxTokensPerBatch, int maxBatchRows,
+                          List<Integer> boundaries) {
+        this.strategy = strategy == null ? SORTED : strategy.toLowerCase();
+        if (!List.of(NONE, SORTED, BOUNDARIES).contains(this.strategy)) {
+            throw new IllegalArgumentException("不支持的分桶策略: " + strategy);
+        }
+        this.maxTokensPerBatch = Math.max(0, maxTokensPerBatch);
+        this.maxBatchRows = this.maxTokensPerBatch > 0
+            ? Math.max(Math.max(1, maxBatchSize), maxBatchRows) : Math.max(1, maxBatchSize);
+        this.boundaries = boundaries == null ? new int[0]
+            : boundaries.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * @param lengths 每条输入的 token 数
+     * @return 各批次包含的原始下标
+     */
+    public List<int[]> plan(int[] lengths) {
+        int[] order;
+        switch (strategy) {
+            case SORTED:
+                order = sortByLength(lengths);
+                break;
+            case BOUNDARIES:
+                order = groupByBoundary(lengths);
+                break;
+            default:
+                order = new int[lengths.length];
+                Arrays.setAll(order, i -> i);
+                break;
+        }
+        return chunk(order, lengths);
+    }
+
+    /**
+     * 批次计划实际参与计算的 token 数（含填充），用于评估填充浪费
+     */
+    public static long paddedTokens(int[] lengths, List<int[]> batches) {
+        long total = 0;
+        for (int[] batch : batches) {
+            int max = 0;
+            for (int index : batch) {
+                max = Math.max(max, lengths[index]);
+            }
+            total += (long) max * batch.length;
+        }
+        return total;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    private List<int[]> chunk(int[] order, int[] lengths) {
+        List<int[]> batches = new ArrayList<>();
+        int start = 0;
+        int maxLength = 0;
+        for (int i = 0; i < order.length; i++) {
+            int length = lengths[order[i]];
+            int count = i - start;
+            boolean newBucket = strategy.equals(BOUNDARIES) && count > 0
+                && bucketOf(length) != bucketOf(lengths[order[i - 1]]);
+            int nextMax = Math.max(maxLength, length);
+            boolean overTokens = maxTokensPerBatch > 0 && (long) (count + 1) * nextMax > maxTokensPerBatch;
+            if (count > 0 && (count >= maxBatchRows || overTokens || newBucket)) {
+                batches.add(Arrays.copyOfRange(order, start, i));
+                start = i;
+                nextMax = length;
+            }
+            maxLength = nextMax;
+        }
+        if (start < order.length) {
+            batches.add(Arrays.copyOfRange(order, start, order.length));
+        }
+        return batches;
+    }
+
+    private static int[] sortByLength(int[] lengths) {
+        // 高32位存长度、低32位存下标，排序后长度相同的保持原始顺序
+        long[] keys = new long[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            keys[i] = ((long) lengths[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[lengths.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    private int[] groupByBoundary(int[] lengths) {
+        long[] keys = new long[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            keys[i] = ((long) bucketOf(lengths[i]) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[lengths.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    private int bucketOf(int length) {
+        for (int i = 0; i < boundaries.length; i++) {
+            if (length <= boundaries[i]) {
+                return i;
+            }
+        }
+        return boundaries.length;
+    }
+}
@@ -0,0 +1,184 @@
+package com.marsreg.vector.model;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 动态微批处理器：把并发提交的单条请求在最多 maxDelayMillis 毫秒或 maxBatchSize 条内攒成一批，
+ * 由后台线程一次调用批处理函数，再把结果按顺序分发给各请求。
+ * 队列为空时第一条请求到达后立即开始计时，低负载下额外延迟不超过 maxDelayMillis。
+ * 异步批处理函数提交后立即返回，后台线程继续攒下一批，多个批次可以同时执行
+ */
+@Slf4j
+public class MicroBatcher<I, O> implements AutoCloseable {
+
+    private final Function<List<I>, CompletableFuture<List<O>>> batchFunction;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Request<I, O>> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong itemCount = new AtomicLong();
+
+    public MicroBatcher(String name, Function<List<I>, List<O>> batchFunction, int maxBatchSize, long maxDelayMillis) {
+        this(maxBatchSize, maxDelayMillis, name, inputs -> CompletableFuture.completedFuture(batchFunction.apply(inputs)));
+    }
+
+    /**
+     * 批处理函数返回 future，后台线程不等待批次完成
+     */
+    public static <I, O> MicroBatcher<I, O> async(String name, Function<List<I>, CompletableFuture<List<O>>> batchFunction,
+                                                  int maxBatchSize, long maxDelayMillis) {
+        return new MicroBatcher<>(maxBatchSize, maxDelayMillis, name, batchFunction);
+    }
+
+    private MicroBatcher(int maxBatchSize, long maxDelayMillis, String name,
+                         Function<List<I>, CompletableFuture<List<O>>> batchFunction) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize必须大于0");
+        }
+        this.batchFunction = batchFunction;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public CompletableFuture<O> submit(I input) {
+        CompletableFuture<O> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("微批处理器已关闭"));
+            return future;
+        }
+        queue.add(new Request<>(input, future));
+        return future;
+    }
+
+    public int pendingSize() {
+        return queue.size();
+    }
+
+    /**
+     * 平均每批的条数
+     */
+    public double getAverageBatchSize() {
+        long batches = batchCount.get();
+        return batches == 0 ? 0.0 : (double) itemCount.get() / batches;
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Request<I, O> request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(new IllegalStateException("微批处理器已关闭"));
+        }
+    }
+
+    private void run() {
+        List<Request<I, O>> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Request<I, O> first = queue.take();
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    // 先取走已排队的请求，队列为空时才等待到截止时间
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Request<I, O> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                process(batch);
+            } catch (InterruptedException e) {
+                // 关闭时已取出的请求仍然执行完
+                if (!batch.isEmpty()) {
+                    process(batch);
+                }
+                if (!running) {
+                    break;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<Request<I, O>> batch) {
+        // 批次完成时调用方已清空列表，这里保留一份
+        List<Request<I, O>> requests = new ArrayList<>(batch);
+        List<I> inputs = new ArrayList<>(requests.size());
+        for (Request<I, O> request : requests) {
+            inputs.add(request.input);
+        }
+        CompletableFuture<List<O>> pending;
+        try {
+            pending = batchFunction.apply(inputs);
+        } catch (Throwable e) {
+            fail(requests, e);
+            return;
+        }
+        pending.whenComplete((outputs, error) -> {
+            if (error != null) {
+                fail(requests, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            if (outputs.size() != inputs.size()) {
+                fail(requests, new IllegalStateException("批处理结果数量不匹配: " + outputs.size() + " != " + inputs.size()));
+                return;
+            }
+            for (int i = 0; i < requests.size(); i++) {
+                requests.get(i).future.complete(outputs.get(i));
+            }
+            batchCount.incrementAndGet();
+            itemCount.addAndGet(requests.size());
+        });
+    }
+
+    private void fail(List<Request<I, O>> requests, Throwable error) {
+        log.error("微批处理失败: size={}", requests.size(), error);
+        for (Request<I, O> request : requests) {
+            request.future.completeExceptionally(error);
+        }
+    }
+
+    private static final class Request<I, O> {
+        final I input;
+        final CompletableFuture<O> future;
+
+        Request(I input, CompletableFuture<O> future) {
+            this.input = input;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.marsreg.vector.model;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import com.marsreg.vector.config.VectorizationConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个已加载的模型版本，包含分词器和推理后端。
+ * 请求通过 {@link #acquire()}/{@link #release()} 计数，版本被替换后 {@link #retire()}，
+ * 进行中的请求全部结束时自动关闭
+ */
+@Slf4j
+final class ModelVersion implements AutoCloseable {
+
+    private final String id;
+    private final String path;
+    private final long loadedAt;
+    private final HuggingFaceTokenizer tokenizer;
+    private final EmbeddingBackend backend;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final CompletableFuture<Void> drained = new CompletableFuture<>();
+    private volatile boolean retired;
+
+    ModelVersion(String id, String path, HuggingFaceTokenizer tokenizer, EmbeddingBackend backend) {
+        this.id = id;
+        this.path = path;
+        this.loadedAt = System.currentTimeMillis();
+        this.tokenizer = tokenizer;
+        this.backend = backend;
+    }
+
+    /**
+     * 从本地目录加载模型和分词器，path 为远程地址时按模型名称获取分词器。
+     * 推理后端由 model.backend 决定：djl 为全精度 PyTorch，onnx 为 ONNX Runtime（通常是int8量化模型）
+     */
+    static ModelVersion load(String id, String path, VectorizationConfig.Model config) throws Exception {
+        HuggingFaceTokenizer.Builder builder = HuggingFaceTokenizer.builder()
+            .optMaxLength(config.getMaxSequenceLength())
+            .optTruncation(true)
+            .optPadding(false);
+        if (path != null && !path.contains("://")) {
+            // 本地模型目录下需包含 tokenizer.json
+            builder.optTokenizerPath(Paths.get(path));
+        } else {
+            builder.optTokenizerName(config.getName());
+        }
+        HuggingFaceTokenizer tokenizer = builder.build();
+        try {
+            EmbeddingBackend backend = EmbeddingBackend.ONNX.equalsIgnoreCase(config.getBackend())
+                ? OnnxEmbeddingBackend.load(path, config)
+                : DjlEmbeddingBackend.load(path, config);
+            return new ModelVersion(id, path, tokenizer, backend);
+        } catch (Exception e) {
+            tokenizer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 登记一个进行中的请求，版本已退役时返回false
+     */
+    boolean acquire() {
+        inFlight.incrementAndGet();
+        if (retired) {
+            release();
+            return false;
+        }
+        return true;
+    }
+
+    void release() {
+        if (inFlight.decrementAndGet() == 0 && retired) {
+            close();
+        }
+    }
+
+    /**
+     * 标记为退役，不再接受新请求
+     * @return 进行中的请求全部结束、版本关闭后完成
+     */
+    CompletableFuture<Void> retire() {
+        retired = true;
+        if (inFlight.get() == 0) {
+            close();
+        }
+        return drained;
+    }
+
+    Encoding[] tokenize(List<String> texts) {
+        return tokenizer.batchEncode(texts);
+    }
+
+    List<float[]> embed(List<Encoding> encodings) throws Exception {
+        return backend.embed(encodings);
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            backend.close();
+            tokenizer.close();
+            log.info("模型版本已关闭: id={}, path={}", id, path);
+        } catch (Exception e) {
+            log.warn("关闭模型版本失败: id={}", id, e);
+        } finally {
+            drained.complete(null);
+        }
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    long getLoadedAt() {
+        return loadedAt;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    String getBackendName() {
+        return backend.getName();
+    }
+
+    Map<String, Object> getPoolStats() {
+        return backend.getStats();
+    }
+}
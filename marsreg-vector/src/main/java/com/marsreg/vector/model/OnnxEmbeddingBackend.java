@@ -0,0 +1,242 @@
+package com.marsreg.vector.model;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.exception.VectorizationException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 ONNX Runtime 的 CPU 推理后端，用于加载 scripts/convert_model.py 导出的 int8 动态量化模型。
+ * OrtSession 本身线程安全，这里只用信号量限制同时推理的批数，避免与算子内部线程池争抢 CPU
+ */
+@Slf4j
+class OnnxEmbeddingBackend implements EmbeddingBackend {
+
+    private static final String INPUT_IDS = "input_ids";
+    private static final String ATTENTION_MASK = "attention_mask";
+    private static final String TOKEN_TYPE_IDS = "token_type_ids";
+    private static final String SENTENCE_EMBEDDING = "sentence_embedding";
+
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final Path modelFile;
+    private final boolean includeTokenTypes;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final long borrowTimeoutMillis;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder textCount = new LongAdder();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    private OnnxEmbeddingBackend(OrtEnvironment environment, OrtSession session, Path modelFile,
+                                 VectorizationConfig.Model config) {
+        this.environment = environment;
+        this.session = session;
+        this.modelFile = modelFile;
+        // 以模型实际声明的输入为准，导出时带了 token_type_ids 就必须提供
+        this.includeTokenTypes = session.getInputNames().contains(TOKEN_TYPE_IDS);
+        this.maxConcurrency = config.getPool().getSize();
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.borrowTimeoutMillis = config.getPool().getBorrowTimeoutMillis();
+    }
+
+    /**
+     * path 可以是 .onnx 文件，也可以是包含 onnx.model-file 的模型目录
+     */
+    static OnnxEmbeddingBackend load(String path, VectorizationConfig.Model config) throws OrtException {
+        if (path == null || path.contains("://")) {
+            throw new VectorizationException("ONNX后端只支持本地模型文件: " + path);
+        }
+        VectorizationConfig.Model.Onnx onnx = config.getOnnx();
+        Path modelFile = path.endsWith(".onnx") ? Paths.get(path) : Paths.get(path, onnx.getModelFile());
+        if (!Files.isRegularFile(modelFile)) {
+            throw new VectorizationException("ONNX模型文件不存在: " + modelFile);
+        }
+
+        OrtEnvironment environment = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            if (onnx.getIntraOpThreads() > 0) {
+                options.setIntraOpNumThreads(onnx.getIntraOpThreads());
+            }
+            if (onnx.getInterOpThreads() > 0) {
+                options.setInterOpNumThreads(onnx.getInterOpThreads());
+            }
+            OrtSession session = environment.createSession(modelFile.toString(), options);
+            log.info("加载ONNX模型: file={}, inputs={}, outputs={}",
+                modelFile, session.getInputNames(), session.getOutputNames());
+            return new OnnxEmbeddingBackend(environment, session, modelFile, config);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return ONNX;
+    }
+
+    @Override
+    public List<float[]> embed(List<Encoding> encodings) throws Exception {
+        if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("等待ONNX推理超时: " + borrowTimeoutMillis + "ms");
+        }
+        long start = System.nanoTime();
+        try {
+            return run(encodings);
+        } finally {
+            permits.release();
+            totalNanos.addAndGet(System.nanoTime() - start);
+            batchCount.increment();
+            textCount.add(encodings.size());
+        }
+    }
+
+    private List<float[]> run(List<Encoding> encodings) throws OrtException {
+        Inputs packed = Inputs.pack(encodings, includeTokenTypes);
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            // 直接用一维缓冲区加形状创建张量，避免嵌套数组逐行拷贝
+            inputs.put(INPUT_IDS, OnnxTensor.createTensor(environment, LongBuffer.wrap(packed.ids), packed.shape()));
+            inputs.put(ATTENTION_MASK, OnnxTensor.createTensor(environment, LongBuffer.wrap(packed.mask), packed.shape()));
+            if (packed.types != null) {
+                inputs.put(TOKEN_TYPE_IDS, OnnxTensor.createTensor(environment, LongBuffer.wrap(packed.types), packed.shape()));
+            }
+            try (OrtSession.Result result = session.run(inputs)) {
+                Optional<OnnxValue> pooled = result.get(SENTENCE_EMBEDDING);
+                OnnxTensor output = (OnnxTensor) (pooled.isPresent() ? pooled.get() : result.get(0));
+                long[] shape = output.getInfo().getShape();
+                FloatBuffer buffer = output.getFloatBuffer();
+                float[] flat = new float[buffer.remaining()];
+                buffer.get(flat);
+                if (shape.length == 2) {
+                    return split(flat, (int) shape[0], (int) shape[1]);
+                }
+                return meanPool(flat, packed.batch, packed.length, (int) shape[2], packed.mask);
+            }
+        } finally {
+            inputs.values().forEach(OnnxTensor::close);
+        }
+    }
+
+    /**
+     * 一批已分词文本填充到批内最长长度后的行优先输入，填充位置的 attention mask 为0
+     */
+    static final class Inputs {
+        final int batch;
+        final int length;
+        final long[] ids;
+        final long[] mask;
+        final long[] types;
+
+        private Inputs(int batch, int length, boolean includeTokenTypes) {
+            this.batch = batch;
+            this.length = length;
+            this.ids = new long[batch * length];
+            this.mask = new long[batch * length];
+            this.types = includeTokenTypes ? new long[batch * length] : null;
+        }
+
+        static Inputs pack(List<Encoding> encodings, boolean includeTokenTypes) {
+            int length = 0;
+            for (Encoding encoding : encodings) {
+                length = Math.max(length, encoding.getIds().length);
+            }
+            Inputs inputs = new Inputs(encodings.size(), length, includeTokenTypes);
+            for (int i = 0; i < encodings.size(); i++) {
+                Encoding encoding = encodings.get(i);
+                long[] encodingIds = encoding.getIds();
+                System.arraycopy(encodingIds, 0, inputs.ids, i * length, encodingIds.length);
+                System.arraycopy(encoding.getAttentionMask(), 0, inputs.mask, i * length, encodingIds.length);
+                if (inputs.types != null) {
+                    System.arraycopy(encoding.getTypeIds(), 0, inputs.types, i * length, encodingIds.length);
+                }
+            }
+            return inputs;
+        }
+
+        long[] shape() {
+            return new long[]{batch, length};
+        }
+    }
+
+    private static List<float[]> split(float[] flat, int batch, int dimension) {
+        List<float[]> result = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            result.add(Arrays.copyOfRange(flat, i * dimension, (i + 1) * dimension));
+        }
+        return result;
+    }
+
+    /**
+     * 按 attention mask 对行优先的 [batch, length, dimension] token 级输出做平均池化，
+     * 与 {@link BatchEmbeddingTranslator} 的计算一致
+     */
+    static List<float[]> meanPool(float[] tokenEmbeddings, int batch, int length, int dimension, long[] mask) {
+        List<float[]> result = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            float[] sum = new float[dimension];
+            float count = 0;
+            for (int t = 0; t < length; t++) {
+                if (mask[i * length + t] == 0) {
+                    continue;
+                }
+                int offset = (i * length + t) * dimension;
+                for (int d = 0; d < dimension; d++) {
+                    sum[d] += tokenEmbeddings[offset + d];
+                }
+                count++;
+            }
+            float scale = 1f / Math.max(count, 1e-9f);
+            for (int d = 0; d < dimension; d++) {
+                sum[d] *= scale;
+            }
+            result.add(sum);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        long batches = batchCount.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("backend", ONNX);
+        stats.put("modelFile", modelFile.toString());
+        stats.put("maxSize", maxConcurrency);
+        stats.put("borrowed", maxConcurrency - permits.availablePermits());
+        stats.put("waiting", permits.getQueueLength());
+        stats.put("batchCount", batches);
+        stats.put("textCount", textCount.sum());
+        stats.put("avgBatchMillis", batches == 0 ? 0.0 : totalNanos.get() / 1e6 / batches);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        try {
+            session.close();
+        } catch (OrtException e) {
+            log.warn("关闭ONNX会话失败: file={}", modelFile, e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.marsreg.vector.model;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 固定容量的预测器池。预测器按需创建，总数不超过 maxSize，借出后必须归还；
+ * 池满时借用方排队等待，超时抛出异常。关闭后归还的预测器直接关闭，从而限制原生内存的占用
+ */
+@Slf4j
+public class PredictorPool<T extends AutoCloseable> implements AutoCloseable {
+
+    private final Supplier<T> factory;
+    private final int maxSize;
+    private final long borrowTimeoutNanos;
+    private final BlockingQueue<T> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger borrowed = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder waitCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public PredictorPool(Supplier<T> factory, int maxSize, long borrowTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("预测器池大小必须大于0");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * 借出一个预测器，使用完毕后必须调用 {@link #release}
+     */
+    public T borrow() {
+        if (closed) {
+            throw new IllegalStateException("预测器池已关闭");
+        }
+        T predictor = idle.poll();
+        if (predictor == null) {
+            predictor = tryCreate();
+        }
+        if (predictor == null) {
+            predictor = await();
+        }
+        borrowCount.increment();
+        borrowed.incrementAndGet();
+        return predictor;
+    }
+
+    public void release(T predictor) {
+        borrowed.decrementAndGet();
+        if (closed || !idle.offer(predictor)) {
+            destroy(predictor);
+        }
+    }
+
+    /**
+     * 归还已损坏的预测器，关闭它并腾出一个创建名额
+     */
+    public void invalidate(T predictor) {
+        borrowed.decrementAndGet();
+        destroy(predictor);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        T predictor;
+        while ((predictor = idle.poll()) != null) {
+            destroy(predictor);
+        }
+        if (borrowed.get() > 0) {
+            log.warn("预测器池关闭时仍有{}个预测器未归还，归还时关闭", borrowed.get());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long borrows = borrowCount.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxSize", maxSize);
+        stats.put("created", created.get());
+        stats.put("idle", idle.size());
+        stats.put("borrowed", borrowed.get());
+        stats.put("borrowCount", borrows);
+        stats.put("waitCount", waitCount.sum());
+        stats.put("timeoutCount", timeoutCount.sum());
+        stats.put("avgWaitMillis", borrows == 0 ? 0.0 : totalWaitNanos.get() / 1e6 / borrows);
+        stats.put("maxWaitMillis", maxWaitNanos.get() / 1e6);
+        return stats;
+    }
+
+    private T tryCreate() {
+        while (true) {
+            int current = created.get();
+            if (current >= maxSize) {
+                return null;
+            }
+            if (created.compareAndSet(current, current + 1)) {
+                try {
+                    return factory.get();
+                } catch (RuntimeException e) {
+                    created.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private T await() {
+        waitCount.increment();
+        long start = System.nanoTime();
+        try {
+            long deadline = start + borrowTimeoutNanos;
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                // 等待期间有预测器被作废时可以新建
+                T predictor = idle.poll(Math.min(Math.max(remaining, 0), TimeUnit.MILLISECONDS.toNanos(100)),
+                    TimeUnit.NANOSECONDS);
+                if (predictor == null) {
+                    predictor = tryCreate();
+                }
+                if (predictor != null) {
+                    return predictor;
+                }
+                if (closed) {
+                    throw new IllegalStateException("预测器池已关闭");
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    timeoutCount.increment();
+                    throw new IllegalStateException("获取预测器超时: " + TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos) + "ms");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待预测器时被中断", e);
+        } finally {
+            long waited = System.nanoTime() - start;
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulate(waited);
+        }
+    }
+
+    private void destroy(T predictor) {
+        created.decrementAndGet();
+        try {
+            predictor.close();
+        } catch (Exception e) {
+            log.warn("关闭预测器失败", e);
+        }
+    }
+}
@@ -1,234 +1,382 @@
 package com.marsreg.vector.model;
 
-import ai.djl.Device;
-import ai.djl.Model;
-import ai.djl.inference.Predictor;
-import ai.djl.modality.Input;
-import ai.djl.modality.Output;
-import ai.djl.ndarray.NDArray;
-import ai.djl.ndarray.NDList;
-import ai.djl.repository.zoo.Criteria;
-import ai.djl.repository.zoo.ZooModel;
-import ai.djl.training.util.ProgressBar;
-import ai.djl.translate.Translator;
-import ai.djl.translate.TranslatorContext;
+import ai.djl.huggingface.tokenizers.Encoding;
 import com.marsreg.vector.config.VectorizationConfig;
 import com.marsreg.vector.exception.VectorizationException;
+import com.marsreg.vector.scheduler.EmbeddingLane;
+import com.marsreg.vector.scheduler.EmbeddingScheduler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class SentenceTransformerModel implements VectorizationModel {
-    
+
+    // 使用一些常见文本进行预热
+    private static final List<String> WARMUP_TEXTS = List.of(
+        "这是一个测试文本",
+        "Hello, world!",
+        "测试向量化模型",
+        "人工智能和机器学习",
+        "自然语言处理技术"
+    );
+
     private final VectorizationConfig.Model config;
-    private final AtomicReference<ZooModel<Input, Output>> modelRef = new AtomicReference<>();
-    private final ReentrantReadWriteLock modelLock = new ReentrantReadWriteLock();
+    // 所有推理都经调度器按通道排队后在其工作线程上执行
+    private final EmbeddingScheduler scheduler;
+    // 当前对外服务的模型版本，切换时整体替换
+    private final AtomicReference<ModelVersion> activeVersion = new AtomicReference<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final Object warmupLock = new Object();
     private volatile boolean isWarmedUp = false;
-    
-    // 预测器缓存
-    private final ThreadLocal<Predictor<Input, Output>> predictorCache = new ThreadLocal<>();
-    private static final int PREDICTOR_CACHE_TIMEOUT = 300; // 5分钟
-    
-    private final Model model;
-    
+
+    // 模型切换状态，由 swapExecutor 单线程推进
+    private final Object swapLock = new Object();
+    private volatile Map<String, Object> swapStatus = Map.of("state", SwapState.IDLE.name());
+    private ExecutorService swapExecutor;
+
+    // 每个通道独立攒批，避免入库请求和查询合并到同一批里
+    private final Map<EmbeddingLane, MicroBatcher<String, float[]>> microBatchers = new EnumMap<>(EmbeddingLane.class);
+    private volatile LengthBucketer bucketer;
+    private VersionLoader versionLoader = ModelVersion::load;
+
+    /**
+     * 模型切换阶段
+     */
+    public enum SwapState {
+        IDLE, LOADING, WARMING, SWITCHING, DRAINING, COMPLETED, FAILED
+    }
+
+    /**
+     * 按版本号和路径加载模型版本
+     */
+    @FunctionalInterface
+    interface VersionLoader {
+        ModelVersion load(String id, String path, VectorizationConfig.Model config) throws Exception;
+    }
+
     @Override
     public String getModelName() {
         return config.getName();
     }
-    
+
     @Override
     public String getModelVersion() {
         return config.getVersion();
     }
-    
+
     @Override
     public int getDimension() {
         return config.getDimension();
     }
-    
+
     public String getModelPath() {
-        return config.getPath();
+        ModelVersion version = activeVersion.get();
+        return version != null ? version.getPath() : config.getPath();
     }
-    
+
     @Override
     public void warmup() {
         if (isWarmedUp) {
             return;
         }
-        
+
         try {
-            modelLock.writeLock().lock();
-            try {
+            synchronized (warmupLock) {
                 if (isWarmedUp) {
                     return;
                 }
-                
-                // 使用一些常见文本进行预热
-                List<String> warmupTexts = List.of(
-                    "这是一个测试文本",
-                    "Hello, world!",
-                    "测试向量化模型",
-                    "人工智能和机器学习",
-                    "自然语言处理技术"
-                );
-                
+
                 // 预热模型
-                encode(warmupTexts);
+                encode(WARMUP_TEXTS);
                 isWarmedUp = true;
                 log.info("向量化模型预热完成");
-            } finally {
-                modelLock.writeLock().unlock();
             }
         } catch (Exception e) {
             log.error("向量化模型预热失败", e);
             throw new VectorizationException("向量化模型预热失败: " + e.getMessage());
         }
     }
-    
+
+    /**
+     * 蓝绿切换模型：后台加载新版本并预热，完成后原子替换当前版本，
+     * 旧版本上进行中的请求继续执行，全部结束后关闭。进度通过 {@link #getSwapStatus()} 查询
+     */
     @Override
     public void update(String modelPath) {
+        if (modelPath == null || modelPath.isBlank()) {
+            throw new VectorizationException("模型路径不能为空");
+        }
+        synchronized (swapLock) {
+            String state = (String) swapStatus.get("state");
+            if (!SwapState.IDLE.name().equals(state) && !SwapState.COMPLETED.name().equals(state)
+                    && !SwapState.FAILED.name().equals(state)) {
+                throw new VectorizationException("模型切换正在进行中: " + swapStatus.get("targetPath"));
+            }
+            if (swapExecutor == null) {
+                swapExecutor = Executors.newSingleThreadExecutor(r -> {
+                    Thread thread = new Thread(r, "embedding-model-swap");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            String versionId = "v" + versionSequence.incrementAndGet();
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("targetPath", modelPath);
+            status.put("targetVersion", versionId);
+            status.put("startedAt", System.currentTimeMillis());
+            swapStatus = status;
+            setSwapState(SwapState.LOADING, "正在加载新模型");
+            swapExecutor.submit(() -> swap(versionId, modelPath));
+        }
+    }
+
+    /**
+     * 最近一次模型切换的进度
+     */
+    public Map<String, Object> getSwapStatus() {
+        Map<String, Object> status = new LinkedHashMap<>(swapStatus);
+        ModelVersion version = activeVersion.get();
+        if (version != null) {
+            status.put("activeVersion", version.getId());
+            status.put("activePath", version.getPath());
+            status.put("activeBackend", version.getBackendName());
+        }
+        return status;
+    }
+
+    private void swap(String versionId, String modelPath) {
+        long start = System.currentTimeMillis();
+        ModelVersion next = null;
+        boolean switched = false;
         try {
-            modelLock.writeLock().lock();
-            try {
-                // 关闭所有预测器
-                closeAllPredictors();
-                
-                // 关闭旧模型
-                ZooModel<Input, Output> oldModel = modelRef.get();
-                if (oldModel != null) {
-                    oldModel.close();
+            next = versionLoader.load(versionId, modelPath, config);
+
+            // 输出维度与配置不一致时不切换，否则新向量无法写入现有集合
+            setSwapState(SwapState.WARMING, "正在预热新模型");
+            int outputDimension = encodeWith(next, WARMUP_TEXTS).get(0).length;
+            if (outputDimension != config.getDimension()) {
+                throw new VectorizationException("新模型输出维度" + outputDimension
+                    + "与配置维度" + config.getDimension() + "不一致");
+            }
+
+            setSwapState(SwapState.SWITCHING, "正在切换流量");
+            ModelVersion previous = activeVersion.getAndSet(next);
+            switched = true;
+            isWarmedUp = true;
+            log.info("向量化模型已切换: {} -> {}, path={}",
+                previous == null ? "-" : previous.getId(), versionId, modelPath);
+
+            if (previous != null) {
+                putSwapStatus("previousVersion", previous.getId());
+                putSwapStatus("drainingInFlight", previous.getInFlight());
+                setSwapState(SwapState.DRAINING, "等待旧版本请求完成");
+                try {
+                    previous.retire().get(config.getDrainTimeoutSeconds(), TimeUnit.SECONDS);
+                } catch (TimeoutException e) {
+                    log.warn("旧模型版本{}秒内未排空，剩余请求完成后自动关闭: version={}, inFlight={}",
+                        config.getDrainTimeoutSeconds(), previous.getId(), previous.getInFlight());
                 }
-                
-                // 加载新模型
-                Criteria<Input, Output> criteria = Criteria.builder()
-                    .setTypes(Input.class, Output.class)
-                    .optModelPath(java.nio.file.Paths.get(modelPath))
-                    .optDevice(Device.cpu())
-                    .optProgress(new ProgressBar())
-                    .build();
-                
-                ZooModel<Input, Output> newModel = criteria.loadModel();
-                modelRef.set(newModel);
-                isWarmedUp = false;
-                
-                // 预热新模型
-                warmup();
-                
-                log.info("向量化模型更新完成");
-            } finally {
-                modelLock.writeLock().unlock();
             }
+            putSwapStatus("durationMillis", System.currentTimeMillis() - start);
+            setSwapState(SwapState.COMPLETED, "模型切换完成");
+            log.info("向量化模型更新完成");
         } catch (Exception e) {
             log.error("更新向量化模型失败", e);
-            throw new VectorizationException("更新向量化模型失败: " + e.getMessage());
+            if (next != null && !switched) {
+                next.close();
+            }
+            putSwapStatus("durationMillis", System.currentTimeMillis() - start);
+            setSwapState(SwapState.FAILED, "更新向量化模型失败: " + e.getMessage());
         }
     }
-    
-    private ZooModel<Input, Output> getModel() {
-        try {
-            ZooModel<Input, Output> model = modelRef.get();
-            if (model == null) {
-                modelLock.writeLock().lock();
-                try {
-                    model = modelRef.get();
-                    if (model == null) {
-                        Criteria<Input, Output> criteria = Criteria.builder()
-                            .setTypes(Input.class, Output.class)
-                            .optModelPath(java.nio.file.Paths.get(config.getPath()))
-                            .optDevice(Device.cpu())
-                            .optProgress(new ProgressBar())
-                            .build();
-                        model = criteria.loadModel();
-                        modelRef.set(model);
-                    }
-                } finally {
-                    modelLock.writeLock().unlock();
-                }
+
+    private void setSwapState(SwapState state, String message) {
+        synchronized (swapLock) {
+            Map<String, Object> status = new LinkedHashMap<>(swapStatus);
+            status.put("state", state.name());
+            status.put("message", message);
+            status.put("updatedAt", System.currentTimeMillis());
+            swapStatus = status;
+        }
+    }
+
+    private void putSwapStatus(String key, Object value) {
+        synchronized (swapLock) {
+            Map<String, Object> status = new LinkedHashMap<>(swapStatus);
+            status.put(key, value);
+            swapStatus = status;
+        }
+    }
+
+    /**
+     * 登记一个使用当前版本的请求，首次使用时加载配置的模型
+     */
+    private ModelVersion acquireVersion() {
+        while (true) {
+            ModelVersion version = activeVersion.get();
+            if (version == null) {
+                version = loadInitialVersion();
+            }
+            // 获取与登记之间版本可能已退役，重试即可拿到新版本
+            if (version.acquire()) {
+                return version;
             }
-            return model;
-        } catch (ai.djl.repository.zoo.ModelNotFoundException | ai.djl.MalformedModelException | java.io.IOException e) {
-            log.error("加载模型失败", e);
-            throw new RuntimeException("加载模型失败", e);
         }
     }
-    
-    private Predictor<Input, Output> getPredictor() {
-        try {
-            Predictor<Input, Output> predictor = predictorCache.get();
-            if (predictor == null) {
-                predictor = getModel().newPredictor();
-                predictorCache.set(predictor);
+
+    private ModelVersion loadInitialVersion() {
+        synchronized (swapLock) {
+            ModelVersion version = activeVersion.get();
+            if (version == null) {
+                try {
+                    version = versionLoader.load("v" + versionSequence.incrementAndGet(), config.getPath(), config);
+                    activeVersion.set(version);
+                } catch (Exception e) {
+                    log.error("加载模型失败", e);
+                    throw new RuntimeException("加载模型失败", e);
+                }
             }
-            return predictor;
-        } catch (Exception e) {
-            log.error("获取预测器失败", e);
-            throw new RuntimeException("获取预测器失败", e);
+            return version;
         }
     }
-    
-    private void returnPredictor(Predictor<Input, Output> predictor) {
-        // 预测器已经在缓存中，不需要额外操作
+
+    void setVersionLoader(VersionLoader versionLoader) {
+        this.versionLoader = versionLoader;
     }
-    
-    private void closeAllPredictors() {
-        Predictor<Input, Output> predictor = predictorCache.get();
-        if (predictor != null) {
-            predictor.close();
-            predictorCache.remove();
+
+    /**
+     * 当前版本推理后端的并发与等待统计
+     */
+    public Map<String, Object> getPoolStats() {
+        ModelVersion version = activeVersion.get();
+        return version == null ? new HashMap<>() : version.getPoolStats();
+    }
+
+    @PostConstruct
+    public void init() {
+        VectorizationConfig.Model.MicroBatch microBatch = config.getMicroBatch();
+        if (Boolean.TRUE.equals(microBatch.getEnabled())) {
+            for (EmbeddingLane lane : EmbeddingLane.values()) {
+                // 攒好的批次异步提交到调度器，同一通道可以同时占用多个工作线程
+                microBatchers.put(lane, MicroBatcher.async("embedding-micro-batcher-" + lane.name().toLowerCase(),
+                    texts -> scheduler.submit(lane, texts.size(), () -> encodeWithActiveVersion(texts)),
+                    microBatch.getMaxBatchSize(), microBatch.getMaxDelayMillis()));
+            }
+            log.info("启用向量化微批处理: maxBatchSize={}, maxDelay={}ms",
+                microBatch.getMaxBatchSize(), microBatch.getMaxDelayMillis());
         }
     }
-    
+
     // 在Spring容器关闭时调用
+    @PreDestroy
     public void destroy() {
-        closeAllPredictors();
-        ZooModel<Input, Output> model = modelRef.get();
-        if (model != null) {
-            model.close();
+        microBatchers.values().forEach(MicroBatcher::close);
+        if (swapExecutor != null) {
+            swapExecutor.shutdownNow();
+        }
+        ModelVersion version = activeVersion.getAndSet(null);
+        if (version != null) {
+            version.close();
         }
     }
 
+    /**
+     * 单条文本向量化。启用微批处理时与同一通道的其他并发请求合并为一次批量推理，
+     * 已在调度器工作线程上时直接推理，不再经微批线程回到调度器排队
+     */
     public float[] encode(String text) {
+        MicroBatcher<String, float[]> microBatcher = microBatchers.get(EmbeddingLane.current());
+        if (microBatcher == null || scheduler.isWorkerThread()) {
+            return encode(List.of(text)).get(0);
+        }
         try {
-            Translator<String, float[]> translator = new TextEmbeddingTranslator();
-            try (Predictor<String, float[]> predictor = model.newPredictor(translator)) {
-                return predictor.predict(text);
+            return microBatcher.submit(text).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof VectorizationException vectorizationException) {
+                throw vectorizationException;
             }
-        } catch (Exception e) {
-            log.error("文本编码失败: {}", text, e);
-            throw new RuntimeException("文本编码失败", e);
+            log.error("文本编码失败: {}", text, cause);
+            throw new RuntimeException("文本编码失败", cause);
         }
     }
 
+    /**
+     * 批量文本向量化。在当前线程所属的通道排队，轮到后先整体分词，再按 token 长度分桶，
+     * 每批只填充到批内最长长度，结果按输入顺序返回
+     */
     public List<float[]> encode(List<String> texts) {
+        if (texts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return scheduler.execute(EmbeddingLane.current(), texts.size(), () -> encodeWithActiveVersion(texts));
+    }
+
+    private List<float[]> encodeWithActiveVersion(List<String> texts) {
+        ModelVersion version = acquireVersion();
         try {
-            Translator<String, float[]> translator = new TextEmbeddingTranslator();
-            try (Predictor<String, float[]> predictor = model.newPredictor(translator)) {
-                return texts.stream()
-                    .map(text -> {
-                        try {
-                            return predictor.predict(text);
-                        } catch (Exception e) {
-                            log.error("文本编码失败: {}", text, e);
-                            throw new RuntimeException("文本编码失败", e);
-                        }
-                    })
-                    .collect(Collectors.toList());
+            return encodeWith(version, texts);
+        } finally {
+            version.release();
+        }
+    }
+
+    private List<float[]> encodeWith(ModelVersion version, List<String> texts) {
+        Encoding[] encodings = version.tokenize(texts);
+        int[] lengths = new int[encodings.length];
+        for (int i = 0; i < encodings.length; i++) {
+            lengths[i] = encodings[i].getIds().length;
+        }
+        float[][] results = new float[texts.size()][];
+        for (int[] batch : getBucketer().plan(lengths)) {
+            List<Encoding> inputs = new ArrayList<>(batch.length);
+            for (int index : batch) {
+                inputs.add(encodings[index]);
+            }
+            List<float[]> outputs;
+            try {
+                outputs = version.embed(inputs);
+            } catch (Exception e) {
+                log.error("批量文本编码失败: version={}, size={}", version.getId(), inputs.size(), e);
+                throw new RuntimeException("批量文本编码失败", e);
+            }
+            for (int i = 0; i < batch.length; i++) {
+                results[batch[i]] = outputs.get(i);
             }
-        } catch (Exception e) {
-            log.error("批量文本编码失败", e);
-            throw new RuntimeException("批量文本编码失败", e);
         }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    private LengthBucketer getBucketer() {
+        LengthBucketer current = bucketer;
+        if (current == null) {
+            VectorizationConfig.Model.Bucketing bucketing = config.getBucketing();
+            current = new LengthBucketer(bucketing.getStrategy(), config.getBatchSize(),
+                bucketing.getMaxTokensPerBatch(), bucketing.getMaxBatchRows(), bucketing.getBoundaries());
+            bucketer = current;
+        }
+        return current;
     }
 
     @Override
@@ -254,19 +402,4 @@ public class SentenceTransformerModel implements VectorizationModel {
         }
         return result;
     }
-
-    private static class TextEmbeddingTranslator implements Translator<String, float[]> {
-        @Override
-        public float[] processOutput(TranslatorContext ctx, NDList list) {
-            NDArray array = list.get(0);
-            return array.toFloatArray();
-        }
-
-        @Override
-        public NDList processInput(TranslatorContext ctx, String input) {
-            NDList list = new NDList();
-            list.add(ctx.getNDManager().create(input));
-            return list;
-        }
-    }
-} 
\ No newline at end of file
+}
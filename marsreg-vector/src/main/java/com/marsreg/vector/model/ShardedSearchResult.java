@@ -0,0 +1,46 @@
+package com.marsreg.vector.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+public class ShardedSearchResult {
+    /**
+     * 合并后按相似度降序排列的结果
+     */
+    private Map<String, Float> results;
+
+    /**
+     * 参与本次搜索的分片数
+     */
+    private int shards;
+
+    /**
+     * 按时返回结果的分片数
+     */
+    private int respondedShards;
+
+    /**
+     * 超时的分片下标
+     */
+    private List<Integer> timedOutShards;
+
+    /**
+     * 失败的分片下标
+     */
+    private List<Integer> failedShards;
+
+    /**
+     * 有分片超时或失败，结果可能缺少这些分片中的向量
+     */
+    private boolean partial;
+
+    /**
+     * 扇出到合并完成的耗时（毫秒）
+     */
+    private long tookMillis;
+}
@@ -0,0 +1,78 @@
+package com.marsreg.vector.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * 向量元数据过滤条件。各字段之间为与关系，同一字段的多个取值为或关系，为空的字段不限制；
+ * 时间范围两端均包含，只给出一端时另一端不限
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VectorFilter {
+    /**
+     * 文档ID
+     */
+    private Set<String> documentIds;
+
+    /**
+     * 文档类型
+     */
+    private Set<String> types;
+
+    /**
+     * 租户
+     */
+    private Set<String> tenants;
+
+    /**
+     * 起始时间戳（毫秒）
+     */
+    private Long fromTimestamp;
+
+    /**
+     * 结束时间戳（毫秒）
+     */
+    private Long toTimestamp;
+
+    /**
+     * 是否没有任何条件
+     */
+    public boolean isEmpty() {
+        return (documentIds == null || documentIds.isEmpty())
+            && (types == null || types.isEmpty())
+            && (tenants == null || tenants.isEmpty())
+            && fromTimestamp == null && toTimestamp == null;
+    }
+
+    /**
+     * 元数据是否满足全部条件，用于在索引之外逐条校验
+     */
+    public boolean matches(VectorMetadata metadata) {
+        if (metadata == null) {
+            return isEmpty();
+        }
+        if (!contains(documentIds, metadata.getDocumentId())
+            || !contains(types, metadata.getType())
+            || !contains(tenants, metadata.getTenant())) {
+            return false;
+        }
+        if (fromTimestamp == null && toTimestamp == null) {
+            return true;
+        }
+        Long timestamp = metadata.getTimestamp();
+        return timestamp != null
+            && (fromTimestamp == null || timestamp >= fromTimestamp)
+            && (toTimestamp == null || timestamp <= toTimestamp);
+    }
+
+    private static boolean contains(Set<String> values, String value) {
+        return values == null || values.isEmpty() || values.contains(value);
+    }
+}
@@ -0,0 +1,47 @@
+package com.marsreg.vector.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 随向量保存的标量元数据，支持元数据过滤的向量存储为每个字段建立位图索引。为空的字段不参与索引
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VectorMetadata {
+    /**
+     * 文档ID
+     */
+    private String documentId;
+
+    /**
+     * 文档类型
+     */
+    private String type;
+
+    /**
+     * 租户
+     */
+    private String tenant;
+
+    /**
+     * 时间戳（毫秒）
+     */
+    private Long timestamp;
+
+    public static VectorMetadata ofDocument(String documentId) {
+        return VectorMetadata.builder().documentId(documentId).build();
+    }
+
+    /**
+     * 从 {@code 文档ID_分块ID} 形式的向量ID中取出文档ID，不是该形式时返回null
+     */
+    public static String documentIdOf(String vectorId) {
+        int separator = vectorId.indexOf('_');
+        return separator > 0 ? vectorId.substring(0, separator) : null;
+    }
+}
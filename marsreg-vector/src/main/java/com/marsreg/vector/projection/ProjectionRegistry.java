@@ -0,0 +1,218 @@
+package com.marsreg.vector.projection;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 管理投影矩阵的版本。每个版本保存为目录下的 {@code <version>.projection}，CURRENT 文件记录下次启用投影时使用的版本，
+ * STORED 文件记录存储中的向量实际使用的版本。两者不一致说明存储需要用新投影重建，此时拒绝启动，
+ * 避免查询向量和已存储向量处于不同的投影空间
+ */
+@Slf4j
+@Component
+public class ProjectionRegistry {
+
+    static final String CURRENT_FILE = "CURRENT";
+    static final String STORED_FILE = "STORED";
+    private static final String SUFFIX = ".projection";
+
+    private final VectorizationConfig.Storage.Projection config;
+    private final int inputDimension;
+    private final Path directory;
+    private volatile VectorProjection active;
+
+    public ProjectionRegistry(VectorizationConfig vectorizationConfig) {
+        this.config = vectorizationConfig.getStorage().getProjection();
+        this.inputDimension = vectorizationConfig.getModel().getDimension();
+        this.directory = Paths.get(config.getPath());
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            active = load(readPointer(CURRENT_FILE));
+        } catch (IOException e) {
+            log.error("加载投影矩阵失败: {}", directory, e);
+            throw new RuntimeException("加载投影矩阵失败", e);
+        }
+        if (!isEnabled()) {
+            return;
+        }
+        if (active == null) {
+            if (!VectorProjection.RANDOM.equalsIgnoreCase(config.getMethod())) {
+                throw new IllegalStateException("已启用向量投影但 " + directory
+                    + " 下没有训练好的PCA投影，请先在未启用投影时调用投影训练接口");
+            }
+            active = save(VectorProjection.random(inputDimension, config.getDimension(), config.getSeed()));
+        }
+        if (active.getOutputDimension() != config.getDimension()) {
+            throw new IllegalStateException("投影矩阵维度与配置不一致: version=" + active.getVersion()
+                + ", dimension=" + config.getDimension());
+        }
+        log.info("启用向量投影: version={}, {} -> {}", active.getVersion(),
+            active.getInputDimension(), active.getOutputDimension());
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(config.getEnabled());
+    }
+
+    /**
+     * 当前版本，未训练过时为null
+     */
+    public VectorProjection getActive() {
+        return active;
+    }
+
+    /**
+     * 用样本训练新的投影并设为当前版本，同时在样本上评估 recall@k。
+     * 已启用投影时新版本在重启并重建存储后生效
+     */
+    public synchronized Map<String, Object> train(String method, int dimension, List<float[]> samples) {
+        return train(method, dimension, samples, null);
+    }
+
+    /**
+     * 训练新的投影并写入 targetPath 目录，设为该目录的当前版本。投影版本与集合绑定，
+     * 从当前集合抽样为新集合训练时传入新集合的投影目录，新集合启用投影后即可加载
+     * @param targetPath 投影目录，为null时使用当前集合的目录
+     */
+    public synchronized Map<String, Object> train(String method, int dimension, List<float[]> samples, String targetPath) {
+        Path target = targetPath == null || targetPath.isBlank() ? directory : Paths.get(targetPath);
+        boolean local = target.toAbsolutePath().normalize().equals(directory.toAbsolutePath().normalize());
+        long start = System.currentTimeMillis();
+        VectorProjection projection = VectorProjection.RANDOM.equalsIgnoreCase(method)
+            ? VectorProjection.random(samples.isEmpty() ? inputDimension : samples.get(0).length, dimension, config.getSeed())
+            : VectorProjection.pca(samples, dimension);
+        long trainMillis = System.currentTimeMillis() - start;
+        double recall = projection.measureRecall(samples, config.getEvalQueries(), config.getEvalK());
+        save(target, projection);
+        if (local && !isEnabled()) {
+            active = projection;
+        }
+        log.info("投影训练完成: version={}, path={}, 样本数={}, 保留方差={}, recall@{}={}, 耗时={}ms", projection.getVersion(),
+            target, samples.size(), projection.getExplainedVariance(), config.getEvalK(), recall, trainMillis);
+
+        Map<String, Object> report = describe(projection);
+        report.put("samples", samples.size());
+        report.put("trainMillis", trainMillis);
+        report.put("recallK", config.getEvalK());
+        report.put("recall", recall);
+        report.put("path", target.toString());
+        report.put("requiresRebuild", local && isEnabled());
+        return report;
+    }
+
+    /**
+     * 校验存储中的向量使用的投影版本。首次使用时只有存储为空或已是投影后的维度才记录当前版本，
+     * 已有未投影的向量时拒绝启动
+     * @param storedSample 从存储中抽取的少量向量，只在首次绑定时读取
+     */
+    public synchronized void bindStore(VectorProjection projection, Supplier<List<float[]>> storedSample) {
+        try {
+            String stored = readPointer(STORED_FILE);
+            if (stored == null) {
+                for (float[] vector : storedSample.get()) {
+                    if (vector.length != projection.getOutputDimension()) {
+                        throw new IllegalStateException("存储中已有 " + vector.length + " 维的向量，与投影后的维度 "
+                            + projection.getOutputDimension() + " 不一致，请使用新的集合启用投影");
+                    }
+                }
+                writePointer(STORED_FILE, projection.getVersion());
+                return;
+            }
+            if (!stored.equals(projection.getVersion())) {
+                throw new IllegalStateException("存储中的向量使用投影版本 " + stored + "，当前版本为 " + projection.getVersion()
+                    + "，请使用新的集合重建向量，或把 " + directory.resolve(CURRENT_FILE) + " 改回 " + stored);
+            }
+        } catch (IOException e) {
+            log.error("读取投影版本记录失败: {}", directory, e);
+            throw new RuntimeException("读取投影版本记录失败", e);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", isEnabled());
+        status.put("path", directory.toString());
+        VectorProjection projection = active;
+        if (projection != null) {
+            status.putAll(describe(projection));
+        }
+        try {
+            status.put("storedVersion", readPointer(STORED_FILE));
+        } catch (IOException e) {
+            log.warn("读取投影版本记录失败: {}", directory, e);
+        }
+        return status;
+    }
+
+    private VectorProjection save(VectorProjection projection) {
+        return save(directory, projection);
+    }
+
+    private VectorProjection save(Path target, VectorProjection projection) {
+        try {
+            projection.write(target.resolve(projection.getVersion() + SUFFIX));
+            writePointer(target, CURRENT_FILE, projection.getVersion());
+            return projection;
+        } catch (IOException e) {
+            log.error("保存投影矩阵失败: {}", projection.getVersion(), e);
+            throw new RuntimeException("保存投影矩阵失败", e);
+        }
+    }
+
+    private VectorProjection load(String version) throws IOException {
+        if (version == null) {
+            return null;
+        }
+        return VectorProjection.read(directory.resolve(version + SUFFIX));
+    }
+
+    private String readPointer(String name) throws IOException {
+        Path file = directory.resolve(name);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String version = Files.readString(file, StandardCharsets.UTF_8).trim();
+        return version.isEmpty() ? null : version;
+    }
+
+    private void writePointer(String name, String version) throws IOException {
+        writePointer(directory, name, version);
+    }
+
+    private static void writePointer(Path target, String name, String version) throws IOException {
+        Files.createDirectories(target);
+        Path temp = Files.createTempFile(target, name, ".tmp");
+        Files.writeString(temp, version, StandardCharsets.UTF_8);
+        Files.move(temp, target.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Map<String, Object> describe(VectorProjection projection) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("version", projection.getVersion());
+        info.put("method", projection.getMethod());
+        info.put("inputDimension", projection.getInputDimension());
+        info.put("outputDimension", projection.getOutputDimension());
+        info.put("compressionRatio", (double) projection.getInputDimension() / projection.getOutputDimension());
+        if (!Double.isNaN(projection.getExplainedVariance())) {
+            info.put("explainedVariance", projection.getExplainedVariance());
+        }
+        info.put("createdAt", projection.getCreatedAt());
+        return info;
+    }
+}
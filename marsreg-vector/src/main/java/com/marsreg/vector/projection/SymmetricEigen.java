@@ -0,0 +1,113 @@
+package com.marsreg.vector.projection;
+
+import java.util.Arrays;
+
+/**
+ * 实对称矩阵的特征分解，使用循环 Jacobi 旋转。每次旋转把一个非对角元置零，
+ * 多轮扫描后非对角元平方和收敛到零，对角线即特征值，累积的旋转即特征向量
+ */
+final class SymmetricEigen {
+
+    private static final int MAX_SWEEPS = 100;
+
+    private final double[] values;
+    // 第 i 个特征向量存放在 vectors[i]，与 values 一起按特征值降序排列
+    private final double[][] vectors;
+
+    private SymmetricEigen(double[] values, double[][] vectors) {
+        this.values = values;
+        this.vectors = vectors;
+    }
+
+    double[] getValues() {
+        return values;
+    }
+
+    double[][] getVectors() {
+        return vectors;
+    }
+
+    static SymmetricEigen decompose(double[][] matrix) {
+        int n = matrix.length;
+        double[][] a = new double[n][];
+        double[][] v = new double[n][n];
+        double scale = 0;
+        for (int i = 0; i < n; i++) {
+            if (matrix[i].length != n) {
+                throw new IllegalArgumentException("矩阵必须为方阵");
+            }
+            a[i] = matrix[i].clone();
+            v[i][i] = 1;
+            for (int j = 0; j < n; j++) {
+                scale += a[i][j] * a[i][j];
+            }
+        }
+        double tolerance = 1e-24 * Math.max(scale, Double.MIN_NORMAL);
+
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            double off = 0;
+            for (int p = 0; p < n; p++) {
+                for (int q = p + 1; q < n; q++) {
+                    off += a[p][q] * a[p][q];
+                }
+            }
+            if (off <= tolerance) {
+                break;
+            }
+            for (int p = 0; p < n - 1; p++) {
+                for (int q = p + 1; q < n; q++) {
+                    if (a[p][q] != 0) {
+                        rotate(a, v, p, q);
+                    }
+                }
+            }
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> Double.compare(a[y][y], a[x][x]));
+        double[] values = new double[n];
+        double[][] vectors = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            int column = order[i];
+            values[i] = a[column][column];
+            for (int k = 0; k < n; k++) {
+                vectors[i][k] = v[k][column];
+            }
+        }
+        return new SymmetricEigen(values, vectors);
+    }
+
+    /**
+     * 用旋转 J 计算 A = J^T A J 与 V = V J，使 A[p][q] 变为零
+     */
+    private static void rotate(double[][] a, double[][] v, int p, int q) {
+        int n = a.length;
+        double theta = (a[q][q] - a[p][p]) / (2 * a[p][q]);
+        double t = (theta >= 0 ? 1 : -1) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+        double c = 1 / Math.sqrt(t * t + 1);
+        double s = t * c;
+        for (int k = 0; k < n; k++) {
+            double akp = a[k][p];
+            double akq = a[k][q];
+            a[k][p] = c * akp - s * akq;
+            a[k][q] = s * akp + c * akq;
+        }
+        double[] rowP = a[p];
+        double[] rowQ = a[q];
+        for (int k = 0; k < n; k++) {
+            double apk = rowP[k];
+            double aqk = rowQ[k];
+            rowP[k] = c * apk - s * aqk;
+            rowQ[k] = s * apk + c * aqk;
+        }
+        for (int k = 0; k < n; k++) {
+            double vkp = v[k][p];
+            double vkq = v[k][q];
+            v[k][p] = c * vkp - s * vkq;
+            v[k][q] = s * vkp + c * vkq;
+        }
+    }
+}
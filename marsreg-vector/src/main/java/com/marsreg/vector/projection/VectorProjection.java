@@ -0,0 +1,328 @@
+package com.marsreg.vector.projection;
+
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.similarity.VectorMath;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * 把向量从 inputDimension 维线性投影到 outputDimension 维：{@code y = W (x - mean)}，W 的各行两两正交且为单位向量。
+ * 存储和查询必须使用同一个投影，版本号由方式、维度和矩阵内容的校验和组成，矩阵不同则版本不同。
+ *
+ * <p>PCA 取样本协方差矩阵最大的若干特征向量，保留的方差比例记为 explainedVariance；
+ * 随机投影按种子生成高斯矩阵后正交化，不需要训练数据，explainedVariance 为 NaN</p>
+ */
+public final class VectorProjection {
+
+    public static final String PCA = "pca";
+    public static final String RANDOM = "random";
+
+    private static final int MAGIC = 0x4d525052;
+    private static final int FORMAT_VERSION = 1;
+
+    private final String method;
+    private final int inputDimension;
+    private final int outputDimension;
+    private final float[] mean;
+    // 按行连续存放的 outputDimension x inputDimension 矩阵
+    private final float[] components;
+    // 预先计算的 W * mean，投影时减去即可，不必逐条复制并中心化输入
+    private final float[] offsets;
+    private final double explainedVariance;
+    private final long createdAt;
+    private final String version;
+
+    private VectorProjection(String method, int inputDimension, int outputDimension, float[] mean, float[] components,
+                             double explainedVariance, long createdAt) {
+        if (mean.length != inputDimension || components.length != inputDimension * outputDimension) {
+            throw new IllegalArgumentException("投影矩阵尺寸与维度不符");
+        }
+        this.method = method;
+        this.inputDimension = inputDimension;
+        this.outputDimension = outputDimension;
+        this.mean = mean;
+        this.components = components;
+        this.explainedVariance = explainedVariance;
+        this.createdAt = createdAt;
+        this.offsets = new float[outputDimension];
+        VectorMath.dotBatch(mean, components, 0, outputDimension, offsets);
+        this.version = method + "-" + inputDimension + "x" + outputDimension + "-" + checksum(mean, components);
+    }
+
+    /**
+     * 用样本主成分构造投影
+     */
+    public static VectorProjection pca(List<float[]> samples, int outputDimension) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("训练样本不能为空");
+        }
+        int dimension = samples.get(0).length;
+        checkDimensions(dimension, outputDimension);
+        if (samples.size() < 2) {
+            throw new IllegalArgumentException("PCA至少需要2个样本");
+        }
+        double[] mean = new double[dimension];
+        for (float[] sample : samples) {
+            if (sample.length != dimension) {
+                throw new IllegalArgumentException("向量维度不一致或为空");
+            }
+            for (int i = 0; i < dimension; i++) {
+                mean[i] += sample[i];
+            }
+        }
+        for (int i = 0; i < dimension; i++) {
+            mean[i] /= samples.size();
+        }
+
+        // 只累加上三角，最后镜像
+        double[][] covariance = new double[dimension][dimension];
+        double[] centered = new double[dimension];
+        for (float[] sample : samples) {
+            for (int i = 0; i < dimension; i++) {
+                centered[i] = sample[i] - mean[i];
+            }
+            for (int i = 0; i < dimension; i++) {
+                double ci = centered[i];
+                double[] row = covariance[i];
+                for (int j = i; j < dimension; j++) {
+                    row[j] += ci * centered[j];
+                }
+            }
+        }
+        double total = 0;
+        for (int i = 0; i < dimension; i++) {
+            for (int j = i; j < dimension; j++) {
+                covariance[i][j] /= samples.size() - 1;
+                covariance[j][i] = covariance[i][j];
+            }
+            total += covariance[i][i];
+        }
+
+        SymmetricEigen eigen = SymmetricEigen.decompose(covariance);
+        float[] components = new float[outputDimension * dimension];
+        double retained = 0;
+        for (int r = 0; r < outputDimension; r++) {
+            double[] vector = eigen.getVectors()[r];
+            for (int c = 0; c < dimension; c++) {
+                components[r * dimension + c] = (float) vector[c];
+            }
+            retained += Math.max(0, eigen.getValues()[r]);
+        }
+        float[] meanVector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            meanVector[i] = (float) mean[i];
+        }
+        return new VectorProjection(PCA, dimension, outputDimension, meanVector, components,
+            total > 0 ? retained / total : 0.0, System.currentTimeMillis());
+    }
+
+    /**
+     * 按种子生成的随机正交投影，同一种子和维度得到同一个矩阵
+     */
+    public static VectorProjection random(int inputDimension, int outputDimension, long seed) {
+        checkDimensions(inputDimension, outputDimension);
+        Random random = new Random(seed);
+        double[][] rows = new double[outputDimension][inputDimension];
+        for (int r = 0; r < outputDimension; r++) {
+            double[] row = rows[r];
+            for (int c = 0; c < inputDimension; c++) {
+                row[c] = random.nextGaussian();
+            }
+            // 修正的 Gram-Schmidt，与已生成的各行正交后归一化
+            for (int prev = 0; prev < r; prev++) {
+                double dot = 0;
+                for (int c = 0; c < inputDimension; c++) {
+                    dot += row[c] * rows[prev][c];
+                }
+                for (int c = 0; c < inputDimension; c++) {
+                    row[c] -= dot * rows[prev][c];
+                }
+            }
+            double norm = 0;
+            for (double value : row) {
+                norm += value * value;
+            }
+            norm = Math.sqrt(norm);
+            for (int c = 0; c < inputDimension; c++) {
+                row[c] /= norm;
+            }
+        }
+        float[] components = new float[outputDimension * inputDimension];
+        for (int r = 0; r < outputDimension; r++) {
+            for (int c = 0; c < inputDimension; c++) {
+                components[r * inputDimension + c] = (float) rows[r][c];
+            }
+        }
+        return new VectorProjection(RANDOM, inputDimension, outputDimension, new float[inputDimension], components,
+            Double.NaN, System.currentTimeMillis());
+    }
+
+    public float[] project(float[] vector) {
+        if (vector.length != inputDimension) {
+            throw new IllegalArgumentException("向量维度与投影不一致: expected=" + inputDimension + ", actual=" + vector.length);
+        }
+        float[] projected = new float[outputDimension];
+        VectorMath.dotBatch(vector, components, 0, outputDimension, projected);
+        for (int r = 0; r < outputDimension; r++) {
+            projected[r] -= offsets[r];
+        }
+        return projected;
+    }
+
+    public List<float[]> projectAll(List<float[]> vectors) {
+        List<float[]> projected = new ArrayList<>(vectors.size());
+        for (float[] vector : vectors) {
+            projected.add(project(vector));
+        }
+        return projected;
+    }
+
+    /**
+     * 以前 queryCount 个向量为查询、全部向量为库，统计投影后余弦近邻相对原始余弦近邻的 recall@k，查询自身不计入
+     */
+    public double measureRecall(List<float[]> vectors, int queryCount, int k) {
+        int queries = Math.min(queryCount, vectors.size());
+        if (queries == 0 || k <= 0) {
+            return 0.0;
+        }
+        List<float[]> original = new ArrayList<>(vectors.size());
+        List<float[]> projected = new ArrayList<>(vectors.size());
+        for (float[] vector : vectors) {
+            original.add(VectorMath.normalize(vector));
+            projected.add(VectorMath.normalize(project(vector)));
+        }
+        long hits = 0;
+        long total = 0;
+        for (int q = 0; q < queries; q++) {
+            Set<String> exact = nearest(original, q, k);
+            for (String id : nearest(projected, q, k)) {
+                if (exact.contains(id)) {
+                    hits++;
+                }
+            }
+            total += exact.size();
+        }
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    private static Set<String> nearest(List<float[]> normalized, int query, int k) {
+        TopKCollector collector = new TopKCollector(k, -Float.MAX_VALUE);
+        float[] q = normalized.get(query);
+        for (int i = 0; i < normalized.size(); i++) {
+            if (i != query) {
+                collector.offer(String.valueOf(i), VectorMath.dot(q, normalized.get(i)));
+            }
+        }
+        return collector.drainDescending().keySet();
+    }
+
+    /**
+     * 先写临时文件再原子替换
+     */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(method);
+            out.writeInt(inputDimension);
+            out.writeInt(outputDimension);
+            out.writeDouble(explainedVariance);
+            out.writeLong(createdAt);
+            for (float value : mean) {
+                out.writeFloat(value);
+            }
+            for (float value : components) {
+                out.writeFloat(value);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static VectorProjection read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("不是投影矩阵文件: " + file);
+            }
+            int format = in.readInt();
+            if (format != FORMAT_VERSION) {
+                throw new IOException("不支持的投影文件版本: " + format);
+            }
+            String method = in.readUTF();
+            int inputDimension = in.readInt();
+            int outputDimension = in.readInt();
+            double explainedVariance = in.readDouble();
+            long createdAt = in.readLong();
+            float[] mean = new float[inputDimension];
+            for (int i = 0; i < mean.length; i++) {
+                mean[i] = in.readFloat();
+            }
+            float[] components = new float[inputDimension * outputDimension];
+            for (int i = 0; i < components.length; i++) {
+                components[i] = in.readFloat();
+            }
+            return new VectorProjection(method, inputDimension, outputDimension, mean, components,
+                explainedVariance, createdAt);
+        }
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public int getInputDimension() {
+        return inputDimension;
+    }
+
+    public int getOutputDimension() {
+        return outputDimension;
+    }
+
+    public double getExplainedVariance() {
+        return explainedVariance;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    private static void checkDimensions(int inputDimension, int outputDimension) {
+        if (outputDimension < 1 || outputDimension > inputDimension) {
+            throw new IllegalArgumentException("投影维度必须在1到" + inputDimension + "之间: " + outputDimension);
+        }
+    }
+
+    private static String checksum(float[] mean, float[] components) {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[4];
+        for (float[] array : new float[][]{mean, components}) {
+            for (float value : array) {
+                int bits = Float.floatToIntBits(value);
+                buffer[0] = (byte) (bits >>> 24);
+                buffer[1] = (byte) (bits >>> 16);
+                buffer[2] = (byte) (bits >>> 8);
+                buffer[3] = (byte) bits;
+                crc.update(buffer, 0, 4);
+            }
+        }
+        return String.format("%08x", crc.getValue());
+    }
+}
@@ -0,0 +1,158 @@
+package com.marsreg.vector.quantization;
+
+import com.marsreg.vector.similarity.VectorMath;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * 乘积量化：把向量切成若干子空间，每个子空间用k-means训练256个质心，编码为质心下标。
+ * 查询时预先计算查询子向量与各质心的内积表，打分只需查表累加
+ */
+public class ProductQuantizer implements VectorQuantizer {
+
+    private static final int CENTROIDS = 256;
+
+    private final int dimension;
+    private final int subspaces;
+    private final int subDimension;
+    private final int iterations;
+    private final long seed;
+    // [子空间][质心 * subDimension]
+    private float[][] codebooks;
+    private int centroidCount;
+    private volatile boolean trained;
+
+    public ProductQuantizer(int dimension, int subspaces, int iterations, long seed) {
+        if (subspaces <= 0 || dimension % subspaces != 0) {
+            throw new IllegalArgumentException("向量维度 " + dimension + " 不能被子空间数 " + subspaces + " 整除");
+        }
+        this.dimension = dimension;
+        this.subspaces = subspaces;
+        this.subDimension = dimension / subspaces;
+        this.iterations = iterations;
+        this.seed = seed;
+    }
+
+    @Override
+    public void train(List<float[]> samples) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("训练样本不能为空");
+        }
+        int k = Math.min(CENTROIDS, samples.size());
+        float[][] books = new float[subspaces][];
+        IntStream.range(0, subspaces).parallel()
+            .forEach(s -> books[s] = kMeans(samples, s * subDimension, k, new Random(seed + s)));
+        this.codebooks = books;
+        this.centroidCount = k;
+        this.trained = true;
+    }
+
+    @Override
+    public boolean isTrained() {
+        return trained;
+    }
+
+    @Override
+    public int getCodeSize() {
+        return subspaces;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] code, int offset) {
+        for (int s = 0; s < subspaces; s++) {
+            code[offset + s] = (byte) nearestCentroid(codebooks[s], vector, s * subDimension, centroidCount);
+        }
+    }
+
+    @Override
+    public Scorer scorer(float[] query) {
+        float[] table = new float[subspaces * CENTROIDS];
+        for (int s = 0; s < subspaces; s++) {
+            float[] book = codebooks[s];
+            int queryOffset = s * subDimension;
+            for (int c = 0; c < centroidCount; c++) {
+                table[s * CENTROIDS + c] = VectorMath.dot(query, queryOffset, book, c * subDimension, subDimension);
+            }
+        }
+        return (codes, offset) -> {
+            float sum = 0;
+            for (int s = 0; s < subspaces; s++) {
+                sum += table[s * CENTROIDS + (codes[offset + s] & 0xFF)];
+            }
+            return sum;
+        };
+    }
+
+    @Override
+    public String getName() {
+        return "PQ" + subspaces;
+    }
+
+    private float[] kMeans(List<float[]> samples, int offset, int k, Random random) {
+        int n = samples.size();
+        float[] centroids = new float[k * subDimension];
+        int[] picks = random.ints(0, n).distinct().limit(k).toArray();
+        for (int c = 0; c < k; c++) {
+            System.arraycopy(samples.get(picks[c]), offset, centroids, c * subDimension, subDimension);
+        }
+
+        int[] assignment = new int[n];
+        float[] sums = new float[k * subDimension];
+        int[] counts = new int[k];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            boolean changed = false;
+            for (int i = 0; i < n; i++) {
+                int nearest = nearestCentroid(centroids, samples.get(i), offset, k);
+                if (iteration == 0 || nearest != assignment[i]) {
+                    assignment[i] = nearest;
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                break;
+            }
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                float[] sample = samples.get(i);
+                int base = assignment[i] * subDimension;
+                for (int d = 0; d < subDimension; d++) {
+                    sums[base + d] += sample[offset + d];
+                }
+                counts[assignment[i]]++;
+            }
+            for (int c = 0; c < k; c++) {
+                if (counts[c] == 0) {
+                    // 空簇重新选一个随机样本作为质心
+                    System.arraycopy(samples.get(random.nextInt(n)), offset, centroids, c * subDimension, subDimension);
+                    continue;
+                }
+                for (int d = 0; d < subDimension; d++) {
+                    centroids[c * subDimension + d] = sums[c * subDimension + d] / counts[c];
+                }
+            }
+        }
+        return centroids;
+    }
+
+    private int nearestCentroid(float[] centroids, float[] vector, int offset, int k) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0; c < k; c++) {
+            float distance = 0;
+            int centroidOffset = c * subDimension;
+            for (int d = 0; d < subDimension; d++) {
+                float diff = vector[offset + d] - centroids[centroidOffset + d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
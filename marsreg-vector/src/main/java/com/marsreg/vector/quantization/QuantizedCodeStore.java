@@ -0,0 +1,165 @@
+package com.marsreg.vector.quantization;
+
+import com.marsreg.vector.similarity.TopKCollector;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 量化编码的连续存储，所有编码按行保存在同一个字节数组中，删除的行放入空闲列表复用
+ */
+public class QuantizedCodeStore {
+
+    private static final int INITIAL_ROWS = 1024;
+
+    private final VectorQuantizer quantizer;
+    private final int codeSize;
+    private final Map<String, Integer> rows = new HashMap<>();
+    private final Deque<Integer> freeRows = new ArrayDeque<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private byte[] codes;
+    private String[] ids;
+    private int rowCount;
+
+    public QuantizedCodeStore(VectorQuantizer quantizer) {
+        if (!quantizer.isTrained()) {
+            throw new IllegalStateException("量化器尚未训练");
+        }
+        this.quantizer = quantizer;
+        this.codeSize = quantizer.getCodeSize();
+        this.codes = new byte[INITIAL_ROWS * codeSize];
+        this.ids = new String[INITIAL_ROWS];
+    }
+
+    /**
+     * 写入或覆盖编码
+     * @param normalizedVector 已归一化的向量
+     */
+    public void put(String id, float[] normalizedVector) {
+        byte[] code = new byte[codeSize];
+        quantizer.encode(normalizedVector, code, 0);
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.get(id);
+            if (row == null) {
+                row = freeRows.isEmpty() ? appendRow() : freeRows.pop();
+                rows.put(id, row);
+                ids[row] = id;
+            }
+            System.arraycopy(code, 0, codes, row * codeSize, codeSize);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.remove(id);
+            if (row != null) {
+                ids[row] = null;
+                freeRows.push(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 在量化域中打分，返回近似得分最高的候选ID，按得分降序排列
+     * @param normalizedQuery 已归一化的查询向量
+     */
+    public List<String> topCandidates(float[] normalizedQuery, int count) {
+        return topCandidates(normalizedQuery, count, null);
+    }
+
+    /**
+     * 只对满足条件的行打分，条件在扫描时判断，不会因事后过滤而少返回候选
+     * @param filter 按ID判断是否参与打分，为null时不限制
+     */
+    public List<String> topCandidates(float[] normalizedQuery, int count, Predicate<String> filter) {
+        VectorQuantizer.Scorer scorer = quantizer.scorer(normalizedQuery);
+        TopKCollector collector = new TopKCollector(count, Float.NEGATIVE_INFINITY);
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < rowCount; row++) {
+                String id = ids[row];
+                if (id == null || (filter != null && !filter.test(id))) {
+                    continue;
+                }
+                collector.offer(id, scorer.score(codes, row * codeSize));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new ArrayList<>(collector.drainDescending().keySet());
+    }
+
+    /**
+     * 多个查询共享一次编码扫描，返回与查询顺序一致的候选列表
+     */
+    public List<List<String>> topCandidatesBatch(List<float[]> normalizedQueries, int count) {
+        int queryCount = normalizedQueries.size();
+        VectorQuantizer.Scorer[] scorers = new VectorQuantizer.Scorer[queryCount];
+        TopKCollector[] collectors = new TopKCollector[queryCount];
+        for (int q = 0; q < queryCount; q++) {
+            scorers[q] = quantizer.scorer(normalizedQueries.get(q));
+            collectors[q] = new TopKCollector(count, Float.NEGATIVE_INFINITY);
+        }
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < rowCount; row++) {
+                String id = ids[row];
+                if (id == null) {
+                    continue;
+                }
+                int offset = row * codeSize;
+                for (int q = 0; q < queryCount; q++) {
+                    collectors[q].offer(id, scorers[q].score(codes, offset));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<List<String>> candidates = new ArrayList<>(queryCount);
+        for (TopKCollector collector : collectors) {
+            candidates.add(new ArrayList<>(collector.drainDescending().keySet()));
+        }
+        return candidates;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 编码占用的字节数（不含ID映射）
+     */
+    public long getCodeBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) codes.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public VectorQuantizer getQuantizer() {
+        return quantizer;
+    }
+
+    private int appendRow() {
+        if (rowCount == ids.length) {
+            int capacity = ids.length * 2;
+            codes = Arrays.copyOf(codes, capacity * codeSize);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        return rowCount++;
+    }
+}
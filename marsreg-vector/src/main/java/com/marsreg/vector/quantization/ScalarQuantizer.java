@@ -0,0 +1,87 @@
+package com.marsreg.vector.quantization;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按维度的int8标量量化：每个维度用训练样本的最小值和跨度线性映射到256个等级
+ */
+public class ScalarQuantizer implements VectorQuantizer {
+
+    private final int dimension;
+    private float[] minimums;
+    private float[] steps;
+    private volatile boolean trained;
+
+    public ScalarQuantizer(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public void train(List<float[]> samples) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("训练样本不能为空");
+        }
+        float[] min = new float[dimension];
+        float[] max = new float[dimension];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (float[] sample : samples) {
+            for (int d = 0; d < dimension; d++) {
+                min[d] = Math.min(min[d], sample[d]);
+                max[d] = Math.max(max[d], sample[d]);
+            }
+        }
+        float[] step = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            float range = max[d] - min[d];
+            step[d] = range > 0 ? range / 255f : 1f;
+        }
+        this.minimums = min;
+        this.steps = step;
+        this.trained = true;
+    }
+
+    @Override
+    public boolean isTrained() {
+        return trained;
+    }
+
+    @Override
+    public int getCodeSize() {
+        return dimension;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] code, int offset) {
+        for (int d = 0; d < dimension; d++) {
+            int level = Math.round((vector[d] - minimums[d]) / steps[d]);
+            level = Math.max(0, Math.min(255, level));
+            code[offset + d] = (byte) (level - 128);
+        }
+    }
+
+    @Override
+    public Scorer scorer(float[] query) {
+        // x[d] ≈ min[d] + (c[d] + 128) * step[d]，展开后与编码相关的部分只剩一次乘加
+        float[] weights = new float[dimension];
+        float base = 0;
+        for (int d = 0; d < dimension; d++) {
+            weights[d] = query[d] * steps[d];
+            base += query[d] * minimums[d] + 128 * weights[d];
+        }
+        float constant = base;
+        return (codes, offset) -> {
+            float sum = 0;
+            for (int d = 0; d < dimension; d++) {
+                sum += weights[d] * codes[offset + d];
+            }
+            return constant + sum;
+        };
+    }
+
+    @Override
+    public String getName() {
+        return "SQ8";
+    }
+}
@@ -0,0 +1,51 @@
+package com.marsreg.vector.quantization;
+
+import java.util.List;
+
+/**
+ * 向量量化器。编码前向量需已归一化，量化域中的得分近似为余弦相似度
+ */
+public interface VectorQuantizer {
+
+    /**
+     * 用样本向量训练量化参数
+     * @param samples 已归一化的样本向量
+     */
+    void train(List<float[]> samples);
+
+    /**
+     * 是否已完成训练
+     */
+    boolean isTrained();
+
+    /**
+     * 每个向量编码后的字节数
+     */
+    int getCodeSize();
+
+    /**
+     * 编码向量
+     * @param vector 已归一化的向量
+     * @param code 输出编码
+     * @param offset 输出起始位置
+     */
+    void encode(float[] vector, byte[] code, int offset);
+
+    /**
+     * 为查询向量构建打分器
+     * @param query 已归一化的查询向量
+     */
+    Scorer scorer(float[] query);
+
+    /**
+     * 获取量化器名称
+     */
+    String getName();
+
+    interface Scorer {
+        /**
+         * 计算查询向量与编码的近似内积
+         */
+        float score(byte[] codes, int offset);
+    }
+}
@@ -0,0 +1,57 @@
+package com.marsreg.vector.scheduler;
+
+import java.util.function.Supplier;
+
+/**
+ * 向量化任务的优先级通道。调用方用 {@link #call(Supplier)} 或 {@link #run(Runnable)} 声明当前线程上的
+ * 向量化请求属于哪个通道，未声明时按交互查询处理
+ */
+public enum EmbeddingLane {
+
+    /**
+     * 在线查询，延迟敏感
+     */
+    INTERACTIVE,
+    /**
+     * 文档入库
+     */
+    INGEST,
+    /**
+     * 批量重建、补算等后台任务
+     */
+    BACKFILL;
+
+    private static final ThreadLocal<EmbeddingLane> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 当前线程所属的通道
+     */
+    public static EmbeddingLane current() {
+        EmbeddingLane lane = CURRENT.get();
+        return lane == null ? INTERACTIVE : lane;
+    }
+
+    /**
+     * 在该通道下执行，期间发起的向量化请求都进入该通道，结束后恢复原通道
+     */
+    public <T> T call(Supplier<T> action) {
+        EmbeddingLane previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+}
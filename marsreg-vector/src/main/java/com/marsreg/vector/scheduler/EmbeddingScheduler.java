@@ -0,0 +1,368 @@
+package com.marsreg.vector.scheduler;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.exception.VectorizationException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 所有向量化推理共用的调度器：每个 {@link EmbeddingLane} 一个有界队列，固定数量的工作线程按加权公平排队取任务。
+ *
+ * <p>任务入队时按 {@code 开始标签 = max(虚拟时间, 本通道上一个任务的结束标签)}、
+ * {@code 结束标签 = 开始标签 + 文本条数 / 通道权重} 打标签，工作线程总是取队首结束标签最小的任务。
+ * 通道空闲期间不积累额度，批量入库堆积再多任务，新到的查询也只需等待当前正在执行的推理。</p>
+ *
+ * <p>队列满时按通道配置拒绝或阻塞提交线程（超时后拒绝），拒绝时抛出 {@link VectorizationException}。
+ * 工作线程上发起的嵌套调用直接在当前线程执行，避免占满工作线程后互相等待</p>
+ */
+@Slf4j
+@Component
+public class EmbeddingScheduler implements AutoCloseable {
+
+    public static final String OVERFLOW_BLOCK = "block";
+    public static final String OVERFLOW_REJECT = "reject";
+
+    private static final ThreadLocal<EmbeddingScheduler> WORKER_OF = new ThreadLocal<>();
+
+    private final LaneState[] lanes;
+    private final Thread[] workers;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    // 最近开始执行的任务的开始标签，只在持有 lock 时读写
+    private double virtualTime;
+    private volatile boolean running = true;
+
+    /**
+     * 单个通道的参数
+     *
+     * @param weight             权重，积压时各通道按权重比例分配推理条数
+     * @param capacity           队列中最多等待的任务数
+     * @param reject             队列满时是否立即拒绝，否则阻塞提交线程
+     * @param offerTimeoutMillis 阻塞提交的最长等待时间，超时后拒绝
+     */
+    public record LaneSpec(int weight, int capacity, boolean reject, long offerTimeoutMillis) {
+    }
+
+    @Autowired
+    public EmbeddingScheduler(VectorizationConfig config, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(config.getScheduler());
+        meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    public EmbeddingScheduler(VectorizationConfig.Scheduler config) {
+        this(config.getWorkers(), specs(config));
+        log.info("初始化向量化调度器: workers={}, interactive={}, ingest={}, backfill={}", config.getWorkers(),
+            config.getInteractive(), config.getIngest(), config.getBackfill());
+    }
+
+    public EmbeddingScheduler(int workerCount, Map<EmbeddingLane, LaneSpec> specs) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("工作线程数必须大于0");
+        }
+        this.lanes = new LaneState[EmbeddingLane.values().length];
+        for (EmbeddingLane lane : EmbeddingLane.values()) {
+            LaneSpec spec = specs.get(lane);
+            if (spec == null || spec.weight() < 1 || spec.capacity() < 1) {
+                throw new IllegalArgumentException("通道权重和队列容量必须大于0: lane=" + lane + ", spec=" + spec);
+            }
+            lanes[lane.ordinal()] = new LaneState(lane, spec, lock.newCondition());
+        }
+        this.workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "embedding-scheduler-" + i);
+            worker.setDaemon(true);
+            workers[i] = worker;
+            worker.start();
+        }
+    }
+
+    /**
+     * 把任务提交到指定通道
+     *
+     * @param cost 任务包含的文本条数，用于按权重分配
+     * @throws VectorizationException 队列已满或调度器已关闭
+     */
+    public <T> CompletableFuture<T> submit(EmbeddingLane lane, int cost, Supplier<T> action) {
+        LaneState state = lanes[lane.ordinal()];
+        Task<T> task = new Task<>(state, Math.max(1, cost), action);
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(state.spec.offerTimeoutMillis());
+            while (running && state.queue.size() >= state.spec.capacity()) {
+                if (state.spec.reject() || remaining <= 0) {
+                    state.rejected.increment();
+                    throw new VectorizationException("向量化队列已满: lane=" + lane + ", capacity=" + state.spec.capacity());
+                }
+                remaining = state.notFull.awaitNanos(remaining);
+            }
+            if (!running) {
+                throw new VectorizationException("向量化调度器已关闭");
+            }
+            task.startTag = Math.max(virtualTime, state.lastFinish);
+            task.finishTag = task.startTag + (double) task.cost / state.spec.weight();
+            state.lastFinish = task.finishTag;
+            state.queue.add(task);
+            notEmpty.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VectorizationException("等待向量化队列时被中断", e);
+        } finally {
+            lock.unlock();
+        }
+        return task.future;
+    }
+
+    /**
+     * 提交到指定通道并等待结果。在调度器工作线程上调用时直接执行
+     */
+    public <T> T execute(EmbeddingLane lane, int cost, Supplier<T> action) {
+        if (isWorkerThread()) {
+            return action.get();
+        }
+        try {
+            return submit(lane, cost, action).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new VectorizationException("向量化任务执行失败", cause);
+        }
+    }
+
+    /**
+     * 当前线程是否为本调度器的工作线程
+     */
+    public boolean isWorkerThread() {
+        return WORKER_OF.get() == this;
+    }
+
+    /**
+     * 各通道的排队、完成和拒绝统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", workers.length);
+        for (LaneState state : lanes) {
+            Map<String, Object> laneStats = new LinkedHashMap<>();
+            long completed = state.completed.sum();
+            laneStats.put("weight", state.spec.weight());
+            laneStats.put("capacity", state.spec.capacity());
+            laneStats.put("queued", queuedSize(state));
+            laneStats.put("completed", completed);
+            laneStats.put("failed", state.failed.sum());
+            laneStats.put("rejected", state.rejected.sum());
+            laneStats.put("avgWaitMillis", completed == 0 ? 0.0 : state.waitNanos.sum() / 1e6 / completed);
+            laneStats.put("avgLatencyMillis", completed == 0 ? 0.0 : state.latencyNanos.sum() / 1e6 / completed);
+            stats.put(state.lane.name().toLowerCase(), laneStats);
+        }
+        return stats;
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            notEmpty.signalAll();
+            for (LaneState state : lanes) {
+                state.notFull.signalAll();
+                Task<?> task;
+                while ((task = state.queue.poll()) != null) {
+                    task.future.completeExceptionally(new VectorizationException("向量化调度器已关闭"));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void work() {
+        WORKER_OF.set(this);
+        while (true) {
+            Task<?> task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return;
+                }
+                continue;
+            }
+            if (task == null) {
+                return;
+            }
+            task.run();
+        }
+    }
+
+    /**
+     * 取出所有通道队首中结束标签最小的任务，标签相同时优先级高的通道优先。调度器关闭后返回null
+     */
+    private Task<?> take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running) {
+                LaneState next = null;
+                for (LaneState state : lanes) {
+                    Task<?> head = state.queue.peek();
+                    if (head != null && (next == null || head.finishTag < next.queue.peek().finishTag)) {
+                        next = state;
+                    }
+                }
+                if (next != null) {
+                    Task<?> task = next.queue.poll();
+                    virtualTime = Math.max(virtualTime, task.startTag);
+                    next.notFull.signal();
+                    return task;
+                }
+                notEmpty.await();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int queuedSize(LaneState state) {
+        lock.lock();
+        try {
+            return state.queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        for (LaneState state : lanes) {
+            String lane = state.lane.name().toLowerCase();
+            state.waitTimer = Timer.builder("embedding.scheduler.wait")
+                .tag("lane", lane)
+                .description("向量化任务排队时间")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+            state.latencyTimer = Timer.builder("embedding.scheduler.latency")
+                .tag("lane", lane)
+                .description("向量化任务从提交到完成的时间")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+            Gauge.builder("embedding.scheduler.queue.size", state, this::queuedSize)
+                .tag("lane", lane)
+                .description("等待执行的向量化任务数")
+                .register(registry);
+            FunctionCounter.builder("embedding.scheduler.rejected", state.rejected, LongAdder::sum)
+                .tag("lane", lane)
+                .description("队列已满被拒绝的向量化任务数")
+                .register(registry);
+        }
+    }
+
+    private static Map<EmbeddingLane, LaneSpec> specs(VectorizationConfig.Scheduler config) {
+        Map<EmbeddingLane, LaneSpec> specs = new EnumMap<>(EmbeddingLane.class);
+        specs.put(EmbeddingLane.INTERACTIVE, spec(config.getInteractive()));
+        specs.put(EmbeddingLane.INGEST, spec(config.getIngest()));
+        specs.put(EmbeddingLane.BACKFILL, spec(config.getBackfill()));
+        return specs;
+    }
+
+    private static LaneSpec spec(VectorizationConfig.Scheduler.Lane lane) {
+        return new LaneSpec(lane.getWeight(), lane.getQueueCapacity(),
+            OVERFLOW_REJECT.equalsIgnoreCase(lane.getOverflow()), lane.getOfferTimeoutMillis());
+    }
+
+    private static final class LaneState {
+        final EmbeddingLane lane;
+        final LaneSpec spec;
+        final Condition notFull;
+        final ArrayDeque<Task<?>> queue = new ArrayDeque<>();
+        // 本通道最后入队任务的结束标签，只在持有 lock 时读写
+        double lastFinish;
+
+        final LongAdder completed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final LongAdder latencyNanos = new LongAdder();
+        volatile Timer waitTimer;
+        volatile Timer latencyTimer;
+
+        LaneState(EmbeddingLane lane, LaneSpec spec, Condition notFull) {
+            this.lane = lane;
+            this.spec = spec;
+            this.notFull = notFull;
+        }
+    }
+
+    private static final class Task<T> {
+        final LaneState state;
+        final int cost;
+        final Supplier<T> action;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final long submittedAt = System.nanoTime();
+        double startTag;
+        double finishTag;
+
+        Task(LaneState state, int cost, Supplier<T> action) {
+            this.state = state;
+            this.cost = cost;
+            this.action = action;
+        }
+
+        void run() {
+            // 提交方已放弃的任务不再执行
+            if (future.isDone()) {
+                return;
+            }
+            long startedAt = System.nanoTime();
+            try {
+                future.complete(state.lane.call(action));
+            } catch (Throwable e) {
+                state.failed.increment();
+                future.completeExceptionally(e);
+            }
+            long finishedAt = System.nanoTime();
+            state.completed.increment();
+            state.waitNanos.add(startedAt - submittedAt);
+            state.latencyNanos.add(finishedAt - submittedAt);
+            Timer waitTimer = state.waitTimer;
+            if (waitTimer != null) {
+                waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                state.latencyTimer.record(finishedAt - submittedAt, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package com.marsreg.vector.service;
 
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 public interface VectorStorageService {
     /**
@@ -17,6 +24,42 @@ public interface VectorStorageService {
      */
     void storeVectors(Map<String, float[]> vectors);
 
+    /**
+     * 异步批量存储向量，支持写缓冲的实现会合并多次调用后批量写入
+     * @param vectors 向量ID和数据的映射
+     * @return 全部向量持久化后完成的 future
+     */
+    default CompletableFuture<Void> storeVectorsAsync(Map<String, float[]> vectors) {
+        try {
+            storeVectors(vectors);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 异步存储同一文档的分块向量，支持分区键的实现会把文档ID一并写入
+     * @param documentId 文档ID
+     * @param vectors 向量ID和数据的映射
+     * @return 全部向量持久化后完成的 future
+     */
+    default CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors) {
+        return storeVectorsAsync(vectors);
+    }
+
+    /**
+     * 异步存储同一文档的分块向量并记录标量元数据，支持元数据过滤的实现为其建立位图索引，其余实现忽略元数据
+     * @param documentId 文档ID
+     * @param vectors 向量ID和数据的映射
+     * @param metadata 各分块共用的元数据
+     * @return 全部向量持久化后完成的 future
+     */
+    default CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors,
+                                                              VectorMetadata metadata) {
+        return storeDocumentVectorsAsync(documentId, vectors);
+    }
+
     /**
      * 获取向量
      * @param id 向量ID
@@ -31,6 +74,15 @@ public interface VectorStorageService {
      */
     Map<String, float[]> getVectors(List<String> ids);
 
+    /**
+     * 获取向量的标量元数据，用于导出迁移
+     * @param id 向量ID
+     * @return 元数据，未记录元数据或实现不保存元数据时返回null
+     */
+    default VectorMetadata getMetadata(String id) {
+        return null;
+    }
+
     /**
      * 删除向量
      * @param id 向量ID
@@ -52,6 +104,21 @@ public interface VectorStorageService {
      */
     Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore);
 
+    /**
+     * 批量搜索相似向量，一次调用处理多个查询向量
+     * @param queryVectors 查询向量列表
+     * @param limit 每个查询返回结果数量限制
+     * @param minScore 最小相似度分数
+     * @return 与查询向量顺序一致的结果列表，每项为相似向量ID和分数的映射
+     */
+    default List<Map<String, Float>> searchSimilarBatch(List<float[]> queryVectors, int limit, float minScore) {
+        List<Map<String, Float>> results = new ArrayList<>(queryVectors.size());
+        for (float[] queryVector : queryVectors) {
+            results.add(searchSimilar(queryVector, limit, minScore));
+        }
+        return results;
+    }
+
     /**
      * 在指定范围内搜索相似向量
      * @param queryVector 查询向量
@@ -61,4 +128,59 @@ public interface VectorStorageService {
      * @return 相似向量ID和分数的映射
      */
     Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore);
-} 
\ No newline at end of file
+
+    /**
+     * 在指定文档的分块内搜索相似向量，支持分区键的实现只扫描该文档所在分区
+     * @param documentId 文档ID
+     * @param vectorIds 按需加载文档的分块向量ID，只有不支持分区键的实现才会调用并据此限定范围
+     * @param queryVector 查询向量
+     * @param limit 返回结果数量限制
+     * @param minScore 最小相似度分数
+     * @return 相似向量ID和分数的映射
+     */
+    default Map<String, Float> searchSimilarInDocument(String documentId, Supplier<List<String>> vectorIds,
+                                                       float[] queryVector, int limit, float minScore) {
+        return searchSimilarInRange(queryVector, vectorIds.get(), limit, minScore);
+    }
+
+    /**
+     * 是否按文档ID分区，为true时 {@link #searchSimilarInDocument} 按分区键过滤，不调用ID加载函数
+     */
+    default boolean supportsDocumentPartition() {
+        return false;
+    }
+
+    /**
+     * 在满足元数据条件的向量中搜索相似向量，条件在遍历时生效，不会因事后过滤而少返回结果
+     * @param queryVector 查询向量
+     * @param filter 元数据过滤条件
+     * @param limit 返回结果数量限制
+     * @param minScore 最小相似度分数
+     * @return 相似向量ID和分数的映射
+     */
+    Map<String, Float> searchSimilarFiltered(float[] queryVector, VectorFilter filter, int limit, float minScore);
+
+    /**
+     * 随机抽取已存储的向量，用于训练投影等离线分析
+     * @param count 抽样数量上限
+     * @param seed 随机种子
+     * @return 向量副本列表
+     */
+    List<float[]> sampleVectors(int count, long seed);
+
+    /**
+     * 顺序遍历全部已存储的向量，用于批量导出和迁移。遍历期间的并发写入可能被看到也可能不被看到，
+     * 回调收到的数组不保证是副本，需要保留时由调用方复制
+     * @param consumer 接收向量ID和数据的回调
+     */
+    void forEachVector(BiConsumer<String, float[]> consumer);
+
+    /**
+     * 删除指定文档的分块向量
+     * @param documentId 文档ID
+     * @param vectorIds 文档的分块向量ID
+     */
+    default void deleteDocumentVectors(String documentId, List<String> vectorIds) {
+        deleteVectors(vectorIds);
+    }
+}
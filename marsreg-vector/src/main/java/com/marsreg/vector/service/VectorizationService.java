@@ -1,5 +1,8 @@
 package com.marsreg.vector.service;
 
+import com.marsreg.vector.similarity.SimilarityMatrix;
+import com.marsreg.vector.similarity.SimilarityNeighbors;
+
 import java.util.List;
 import java.util.Map;
 
@@ -47,6 +50,26 @@ public interface VectorizationService {
      */
     List<List<Float>> calculateSimilarityMatrix(List<float[]> vectors);
 
+    /**
+     * 计算对称相似度矩阵，只保存上三角，分块并行计算
+     * @param vectors 向量列表
+     * @return 紧凑存放的相似度矩阵
+     */
+    default SimilarityMatrix computeSimilarityMatrix(List<float[]> vectors) {
+        return SimilarityMatrix.compute(vectors);
+    }
+
+    /**
+     * 计算每个向量最相似的 k 个其他向量，适用于完整矩阵过大的场景
+     * @param vectors 向量列表
+     * @param k 每行保留的近邻数
+     * @param minScore 最小相似度
+     * @return 按行紧凑存放的近邻下标和得分
+     */
+    default SimilarityNeighbors computeSimilarityTopK(List<float[]> vectors, int k, float minScore) {
+        return SimilarityNeighbors.compute(vectors, k, minScore);
+    }
+
     /**
      * 获取向量化模型信息
      * @return 模型信息
@@ -54,11 +77,17 @@ public interface VectorizationService {
     Map<String, Object> getModelInfo();
 
     /**
-     * 更新向量化模型
+     * 更新向量化模型，新模型在后台加载预热后切换，调用立即返回
      * @param modelPath 模型路径
      */
     void updateModel(String modelPath);
 
+    /**
+     * 获取最近一次模型更新的进度
+     * @return 更新状态
+     */
+    Map<String, Object> getModelUpdateStatus();
+
     /**
      * 预热向量化模型
      */
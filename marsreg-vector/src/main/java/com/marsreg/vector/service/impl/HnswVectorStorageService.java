@@ -0,0 +1,336 @@
+package com.marsreg.vector.service.impl;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.filter.MetadataIndex;
+import com.marsreg.vector.filter.RoaringBitmap;
+import com.marsreg.vector.index.hnsw.HnswIndex;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+import com.marsreg.vector.service.VectorStorageService;
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.similarity.VectorMath;
+import com.marsreg.vector.storage.VectorSampler;
+import com.marsreg.vector.tuning.QuerySampler;
+import com.marsreg.vector.tuning.TunableVectorSearch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 基于进程内HNSW图的向量存储，适用于不部署Milvus的小规模和边缘环境。
+ * 元数据索引的序号作为图节点的标签，过滤搜索在图遍历时判断标签，过滤集合较小时改为精确计算
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "marsreg.vector.storage", name = "type", havingValue = "hnsw")
+public class HnswVectorStorageService implements VectorStorageService, TunableVectorSearch {
+
+    private final VectorizationConfig.Storage.Hnsw config;
+    private final VectorizationConfig.Storage.Filter filterConfig;
+    private final QuerySampler querySampler;
+    private final int maxEf;
+    private volatile int efSearch;
+    // 序号与ID绑定，压缩重建索引时保持不变
+    private final MetadataIndex metadata;
+    private final AtomicLong graphFilteredSearches = new AtomicLong();
+    private final AtomicLong exactFilteredSearches = new AtomicLong();
+
+    // 写操作之间可以并发，只有压缩切换索引时需要独占
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile HnswIndex index;
+    private volatile Queue<Consumer<HnswIndex>> pendingOperations;
+    private ScheduledExecutorService compactionExecutor;
+
+    public HnswVectorStorageService(VectorizationConfig vectorizationConfig) {
+        this.config = vectorizationConfig.getStorage().getHnsw();
+        this.filterConfig = vectorizationConfig.getStorage().getFilter();
+        this.metadata = new MetadataIndex(filterConfig.getTimeBucketMillis());
+        this.querySampler = QuerySampler.of(vectorizationConfig.getStorage().getTuning());
+        this.maxEf = vectorizationConfig.getStorage().getTuning().getMaxEf();
+        this.efSearch = config.getEfSearch();
+        this.index = newIndex();
+    }
+
+    @PostConstruct
+    public void init() {
+        compactionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hnsw-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactionExecutor.scheduleWithFixedDelay(this::compactIfNecessary,
+            config.getCompactionInterval(), config.getCompactionInterval(), TimeUnit.SECONDS);
+        log.info("HNSW向量存储初始化: M={}, efConstruction={}, efSearch={}",
+            config.getM(), config.getEfConstruction(), efSearch);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (compactionExecutor != null) {
+            compactionExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void storeVector(String id, float[] vector) {
+        int tag = metadata.ordinal(id);
+        write(target -> target.add(id, vector, tag));
+    }
+
+    @Override
+    public void storeVectors(Map<String, float[]> vectors) {
+        vectors.entrySet().parallelStream()
+            .forEach(entry -> storeVector(entry.getKey(), entry.getValue()));
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors) {
+        return storeTagged(vectors, id -> metadata.putIfAbsent(id, VectorMetadata.ofDocument(documentId)));
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors,
+                                                             VectorMetadata vectorMetadata) {
+        return storeTagged(vectors, id -> metadata.put(id, vectorMetadata));
+    }
+
+    @Override
+    public float[] getVector(String id) {
+        return index.get(id);
+    }
+
+    @Override
+    public Map<String, float[]> getVectors(List<String> ids) {
+        HnswIndex current = index;
+        Map<String, float[]> result = new HashMap<>();
+        for (String id : ids) {
+            float[] v = current.get(id);
+            if (v != null) result.put(id, v);
+        }
+        return result;
+    }
+
+    @Override
+    public VectorMetadata getMetadata(String id) {
+        return metadata.get(id);
+    }
+
+    @Override
+    public void deleteVector(String id) {
+        write(target -> target.remove(id));
+        metadata.remove(id);
+    }
+
+    @Override
+    public void deleteVectors(List<String> ids) {
+        write(target -> ids.forEach(target::remove));
+        ids.forEach(metadata::remove);
+    }
+
+    @Override
+    public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore) {
+        querySampler.record(queryVector);
+        return index.search(queryVector, limit, efSearch, minScore);
+    }
+
+    @Override
+    public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore, int ef) {
+        return index.search(queryVector, limit, ef, minScore);
+    }
+
+    @Override
+    public Map<String, Float> searchExact(float[] queryVector, int limit) {
+        return index.exactSearch(queryVector, limit, -1f);
+    }
+
+    @Override
+    public List<Map<String, Float>> searchSimilarBatch(List<float[]> queryVectors, int limit, float minScore) {
+        // 图搜索彼此独立，多个查询并行执行
+        HnswIndex current = index;
+        int ef = efSearch;
+        queryVectors.forEach(querySampler::record);
+        return queryVectors.parallelStream()
+            .map(queryVector -> (Map<String, Float>) current.search(queryVector, limit, ef, minScore))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore) {
+        HnswIndex current = index;
+        float invNorm = VectorMath.inverseNorm(queryVector);
+        TopKCollector collector = new TopKCollector(limit, minScore);
+        for (String id : new LinkedHashSet<>(vectorIds)) {
+            float score = current.score(queryVector, invNorm, id);
+            if (!Float.isNaN(score)) {
+                collector.offer(id, score);
+            }
+        }
+        return collector.drainDescending();
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarFiltered(float[] queryVector, VectorFilter filter, int limit, float minScore) {
+        if (filter == null || filter.isEmpty()) {
+            return searchSimilar(queryVector, limit, minScore);
+        }
+        RoaringBitmap allowed = metadata.evaluate(filter);
+        int cardinality = allowed.cardinality();
+        if (cardinality == 0) {
+            return new LinkedHashMap<>();
+        }
+        if (cardinality > filterConfig.getBruteForceThreshold()) {
+            // 图遍历访问的节点数超过过滤集合大小时，精确计算反而更便宜
+            Map<String, Float> results = index.search(queryVector, limit, efSearch, minScore,
+                allowed, cardinality);
+            if (results != null) {
+                graphFilteredSearches.incrementAndGet();
+                return results;
+            }
+        }
+        exactFilteredSearches.incrementAndGet();
+        return searchSimilarInRange(queryVector, metadata.keys(allowed), limit, minScore);
+    }
+
+    @Override
+    public List<float[]> sampleVectors(int count, long seed) {
+        return VectorSampler.reservoir(index::forEachLive, count, new Random(seed));
+    }
+
+    @Override
+    public void forEachVector(BiConsumer<String, float[]> consumer) {
+        index.forEachLive(consumer);
+    }
+
+    public Map<String, Object> getStats() {
+        HnswIndex current = index;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", current.size());
+        stats.put("deleted", current.deletedCount());
+        stats.put("m", config.getM());
+        stats.put("efConstruction", config.getEfConstruction());
+        stats.put("efSearch", efSearch);
+        stats.put("metadataEntries", metadata.size());
+        stats.put("metadataBytes", metadata.sizeInBytes());
+        stats.put("graphFilteredSearches", graphFilteredSearches.get());
+        stats.put("exactFilteredSearches", exactFilteredSearches.get());
+        return stats;
+    }
+
+    @Override
+    public String getSearchParameterName() {
+        return "ef";
+    }
+
+    @Override
+    public int getSearchParameter() {
+        return efSearch;
+    }
+
+    @Override
+    public void setSearchParameter(int ef) {
+        if (ef < 1) {
+            throw new IllegalArgumentException("ef必须大于0");
+        }
+        this.efSearch = ef;
+    }
+
+    @Override
+    public int getMinSearchParameter(int limit) {
+        return limit;
+    }
+
+    @Override
+    public int getMaxSearchParameter() {
+        return maxEf;
+    }
+
+    @Override
+    public QuerySampler getQuerySampler() {
+        return querySampler;
+    }
+
+    /**
+     * 已删除节点比例超过阈值时，在后台用存活节点重建图，期间的写操作记录下来在切换前重放
+     */
+    void compactIfNecessary() {
+        HnswIndex current = index;
+        if (current.deletedRatio() < config.getCompactionDeletedRatio()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            swapLock.writeLock().lock();
+            try {
+                pendingOperations = new ConcurrentLinkedQueue<>();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+
+            HnswIndex rebuilt = newIndex();
+            List<Map.Entry<String, float[]>> live = new ArrayList<>(current.size());
+            current.forEachLive((id, vector) -> live.add(new AbstractMap.SimpleEntry<>(id, vector)));
+            live.parallelStream().forEach(entry ->
+                rebuilt.add(entry.getKey(), entry.getValue(), metadata.ordinal(entry.getKey())));
+
+            swapLock.writeLock().lock();
+            try {
+                Consumer<HnswIndex> operation;
+                while ((operation = pendingOperations.poll()) != null) {
+                    operation.accept(rebuilt);
+                }
+                index = rebuilt;
+                pendingOperations = null;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            log.info("HNSW索引压缩完成: 存活节点={}, 耗时={}ms", rebuilt.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            pendingOperations = null;
+            log.error("HNSW索引压缩失败", e);
+        }
+    }
+
+    private CompletableFuture<Void> storeTagged(Map<String, float[]> vectors, ToIntFunction<String> tagger) {
+        try {
+            vectors.entrySet().parallelStream().forEach(entry -> {
+                int tag = tagger.applyAsInt(entry.getKey());
+                write(target -> target.add(entry.getKey(), entry.getValue(), tag));
+            });
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void write(Consumer<HnswIndex> operation) {
+        swapLock.readLock().lock();
+        try {
+            operation.accept(index);
+            Queue<Consumer<HnswIndex>> pending = pendingOperations;
+            if (pending != null) {
+                pending.add(operation);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private HnswIndex newIndex() {
+        return new HnswIndex(config.getM(), config.getEfConstruction());
+    }
+}
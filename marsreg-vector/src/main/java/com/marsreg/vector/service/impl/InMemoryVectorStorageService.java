@@ -1,12 +1,20 @@
 package com.marsreg.vector.service.impl;
 
+import com.marsreg.vector.filter.MetadataIndex;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
 import com.marsreg.vector.service.VectorStorageService;
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.similarity.VectorMath;
+import com.marsreg.vector.storage.VectorSampler;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -14,97 +22,124 @@ import java.util.stream.Collectors;
 @Profile("test")
 public class InMemoryVectorStorageService implements VectorStorageService {
 
-    // 使用内存存储作为测试环境实现
-    private final Map<String, float[]> vectorStore = new ConcurrentHashMap<>();
+    // 使用内存存储作为测试环境实现，写入时缓存范数倒数，查询时不再逐个重算
+    private final Map<String, StoredVector> vectorStore = new ConcurrentHashMap<>();
+    private final MetadataIndex metadata = new MetadataIndex(86400000L);
 
     @Override
     public void storeVector(String id, float[] vector) {
-        vectorStore.put(id, vector);
+        vectorStore.put(id, new StoredVector(vector));
     }
 
     @Override
     public void storeVectors(Map<String, float[]> vectors) {
-        vectorStore.putAll(vectors);
+        vectors.forEach(this::storeVector);
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors) {
+        vectors.keySet().forEach(id -> metadata.putIfAbsent(id, VectorMetadata.ofDocument(documentId)));
+        return storeVectorsAsync(vectors);
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors,
+                                                             VectorMetadata vectorMetadata) {
+        vectors.keySet().forEach(id -> metadata.put(id, vectorMetadata));
+        return storeVectorsAsync(vectors);
     }
 
     @Override
     public float[] getVector(String id) {
-        return vectorStore.get(id);
+        StoredVector stored = vectorStore.get(id);
+        return stored == null ? null : stored.vector;
     }
 
     @Override
     public Map<String, float[]> getVectors(List<String> ids) {
         Map<String, float[]> result = new HashMap<>();
         for (String id : ids) {
-            float[] v = vectorStore.get(id);
+            float[] v = getVector(id);
             if (v != null) result.put(id, v);
         }
         return result;
     }
 
+    @Override
+    public VectorMetadata getMetadata(String id) {
+        return metadata.get(id);
+    }
+
     @Override
     public void deleteVector(String id) {
         vectorStore.remove(id);
+        metadata.remove(id);
     }
 
     @Override
     public void deleteVectors(List<String> ids) {
-        ids.forEach(vectorStore::remove);
+        ids.forEach(this::deleteVector);
     }
 
     @Override
     public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore) {
-        List<Map.Entry<String, Float>> results = searchInternal(queryVector, null, limit, minScore);
-        return results.stream()
-            .collect(Collectors.toMap(
-                Map.Entry::getKey,
-                Map.Entry::getValue,
-                (a, b) -> a,
-                LinkedHashMap::new
-            ));
+        float[] query = VectorMath.normalize(queryVector);
+        TopKCollector collector = new TopKCollector(limit, minScore);
+        vectorStore.forEach((id, stored) -> collector.offer(id, VectorMath.dot(query, stored.vector) * stored.inverseNorm));
+        return collector.drainDescending();
     }
 
     @Override
-    public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore) {
-        List<Map.Entry<String, Float>> results = vectorIds.stream()
-            .filter(vectorStore::containsKey)
-            .map(id -> new AbstractMap.SimpleEntry<>(id, cosineSimilarity(queryVector, vectorStore.get(id))))
-            .filter(entry -> entry.getValue() >= minScore)
-            .sorted(Map.Entry.<String, Float>comparingByValue().reversed())
-            .limit(limit)
+    public List<Map<String, Float>> searchSimilarBatch(List<float[]> queryVectors, int limit, float minScore) {
+        // 各查询独立遍历，多个查询并行执行
+        return queryVectors.parallelStream()
+            .map(queryVector -> searchSimilar(queryVector, limit, minScore))
             .collect(Collectors.toList());
+    }
 
-        return results.stream()
-            .collect(Collectors.toMap(
-                Map.Entry::getKey,
-                Map.Entry::getValue,
-                (a, b) -> a,
-                LinkedHashMap::new
-            ));
-    }
-
-    private List<Map.Entry<String, Float>> searchInternal(float[] queryVector, String prefix, int limit, float minScore) {
-        // 计算相似度并排序
-        return vectorStore.entrySet().stream()
-            .filter(entry -> prefix == null || entry.getKey().startsWith(prefix))
-            .map(entry -> new AbstractMap.SimpleEntry<>(entry.getKey(), cosineSimilarity(queryVector, entry.getValue())))
-            .filter(entry -> entry.getValue() >= minScore)
-            .sorted(Map.Entry.<String, Float>comparingByValue().reversed())
-            .limit(limit)
-            .collect(Collectors.toList());
+    @Override
+    public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore) {
+        return searchInternal(queryVector, new LinkedHashSet<>(vectorIds), limit, minScore);
     }
 
-    private float cosineSimilarity(float[] vector1, float[] vector2) {
-        float dotProduct = 0;
-        float norm1 = 0;
-        float norm2 = 0;
+    @Override
+    public Map<String, Float> searchSimilarFiltered(float[] queryVector, VectorFilter filter, int limit, float minScore) {
+        if (filter == null || filter.isEmpty()) {
+            return searchSimilar(queryVector, limit, minScore);
+        }
+        return searchInternal(queryVector, metadata.keys(metadata.evaluate(filter)), limit, minScore);
+    }
 
-        for (int i = 0; i < vector1.length; i++) {
-            dotProduct += vector1[i] * vector2[i];
-            norm1 += vector1[i] * vector1[i];
-            norm2 += vector2[i] * vector2[i];
+    @Override
+    public List<float[]> sampleVectors(int count, long seed) {
+        return VectorSampler.reservoir(this::forEachVector, count, new Random(seed));
+    }
+
+    @Override
+    public void forEachVector(BiConsumer<String, float[]> consumer) {
+        vectorStore.forEach((id, stored) -> consumer.accept(id, stored.vector));
+    }
+
+    private Map<String, Float> searchInternal(float[] queryVector, Collection<String> ids, int limit, float minScore) {
+        // 查询向量只归一化一次，堆中只保留前 limit 个结果
+        float[] query = VectorMath.normalize(queryVector);
+        TopKCollector collector = new TopKCollector(limit, minScore);
+        for (String id : ids) {
+            StoredVector stored = vectorStore.get(id);
+            if (stored != null) {
+                collector.offer(id, VectorMath.dot(query, stored.vector) * stored.inverseNorm);
+            }
         }
+        return collector.drainDescending();
+    }
+
+    private static final class StoredVector {
+        private final float[] vector;
+        private final float inverseNorm;
 
-        return dotProduct / (float) (Math.sqrt(norm1) * Math.sqrt(norm2));
+        private StoredVector(float[] vector) {
+            this.vector = vector;
+            this.inverseNorm = VectorMath.inverseNorm(vector);
+        }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,356 @@
+package com.marsreg.vector.service.impl;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.filter.MetadataIndex;
+import com.marsreg.vector.filter.RoaringBitmap;
+import com.marsreg.vector.index.ivf.IvfIndex;
+import com.marsreg.vector.index.ivf.KMeans;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+import com.marsreg.vector.service.VectorStorageService;
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.similarity.VectorMath;
+import com.marsreg.vector.storage.VectorSampler;
+import com.marsreg.vector.tuning.QuerySampler;
+import com.marsreg.vector.tuning.TunableVectorSearch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 基于进程内IVF-Flat倒排索引的向量存储。
+ * 存储的向量达到训练样本数后在后台用mini-batch k-means训练聚类中心，训练前只有一个倒排表，等价于精确扫描；
+ * 此后新向量直接分配到最近的倒排表，定期检查倒排表大小，不均衡时重新训练并重建索引
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "marsreg.vector.storage", name = "type", havingValue = "ivf")
+public class IvfVectorStorageService implements VectorStorageService, TunableVectorSearch {
+
+    // 每个聚类中心至少需要的训练样本数，样本不足时减少倒排表数
+    private static final int MIN_POINTS_PER_LIST = 39;
+
+    private final VectorizationConfig.Storage.Ivf config;
+    private final VectorizationConfig.Storage.Filter filterConfig;
+    private final int dimension;
+    private final MetadataIndex metadata;
+    private final AtomicLong trainingCount = new AtomicLong();
+    private final QuerySampler querySampler;
+    private volatile int nprobe;
+
+    // 写操作之间可以并发，只有切换索引时需要独占
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean training = new AtomicBoolean(false);
+    private volatile IvfIndex index;
+    private volatile Queue<Consumer<IvfIndex>> pendingOperations;
+    private ScheduledExecutorService trainingExecutor;
+
+    public IvfVectorStorageService(VectorizationConfig vectorizationConfig) {
+        this.config = vectorizationConfig.getStorage().getIvf();
+        this.filterConfig = vectorizationConfig.getStorage().getFilter();
+        this.dimension = vectorizationConfig.storedDimension();
+        this.metadata = new MetadataIndex(filterConfig.getTimeBucketMillis());
+        this.nprobe = config.getNprobe();
+        this.querySampler = QuerySampler.of(vectorizationConfig.getStorage().getTuning());
+        this.index = IvfIndex.flat(dimension);
+    }
+
+    @PostConstruct
+    public void init() {
+        trainingExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ivf-training");
+            thread.setDaemon(true);
+            return thread;
+        });
+        trainingExecutor.scheduleWithFixedDelay(this::retrainIfImbalanced,
+            config.getRetrainCheckInterval(), config.getRetrainCheckInterval(), TimeUnit.SECONDS);
+        log.info("IVF向量存储初始化: nlist={}, nprobe={}, trainingSampleSize={}",
+            config.getNlist(), nprobe, config.getTrainingSampleSize());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (trainingExecutor != null) {
+            trainingExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void storeVector(String id, float[] vector) {
+        write(target -> target.add(id, vector));
+        trainIfNecessary();
+    }
+
+    @Override
+    public void storeVectors(Map<String, float[]> vectors) {
+        vectors.entrySet().parallelStream()
+            .forEach(entry -> write(target -> target.add(entry.getKey(), entry.getValue())));
+        trainIfNecessary();
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors) {
+        vectors.keySet().forEach(id -> metadata.putIfAbsent(id, VectorMetadata.ofDocument(documentId)));
+        return storeVectorsAsync(vectors);
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors,
+                                                             VectorMetadata vectorMetadata) {
+        vectors.keySet().forEach(id -> metadata.put(id, vectorMetadata));
+        return storeVectorsAsync(vectors);
+    }
+
+    @Override
+    public float[] getVector(String id) {
+        return index.get(id);
+    }
+
+    @Override
+    public Map<String, float[]> getVectors(List<String> ids) {
+        IvfIndex current = index;
+        Map<String, float[]> result = new HashMap<>();
+        for (String id : ids) {
+            float[] v = current.get(id);
+            if (v != null) result.put(id, v);
+        }
+        return result;
+    }
+
+    @Override
+    public VectorMetadata getMetadata(String id) {
+        return metadata.get(id);
+    }
+
+    @Override
+    public void deleteVector(String id) {
+        write(target -> target.remove(id));
+        metadata.remove(id);
+    }
+
+    @Override
+    public void deleteVectors(List<String> ids) {
+        write(target -> ids.forEach(target::remove));
+        ids.forEach(metadata::remove);
+    }
+
+    @Override
+    public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore) {
+        querySampler.record(queryVector);
+        return searchSimilar(queryVector, limit, minScore, nprobe);
+    }
+
+    /**
+     * 按指定的探测数搜索，nprobe 越大召回率越高、扫描的行数越多
+     */
+    @Override
+    public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore, int nprobe) {
+        return index.search(queryVector, limit, nprobe, minScore);
+    }
+
+    @Override
+    public Map<String, Float> searchExact(float[] queryVector, int limit) {
+        IvfIndex current = index;
+        return current.search(queryVector, limit, current.getNlist(), -1f);
+    }
+
+    @Override
+    public List<Map<String, Float>> searchSimilarBatch(List<float[]> queryVectors, int limit, float minScore) {
+        IvfIndex current = index;
+        int probes = nprobe;
+        queryVectors.forEach(querySampler::record);
+        return queryVectors.parallelStream()
+            .map(queryVector -> (Map<String, Float>) current.search(queryVector, limit, probes, minScore))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore) {
+        IvfIndex current = index;
+        float invNorm = VectorMath.inverseNorm(queryVector);
+        TopKCollector collector = new TopKCollector(limit, minScore);
+        for (String id : new LinkedHashSet<>(vectorIds)) {
+            float score = current.score(queryVector, invNorm, id);
+            if (!Float.isNaN(score)) {
+                collector.offer(id, score);
+            }
+        }
+        return collector.drainDescending();
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarFiltered(float[] queryVector, VectorFilter filter, int limit, float minScore) {
+        if (filter == null || filter.isEmpty()) {
+            return searchSimilar(queryVector, limit, minScore);
+        }
+        RoaringBitmap allowed = metadata.evaluate(filter);
+        int cardinality = allowed.cardinality();
+        if (cardinality == 0) {
+            return new LinkedHashMap<>();
+        }
+        if (cardinality <= filterConfig.getBruteForceThreshold()) {
+            return searchSimilarInRange(queryVector, metadata.keys(allowed), limit, minScore);
+        }
+        // 选择率越低，探测的倒排表中满足条件的行越少，按比例放大探测数
+        IvfIndex current = index;
+        int probes = (int) Math.min(current.getNlist(), (long) nprobe * Math.max(1, current.size() / cardinality));
+        return current.search(queryVector, limit, probes, minScore, id -> allowed.contains(metadata.ordinal(id)));
+    }
+
+    @Override
+    public List<float[]> sampleVectors(int count, long seed) {
+        return VectorSampler.reservoir(index::forEachLive, count, new Random(seed));
+    }
+
+    @Override
+    public void forEachVector(BiConsumer<String, float[]> consumer) {
+        index.forEachLive(consumer);
+    }
+
+    @Override
+    public String getSearchParameterName() {
+        return "nprobe";
+    }
+
+    @Override
+    public int getSearchParameter() {
+        return nprobe;
+    }
+
+    /**
+     * 修改默认探测数，对之后的查询生效
+     */
+    @Override
+    public void setSearchParameter(int nprobe) {
+        if (nprobe < 1) {
+            throw new IllegalArgumentException("nprobe必须大于0");
+        }
+        this.nprobe = nprobe;
+    }
+
+    @Override
+    public int getMaxSearchParameter() {
+        return index.getNlist();
+    }
+
+    @Override
+    public QuerySampler getQuerySampler() {
+        return querySampler;
+    }
+
+    /**
+     * 立即用当前存储的向量重新训练聚类中心并重建索引
+     */
+    public void retrain() {
+        if (training.compareAndSet(false, true)) {
+            trainingExecutor.submit(this::train);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        IvfIndex current = index;
+        int[] sizes = current.listSizes();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", current.size());
+        stats.put("dimension", dimension);
+        stats.put("nlist", current.getNlist());
+        stats.put("nprobe", nprobe);
+        stats.put("trained", current.getNlist() > 1);
+        stats.put("training", training.get());
+        stats.put("trainingCount", trainingCount.get());
+        stats.put("imbalanceFactor", current.imbalanceFactor());
+        stats.put("maxListSize", Arrays.stream(sizes).max().orElse(0));
+        stats.put("emptyLists", Arrays.stream(sizes).filter(size -> size == 0).count());
+        stats.put("metadataEntries", metadata.size());
+        stats.put("metadataBytes", metadata.sizeInBytes());
+        return stats;
+    }
+
+    void retrainIfImbalanced() {
+        IvfIndex current = index;
+        if (current.getNlist() > 1 && current.imbalanceFactor() > config.getMaxImbalance()) {
+            log.info("IVF倒排表不均衡: factor={}, 重新训练", current.imbalanceFactor());
+            retrain();
+        }
+    }
+
+    private void trainIfNecessary() {
+        if (index.getNlist() == 1 && index.size() >= config.getTrainingSampleSize()) {
+            retrain();
+        }
+    }
+
+    /**
+     * 训练新的聚类中心并用存活向量重建索引，期间的写操作记录下来在切换前重放
+     */
+    private void train() {
+        try {
+            long start = System.currentTimeMillis();
+            swapLock.writeLock().lock();
+            try {
+                pendingOperations = new ConcurrentLinkedQueue<>();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+
+            IvfIndex current = index;
+            List<float[]> samples = VectorSampler.reservoir(current::forEachLive, config.getTrainingSampleSize(),
+                new Random(trainingCount.get()));
+            int nlist = Math.max(1, Math.min(config.getNlist(), samples.size() / MIN_POINTS_PER_LIST));
+            float[] centroids = KMeans.train(samples, nlist, config.getKmeansIterations(),
+                config.getKmeansBatchSize(), 42L + trainingCount.get());
+            IvfIndex rebuilt = new IvfIndex(dimension, centroids);
+            List<Map.Entry<String, float[]>> live = new ArrayList<>(current.size());
+            current.forEachLive((id, vector) -> live.add(new AbstractMap.SimpleEntry<>(id, vector)));
+            live.parallelStream().forEach(entry -> rebuilt.add(entry.getKey(), entry.getValue()));
+
+            swapLock.writeLock().lock();
+            try {
+                Consumer<IvfIndex> operation;
+                while ((operation = pendingOperations.poll()) != null) {
+                    operation.accept(rebuilt);
+                }
+                index = rebuilt;
+                pendingOperations = null;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            trainingCount.incrementAndGet();
+            log.info("IVF索引训练完成: nlist={}, 向量数={}, 不均衡系数={}, 耗时={}ms",
+                rebuilt.getNlist(), rebuilt.size(), rebuilt.imbalanceFactor(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            pendingOperations = null;
+            log.error("IVF索引训练失败", e);
+        } finally {
+            training.set(false);
+        }
+    }
+
+    private void write(Consumer<IvfIndex> operation) {
+        swapLock.readLock().lock();
+        try {
+            operation.accept(index);
+            Queue<Consumer<IvfIndex>> pending = pendingOperations;
+            if (pending != null) {
+                pending.add(operation);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+}
@@ -1,35 +1,58 @@
 package com.marsreg.vector.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.marsreg.vector.milvus.FloatListView;
+import com.marsreg.vector.milvus.MilvusExpressions;
+import com.marsreg.vector.milvus.MilvusWriteBuffer;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
 import com.marsreg.vector.service.VectorStorageService;
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.storage.VectorSampler;
+import com.marsreg.vector.tuning.QuerySampler;
+import com.marsreg.vector.tuning.TunableVectorSearch;
 import io.milvus.client.MilvusClient;
 import io.milvus.param.collection.CreateCollectionParam;
+import io.milvus.param.collection.DescribeCollectionParam;
 import io.milvus.param.collection.HasCollectionParam;
 import io.milvus.param.dml.InsertParam;
+import io.milvus.param.dml.QueryParam;
 import io.milvus.param.dml.DeleteParam;
 import io.milvus.param.dml.SearchParam;
 import io.milvus.param.index.CreateIndexParam;
+import io.milvus.grpc.DescribeCollectionResponse;
+import io.milvus.grpc.MutationResult;
+import io.milvus.grpc.QueryResults;
 import io.milvus.grpc.SearchResults;
 import io.milvus.param.R;
 import io.milvus.param.MetricType;
 import io.milvus.param.IndexType;
 import io.milvus.param.collection.FieldType;
 import io.milvus.grpc.DataType;
+import io.milvus.response.DescCollResponseWrapper;
+import io.milvus.response.QueryResultsWrapper;
 import io.milvus.response.SearchResultsWrapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class MilvusVectorStorageService implements VectorStorageService {
+@ConditionalOnProperty(prefix = "marsreg.vector.storage", name = "type", havingValue = "milvus", matchIfMissing = true)
+public class MilvusVectorStorageService implements VectorStorageService, TunableVectorSearch {
 
     private final MilvusClient milvusClient;
 
@@ -48,10 +71,87 @@ public class MilvusVectorStorageService implements VectorStorageService {
     @Value("${marsreg.vector.milvus.index.metric-type:IP}")
     private String metricType;
 
-    private final Map<String, float[]> vectorStore = new ConcurrentHashMap<>();
+    // 搜索参数：IVF类索引为 nprobe，HNSW索引为 ef，启用自动调节时在运行时修改
+    @Value("${marsreg.vector.milvus.index.nprobe:10}")
+    private volatile int nprobe = 10;
+
+    @Value("${marsreg.vector.milvus.index.ef:64}")
+    private volatile int ef = 64;
+
+    @Value("${marsreg.vector.storage.tuning.enabled:false}")
+    private boolean tuningEnabled;
+
+    @Value("${marsreg.vector.storage.tuning.sample-rate:0.01}")
+    private double tuningSampleRate = 0.01;
+
+    @Value("${marsreg.vector.storage.tuning.sample-capacity:256}")
+    private int tuningSampleCapacity = 256;
+
+    @Value("${marsreg.vector.storage.tuning.max-ef:1024}")
+    private int maxEf = 1024;
+
+    private QuerySampler querySampler = QuerySampler.disabled();
+
+    // 写缓冲配置，字段初始值与默认值一致，便于测试中直接构造
+    @Value("${marsreg.vector.milvus.write.batch-rows:512}")
+    private int writeBatchRows = 512;
+
+    @Value("${marsreg.vector.milvus.write.batch-bytes:4194304}")
+    private long writeBatchBytes = 4194304;
+
+    @Value("${marsreg.vector.milvus.write.max-delay-ms:50}")
+    private long writeMaxDelayMs = 50;
+
+    @Value("${marsreg.vector.milvus.write.flush-concurrency:2}")
+    private int writeFlushConcurrency = 2;
+
+    @Value("${marsreg.vector.milvus.write.max-retries:3}")
+    private int writeMaxRetries = 3;
+
+    @Value("${marsreg.vector.milvus.write.retry-backoff-ms:100}")
+    private long writeRetryBackoffMs = 100;
+
+    // 读穿缓存配置
+    @Value("${marsreg.vector.milvus.cache.max-entries:100000}")
+    private long cacheMaxEntries = 100000;
+
+    @Value("${marsreg.vector.milvus.cache.max-bytes:268435456}")
+    private long cacheMaxBytes = 268435456;
+
+    @Value("${marsreg.vector.milvus.query.batch-size:1000}")
+    private int queryBatchSize = 1000;
+
+    @Value("${marsreg.vector.milvus.partition-key.partitions:64}")
+    private int partitionKeyPartitions = 64;
+
+    private static final String DOCUMENT_ID_FIELD = "document_id";
+
+    // 元数据过滤使用的标量字段
+    private static final String TYPE_FIELD = "doc_type";
+    private static final String TENANT_FIELD = "tenant";
+    private static final String TIMESTAMP_FIELD = "doc_timestamp";
+
+    // 没有时间戳的向量写入该值，不会落入任何时间范围条件
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    // 未关联文档的向量写入该分区键值
+    private static final String NO_DOCUMENT = "";
+
+    private MilvusWriteBuffer writeBuffer;
+
+    // 旧版本创建的集合没有 document_id 字段时退化为按主键过滤
+    private volatile boolean partitionKeyEnabled;
+
+    // 旧版本创建的集合没有类型、租户、时间戳字段，只能按文档ID过滤
+    private volatile boolean metadataFieldsEnabled;
+
+    private Cache<String, float[]> vectorCache;
 
     @PostConstruct
     public void init() {
+        if (tuningEnabled) {
+            querySampler = new QuerySampler(tuningSampleCapacity, tuningSampleRate);
+        }
         try {
             // 检查集合是否存在
             R<Boolean> hasCollection = milvusClient.hasCollection(HasCollectionParam.newBuilder()
@@ -64,12 +164,33 @@ public class MilvusVectorStorageService implements VectorStorageService {
                         .withCollectionName(collectionName)
                         .withDescription("向量存储集合")
                         .withShardsNum(2)
+                        .withPartitionsNum(partitionKeyPartitions)
                         .addFieldType(FieldType.newBuilder()
                                 .withName("id")
                                 .withDataType(DataType.VarChar)
                                 .withMaxLength(64)
                                 .withPrimaryKey(true)
                                 .build())
+                        .addFieldType(FieldType.newBuilder()
+                                .withName(DOCUMENT_ID_FIELD)
+                                .withDataType(DataType.VarChar)
+                                .withMaxLength(64)
+                                .withPartitionKey(true)
+                                .build())
+                        .addFieldType(FieldType.newBuilder()
+                                .withName(TYPE_FIELD)
+                                .withDataType(DataType.VarChar)
+                                .withMaxLength(64)
+                                .build())
+                        .addFieldType(FieldType.newBuilder()
+                                .withName(TENANT_FIELD)
+                                .withDataType(DataType.VarChar)
+                                .withMaxLength(64)
+                                .build())
+                        .addFieldType(FieldType.newBuilder()
+                                .withName(TIMESTAMP_FIELD)
+                                .withDataType(DataType.Int64)
+                                .build())
                         .addFieldType(FieldType.newBuilder()
                                 .withName("vector")
                                 .withDataType(DataType.FloatVector)
@@ -89,91 +210,257 @@ public class MilvusVectorStorageService implements VectorStorageService {
                         .build();
 
                 milvusClient.createIndex(createIndexParam);
+                partitionKeyEnabled = true;
+                metadataFieldsEnabled = true;
                 log.info("Milvus集合和索引创建成功");
+            } else {
+                DescCollResponseWrapper description = describeCollection();
+                partitionKeyEnabled = description != null && description.getFieldByName(DOCUMENT_ID_FIELD) != null;
+                metadataFieldsEnabled = description != null && description.getFieldByName(TYPE_FIELD) != null
+                    && description.getFieldByName(TENANT_FIELD) != null && description.getFieldByName(TIMESTAMP_FIELD) != null;
+                if (!partitionKeyEnabled) {
+                    log.warn("Milvus集合 {} 缺少 {} 分区键字段，文档内搜索将按主键过滤", collectionName, DOCUMENT_ID_FIELD);
+                }
+                if (!metadataFieldsEnabled) {
+                    log.warn("Milvus集合 {} 缺少元数据字段，不支持按类型、租户和时间过滤，重建集合后生效", collectionName);
+                }
             }
         } catch (Exception e) {
             log.error("Milvus初始化失败", e);
             throw new RuntimeException("Milvus初始化失败", e);
         }
+        // 按字节数加权淘汰；每条至少计 maxBytes / maxEntries，使条目数同样不超过上限
+        long minWeight = Math.max(1, cacheMaxBytes / Math.max(1, cacheMaxEntries));
+        vectorCache = Caffeine.newBuilder()
+            .maximumWeight(cacheMaxBytes)
+            .weigher((String id, float[] vector) ->
+                (int) Math.min(Integer.MAX_VALUE, Math.max(minWeight, (long) vector.length * Float.BYTES + id.length() * 2L)))
+            .recordStats()
+            .build();
+        writeBuffer = new MilvusWriteBuffer(this::insertBatch, writeBatchRows, writeBatchBytes,
+            writeMaxDelayMs, writeFlushConcurrency, writeMaxRetries, writeRetryBackoffMs);
+    }
+
+    private DescCollResponseWrapper describeCollection() {
+        R<DescribeCollectionResponse> response = milvusClient.describeCollection(DescribeCollectionParam.newBuilder()
+                .withCollectionName(collectionName)
+                .build());
+        if (response == null || response.getData() == null) {
+            return null;
+        }
+        return new DescCollResponseWrapper(response.getData());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (writeBuffer != null) {
+            writeBuffer.close();
+        }
     }
 
     @Override
     public void storeVector(String id, float[] vector) {
         try {
-            List<String> ids = Collections.singletonList(id);
-            List<List<Float>> vectors = Collections.singletonList(
-                IntStream.range(0, vector.length)
-                    .mapToObj(i -> (float) vector[i])
-                    .collect(Collectors.toList())
-            );
-
-            List<InsertParam.Field> fields = Arrays.asList(
-                new InsertParam.Field("id", ids),
-                new InsertParam.Field("vector", vectors)
-            );
-            InsertParam insertParam = InsertParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withFields(fields)
-                    .build();
-
-            milvusClient.insert(insertParam);
-            vectorStore.put(id, vector);
-        } catch (Exception e) {
-            log.error("向量存储失败: " + id, e);
-            throw new RuntimeException("向量存储失败", e);
+            storeVectorsAsync(Collections.singletonMap(id, vector)).join();
+        } catch (CompletionException e) {
+            log.error("向量存储失败: " + id, e.getCause());
+            throw new RuntimeException("向量存储失败", e.getCause());
         }
     }
 
     @Override
     public void storeVectors(Map<String, float[]> vectors) {
         try {
-            List<String> ids = new ArrayList<>(vectors.keySet());
-            List<List<Float>> vectorList = vectors.values().stream()
-                    .map(vector -> IntStream.range(0, vector.length)
-                            .mapToObj(i -> (float) vector[i])
-                            .collect(Collectors.toList()))
-                    .collect(Collectors.toList());
-
-            List<InsertParam.Field> fields = Arrays.asList(
-                new InsertParam.Field("id", ids),
-                new InsertParam.Field("vector", vectorList)
-            );
-            InsertParam insertParam = InsertParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withFields(fields)
-                    .build();
+            storeVectorsAsync(vectors).join();
+        } catch (CompletionException e) {
+            log.error("批量向量存储失败", e.getCause());
+            throw new RuntimeException("批量向量存储失败", e.getCause());
+        }
+    }
 
-            milvusClient.insert(insertParam);
-            vectorStore.putAll(vectors);
-        } catch (Exception e) {
-            log.error("批量向量存储失败", e);
-            throw new RuntimeException("批量向量存储失败", e);
+    @Override
+    public CompletableFuture<Void> storeVectorsAsync(Map<String, float[]> vectors) {
+        return storeDocumentVectorsAsync(NO_DOCUMENT, vectors);
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors) {
+        return storeDocumentVectorsAsync(documentId, vectors, VectorMetadata.ofDocument(documentId));
+    }
+
+    /**
+     * 元数据写入集合的标量字段，过滤条件在服务端搜索时按表达式生效
+     */
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors,
+                                                             VectorMetadata metadata) {
+        VectorMetadata row = metadata != null ? metadata : new VectorMetadata();
+        if (!Objects.equals(row.getDocumentId(), documentId)) {
+            row = new VectorMetadata(documentId, row.getType(), row.getTenant(), row.getTimestamp());
+        }
+        Map<String, float[]> snapshot = new LinkedHashMap<>(vectors);
+        return writeBuffer.submit(row, snapshot).thenRun(() -> vectorCache.putAll(snapshot));
+    }
+
+    /**
+     * 按列组装一个批次写入 Milvus，向量列直接包装原数组
+     */
+    private void insertBatch(List<String> ids, List<VectorMetadata> metadata, List<float[]> vectors) {
+        List<List<Float>> vectorColumn = new ArrayList<>(vectors.size());
+        for (float[] vector : vectors) {
+            vectorColumn.add(new FloatListView(vector));
+        }
+        List<InsertParam.Field> fields = new ArrayList<>(6);
+        fields.add(new InsertParam.Field("id", ids));
+        if (partitionKeyEnabled) {
+            List<String> documentIds = new ArrayList<>(metadata.size());
+            metadata.forEach(row -> documentIds.add(orEmpty(row.getDocumentId())));
+            fields.add(new InsertParam.Field(DOCUMENT_ID_FIELD, documentIds));
+        }
+        if (metadataFieldsEnabled) {
+            List<String> types = new ArrayList<>(metadata.size());
+            List<String> tenants = new ArrayList<>(metadata.size());
+            List<Long> timestamps = new ArrayList<>(metadata.size());
+            for (VectorMetadata row : metadata) {
+                types.add(orEmpty(row.getType()));
+                tenants.add(orEmpty(row.getTenant()));
+                timestamps.add(row.getTimestamp() != null ? row.getTimestamp() : NO_TIMESTAMP);
+            }
+            fields.add(new InsertParam.Field(TYPE_FIELD, types));
+            fields.add(new InsertParam.Field(TENANT_FIELD, tenants));
+            fields.add(new InsertParam.Field(TIMESTAMP_FIELD, timestamps));
+        }
+        fields.add(new InsertParam.Field("vector", vectorColumn));
+        R<MutationResult> response = milvusClient.insert(InsertParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFields(fields)
+                .build());
+        if (response == null || response.getStatus() != R.Status.Success.getCode()) {
+            throw new IllegalStateException("Milvus插入失败: " + (response == null ? "无响应" : response.getMessage()));
+        }
+    }
+
+    /**
+     * 删除前先写出缓冲区，保证同一ID的插入不会晚于删除执行
+     */
+    private void awaitPendingWrites() {
+        try {
+            writeBuffer.flush().join();
+        } catch (CompletionException e) {
+            log.warn("删除前写出缓冲区失败", e.getCause());
         }
     }
 
     @Override
     public float[] getVector(String id) {
-        return vectorStore.get(id);
+        return getVectors(Collections.singletonList(id)).get(id);
     }
 
     @Override
     public Map<String, float[]> getVectors(List<String> ids) {
-        Map<String, float[]> result = new HashMap<>();
-        for (String id : ids) {
-            float[] v = vectorStore.get(id);
-            if (v != null) result.put(id, v);
+        try {
+            return vectorCache.getAll(new LinkedHashSet<>(ids), this::queryVectors);
+        } catch (Exception e) {
+            log.error("向量查询失败", e);
+            throw new RuntimeException("向量查询失败", e);
+        }
+    }
+
+    /**
+     * 按主键分批查询 Milvus，不存在的ID不出现在结果中
+     */
+    private Map<String, float[]> queryVectors(Set<? extends String> ids) {
+        Map<String, float[]> result = new HashMap<>(ids.size() * 2);
+        for (List<String> batch : MilvusExpressions.partition(new ArrayList<>(ids), queryBatchSize)) {
+            R<QueryResults> response = milvusClient.query(QueryParam.newBuilder()
+                    .withCollectionName(collectionName)
+                    .withExpr(MilvusExpressions.in("id", batch))
+                    .withOutFields(Arrays.asList("id", "vector"))
+                    .build());
+            if (response == null || response.getStatus() != R.Status.Success.getCode()) {
+                throw new IllegalStateException("Milvus查询失败: " + (response == null ? "无响应" : response.getMessage()));
+            }
+            QueryResultsWrapper wrapper = new QueryResultsWrapper(response.getData());
+            List<?> idColumn = wrapper.getFieldWrapper("id").getFieldData();
+            List<?> vectorColumn = wrapper.getFieldWrapper("vector").getFieldData();
+            for (int i = 0; i < idColumn.size(); i++) {
+                result.put(String.valueOf(idColumn.get(i)), toArray((List<?>) vectorColumn.get(i)));
+            }
         }
         return result;
     }
 
+    /**
+     * Milvus 不支持随机抽样，用主键游标遍历整个集合做蓄水池抽样，避免只取到主键靠前的向量
+     */
     @Override
-    public void deleteVector(String id) {
-        try {
-            milvusClient.delete(DeleteParam.newBuilder()
+    public List<float[]> sampleVectors(int count, long seed) {
+        return VectorSampler.reservoir(this::forEachVector, count, new Random(seed));
+    }
+
+    /**
+     * 按主键分页遍历整个集合。offset 分页受查询窗口上限限制，这里以上一页的最大主键作为游标，
+     * Milvus 对带 limit 的查询按主键升序归并各段的结果，因此游标之后的向量不会被跳过
+     */
+    @Override
+    public void forEachVector(BiConsumer<String, float[]> consumer) {
+        awaitPendingWrites();
+        String cursor = null;
+        while (true) {
+            R<QueryResults> response = milvusClient.query(QueryParam.newBuilder()
                     .withCollectionName(collectionName)
-                    .withExpr("id == \"" + id + "\"")
+                    .withExpr(cursor == null ? "id != \"\"" : MilvusExpressions.gt("id", cursor))
+                    .withLimit((long) queryBatchSize)
+                    .withOutFields(Arrays.asList("id", "vector"))
                     .build());
-            vectorStore.remove(id);
+            if (response == null || response.getStatus() != R.Status.Success.getCode()) {
+                throw new IllegalStateException("Milvus遍历查询失败: " + (response == null ? "无响应" : response.getMessage()));
+            }
+            QueryResultsWrapper wrapper = new QueryResultsWrapper(response.getData());
+            List<?> idColumn = wrapper.getFieldWrapper("id").getFieldData();
+            List<?> vectorColumn = wrapper.getFieldWrapper("vector").getFieldData();
+            for (int i = 0; i < idColumn.size(); i++) {
+                String id = String.valueOf(idColumn.get(i));
+                consumer.accept(id, toArray((List<?>) vectorColumn.get(i)));
+                if (cursor == null || id.compareTo(cursor) > 0) {
+                    cursor = id;
+                }
+            }
+            if (idColumn.size() < queryBatchSize) {
+                return;
+            }
+        }
+    }
+
+    private static float[] toArray(List<?> values) {
+        float[] vector = new float[values.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = ((Number) values.get(i)).floatValue();
+        }
+        return vector;
+    }
+
+    /**
+     * 读穿缓存的命中统计
+     */
+    public Map<String, Object> getCacheStats() {
+        CacheStats stats = vectorCache.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("size", vectorCache.estimatedSize());
+        result.put("hitRate", stats.hitRate());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("maxBytes", cacheMaxBytes);
+        return result;
+    }
+
+    @Override
+    public void deleteVector(String id) {
+        awaitPendingWrites();
+        try {
+            delete(MilvusExpressions.eq("id", id));
+            vectorCache.invalidate(id);
         } catch (Exception e) {
             log.error("向量删除失败: " + id, e);
             throw new RuntimeException("向量删除失败", e);
@@ -182,17 +469,13 @@ public class MilvusVectorStorageService implements VectorStorageService {
 
     @Override
     public void deleteVectors(List<String> ids) {
+        awaitPendingWrites();
         try {
-            String expr = ids.stream()
-                    .map(id -> "id == \"" + id + "\"")
-                    .collect(Collectors.joining(" || "));
-
-            milvusClient.delete(DeleteParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withExpr(expr)
-                    .build());
-
-            ids.forEach(vectorStore::remove);
+            // 主键 in 表达式分批执行，避免超长表达式
+            for (List<String> batch : MilvusExpressions.partition(ids, MilvusExpressions.MAX_IN_SIZE)) {
+                delete(MilvusExpressions.in("id", batch));
+            }
+            vectorCache.invalidateAll(ids);
         } catch (Exception e) {
             log.error("批量向量删除失败", e);
             throw new RuntimeException("批量向量删除失败", e);
@@ -200,81 +483,269 @@ public class MilvusVectorStorageService implements VectorStorageService {
     }
 
     @Override
-    public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore) {
+    public void deleteDocumentVectors(String documentId, List<String> vectorIds) {
+        if (!partitionKeyEnabled) {
+            deleteVectors(vectorIds);
+            return;
+        }
+        awaitPendingWrites();
         try {
-            List<List<Float>> vectors = Collections.singletonList(
-                IntStream.range(0, queryVector.length)
-                    .mapToObj(i -> (float) queryVector[i])
-                    .collect(Collectors.toList())
-            );
+            // 按分区键删除，只涉及该文档所在分区，不需要拼接主键列表
+            delete(MilvusExpressions.eq(DOCUMENT_ID_FIELD, documentId));
+            vectorCache.invalidateAll(vectorIds);
+        } catch (Exception e) {
+            log.error("文档向量删除失败: documentId=" + documentId, e);
+            throw new RuntimeException("文档向量删除失败", e);
+        }
+    }
 
-            SearchParam searchParam = SearchParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withVectorFieldName("vector")
-                    .withVectors(vectors)
-                    .withTopK(limit)
-                    .withMetricType(MetricType.valueOf(metricType))
-                    .withParams("{\"nprobe\":10}")
-                    .build();
-
-            R<SearchResults> response = milvusClient.search(searchParam);
-            SearchResultsWrapper wrapper = new SearchResultsWrapper(response.getData().getResults());
-
-            Map<String, Float> results = new LinkedHashMap<>();
-            List<?> idList = wrapper.getFieldData("id", 0);
-            List<SearchResultsWrapper.IDScore> idScoreList = wrapper.getIDScore(0);
-            for (int i = 0; i < idScoreList.size(); i++) {
-                float score = idScoreList.get(i).getScore();
-                if (score >= minScore) {
-                    results.put(String.valueOf(idList.get(i)), score);
-                }
-            }
-            return results;
+    private void delete(String expr) {
+        R<MutationResult> response = milvusClient.delete(DeleteParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withExpr(expr)
+                .build());
+        if (response == null || response.getStatus() != R.Status.Success.getCode()) {
+            throw new IllegalStateException("Milvus删除失败: " + (response == null ? "无响应" : response.getMessage()));
+        }
+    }
+
+    @Override
+    public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore) {
+        querySampler.record(queryVector);
+        return searchSimilar(queryVector, limit, minScore, getSearchParameter());
+    }
+
+    @Override
+    public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore, int searchParameter) {
+        try {
+            return search(Collections.singletonList(queryVector), limit, minScore, null, searchParameter).get(0);
         } catch (Exception e) {
             log.error("向量搜索失败", e);
             throw new RuntimeException("向量搜索失败", e);
         }
     }
 
+    /**
+     * 服务端无法做精确扫描，以参数上限的搜索结果为基准，IVF_FLAT 下等价于精确搜索
+     */
     @Override
-    public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore) {
-        try {
-            List<List<Float>> vectors = Collections.singletonList(
-                IntStream.range(0, queryVector.length)
-                    .mapToObj(i -> (float) queryVector[i])
-                    .collect(Collectors.toList())
-            );
+    public Map<String, Float> searchExact(float[] queryVector, int limit) {
+        return searchSimilar(queryVector, limit, -1f, getMaxSearchParameter());
+    }
 
-            String expr = vectorIds.stream()
-                    .map(id -> "id == \"" + id + "\"")
-                    .collect(Collectors.joining(" || "));
+    @Override
+    public String getSearchParameterName() {
+        return isGraphIndex() ? "ef" : "nprobe";
+    }
 
-            SearchParam searchParam = SearchParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withVectorFieldName("vector")
-                    .withVectors(vectors)
-                    .withTopK(limit)
-                    .withMetricType(MetricType.valueOf(metricType))
-                    .withParams("{\"nprobe\":10}")
-                    .withExpr(expr)
-                    .build();
-
-            R<SearchResults> response = milvusClient.search(searchParam);
-            SearchResultsWrapper wrapper = new SearchResultsWrapper(response.getData().getResults());
-
-            Map<String, Float> results = new LinkedHashMap<>();
-            List<?> idList = wrapper.getFieldData("id", 0);
-            List<SearchResultsWrapper.IDScore> idScoreList = wrapper.getIDScore(0);
-            for (int i = 0; i < idScoreList.size(); i++) {
-                float score = idScoreList.get(i).getScore();
-                if (score >= minScore) {
-                    results.put(String.valueOf(idList.get(i)), score);
-                }
+    @Override
+    public int getSearchParameter() {
+        return isGraphIndex() ? ef : nprobe;
+    }
+
+    @Override
+    public void setSearchParameter(int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(getSearchParameterName() + "必须大于0");
+        }
+        if (isGraphIndex()) {
+            ef = value;
+        } else {
+            nprobe = value;
+        }
+    }
+
+    @Override
+    public int getMinSearchParameter(int limit) {
+        return isGraphIndex() ? limit : 1;
+    }
+
+    @Override
+    public int getMaxSearchParameter() {
+        return isGraphIndex() ? maxEf : nlist;
+    }
+
+    @Override
+    public QuerySampler getQuerySampler() {
+        return querySampler;
+    }
+
+    @Override
+    public List<Map<String, Float>> searchSimilarBatch(List<float[]> queryVectors, int limit, float minScore) {
+        if (queryVectors.isEmpty()) {
+            return new ArrayList<>();
+        }
+        queryVectors.forEach(querySampler::record);
+        try {
+            // 所有查询向量放在同一个 nq=N 请求中
+            return new ArrayList<>(search(queryVectors, limit, minScore, null));
+        } catch (Exception e) {
+            log.error("批量向量搜索失败: nq=" + queryVectors.size(), e);
+            throw new RuntimeException("批量向量搜索失败", e);
+        }
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore) {
+        try {
+            List<List<String>> batches = MilvusExpressions.partition(new ArrayList<>(new LinkedHashSet<>(vectorIds)),
+                MilvusExpressions.MAX_IN_SIZE);
+            if (batches.size() == 1) {
+                return search(queryVector, limit, minScore, MilvusExpressions.in("id", batches.get(0)));
             }
-            return results;
+            // ID范围过大时分批搜索后合并前 limit 个结果
+            TopKCollector collector = new TopKCollector(limit, minScore);
+            for (List<String> batch : batches) {
+                search(queryVector, limit, minScore, MilvusExpressions.in("id", batch)).forEach(collector::offer);
+            }
+            return collector.drainDescending();
         } catch (Exception e) {
             log.error("范围向量搜索失败", e);
             throw new RuntimeException("范围向量搜索失败", e);
         }
     }
-} 
\ No newline at end of file
+
+    @Override
+    public boolean supportsDocumentPartition() {
+        return partitionKeyEnabled;
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarInDocument(String documentId, Supplier<List<String>> vectorIds,
+                                                      float[] queryVector, int limit, float minScore) {
+        if (!partitionKeyEnabled) {
+            return searchSimilarInRange(queryVector, vectorIds.get(), limit, minScore);
+        }
+        try {
+            // 按分区键过滤，Milvus 只搜索该文档所在的分区
+            return search(queryVector, limit, minScore, MilvusExpressions.eq(DOCUMENT_ID_FIELD, documentId));
+        } catch (Exception e) {
+            log.error("文档内向量搜索失败: documentId=" + documentId, e);
+            throw new RuntimeException("文档内向量搜索失败", e);
+        }
+    }
+
+    /**
+     * 过滤条件转为 Milvus 表达式，在服务端索引遍历时生效。文档ID较多时按 in 上限分批搜索后合并
+     */
+    @Override
+    public Map<String, Float> searchSimilarFiltered(float[] queryVector, VectorFilter filter, int limit, float minScore) {
+        if (filter == null || filter.isEmpty()) {
+            return searchSimilar(queryVector, limit, minScore);
+        }
+        boolean documentFilter = filter.getDocumentIds() != null && !filter.getDocumentIds().isEmpty();
+        if (documentFilter && !partitionKeyEnabled) {
+            throw new IllegalStateException("Milvus集合 " + collectionName + " 缺少 " + DOCUMENT_ID_FIELD + " 字段，需要重建集合");
+        }
+        if (!metadataFieldsEnabled && ((filter.getTypes() != null && !filter.getTypes().isEmpty())
+            || (filter.getTenants() != null && !filter.getTenants().isEmpty())
+            || filter.getFromTimestamp() != null || filter.getToTimestamp() != null)) {
+            throw new IllegalStateException("Milvus集合 " + collectionName + " 缺少元数据字段，需要重建集合");
+        }
+        List<String> clauses = new ArrayList<>(4);
+        if (filter.getTypes() != null && !filter.getTypes().isEmpty()) {
+            clauses.add(MilvusExpressions.in(TYPE_FIELD, filter.getTypes()));
+        }
+        if (filter.getTenants() != null && !filter.getTenants().isEmpty()) {
+            clauses.add(MilvusExpressions.in(TENANT_FIELD, filter.getTenants()));
+        }
+        // 没有时间戳的行写入 Long.MIN_VALUE，只给出结束时间时也要排除
+        if (filter.getFromTimestamp() != null || filter.getToTimestamp() != null) {
+            clauses.add(MilvusExpressions.ge(TIMESTAMP_FIELD,
+                filter.getFromTimestamp() != null ? filter.getFromTimestamp() : NO_TIMESTAMP + 1));
+        }
+        if (filter.getToTimestamp() != null) {
+            clauses.add(MilvusExpressions.le(TIMESTAMP_FIELD, filter.getToTimestamp()));
+        }
+        try {
+            if (!documentFilter) {
+                return search(queryVector, limit, minScore, MilvusExpressions.and(clauses));
+            }
+            List<List<String>> batches = MilvusExpressions.partition(new ArrayList<>(filter.getDocumentIds()),
+                MilvusExpressions.MAX_IN_SIZE);
+            TopKCollector collector = new TopKCollector(limit, minScore);
+            for (List<String> batch : batches) {
+                List<String> batchClauses = new ArrayList<>(clauses.size() + 1);
+                batchClauses.add(MilvusExpressions.in(DOCUMENT_ID_FIELD, batch));
+                batchClauses.addAll(clauses);
+                search(queryVector, limit, minScore, MilvusExpressions.and(batchClauses)).forEach(collector::offer);
+            }
+            return collector.drainDescending();
+        } catch (Exception e) {
+            log.error("过滤向量搜索失败", e);
+            throw new RuntimeException("过滤向量搜索失败", e);
+        }
+    }
+
+    private static String orEmpty(String value) {
+        return value != null ? value : NO_DOCUMENT;
+    }
+
+    private LinkedHashMap<String, Float> search(float[] queryVector, int limit, float minScore, String expr) {
+        return search(Collections.singletonList(queryVector), limit, minScore, expr).get(0);
+    }
+
+    private List<LinkedHashMap<String, Float>> search(List<float[]> queryVectors, int limit, float minScore, String expr) {
+        return search(queryVectors, limit, minScore, expr, getSearchParameter());
+    }
+
+    private List<LinkedHashMap<String, Float>> search(List<float[]> queryVectors, int limit, float minScore, String expr,
+                                                      int searchParameter) {
+        List<List<Float>> vectors = new ArrayList<>(queryVectors.size());
+        for (float[] queryVector : queryVectors) {
+            vectors.add(new FloatListView(queryVector));
+        }
+        SearchParam.Builder builder = SearchParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withVectorFieldName("vector")
+                .withVectors(vectors)
+                .withTopK(limit)
+                .withMetricType(MetricType.valueOf(metricType))
+                .withParams(searchParams(searchParameter, limit));
+        if (expr != null) {
+            builder.withExpr(expr);
+        }
+        R<SearchResults> response = milvusClient.search(builder.build());
+        if (response == null || response.getStatus() != R.Status.Success.getCode()) {
+            throw new IllegalStateException("Milvus搜索失败: " + (response == null ? "无响应" : response.getMessage()));
+        }
+        SearchResultsWrapper wrapper = new SearchResultsWrapper(response.getData().getResults());
+
+        List<LinkedHashMap<String, Float>> results = new ArrayList<>(queryVectors.size());
+        for (int q = 0; q < queryVectors.size(); q++) {
+            LinkedHashMap<String, Float> scores = new LinkedHashMap<>();
+            for (SearchResultsWrapper.IDScore idScore : wrapper.getIDScore(q)) {
+                if (idScore.getScore() >= minScore) {
+                    scores.put(idScore.getStrID(), idScore.getScore());
+                }
+            }
+            results.add(scores);
+        }
+        return results;
+    }
+
+    /**
+     * 分片存储为每个分片指定独立的集合，需在初始化之前调用
+     */
+    void setCollectionName(String collectionName) {
+        this.collectionName = collectionName;
+    }
+
+    String getCollectionName() {
+        return collectionName;
+    }
+
+    private boolean isGraphIndex() {
+        return indexType.toUpperCase(Locale.ROOT).startsWith("HNSW");
+    }
+
+    /**
+     * Milvus 要求 HNSW 的 ef 不小于 topK
+     */
+    private String searchParams(int searchParameter, int limit) {
+        if (isGraphIndex()) {
+            return "{\"ef\":" + Math.max(searchParameter, limit) + "}";
+        }
+        return "{\"nprobe\":" + Math.max(1, Math.min(searchParameter, nlist)) + "}";
+    }
+}
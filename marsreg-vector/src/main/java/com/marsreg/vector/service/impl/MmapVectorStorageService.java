@@ -0,0 +1,262 @@
+package com.marsreg.vector.service.impl;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.filter.MetadataIndex;
+import com.marsreg.vector.filter.RoaringBitmap;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+import com.marsreg.vector.service.VectorStorageService;
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.similarity.VectorMath;
+import com.marsreg.vector.storage.SegmentVectorStore;
+import com.marsreg.vector.storage.VectorSampler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 基于内存映射段文件的持久化向量存储，向量数据位于堆外，重启后通过重放日志恢复。
+ * 元数据位图索引随刷盘任务保存为快照，启动时按恢复出的向量修正快照，过滤条件在全量扫描时对可能进入结果的行判断
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "marsreg.vector.storage", name = "type", havingValue = "mmap")
+public class MmapVectorStorageService implements VectorStorageService {
+
+    private final VectorizationConfig.Storage.Mmap config;
+    private final int dimension;
+    private final VectorizationConfig.Storage.Filter filterConfig;
+    private SegmentVectorStore store;
+    private MetadataIndex metadata;
+    private volatile long persistedModifications;
+    private ScheduledExecutorService maintenanceExecutor;
+
+    public MmapVectorStorageService(VectorizationConfig vectorizationConfig) {
+        this.config = vectorizationConfig.getStorage().getMmap();
+        this.dimension = vectorizationConfig.storedDimension();
+        this.filterConfig = vectorizationConfig.getStorage().getFilter();
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            long start = System.currentTimeMillis();
+            store = new SegmentVectorStore(Paths.get(config.getPath()), dimension, config.getSegmentCapacity());
+            metadata = MetadataIndex.read(metadataFile(), filterConfig.getTimeBucketMillis());
+            persistedModifications = metadata.modificationCount();
+            // 快照之后写入的向量由段日志恢复，补上其元数据，否则过滤搜索永远看不到它们
+            int recovered = metadata.reconcile(ids -> store.forEachLive((id, vector) -> ids.accept(id)));
+            if (recovered > 0) {
+                log.warn("元数据快照缺少 {} 个向量，已按向量ID恢复文档ID", recovered);
+            }
+            log.info("向量段存储加载完成: path={}, 向量数={}, 段数={}, 耗时={}ms",
+                config.getPath(), store.size(), store.segmentCount(), System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            log.error("向量段存储初始化失败", e);
+            throw new RuntimeException("向量段存储初始化失败", e);
+        }
+
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mmap-vector-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenanceExecutor.scheduleWithFixedDelay(this::flush,
+            config.getFlushInterval(), config.getFlushInterval(), TimeUnit.SECONDS);
+        maintenanceExecutor.scheduleWithFixedDelay(this::merge,
+            config.getMergeInterval(), config.getMergeInterval(), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (maintenanceExecutor != null) {
+            maintenanceExecutor.shutdownNow();
+        }
+        persistMetadata();
+        try {
+            store.close();
+        } catch (IOException e) {
+            log.error("向量段存储关闭失败", e);
+        }
+    }
+
+    @Override
+    public void storeVector(String id, float[] vector) {
+        store.put(id, vector);
+    }
+
+    @Override
+    public void storeVectors(Map<String, float[]> vectors) {
+        vectors.forEach(store::put);
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors) {
+        try {
+            vectors.forEach((id, vector) -> {
+                store.put(id, vector);
+                metadata.putIfAbsent(id, VectorMetadata.ofDocument(documentId));
+            });
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors,
+                                                             VectorMetadata vectorMetadata) {
+        try {
+            vectors.forEach((id, vector) -> {
+                store.put(id, vector);
+                metadata.put(id, vectorMetadata);
+            });
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public float[] getVector(String id) {
+        return store.get(id);
+    }
+
+    @Override
+    public Map<String, float[]> getVectors(List<String> ids) {
+        Map<String, float[]> result = new HashMap<>();
+        for (String id : ids) {
+            float[] v = store.get(id);
+            if (v != null) result.put(id, v);
+        }
+        return result;
+    }
+
+    @Override
+    public VectorMetadata getMetadata(String id) {
+        return metadata.get(id);
+    }
+
+    @Override
+    public void deleteVector(String id) {
+        store.delete(id);
+        metadata.remove(id);
+    }
+
+    @Override
+    public void deleteVectors(List<String> ids) {
+        ids.forEach(this::deleteVector);
+    }
+
+    @Override
+    public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore) {
+        return store.search(queryVector, limit, minScore);
+    }
+
+    @Override
+    public List<Map<String, Float>> searchSimilarBatch(List<float[]> queryVectors, int limit, float minScore) {
+        return new ArrayList<>(store.searchBatch(queryVectors, limit, minScore));
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore) {
+        float invNorm = VectorMath.inverseNorm(queryVector);
+        TopKCollector collector = new TopKCollector(limit, minScore);
+        for (String id : new LinkedHashSet<>(vectorIds)) {
+            float score = store.score(queryVector, invNorm, id);
+            if (!Float.isNaN(score)) {
+                collector.offer(id, score);
+            }
+        }
+        return collector.drainDescending();
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarFiltered(float[] queryVector, VectorFilter filter, int limit, float minScore) {
+        if (filter == null || filter.isEmpty()) {
+            return searchSimilar(queryVector, limit, minScore);
+        }
+        RoaringBitmap allowed = metadata.evaluate(filter);
+        int cardinality = allowed.cardinality();
+        if (cardinality == 0) {
+            return new LinkedHashMap<>();
+        }
+        if (cardinality <= filterConfig.getBruteForceThreshold()) {
+            return searchSimilarInRange(queryVector, metadata.keys(allowed), limit, minScore);
+        }
+        return store.search(queryVector, limit, minScore, id -> allowed.contains(metadata.ordinal(id)));
+    }
+
+    @Override
+    public List<float[]> sampleVectors(int count, long seed) {
+        return VectorSampler.reservoir(store::forEachLive, count, new Random(seed));
+    }
+
+    @Override
+    public void forEachVector(BiConsumer<String, float[]> consumer) {
+        store.forEachLive(consumer);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", store.size());
+        stats.put("segments", store.segmentCount());
+        stats.put("dimension", dimension);
+        stats.put("path", config.getPath());
+        stats.put("metadataEntries", metadata.size());
+        stats.put("metadataBytes", metadata.sizeInBytes());
+        return stats;
+    }
+
+    private void flush() {
+        try {
+            store.flush();
+        } catch (Exception e) {
+            log.error("向量段刷盘失败", e);
+        }
+        persistMetadata();
+    }
+
+    /**
+     * 元数据有变化时写入快照。崩溃时丢失的一个刷盘间隔内的元数据在启动时按向量ID恢复文档ID，类型、租户和时间需要重新写入
+     */
+    private void persistMetadata() {
+        long modifications = metadata.modificationCount();
+        if (modifications == persistedModifications) {
+            return;
+        }
+        try {
+            metadata.write(metadataFile());
+            persistedModifications = modifications;
+        } catch (Exception e) {
+            log.error("元数据索引保存失败", e);
+        }
+    }
+
+    private Path metadataFile() {
+        return Paths.get(config.getPath()).resolve(filterConfig.getIndexFile());
+    }
+
+    private void merge() {
+        try {
+            int merged = store.merge(config.getMergeLiveRatio());
+            if (merged > 0) {
+                log.info("向量段合并完成: 回收段数={}, 当前段数={}", merged, store.segmentCount());
+            }
+        } catch (Exception e) {
+            log.error("向量段合并失败", e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.marsreg.vector.service.impl;
+
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+import com.marsreg.vector.projection.ProjectionRegistry;
+import com.marsreg.vector.projection.VectorProjection;
+import com.marsreg.vector.service.VectorStorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 降维投影层：包装实际的向量存储，写入和查询前用同一个投影把向量降到低维，底层存储只保存投影后的向量。
+ * 读取返回的也是投影后的向量。启用时作为首选的 {@link VectorStorageService} 注入
+ */
+@Slf4j
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "marsreg.vector.storage.projection", name = "enabled", havingValue = "true")
+public class ProjectedVectorStorageService implements VectorStorageService {
+
+    private final VectorStorageService delegate;
+    private final VectorProjection projection;
+
+    /**
+     * 注入的列表不包含本实例，其中只有按 storage.type 启用的实际存储
+     */
+    @Autowired
+    public ProjectedVectorStorageService(List<VectorStorageService> stores, ProjectionRegistry registry) {
+        this(single(stores), registry.getActive());
+        // 首次绑定时抽一个已存储的向量，确认存储为空或已是投影后的维度
+        registry.bindStore(projection, () -> delegate.sampleVectors(1, 0L));
+        log.info("向量存储启用投影: version={}, store={}", projection.getVersion(), delegate.getClass().getSimpleName());
+    }
+
+    public ProjectedVectorStorageService(VectorStorageService delegate, VectorProjection projection) {
+        this.delegate = delegate;
+        this.projection = projection;
+    }
+
+    public VectorProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * 保存投影后向量的实际存储，写入已投影的向量时直接使用
+     */
+    public VectorStorageService getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void storeVector(String id, float[] vector) {
+        delegate.storeVector(id, projection.project(vector));
+    }
+
+    @Override
+    public void storeVectors(Map<String, float[]> vectors) {
+        delegate.storeVectors(project(vectors));
+    }
+
+    @Override
+    public CompletableFuture<Void> storeVectorsAsync(Map<String, float[]> vectors) {
+        return delegate.storeVectorsAsync(project(vectors));
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors) {
+        return delegate.storeDocumentVectorsAsync(documentId, project(vectors));
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors,
+                                                             VectorMetadata metadata) {
+        return delegate.storeDocumentVectorsAsync(documentId, project(vectors), metadata);
+    }
+
+    @Override
+    public float[] getVector(String id) {
+        return delegate.getVector(id);
+    }
+
+    @Override
+    public Map<String, float[]> getVectors(List<String> ids) {
+        return delegate.getVectors(ids);
+    }
+
+    @Override
+    public VectorMetadata getMetadata(String id) {
+        return delegate.getMetadata(id);
+    }
+
+    @Override
+    public void deleteVector(String id) {
+        delegate.deleteVector(id);
+    }
+
+    @Override
+    public void deleteVectors(List<String> ids) {
+        delegate.deleteVectors(ids);
+    }
+
+    @Override
+    public void deleteDocumentVectors(String documentId, List<String> vectorIds) {
+        delegate.deleteDocumentVectors(documentId, vectorIds);
+    }
+
+    @Override
+    public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore) {
+        return delegate.searchSimilar(projection.project(queryVector), limit, minScore);
+    }
+
+    @Override
+    public List<Map<String, Float>> searchSimilarBatch(List<float[]> queryVectors, int limit, float minScore) {
+        return delegate.searchSimilarBatch(projection.projectAll(queryVectors), limit, minScore);
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore) {
+        return delegate.searchSimilarInRange(projection.project(queryVector), vectorIds, limit, minScore);
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarInDocument(String documentId, Supplier<List<String>> vectorIds,
+                                                      float[] queryVector, int limit, float minScore) {
+        return delegate.searchSimilarInDocument(documentId, vectorIds, projection.project(queryVector), limit, minScore);
+    }
+
+    @Override
+    public boolean supportsDocumentPartition() {
+        return delegate.supportsDocumentPartition();
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarFiltered(float[] queryVector, VectorFilter filter, int limit, float minScore) {
+        return delegate.searchSimilarFiltered(projection.project(queryVector), filter, limit, minScore);
+    }
+
+    /**
+     * 返回的是投影后的向量，不能用于训练新的投影
+     */
+    @Override
+    public List<float[]> sampleVectors(int count, long seed) {
+        return delegate.sampleVectors(count, seed);
+    }
+
+    /**
+     * 遍历的是底层存储中投影后的向量
+     */
+    @Override
+    public void forEachVector(BiConsumer<String, float[]> consumer) {
+        delegate.forEachVector(consumer);
+    }
+
+    private Map<String, float[]> project(Map<String, float[]> vectors) {
+        Map<String, float[]> projected = new LinkedHashMap<>(vectors.size() * 2);
+        vectors.forEach((id, vector) -> projected.put(id, projection.project(vector)));
+        return projected;
+    }
+
+    private static VectorStorageService single(List<VectorStorageService> stores) {
+        List<VectorStorageService> candidates = new ArrayList<>(stores);
+        candidates.removeIf(store -> store instanceof ProjectedVectorStorageService);
+        if (candidates.size() != 1) {
+            throw new IllegalStateException("投影层需要恰好一个实际的向量存储，当前为: " + candidates.size());
+        }
+        return candidates.get(0);
+    }
+}
@@ -0,0 +1,408 @@
+package com.marsreg.vector.service.impl;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.filter.MetadataIndex;
+import com.marsreg.vector.filter.RoaringBitmap;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+import com.marsreg.vector.quantization.ProductQuantizer;
+import com.marsreg.vector.quantization.QuantizedCodeStore;
+import com.marsreg.vector.quantization.ScalarQuantizer;
+import com.marsreg.vector.quantization.VectorQuantizer;
+import com.marsreg.vector.service.VectorStorageService;
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.similarity.VectorMath;
+import com.marsreg.vector.storage.SegmentVectorStore;
+import com.marsreg.vector.storage.VectorSampler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * 量化向量存储：内存中只保留int8标量量化或乘积量化编码，原始向量存放在内存映射段文件中。
+ * 搜索先在量化域中召回候选，再用原始向量精排。量化器训练完成前退化为精确扫描。
+ * 元数据过滤与 mmap 存储共用位图索引，条件在量化域扫描和精排时都会判断
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "marsreg.vector.storage", name = "type", havingValue = "quantized")
+public class QuantizedVectorStorageService implements VectorStorageService {
+
+    private final VectorizationConfig.Storage.Quantization config;
+    private final VectorizationConfig.Storage.Mmap mmapConfig;
+    private final VectorizationConfig.Storage.Filter filterConfig;
+    private final int dimension;
+    private SegmentVectorStore store;
+    private MetadataIndex metadata;
+    private volatile QuantizedCodeStore codeStore;
+
+    // 写操作持有读锁，切换编码存储时持有写锁
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean training = new AtomicBoolean(false);
+    private final Set<String> pendingIds = ConcurrentHashMap.newKeySet();
+    private ExecutorService trainingExecutor;
+
+    public QuantizedVectorStorageService(VectorizationConfig vectorizationConfig) {
+        this.config = vectorizationConfig.getStorage().getQuantization();
+        this.mmapConfig = vectorizationConfig.getStorage().getMmap();
+        this.filterConfig = vectorizationConfig.getStorage().getFilter();
+        this.dimension = vectorizationConfig.storedDimension();
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            store = new SegmentVectorStore(Paths.get(mmapConfig.getPath()), dimension, mmapConfig.getSegmentCapacity());
+            metadata = MetadataIndex.read(metadataFile(), filterConfig.getTimeBucketMillis());
+            int recovered = metadata.reconcile(ids -> store.forEachLive((id, vector) -> ids.accept(id)));
+            if (recovered > 0) {
+                log.warn("元数据快照缺少 {} 个向量，已按向量ID恢复文档ID", recovered);
+            }
+        } catch (IOException e) {
+            log.error("量化向量存储初始化失败", e);
+            throw new RuntimeException("量化向量存储初始化失败", e);
+        }
+        trainingExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "vector-quantizer-training");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("量化向量存储加载完成: mode={}, 向量数={}", config.getMode(), store.size());
+        trainIfNecessary();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (trainingExecutor != null) {
+            trainingExecutor.shutdownNow();
+        }
+        try {
+            metadata.write(metadataFile());
+        } catch (Exception e) {
+            log.error("元数据索引保存失败", e);
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            log.error("量化向量存储关闭失败", e);
+        }
+    }
+
+    @Override
+    public void storeVector(String id, float[] vector) {
+        swapLock.readLock().lock();
+        try {
+            store.put(id, vector);
+            QuantizedCodeStore codes = codeStore;
+            if (codes != null) {
+                codes.put(id, normalize(vector));
+            }
+            if (training.get()) {
+                pendingIds.add(id);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        trainIfNecessary();
+    }
+
+    @Override
+    public void storeVectors(Map<String, float[]> vectors) {
+        vectors.forEach(this::storeVector);
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors) {
+        try {
+            vectors.forEach((id, vector) -> {
+                storeVector(id, vector);
+                metadata.putIfAbsent(id, VectorMetadata.ofDocument(documentId));
+            });
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors,
+                                                             VectorMetadata vectorMetadata) {
+        try {
+            vectors.forEach((id, vector) -> {
+                storeVector(id, vector);
+                metadata.put(id, vectorMetadata);
+            });
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public float[] getVector(String id) {
+        return store.get(id);
+    }
+
+    @Override
+    public Map<String, float[]> getVectors(List<String> ids) {
+        Map<String, float[]> result = new HashMap<>();
+        for (String id : ids) {
+            float[] v = store.get(id);
+            if (v != null) result.put(id, v);
+        }
+        return result;
+    }
+
+    @Override
+    public VectorMetadata getMetadata(String id) {
+        return metadata.get(id);
+    }
+
+    @Override
+    public void deleteVector(String id) {
+        swapLock.readLock().lock();
+        try {
+            store.delete(id);
+            metadata.remove(id);
+            QuantizedCodeStore codes = codeStore;
+            if (codes != null) {
+                codes.remove(id);
+            }
+            if (training.get()) {
+                pendingIds.add(id);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteVectors(List<String> ids) {
+        ids.forEach(this::deleteVector);
+    }
+
+    @Override
+    public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore) {
+        QuantizedCodeStore codes = codeStore;
+        if (codes == null) {
+            return store.search(queryVector, limit, minScore);
+        }
+        List<String> candidates = codes.topCandidates(normalize(queryVector), limit * config.getRerankFactor());
+        return rerank(queryVector, candidates, limit, minScore);
+    }
+
+    @Override
+    public List<Map<String, Float>> searchSimilarBatch(List<float[]> queryVectors, int limit, float minScore) {
+        QuantizedCodeStore codes = codeStore;
+        if (codes == null) {
+            return new ArrayList<>(store.searchBatch(queryVectors, limit, minScore));
+        }
+        List<float[]> normalized = new ArrayList<>(queryVectors.size());
+        queryVectors.forEach(queryVector -> normalized.add(normalize(queryVector)));
+        List<List<String>> candidates = codes.topCandidatesBatch(normalized, limit * config.getRerankFactor());
+        List<Map<String, Float>> results = new ArrayList<>(queryVectors.size());
+        for (int q = 0; q < queryVectors.size(); q++) {
+            results.add(rerank(queryVectors.get(q), candidates.get(q), limit, minScore));
+        }
+        return results;
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore) {
+        return rerank(queryVector, new LinkedHashSet<>(vectorIds), limit, minScore);
+    }
+
+    /**
+     * 满足条件的向量较少时直接精排，否则在量化域扫描时跳过不满足条件的行，精排时再按位图确认一次，
+     * 避免扫描和精排之间序号被回收复用
+     */
+    @Override
+    public Map<String, Float> searchSimilarFiltered(float[] queryVector, VectorFilter filter, int limit, float minScore) {
+        if (filter == null || filter.isEmpty()) {
+            return searchSimilar(queryVector, limit, minScore);
+        }
+        RoaringBitmap allowed = metadata.evaluate(filter);
+        int cardinality = allowed.cardinality();
+        if (cardinality == 0) {
+            return new LinkedHashMap<>();
+        }
+        Predicate<String> accepts = id -> allowed.contains(metadata.ordinal(id));
+        if (cardinality <= filterConfig.getBruteForceThreshold()) {
+            return rerank(queryVector, metadata.keys(allowed), limit, minScore, accepts);
+        }
+        QuantizedCodeStore codes = codeStore;
+        if (codes == null) {
+            return store.search(queryVector, limit, minScore, accepts);
+        }
+        List<String> candidates = codes.topCandidates(normalize(queryVector), limit * config.getRerankFactor(), accepts);
+        return rerank(queryVector, candidates, limit, minScore, accepts);
+    }
+
+    @Override
+    public List<float[]> sampleVectors(int count, long seed) {
+        return VectorSampler.reservoir(store::forEachLive, count, new Random(seed));
+    }
+
+    @Override
+    public void forEachVector(BiConsumer<String, float[]> consumer) {
+        store.forEachLive(consumer);
+    }
+
+    /**
+     * 立即用当前存储的向量重新训练量化器
+     */
+    public void retrain() {
+        if (training.compareAndSet(false, true)) {
+            trainingExecutor.submit(this::train);
+        }
+    }
+
+    /**
+     * 随机抽取已存储的向量作为查询，分别统计量化域直接召回和精排后相对精确搜索的召回率
+     */
+    public Map<String, Object> measureRecall(int queryCount, int k) {
+        Map<String, Object> result = new HashMap<>();
+        QuantizedCodeStore codes = codeStore;
+        if (codes == null) {
+            result.put("trained", false);
+            return result;
+        }
+        List<float[]> queries = sample(queryCount, new Random());
+        long compressedHits = 0;
+        long rerankedHits = 0;
+        long total = 0;
+        for (float[] query : queries) {
+            Set<String> exact = store.search(query, k, -1f).keySet();
+            List<String> compressed = codes.topCandidates(normalize(query), k);
+            Set<String> reranked = searchSimilar(query, k, -1f).keySet();
+            compressedHits += compressed.stream().filter(exact::contains).count();
+            rerankedHits += reranked.stream().filter(exact::contains).count();
+            total += exact.size();
+        }
+        result.put("trained", true);
+        result.put("queries", queries.size());
+        result.put("k", k);
+        result.put("compressedRecall", total == 0 ? 0.0 : (double) compressedHits / total);
+        result.put("rerankedRecall", total == 0 ? 0.0 : (double) rerankedHits / total);
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        QuantizedCodeStore codes = codeStore;
+        stats.put("size", store.size());
+        stats.put("dimension", dimension);
+        stats.put("trained", codes != null);
+        stats.put("training", training.get());
+        stats.put("metadataEntries", metadata.size());
+        if (codes != null) {
+            int codeSize = codes.getQuantizer().getCodeSize();
+            stats.put("quantizer", codes.getQuantizer().getName());
+            stats.put("codeSize", codeSize);
+            stats.put("codeBytes", codes.getCodeBytes());
+            stats.put("compressionRatio", (double) dimension * Float.BYTES / codeSize);
+        }
+        return stats;
+    }
+
+    private Map<String, Float> rerank(float[] queryVector, Collection<String> candidates, int limit, float minScore) {
+        return rerank(queryVector, candidates, limit, minScore, null);
+    }
+
+    private Map<String, Float> rerank(float[] queryVector, Collection<String> candidates, int limit, float minScore,
+                                      Predicate<String> filter) {
+        float invNorm = VectorMath.inverseNorm(queryVector);
+        TopKCollector collector = new TopKCollector(limit, minScore);
+        for (String id : candidates) {
+            if (filter != null && !filter.test(id)) {
+                continue;
+            }
+            float score = store.score(queryVector, invNorm, id);
+            if (!Float.isNaN(score)) {
+                collector.offer(id, score);
+            }
+        }
+        return collector.drainDescending();
+    }
+
+    private Path metadataFile() {
+        return Paths.get(mmapConfig.getPath()).resolve(filterConfig.getIndexFile());
+    }
+
+    private void trainIfNecessary() {
+        if (codeStore == null && store.size() >= config.getTrainingSampleSize()) {
+            retrain();
+        }
+    }
+
+    private void train() {
+        try {
+            long start = System.currentTimeMillis();
+            VectorQuantizer quantizer = createQuantizer();
+            quantizer.train(sample(config.getTrainingSampleSize(), new Random(42)));
+
+            QuantizedCodeStore rebuilt = new QuantizedCodeStore(quantizer);
+            store.forEachLive((id, vector) -> rebuilt.put(id, normalize(vector)));
+
+            swapLock.writeLock().lock();
+            try {
+                // 重放训练期间的写入，以原始存储的最终状态为准
+                for (String id : pendingIds) {
+                    float[] vector = store.get(id);
+                    if (vector == null) {
+                        rebuilt.remove(id);
+                    } else {
+                        rebuilt.put(id, normalize(vector));
+                    }
+                }
+                pendingIds.clear();
+                codeStore = rebuilt;
+                training.set(false);
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            log.info("量化器训练完成: quantizer={}, 向量数={}, 耗时={}ms",
+                quantizer.getName(), rebuilt.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            pendingIds.clear();
+            training.set(false);
+            log.error("量化器训练失败", e);
+        }
+    }
+
+    private VectorQuantizer createQuantizer() {
+        if ("pq".equalsIgnoreCase(config.getMode())) {
+            return new ProductQuantizer(dimension, config.getPqSubspaces(), config.getPqIterations(), 42L);
+        }
+        return new ScalarQuantizer(dimension);
+    }
+
+    /**
+     * 蓄水池抽样，返回归一化后的向量
+     */
+    private List<float[]> sample(int count, Random random) {
+        List<float[]> samples = VectorSampler.reservoir(store::forEachLive, count, random);
+        samples.forEach(VectorMath::normalizeInPlace);
+        return samples;
+    }
+
+    private static float[] normalize(float[] vector) {
+        return VectorMath.normalize(vector);
+    }
+}
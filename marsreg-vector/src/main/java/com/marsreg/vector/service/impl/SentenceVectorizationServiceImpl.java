@@ -1,26 +1,27 @@
 package com.marsreg.vector.service.impl;
 
 import com.marsreg.vector.model.SentenceTransformerModel;
+import com.marsreg.vector.scheduler.EmbeddingLane;
+import com.marsreg.vector.scheduler.EmbeddingScheduler;
 import com.marsreg.vector.service.SentenceVectorizationService;
+import com.marsreg.vector.similarity.VectorMath;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.Map;
 import java.util.HashMap;
 
 @Service
 public class SentenceVectorizationServiceImpl implements SentenceVectorizationService {
     private final SentenceTransformerModel model;
-    private final ExecutorService vectorizationExecutor;
+    private final EmbeddingScheduler scheduler;
 
     @Autowired
-    public SentenceVectorizationServiceImpl(SentenceTransformerModel model) {
+    public SentenceVectorizationServiceImpl(SentenceTransformerModel model, EmbeddingScheduler scheduler) {
         this.model = model;
-        this.vectorizationExecutor = Executors.newFixedThreadPool(4);
+        this.scheduler = scheduler;
     }
 
     @Override
@@ -40,7 +41,7 @@ public class SentenceVectorizationServiceImpl implements SentenceVectorizationSe
 
     @Override
     public CompletableFuture<List<float[]>> batchVectorizeAsync(List<String> texts) {
-        return CompletableFuture.supplyAsync(() -> batchVectorize(texts), vectorizationExecutor);
+        return scheduler.submit(EmbeddingLane.current(), texts.size(), () -> batchVectorize(texts));
     }
 
     @Override
@@ -48,16 +49,7 @@ public class SentenceVectorizationServiceImpl implements SentenceVectorizationSe
         if (vector == null || vector.length == 0) {
             return vector;
         }
-        float sum = 0;
-        for (float v : vector) {
-            sum += v * v;
-        }
-        float norm = (float) Math.sqrt(sum);
-        if (norm > 0) {
-            for (int i = 0; i < vector.length; i++) {
-                vector[i] /= norm;
-            }
-        }
+        VectorMath.normalizeInPlace(vector);
         return vector;
     }
 
@@ -66,13 +58,7 @@ public class SentenceVectorizationServiceImpl implements SentenceVectorizationSe
         if (v1 == null || v2 == null || v1.length != v2.length) {
             throw new IllegalArgumentException("向量维度不一致或为空");
         }
-        float dot = 0, norm1 = 0, norm2 = 0;
-        for (int i = 0; i < v1.length; i++) {
-            dot += v1[i] * v2[i];
-            norm1 += v1[i] * v1[i];
-            norm2 += v2[i] * v2[i];
-        }
-        return (float) (dot / (Math.sqrt(norm1) * Math.sqrt(norm2)));
+        return VectorMath.cosine(v1, v2);
     }
 
     @Override
@@ -86,12 +72,20 @@ public class SentenceVectorizationServiceImpl implements SentenceVectorizationSe
         throw new UnsupportedOperationException("暂不支持更新模型");
     }
 
+    @Override
+    public Map<String, Object> getModelUpdateStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("state", "IDLE");
+        return status;
+    }
+
     @Override
     public Map<String, Object> getModelInfo() {
         Map<String, Object> info = new HashMap<>();
         info.put("modelName", model.getModelName());
         info.put("modelVersion", model.getModelVersion());
         info.put("vectorDimension", model.getDimension());
+        info.put("scheduler", scheduler.getStats());
         return info;
     }
 
@@ -109,15 +103,6 @@ public class SentenceVectorizationServiceImpl implements SentenceVectorizationSe
 
     @Override
     public List<List<Float>> calculateSimilarityMatrix(List<float[]> vectors) {
-        int n = vectors.size();
-        List<List<Float>> matrix = new java.util.ArrayList<>();
-        for (int i = 0; i < n; i++) {
-            List<Float> row = new java.util.ArrayList<>();
-            for (int j = 0; j < n; j++) {
-                row.add(calculateSimilarity(vectors.get(i), vectors.get(j)));
-            }
-            matrix.add(row);
-        }
-        return matrix;
+        return computeSimilarityMatrix(vectors).toRows();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,466 @@
+package com.marsreg.vector.service.impl;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.model.ShardedSearchResult;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+import com.marsreg.vector.service.VectorStorageService;
+import com.marsreg.vector.similarity.TopKCollector;
+import io.milvus.client.MilvusClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * 分片向量存储：按ID哈希把向量分到多个同类型的底层存储，写入和按ID的操作只路由到所属分片，
+ * 搜索并行扇出到各分片，每个分片返回自己的前k个结果后用最小堆合并。
+ * 分片超过超时时间未返回时不再等待，结果标记为部分结果
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "marsreg.vector.storage", name = "type", havingValue = "sharded")
+public class ShardedVectorStorageService implements VectorStorageService {
+
+    private final List<VectorStorageService> shards;
+    private final VectorizationConfig.Storage.Sharding config;
+    private final AutowireCapableBeanFactory beanFactory;
+    private final ExecutorService searchExecutor;
+    private final AtomicLongArray shardTimeouts;
+    private final AtomicLongArray shardFailures;
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong partialSearches = new AtomicLong();
+    private final AtomicLong rejectedSearches = new AtomicLong();
+
+    @Autowired
+    public ShardedVectorStorageService(VectorizationConfig vectorizationConfig, AutowireCapableBeanFactory beanFactory,
+                                       ObjectProvider<MilvusClient> milvusClient) {
+        this(createShards(vectorizationConfig, beanFactory, milvusClient), vectorizationConfig.getStorage().getSharding(),
+            beanFactory);
+        log.info("分片向量存储初始化: shards={}, backend={}, searchTimeout={}ms",
+            shards.size(), config.getBackend(), config.getSearchTimeoutMillis());
+    }
+
+    /**
+     * 使用已初始化的分片，分片的生命周期由调用方管理
+     */
+    public ShardedVectorStorageService(List<VectorStorageService> shards, VectorizationConfig.Storage.Sharding config) {
+        this(shards, config, null);
+    }
+
+    private ShardedVectorStorageService(List<VectorStorageService> shards, VectorizationConfig.Storage.Sharding config,
+                                        AutowireCapableBeanFactory beanFactory) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("分片数必须大于0");
+        }
+        this.shards = List.copyOf(shards);
+        this.config = config;
+        this.beanFactory = beanFactory;
+        this.shardTimeouts = new AtomicLongArray(shards.size());
+        this.shardFailures = new AtomicLongArray(shards.size());
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 超时的分片搜索被中断后释放线程；排队的任务有上限，分片持续变慢时新的搜索直接记为失败而不是无限堆积
+        int threads = Math.max(shards.size(), config.getSearchThreads());
+        this.searchExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, config.getSearchQueueCapacity())), r -> {
+                Thread thread = new Thread(r, "vector-shard-search-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        searchExecutor.shutdownNow();
+        if (beanFactory != null) {
+            shards.forEach(beanFactory::destroyBean);
+        }
+    }
+
+    @Override
+    public void storeVector(String id, float[] vector) {
+        shards.get(shardOf(id)).storeVector(id, vector);
+    }
+
+    @Override
+    public void storeVectors(Map<String, float[]> vectors) {
+        partition(vectors).entrySet().parallelStream()
+            .forEach(entry -> shards.get(entry.getKey()).storeVectors(entry.getValue()));
+    }
+
+    @Override
+    public CompletableFuture<Void> storeVectorsAsync(Map<String, float[]> vectors) {
+        return allOf(partition(vectors), (shard, group) -> shard.storeVectorsAsync(group));
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors) {
+        return allOf(partition(vectors), (shard, group) -> shard.storeDocumentVectorsAsync(documentId, group));
+    }
+
+    @Override
+    public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors,
+                                                             VectorMetadata metadata) {
+        return allOf(partition(vectors), (shard, group) -> shard.storeDocumentVectorsAsync(documentId, group, metadata));
+    }
+
+    @Override
+    public float[] getVector(String id) {
+        return shards.get(shardOf(id)).getVector(id);
+    }
+
+    @Override
+    public Map<String, float[]> getVectors(List<String> ids) {
+        Map<String, float[]> result = new HashMap<>();
+        partitionIds(ids).forEach((shard, group) -> result.putAll(shards.get(shard).getVectors(group)));
+        return result;
+    }
+
+    @Override
+    public VectorMetadata getMetadata(String id) {
+        return shards.get(shardOf(id)).getMetadata(id);
+    }
+
+    @Override
+    public void deleteVector(String id) {
+        shards.get(shardOf(id)).deleteVector(id);
+    }
+
+    @Override
+    public void deleteVectors(List<String> ids) {
+        partitionIds(ids).forEach((shard, group) -> shards.get(shard).deleteVectors(group));
+    }
+
+    @Override
+    public void deleteDocumentVectors(String documentId, List<String> vectorIds) {
+        partitionIds(vectorIds).forEach((shard, group) -> shards.get(shard).deleteDocumentVectors(documentId, group));
+    }
+
+    @Override
+    public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore) {
+        return searchSimilarScattered(queryVector, limit, minScore).getResults();
+    }
+
+    /**
+     * 扇出到所有分片搜索，返回合并结果及各分片的响应情况
+     */
+    public ShardedSearchResult searchSimilarScattered(float[] queryVector, int limit, float minScore) {
+        return gather(allShards(), shard -> shards.get(shard).searchSimilar(queryVector, limit, minScore), limit, minScore);
+    }
+
+    @Override
+    public List<Map<String, Float>> searchSimilarBatch(List<float[]> queryVectors, int limit, float minScore) {
+        Scatter<List<Map<String, Float>>> scatter = scatter(allShards(),
+            shard -> shards.get(shard).searchSimilarBatch(queryVectors, limit, minScore));
+        List<Map<String, Float>> results = new ArrayList<>(queryVectors.size());
+        for (int q = 0; q < queryVectors.size(); q++) {
+            TopKCollector collector = new TopKCollector(limit, minScore);
+            for (List<Map<String, Float>> shardResults : scatter.responses.values()) {
+                shardResults.get(q).forEach(collector::offer);
+            }
+            results.add(collector.drainDescending());
+        }
+        return results;
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore) {
+        Map<Integer, List<String>> groups = partitionIds(vectorIds);
+        return gather(new ArrayList<>(groups.keySet()),
+            shard -> shards.get(shard).searchSimilarInRange(queryVector, groups.get(shard), limit, minScore),
+            limit, minScore).getResults();
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarInDocument(String documentId, Supplier<List<String>> vectorIds,
+                                                      float[] queryVector, int limit, float minScore) {
+        if (supportsDocumentPartition()) {
+            // 各分片按分区键过滤，扇出到全部分片，不加载文档的分块ID
+            return gather(allShards(),
+                shard -> shards.get(shard).searchSimilarInDocument(documentId, vectorIds, queryVector, limit, minScore),
+                limit, minScore).getResults();
+        }
+        // 同一文档的分块按ID分散在多个分片中，只扇出到持有这些分块的分片
+        Map<Integer, List<String>> groups = partitionIds(vectorIds.get());
+        return gather(new ArrayList<>(groups.keySet()),
+            shard -> shards.get(shard).searchSimilarInDocument(documentId, () -> groups.get(shard), queryVector, limit, minScore),
+            limit, minScore).getResults();
+    }
+
+    /**
+     * 全部分片都按文档ID分区时才支持
+     */
+    @Override
+    public boolean supportsDocumentPartition() {
+        return shards.stream().allMatch(VectorStorageService::supportsDocumentPartition);
+    }
+
+    @Override
+    public Map<String, Float> searchSimilarFiltered(float[] queryVector, VectorFilter filter, int limit, float minScore) {
+        return gather(allShards(), shard -> shards.get(shard).searchSimilarFiltered(queryVector, filter, limit, minScore),
+            limit, minScore).getResults();
+    }
+
+    /**
+     * 每个分片抽取相同数量的样本，分片大小相近时近似均匀
+     */
+    @Override
+    public List<float[]> sampleVectors(int count, long seed) {
+        int perShard = (count + shards.size() - 1) / shards.size();
+        List<float[]> samples = new ArrayList<>(count);
+        for (int shard = 0; shard < shards.size(); shard++) {
+            samples.addAll(shards.get(shard).sampleVectors(perShard, seed + shard));
+        }
+        Collections.shuffle(samples, new Random(seed));
+        return samples.size() > count ? new ArrayList<>(samples.subList(0, count)) : samples;
+    }
+
+    /**
+     * 逐个分片顺序遍历
+     */
+    @Override
+    public void forEachVector(BiConsumer<String, float[]> consumer) {
+        shards.forEach(shard -> shard.forEachVector(consumer));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shards", shards.size());
+        stats.put("backend", config.getBackend());
+        stats.put("searchTimeoutMillis", config.getSearchTimeoutMillis());
+        stats.put("searches", searches.get());
+        stats.put("partialSearches", partialSearches.get());
+        stats.put("rejectedSearches", rejectedSearches.get());
+        List<Long> timeouts = new ArrayList<>(shards.size());
+        List<Long> failures = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            timeouts.add(shardTimeouts.get(shard));
+            failures.add(shardFailures.get(shard));
+        }
+        stats.put("shardTimeouts", timeouts);
+        stats.put("shardFailures", failures);
+        return stats;
+    }
+
+    /**
+     * ID所属的分片，对 String.hashCode 再做一次混合，避免相似前缀的ID集中在少数分片
+     */
+    int shardOf(String id) {
+        int hash = id.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return Math.floorMod(hash, shards.size());
+    }
+
+    private ShardedSearchResult gather(List<Integer> targets, IntFunction<Map<String, Float>> task,
+                                       int limit, float minScore) {
+        long start = System.currentTimeMillis();
+        Scatter<Map<String, Float>> scatter = scatter(targets, task);
+        TopKCollector collector = new TopKCollector(limit, minScore);
+        scatter.responses.values().forEach(results -> results.forEach(collector::offer));
+        return ShardedSearchResult.builder()
+            .results(collector.drainDescending())
+            .shards(targets.size())
+            .respondedShards(scatter.responses.size())
+            .timedOutShards(scatter.timedOut)
+            .failedShards(scatter.failed)
+            .partial(scatter.isPartial())
+            .tookMillis(System.currentTimeMillis() - start)
+            .build();
+    }
+
+    /**
+     * 在各分片上并行执行任务，所有分片共用一个截止时间。超时或失败的分片记录下来，不影响其他分片；
+     * 返回前取消仍未完成的任务，中断执行它的线程
+     */
+    private <T> Scatter<T> scatter(List<Integer> targets, IntFunction<T> task) {
+        searches.incrementAndGet();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getSearchTimeoutMillis());
+        Scatter<T> scatter = new Scatter<>();
+        Map<Integer, Future<T>> futures = new LinkedHashMap<>();
+        try {
+            for (int shard : targets) {
+                try {
+                    futures.put(shard, searchExecutor.submit(() -> task.apply(shard)));
+                } catch (RejectedExecutionException e) {
+                    rejectedSearches.incrementAndGet();
+                    shardFailures.incrementAndGet(shard);
+                    scatter.failed.add(shard);
+                    log.warn("分片搜索队列已满: shard={}", shard);
+                }
+            }
+
+            for (Map.Entry<Integer, Future<T>> entry : futures.entrySet()) {
+                int shard = entry.getKey();
+                try {
+                    long remaining = Math.max(0, deadline - System.nanoTime());
+                    scatter.responses.put(shard, entry.getValue().get(remaining, TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    entry.getValue().cancel(true);
+                    shardTimeouts.incrementAndGet(shard);
+                    scatter.timedOut.add(shard);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof UnsupportedOperationException) {
+                        throw (UnsupportedOperationException) e.getCause();
+                    }
+                    shardFailures.incrementAndGet(shard);
+                    scatter.failed.add(shard);
+                    log.warn("分片搜索失败: shard={}", shard, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("分片搜索被中断", e);
+                }
+            }
+        } finally {
+            futures.values().forEach(future -> future.cancel(true));
+        }
+
+        if (scatter.isPartial()) {
+            partialSearches.incrementAndGet();
+            if (scatter.responses.isEmpty() && !targets.isEmpty()) {
+                throw new RuntimeException("分片向量搜索失败: 超时分片=" + scatter.timedOut + ", 失败分片=" + scatter.failed);
+            }
+            if (!Boolean.TRUE.equals(config.getAllowPartialResults())) {
+                throw new RuntimeException("分片向量搜索未完成: 超时分片=" + scatter.timedOut + ", 失败分片=" + scatter.failed);
+            }
+            log.warn("分片向量搜索返回部分结果: 超时分片={}, 失败分片={}", scatter.timedOut, scatter.failed);
+        }
+        return scatter;
+    }
+
+    private List<Integer> allShards() {
+        List<Integer> all = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            all.add(shard);
+        }
+        return all;
+    }
+
+    private Map<Integer, Map<String, float[]>> partition(Map<String, float[]> vectors) {
+        Map<Integer, Map<String, float[]>> groups = new TreeMap<>();
+        vectors.forEach((id, vector) -> groups.computeIfAbsent(shardOf(id), k -> new LinkedHashMap<>()).put(id, vector));
+        return groups;
+    }
+
+    private Map<Integer, List<String>> partitionIds(List<String> ids) {
+        Map<Integer, List<String>> groups = new TreeMap<>();
+        for (String id : ids) {
+            groups.computeIfAbsent(shardOf(id), k -> new ArrayList<>()).add(id);
+        }
+        return groups;
+    }
+
+    private CompletableFuture<Void> allOf(Map<Integer, Map<String, float[]>> groups, ShardWrite write) {
+        try {
+            CompletableFuture<?>[] futures = groups.entrySet().stream()
+                .map(entry -> write.apply(shards.get(entry.getKey()), entry.getValue()))
+                .toArray(CompletableFuture[]::new);
+            return CompletableFuture.allOf(futures);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 按分片配置创建并初始化底层存储，由Spring容器注入配置并调用初始化和销毁方法
+     */
+    private static List<VectorStorageService> createShards(VectorizationConfig vectorizationConfig,
+                                                           AutowireCapableBeanFactory beanFactory,
+                                                           ObjectProvider<MilvusClient> milvusClient) {
+        VectorizationConfig.Storage.Sharding sharding = vectorizationConfig.getStorage().getSharding();
+        String backend = sharding.getBackend().toLowerCase(Locale.ROOT);
+        List<VectorStorageService> shards = new ArrayList<>(sharding.getShards());
+        for (int shard = 0; shard < sharding.getShards(); shard++) {
+            VectorStorageService store;
+            switch (backend) {
+                case "milvus":
+                    MilvusVectorStorageService milvus = new MilvusVectorStorageService(milvusClient.getObject());
+                    beanFactory.autowireBean(milvus);
+                    milvus.setCollectionName(milvus.getCollectionName() + "_" + shard);
+                    store = milvus;
+                    break;
+                case "hnsw":
+                    store = new HnswVectorStorageService(shardConfig(vectorizationConfig, shard));
+                    break;
+                case "ivf":
+                    store = new IvfVectorStorageService(shardConfig(vectorizationConfig, shard));
+                    break;
+                case "mmap":
+                    store = new MmapVectorStorageService(shardConfig(vectorizationConfig, shard));
+                    break;
+                case "quantized":
+                    store = new QuantizedVectorStorageService(shardConfig(vectorizationConfig, shard));
+                    break;
+                default:
+                    throw new IllegalArgumentException("不支持的分片存储类型: " + sharding.getBackend());
+            }
+            shards.add((VectorStorageService) beanFactory.initializeBean(store, "vectorStorageShard" + shard));
+        }
+        return shards;
+    }
+
+    /**
+     * 分片使用独立的段文件目录，分片内不启用查询抽样
+     */
+    private static VectorizationConfig shardConfig(VectorizationConfig base, int shard) {
+        VectorizationConfig.Storage storage = new VectorizationConfig.Storage();
+        VectorizationConfig.Storage source = base.getStorage();
+        storage.setType(source.getSharding().getBackend());
+        storage.setHnsw(source.getHnsw());
+        storage.setIvf(source.getIvf());
+        storage.setQuantization(source.getQuantization());
+        storage.setProjection(source.getProjection());
+        storage.setFilter(source.getFilter());
+        storage.setSharding(source.getSharding());
+
+        VectorizationConfig.Storage.Mmap mmap = new VectorizationConfig.Storage.Mmap();
+        mmap.setPath(Paths.get(source.getMmap().getPath()).resolve("shard-" + shard).toString());
+        mmap.setSegmentCapacity(source.getMmap().getSegmentCapacity());
+        mmap.setFlushInterval(source.getMmap().getFlushInterval());
+        mmap.setMergeInterval(source.getMmap().getMergeInterval());
+        mmap.setMergeLiveRatio(source.getMmap().getMergeLiveRatio());
+        storage.setMmap(mmap);
+
+        VectorizationConfig config = new VectorizationConfig();
+        config.setModel(base.getModel());
+        config.setStorage(storage);
+        return config;
+    }
+
+    @FunctionalInterface
+    private interface ShardWrite {
+        CompletableFuture<Void> apply(VectorStorageService shard, Map<String, float[]> vectors);
+    }
+
+    private static final class Scatter<T> {
+        private final Map<Integer, T> responses = new LinkedHashMap<>();
+        private final List<Integer> timedOut = new ArrayList<>();
+        private final List<Integer> failed = new ArrayList<>();
+
+        private boolean isPartial() {
+            return !timedOut.isEmpty() || !failed.isEmpty();
+        }
+    }
+}
@@ -6,14 +6,16 @@ import com.marsreg.common.exception.BusinessException;
 import com.marsreg.vector.cache.VectorCacheManager;
 import com.marsreg.vector.config.VectorizationConfig;
 import com.marsreg.vector.model.SentenceTransformerModel;
+import com.marsreg.vector.scheduler.EmbeddingLane;
+import com.marsreg.vector.scheduler.EmbeddingScheduler;
 import com.marsreg.vector.service.VectorizationService;
+import com.marsreg.vector.similarity.VectorMath;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -22,7 +24,7 @@ import java.util.stream.Collectors;
 public class VectorizationServiceImpl implements VectorizationService {
 
     private final VectorizationConfig config;
-    private final ExecutorService vectorizationExecutor;
+    private final EmbeddingScheduler scheduler;
     private final SentenceTransformerModel model;
     private final VectorCacheManager cacheManager;
     
@@ -109,6 +111,9 @@ public class VectorizationServiceImpl implements VectorizationService {
         info.put("modelVersion", model.getModelVersion());
         info.put("vectorDimension", model.getDimension());
         info.put("batchSize", config.getModel().getBatchSize());
+        info.put("backend", config.getModel().getBackend());
+        info.put("predictorPool", model.getPoolStats());
+        info.put("scheduler", scheduler.getStats());
         
         // 添加缓存统计信息
         info.putAll(cacheManager.getStats());
@@ -126,6 +131,11 @@ public class VectorizationServiceImpl implements VectorizationService {
             throw new BusinessException("更新向量化模型失败: " + e.getMessage());
         }
     }
+
+    @Override
+    public Map<String, Object> getModelUpdateStatus() {
+        return model.getSwapStatus();
+    }
     
     @Override
     @Log(module = "向量化", operation = "预热模型", description = "预热向量化模型")
@@ -142,16 +152,7 @@ public class VectorizationServiceImpl implements VectorizationService {
         if (vector == null || vector.length == 0) {
             return vector;
         }
-        float sum = 0;
-        for (float v : vector) {
-            sum += v * v;
-        }
-        float norm = (float) Math.sqrt(sum);
-        if (norm > 0) {
-            for (int i = 0; i < vector.length; i++) {
-                vector[i] /= norm;
-            }
-        }
+        VectorMath.normalizeInPlace(vector);
         return vector;
     }
 
@@ -161,33 +162,18 @@ public class VectorizationServiceImpl implements VectorizationService {
     }
 
     public CompletableFuture<List<float[]>> batchVectorizeAsync(List<String> texts) {
-        return CompletableFuture.supplyAsync(() -> batchVectorize(texts), vectorizationExecutor);
+        return scheduler.submit(EmbeddingLane.current(), texts.size(), () -> batchVectorize(texts));
     }
 
     public float calculateSimilarity(float[] vector1, float[] vector2) {
         if (vector1 == null || vector2 == null || vector1.length != vector2.length) {
             throw new IllegalArgumentException("向量维度不一致或为空");
         }
-        float dot = 0, norm1 = 0, norm2 = 0;
-        for (int i = 0; i < vector1.length; i++) {
-            dot += vector1[i] * vector2[i];
-            norm1 += vector1[i] * vector1[i];
-            norm2 += vector2[i] * vector2[i];
-        }
-        return (float) (dot / (Math.sqrt(norm1) * Math.sqrt(norm2)));
+        return VectorMath.cosine(vector1, vector2);
     }
 
     @Override
     public List<List<Float>> calculateSimilarityMatrix(List<float[]> vectors) {
-        int n = vectors.size();
-        List<List<Float>> matrix = new ArrayList<>(n);
-        for (int i = 0; i < n; i++) {
-            List<Float> row = new ArrayList<>(n);
-            for (int j = 0; j < n; j++) {
-                row.add(calculateSimilarity(vectors.get(i), vectors.get(j)));
-            }
-            matrix.add(row);
-        }
-        return matrix;
+        return computeSimilarityMatrix(vectors).toRows();
     }
 } 
\ No newline at end of file
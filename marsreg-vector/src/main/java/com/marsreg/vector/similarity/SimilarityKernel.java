@@ -0,0 +1,23 @@
+package com.marsreg.vector.similarity;
+
+/**
+ * 向量相似度计算内核，实现需无状态且线程安全
+ */
+interface SimilarityKernel {
+
+    /**
+     * 计算 a[aOffset..] 与 b[bOffset..] 前 length 个分量的内积
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * 计算查询向量与连续存放的 rows 行向量的内积，结果写入 scores[0..rows)
+     */
+    default void dotBatch(float[] query, float[] block, int blockOffset, int rows, int dimension, float[] scores) {
+        for (int r = 0; r < rows; r++) {
+            scores[r] = dot(query, 0, block, blockOffset + r * dimension, dimension);
+        }
+    }
+
+    String getName();
+}
@@ -0,0 +1,172 @@
+package com.marsreg.vector.similarity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 对称余弦相似度矩阵，只保存含对角线的上三角，按行主序紧凑存放在一个 float[] 中：
+ * 第 i 行保存 (i,i)..(i,n-1)，共 n(n+1)/2 个元素。
+ *
+ * <p>计算时先把归一化后的向量连续存放，再按 blockSize 行切分成分块，只计算 bi &lt;= bj 的分块对；
+ * 列分块在处理整个行分块期间留在缓存中，各分块对之间并行计算。</p>
+ */
+public final class SimilarityMatrix {
+
+    public static final String LAYOUT = "upper-triangular-row-major";
+    static final int DEFAULT_BLOCK_SIZE = 64;
+    private static final long MAX_PACKED_SIZE = Integer.MAX_VALUE - 8;
+
+    private final int size;
+    private final float[] values;
+
+    private SimilarityMatrix(int size, float[] values) {
+        this.size = size;
+        this.values = values;
+    }
+
+    public static SimilarityMatrix compute(List<float[]> vectors) {
+        return compute(vectors, DEFAULT_BLOCK_SIZE);
+    }
+
+    static SimilarityMatrix compute(List<float[]> vectors, int blockSize) {
+        int n = vectors.size();
+        long packedSize = packedSize(n);
+        if (packedSize > MAX_PACKED_SIZE) {
+            throw new IllegalArgumentException("向量数过多，相似度矩阵需要" + packedSize + "个元素，请改用 top-k 形式");
+        }
+        NormalizedRows rows = NormalizedRows.of(vectors);
+        float[] values = new float[(int) packedSize];
+        int blocks = (n + blockSize - 1) / blockSize;
+        int[] tileRows = new int[blocks * (blocks + 1) / 2];
+        int[] tileColumns = new int[tileRows.length];
+        int tile = 0;
+        for (int bi = 0; bi < blocks; bi++) {
+            for (int bj = bi; bj < blocks; bj++) {
+                tileRows[tile] = bi;
+                tileColumns[tile++] = bj;
+            }
+        }
+        IntStream.range(0, tileRows.length).parallel().forEach(t -> {
+            int rowStart = tileRows[t] * blockSize;
+            int rowEnd = Math.min(rowStart + blockSize, n);
+            int columnStart = tileColumns[t] * blockSize;
+            int columnEnd = Math.min(columnStart + blockSize, n);
+            float[] scores = new float[blockSize];
+            float[] query = new float[rows.dimension];
+            for (int i = rowStart; i < rowEnd; i++) {
+                // 对角分块只算 j >= i 的部分
+                int from = Math.max(i, columnStart);
+                int count = columnEnd - from;
+                if (count <= 0) {
+                    continue;
+                }
+                rows.dotBatch(rows.copyRow(i, query), from, count, scores);
+                System.arraycopy(scores, 0, values, (int) index(n, i, from), count);
+            }
+        });
+        return new SimilarityMatrix(n, values);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getLayout() {
+        return LAYOUT;
+    }
+
+    /**
+     * 紧凑存放的上三角元素，不复制
+     */
+    public float[] getValues() {
+        return values;
+    }
+
+    public float get(int i, int j) {
+        if (i < 0 || j < 0 || i >= size || j >= size) {
+            throw new IndexOutOfBoundsException("下标越界: (" + i + ", " + j + "), size=" + size);
+        }
+        return values[(int) index(size, i, j)];
+    }
+
+    /**
+     * 展开为完整的 n×n 矩阵，仅供兼容旧接口
+     */
+    public List<List<Float>> toRows() {
+        List<List<Float>> matrix = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<Float> row = new ArrayList<>(size);
+            for (int j = 0; j < size; j++) {
+                row.add(get(i, j));
+            }
+            matrix.add(row);
+        }
+        return matrix;
+    }
+
+    static long packedSize(int n) {
+        return (long) n * (n + 1) / 2;
+    }
+
+    /**
+     * (i,j) 在紧凑数组中的下标，i &gt; j 时按对称位置计算
+     */
+    static long index(int n, int i, int j) {
+        if (i > j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+        return (long) i * n - (long) i * (i - 1) / 2 + (j - i);
+    }
+
+    /**
+     * 归一化后按行连续存放的向量，供分块内积使用，只保存这一份连续副本
+     */
+    static final class NormalizedRows {
+
+        final int count;
+        final int dimension;
+        final float[] block;
+
+        private NormalizedRows(int count, int dimension, float[] block) {
+            this.count = count;
+            this.dimension = dimension;
+            this.block = block;
+        }
+
+        static NormalizedRows of(List<float[]> vectors) {
+            int n = vectors.size();
+            int dimension = n == 0 ? 0 : vectors.get(0).length;
+            float[] block = new float[Math.multiplyExact(n, dimension)];
+            for (int i = 0; i < n; i++) {
+                float[] vector = vectors.get(i);
+                if (vector == null || vector.length != dimension) {
+                    throw new IllegalArgumentException("向量维度不一致或为空");
+                }
+                float inv = VectorMath.inverseNorm(vector);
+                int offset = i * dimension;
+                for (int d = 0; d < dimension; d++) {
+                    block[offset + d] = vector[d] * inv;
+                }
+            }
+            return new NormalizedRows(n, dimension, block);
+        }
+
+        /**
+         * 把第 row 行复制到调用方的缓冲区，作为批量内积的查询向量
+         */
+        float[] copyRow(int row, float[] buffer) {
+            System.arraycopy(block, row * dimension, buffer, 0, dimension);
+            return buffer;
+        }
+
+        /**
+         * 查询向量与第 from 行起连续 count 行的内积
+         */
+        void dotBatch(float[] query, int from, int count, float[] scores) {
+            VectorMath.dotBatch(query, block, from * dimension, count, scores);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.marsreg.vector.similarity;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 每个向量与其余向量中余弦相似度最高的 k 个，向量数较大、完整矩阵放不下时使用。
+ * 结果按行紧凑存放：第 i 行的第 r 个近邻为 indices[i*k+r]，得分降序；不足 k 个时下标补 -1、得分补 0
+ */
+public final class SimilarityNeighbors {
+
+    private final int size;
+    private final int k;
+    private final int[] indices;
+    private final float[] scores;
+
+    private SimilarityNeighbors(int size, int k, int[] indices, float[] scores) {
+        this.size = size;
+        this.k = k;
+        this.indices = indices;
+        this.scores = scores;
+    }
+
+    public static SimilarityNeighbors compute(List<float[]> vectors, int k, float minScore) {
+        return compute(vectors, k, minScore, SimilarityMatrix.DEFAULT_BLOCK_SIZE);
+    }
+
+    static SimilarityNeighbors compute(List<float[]> vectors, int k, float minScore, int blockSize) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k必须大于0");
+        }
+        SimilarityMatrix.NormalizedRows rows = SimilarityMatrix.NormalizedRows.of(vectors);
+        int n = rows.count;
+        int[] indices = new int[Math.multiplyExact(n, k)];
+        float[] scores = new float[indices.length];
+        int blocks = (n + blockSize - 1) / blockSize;
+        Heap[] heaps = new Heap[n];
+        for (int i = 0; i < n; i++) {
+            heaps[i] = new Heap(k, minScore);
+        }
+        // 每个行分块的堆共用一把锁，一个分块对算完后整体提交，每个分块对只加锁两次
+        Object[] blockLocks = new Object[blocks];
+        for (int b = 0; b < blocks; b++) {
+            blockLocks[b] = new Object();
+        }
+        int[] tileRows = new int[blocks * (blocks + 1) / 2];
+        int[] tileColumns = new int[tileRows.length];
+        int tile = 0;
+        for (int bi = 0; bi < blocks; bi++) {
+            for (int bj = bi; bj < blocks; bj++) {
+                tileRows[tile] = bi;
+                tileColumns[tile++] = bj;
+            }
+        }
+        // 相似度对称，只计算 bi <= bj 的分块对，每个 (i,j) 同时提交给 i 和 j 的堆
+        IntStream.range(0, tileRows.length).parallel().forEach(t -> {
+            int bi = tileRows[t];
+            int bj = tileColumns[t];
+            int rowStart = bi * blockSize;
+            int rowEnd = Math.min(rowStart + blockSize, n);
+            int columnStart = bj * blockSize;
+            int columnEnd = Math.min(columnStart + blockSize, n);
+            int width = columnEnd - columnStart;
+            float[] tileScores = new float[blockSize * blockSize];
+            float[] batch = new float[blockSize];
+            float[] query = new float[rows.dimension];
+            for (int i = rowStart; i < rowEnd; i++) {
+                rows.dotBatch(rows.copyRow(i, query), columnStart, width, batch);
+                System.arraycopy(batch, 0, tileScores, (i - rowStart) * blockSize, width);
+            }
+            synchronized (blockLocks[bi]) {
+                for (int i = rowStart; i < rowEnd; i++) {
+                    Heap heap = heaps[i];
+                    for (int j = Math.max(columnStart, i + 1); j < columnEnd; j++) {
+                        heap.offer(j, tileScores[(i - rowStart) * blockSize + j - columnStart]);
+                    }
+                }
+                if (bi == bj) {
+                    // 对角分块的两个方向都在同一把锁下提交
+                    offerColumns(heaps, tileScores, blockSize, rowStart, rowEnd, columnStart, columnEnd);
+                }
+            }
+            if (bi != bj) {
+                synchronized (blockLocks[bj]) {
+                    offerColumns(heaps, tileScores, blockSize, rowStart, rowEnd, columnStart, columnEnd);
+                }
+            }
+        });
+        for (int i = 0; i < n; i++) {
+            heaps[i].drainDescending(indices, scores, i * k);
+        }
+        return new SimilarityNeighbors(n, k, indices, scores);
+    }
+
+    /**
+     * 把分块内 (i,j) 的得分提交给列 j 的堆，只取 i &lt; j 的部分
+     */
+    private static void offerColumns(Heap[] heaps, float[] tileScores, int blockSize,
+                                     int rowStart, int rowEnd, int columnStart, int columnEnd) {
+        for (int j = columnStart; j < columnEnd; j++) {
+            Heap heap = heaps[j];
+            int last = Math.min(rowEnd, j);
+            for (int i = rowStart; i < last; i++) {
+                heap.offer(i, tileScores[(i - rowStart) * blockSize + j - columnStart]);
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public int[] getIndices() {
+        return indices;
+    }
+
+    public float[] getScores() {
+        return scores;
+    }
+
+    /**
+     * 固定容量的 int 下标最小堆
+     */
+    private static final class Heap {
+
+        private final int capacity;
+        private final float minScore;
+        private final int[] ids;
+        private final float[] values;
+        private int size;
+
+        Heap(int capacity, float minScore) {
+            this.capacity = capacity;
+            this.minScore = minScore;
+            this.ids = new int[capacity];
+            this.values = new float[capacity];
+        }
+
+        void offer(int id, float score) {
+            if (score < minScore) {
+                return;
+            }
+            if (size < capacity) {
+                int index = size++;
+                while (index > 0) {
+                    int parent = (index - 1) >>> 1;
+                    if (values[parent] <= score) {
+                        break;
+                    }
+                    values[index] = values[parent];
+                    ids[index] = ids[parent];
+                    index = parent;
+                }
+                values[index] = score;
+                ids[index] = id;
+            } else if (score > values[0]) {
+                siftDown(id, score);
+            }
+        }
+
+        void drainDescending(int[] outIds, float[] outScores, int offset) {
+            for (int r = size; r < capacity; r++) {
+                outIds[offset + r] = -1;
+                outScores[offset + r] = 0f;
+            }
+            while (size > 0) {
+                int last = --size;
+                outIds[offset + last] = ids[0];
+                outScores[offset + last] = values[0];
+                if (size > 0) {
+                    siftDown(ids[last], values[last]);
+                }
+            }
+        }
+
+        private void siftDown(int id, float score) {
+            int index = 0;
+            int half = size >>> 1;
+            while (index < half) {
+                int child = 2 * index + 1;
+                if (child + 1 < size && values[child + 1] < values[child]) {
+                    child++;
+                }
+                if (score <= values[child]) {
+                    break;
+                }
+                values[index] = values[child];
+                ids[index] = ids[child];
+                index = child;
+            }
+            values[index] = score;
+            ids[index] = id;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.marsreg.vector.similarity;
+
+import java.util.LinkedHashMap;
+
+/**
+ * 固定容量的最小堆，只保留得分最高的 k 个结果，避免对全部候选排序。非线程安全
+ */
+public class TopKCollector {
+
+    private final int capacity;
+    private final float minScore;
+    private final float[] scores;
+    private final String[] ids;
+    private int size;
+
+    public TopKCollector(int capacity, float minScore) {
+        this.capacity = Math.max(capacity, 0);
+        this.minScore = minScore;
+        this.scores = new float[this.capacity];
+        this.ids = new String[this.capacity];
+    }
+
+    /**
+     * 判断得分能否进入结果，可在构造ID等开销较大的操作前提前过滤
+     */
+    public boolean accepts(float score) {
+        return size < capacity ? score >= minScore : score > scores[0] && score >= minScore;
+    }
+
+    public void offer(String id, float score) {
+        if (!accepts(score)) {
+            return;
+        }
+        if (size < capacity) {
+            scores[size] = score;
+            ids[size] = id;
+            siftUp(size++);
+        } else {
+            scores[0] = score;
+            ids[0] = id;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 按得分降序输出结果，调用后收集器被清空
+     */
+    public LinkedHashMap<String, Float> drainDescending() {
+        int count = size;
+        String[] sortedIds = new String[count];
+        float[] sortedScores = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            sortedIds[i] = ids[0];
+            sortedScores[i] = scores[0];
+            size--;
+            if (size > 0) {
+                scores[0] = scores[size];
+                ids[0] = ids[size];
+                siftDown(0);
+            }
+            ids[size] = null;
+        }
+        LinkedHashMap<String, Float> results = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            results.put(sortedIds[i], sortedScores[i]);
+        }
+        return results;
+    }
+
+    private void siftUp(int index) {
+        float score = scores[index];
+        String id = ids[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            scores[index] = scores[parent];
+            ids[index] = ids[parent];
+            index = parent;
+        }
+        scores[index] = score;
+        ids[index] = id;
+    }
+
+    private void siftDown(int index) {
+        float score = scores[index];
+        String id = ids[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            scores[index] = scores[child];
+            ids[index] = ids[child];
+            index = child;
+        }
+        scores[index] = score;
+        ids[index] = id;
+    }
+}
@@ -0,0 +1,65 @@
+package com.marsreg.vector.similarity;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 jdk.incubator.vector 的SIMD实现，只在运行时加载了该模块时通过反射创建
+ */
+final class VectorApiKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void dotBatch(float[] query, float[] block, int blockOffset, int rows, int dimension, float[] scores) {
+        int bound = SPECIES.loopBound(dimension);
+        int r = 0;
+        // 每次处理两行，复用同一段查询向量的加载
+        for (; r + 1 < rows; r += 2) {
+            int o0 = blockOffset + r * dimension;
+            int o1 = o0 + dimension;
+            FloatVector acc0 = FloatVector.zero(SPECIES);
+            FloatVector acc1 = FloatVector.zero(SPECIES);
+            int i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+                acc0 = q.fma(FloatVector.fromArray(SPECIES, block, o0 + i), acc0);
+                acc1 = q.fma(FloatVector.fromArray(SPECIES, block, o1 + i), acc1);
+            }
+            float s0 = acc0.reduceLanes(VectorOperators.ADD);
+            float s1 = acc1.reduceLanes(VectorOperators.ADD);
+            for (; i < dimension; i++) {
+                s0 += query[i] * block[o0 + i];
+                s1 += query[i] * block[o1 + i];
+            }
+            scores[r] = s0;
+            scores[r + 1] = s1;
+        }
+        if (r < rows) {
+            scores[r] = dot(query, 0, block, blockOffset + r * dimension, dimension);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector-api(" + SPECIES.vectorBitSize() + "bit)";
+    }
+}
@@ -0,0 +1,98 @@
+package com.marsreg.vector.similarity;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 向量模块统一的相似度计算入口。
+ *
+ * <p>以 simd profile 构建（mvn -Psimd）且运行时加载了 jdk.incubator.vector 模块（启动参数
+ * --add-modules jdk.incubator.vector）时使用SIMD实现，否则退化为标量实现。存储和检索路径应预先归一化向量或保存逆范数，只走内积计算。</p>
+ */
+@Slf4j
+public final class VectorMath {
+
+    private static final SimilarityKernel KERNEL = loadKernel();
+
+    private VectorMath() {
+    }
+
+    public static float dot(float[] a, float[] b) {
+        checkLength(a, b);
+        return KERNEL.dot(a, 0, b, 0, a.length);
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * 计算查询向量与连续存放的 rows 行向量的内积
+     * @param block 按行连续存放的向量块
+     * @param blockOffset 第一行在块中的起始下标
+     * @param scores 输出数组，长度至少为 rows
+     */
+    public static void dotBatch(float[] query, float[] block, int blockOffset, int rows, float[] scores) {
+        KERNEL.dotBatch(query, block, blockOffset, rows, query.length, scores);
+    }
+
+    /**
+     * 未归一化向量的余弦相似度，任一向量为零向量时返回0
+     */
+    public static float cosine(float[] a, float[] b) {
+        checkLength(a, b);
+        float dot = KERNEL.dot(a, 0, b, 0, a.length);
+        float normA = KERNEL.dot(a, 0, a, 0, a.length);
+        float normB = KERNEL.dot(b, 0, b, 0, b.length);
+        if (normA == 0 || normB == 0) {
+            return 0f;
+        }
+        return (float) (dot / (Math.sqrt(normA) * Math.sqrt(normB)));
+    }
+
+    public static float inverseNorm(float[] vector) {
+        float sum = KERNEL.dot(vector, 0, vector, 0, vector.length);
+        return sum > 0 ? (float) (1.0 / Math.sqrt(sum)) : 0f;
+    }
+
+    /**
+     * 返回归一化后的副本，零向量返回全零副本
+     */
+    public static float[] normalize(float[] vector) {
+        float[] normalized = vector.clone();
+        normalizeInPlace(normalized);
+        return normalized;
+    }
+
+    public static void normalizeInPlace(float[] vector) {
+        float inv = inverseNorm(vector);
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= inv;
+        }
+    }
+
+    public static String getKernelName() {
+        return KERNEL.getName();
+    }
+
+    private static void checkLength(float[] a, float[] b) {
+        if (a == null || b == null || a.length != b.length) {
+            throw new IllegalArgumentException("向量维度不一致或为空");
+        }
+    }
+
+    private static SimilarityKernel loadKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                SimilarityKernel kernel = (SimilarityKernel) Class.forName("com.marsreg.vector.similarity.VectorApiKernel")
+                    .getDeclaredConstructor().newInstance();
+                log.info("相似度计算使用SIMD内核: {}", kernel.getName());
+                return kernel;
+            } catch (ClassNotFoundException e) {
+                log.info("未使用 simd profile 构建，SIMD相似度内核不可用，使用标量实现");
+            } catch (Throwable e) {
+                log.warn("SIMD相似度内核加载失败，使用标量实现", e);
+            }
+        }
+        return new ScalarKernel();
+    }
+}
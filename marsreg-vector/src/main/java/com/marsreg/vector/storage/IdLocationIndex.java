@@ -0,0 +1,204 @@
+package com.marsreg.vector.storage;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * ID到行位置的开放寻址哈希表，位置以原始 long 保存，避免每个条目的装箱和链表节点开销。
+ *
+ * <p>写操作由调用方串行化（{@link SegmentVectorStore} 在写锁内调用），这里再用
+ * {@link StampedLock} 的写锁标记修改区间；读操作先走乐观读，校验失败时退回读锁重试。
+ * 删除采用后移补位而不是墓碑，探测链长度不会随删除累积。</p>
+ */
+final class IdLocationIndex {
+
+    static final long ABSENT = -1L;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final StampedLock lock = new StampedLock();
+    private String[] keys;
+    private long[] values;
+    private int size;
+    private int resizeThreshold;
+
+    IdLocationIndex() {
+        allocate(1024);
+    }
+
+    /**
+     * 返回ID对应的位置，不存在时返回 {@link #ABSENT}
+     */
+    long get(String id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            String[] currentKeys = keys;
+            long[] currentValues = values;
+            // 两个数组可能分别读到扩容前后的版本，长度不一致时直接走读锁
+            if (currentKeys.length == currentValues.length) {
+                long location = find(currentKeys, currentValues, id);
+                if (lock.validate(stamp)) {
+                    return location;
+                }
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return find(keys, values, id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    boolean containsKey(String id) {
+        return get(id) != ABSENT;
+    }
+
+    int size() {
+        long stamp = lock.tryOptimisticRead();
+        int current = size;
+        if (lock.validate(stamp)) {
+            return current;
+        }
+        stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 写入位置，返回此前的位置，不存在时返回 {@link #ABSENT}
+     */
+    long put(String id, long location) {
+        long stamp = lock.writeLock();
+        try {
+            if (size >= resizeThreshold) {
+                resize(keys.length << 1);
+            }
+            int mask = keys.length - 1;
+            int slot = slotOf(id, mask);
+            while (keys[slot] != null) {
+                if (keys[slot].equals(id)) {
+                    long previous = values[slot];
+                    values[slot] = location;
+                    return previous;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = id;
+            values[slot] = location;
+            size++;
+            return ABSENT;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 仅当当前位置等于 expected 时替换为 update
+     */
+    boolean replace(String id, long expected, long update) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(keys, id);
+            if (slot < 0 || values[slot] != expected) {
+                return false;
+            }
+            values[slot] = update;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 删除ID，返回此前的位置，不存在时返回 {@link #ABSENT}
+     */
+    long remove(String id) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(keys, id);
+            if (slot < 0) {
+                return ABSENT;
+            }
+            long previous = values[slot];
+            // 后移补位：把探测链上后续可以前移的条目移到空出的槽位
+            int mask = keys.length - 1;
+            int gap = slot;
+            int next = (gap + 1) & mask;
+            while (keys[next] != null) {
+                int home = slotOf(keys[next], mask);
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[gap] = null;
+            values[gap] = 0;
+            size--;
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static long find(String[] keys, long[] values, String id) {
+        // 乐观读期间数组可能被并发修改，探测步数以表长为上限，结果由调用方校验
+        int mask = keys.length - 1;
+        int slot = slotOf(id, mask);
+        for (int probes = 0; probes < keys.length; probes++) {
+            String key = keys[slot];
+            if (key == null) {
+                return ABSENT;
+            }
+            if (key.equals(id)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ABSENT;
+    }
+
+    private static int slotOf(String[] keys, String id) {
+        int mask = keys.length - 1;
+        int slot = slotOf(id, mask);
+        while (keys[slot] != null) {
+            if (keys[slot].equals(id)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int slotOf(String id, int mask) {
+        int hash = id.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slotOf(oldKeys[i], mask);
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        values = new long[capacity];
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+}
@@ -0,0 +1,435 @@
+package com.marsreg.vector.storage;
+
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.similarity.VectorMath;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 基于追加写段文件的持久化向量存储。
+ *
+ * <p>所有行都写入当前活跃段，写满后封存并新建段；ID到行位置的映射只保存在内存中的
+ * 原始类型哈希表里，启动时通过重放各段日志重建。删除和覆盖写只在原段记录删除日志，
+ * 有效行比例过低的封存段由 {@link #merge(double)} 合并回收。</p>
+ */
+public class SegmentVectorStore implements Closeable {
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d{8})\\.vec");
+    private static final int SCAN_BLOCK_ROWS = 256;
+
+    private final Path directory;
+    private final int dimension;
+    private final int segmentCapacity;
+
+    // 高32位为段ID，低32位为行号
+    private final IdLocationIndex locations = new IdLocationIndex();
+    private final Map<Integer, VectorSegment> segmentsById = new ConcurrentHashMap<>();
+    private volatile List<VectorSegment> segments = Collections.emptyList();
+    private final AtomicInteger nextSegmentId = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Object writeLock = new Object();
+    private final Object mergeLock = new Object();
+    private final ThreadLocal<float[]> scanBuffers;
+    private final ThreadLocal<float[]> scoreBuffers = ThreadLocal.withInitial(() -> new float[SCAN_BLOCK_ROWS]);
+    private VectorSegment activeSegment;
+
+    public SegmentVectorStore(Path directory, int dimension, int segmentCapacity) throws IOException {
+        this.directory = directory;
+        this.dimension = dimension;
+        this.segmentCapacity = segmentCapacity;
+        this.scanBuffers = ThreadLocal.withInitial(() -> new float[SCAN_BLOCK_ROWS * dimension]);
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    public void put(String id, float[] vector) {
+        synchronized (writeLock) {
+            try {
+                int row = activeSegment.append(id, vector, sequence.incrementAndGet());
+                if (row < 0) {
+                    rollSegment();
+                    row = activeSegment.append(id, vector, sequence.get());
+                }
+                long previous = locations.put(id, location(activeSegment.getSegmentId(), row));
+                if (previous != IdLocationIndex.ABSENT) {
+                    deleteAt(previous);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("向量写入失败: " + id, e);
+            }
+        }
+    }
+
+    public boolean delete(String id) {
+        synchronized (writeLock) {
+            long previous = locations.remove(id);
+            if (previous == IdLocationIndex.ABSENT) {
+                return false;
+            }
+            try {
+                deleteAt(previous);
+            } catch (IOException e) {
+                throw new UncheckedIOException("向量删除失败: " + id, e);
+            }
+            return true;
+        }
+    }
+
+    public float[] get(String id) {
+        long location = locations.get(id);
+        if (location == IdLocationIndex.ABSENT) {
+            return null;
+        }
+        VectorSegment segment = segmentsById.get(segmentOf(location));
+        return segment == null ? null : segment.read(rowOf(location));
+    }
+
+    public boolean contains(String id) {
+        return locations.containsKey(id);
+    }
+
+    public int size() {
+        return locations.size();
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 全量扫描所有有效行，结果按相似度降序排列
+     */
+    public LinkedHashMap<String, Float> search(float[] query, int limit, float minScore) {
+        return search(query, limit, minScore, null);
+    }
+
+    /**
+     * 带过滤条件的全量扫描，条件只对得分能进入当前前 limit 的行判断，多数行在比较得分后即被跳过
+     * @param filter 按ID判断是否保留，为null时不过滤
+     */
+    public LinkedHashMap<String, Float> search(float[] query, int limit, float minScore, Predicate<String> filter) {
+        checkDimension(query);
+        float queryInvNorm = inverseNorm(query);
+        TopKCollector collector = new TopKCollector(limit, minScore);
+        float[] block = scanBuffers.get();
+        float[] dots = scoreBuffers.get();
+        for (VectorSegment segment : segments) {
+            int rowCount = segment.getRowCount();
+            for (int start = 0; start < rowCount; start += SCAN_BLOCK_ROWS) {
+                int count = Math.min(SCAN_BLOCK_ROWS, rowCount - start);
+                segment.readRows(start, count, block);
+                VectorMath.dotBatch(query, block, 0, count, dots);
+                for (int i = 0; i < count; i++) {
+                    int row = start + i;
+                    float score = dots[i] * queryInvNorm * segment.inverseNormAt(row);
+                    if (collector.accepts(score) && segment.isLive(row)) {
+                        String id = segment.idAt(row);
+                        if (filter == null || filter.test(id)) {
+                            collector.offer(id, score);
+                        }
+                    }
+                }
+            }
+        }
+        return collector.drainDescending();
+    }
+
+    /**
+     * 多个查询共享一次全量扫描，每个向量块读入后依次与所有查询计算内积。
+     * 各段并行扫描，段内结果最后按查询合并
+     */
+    public List<LinkedHashMap<String, Float>> searchBatch(List<float[]> queries, int limit, float minScore) {
+        int queryCount = queries.size();
+        float[] queryInvNorms = new float[queryCount];
+        for (int q = 0; q < queryCount; q++) {
+            checkDimension(queries.get(q));
+            queryInvNorms[q] = inverseNorm(queries.get(q));
+        }
+        List<TopKCollector[]> partials = segments.parallelStream()
+            .map(segment -> scanSegment(segment, queries, queryInvNorms, limit, minScore))
+            .collect(Collectors.toList());
+        List<LinkedHashMap<String, Float>> results = new ArrayList<>(queryCount);
+        for (int q = 0; q < queryCount; q++) {
+            TopKCollector merged = new TopKCollector(limit, minScore);
+            for (TopKCollector[] partial : partials) {
+                partial[q].drainDescending().forEach(merged::offer);
+            }
+            results.add(merged.drainDescending());
+        }
+        return results;
+    }
+
+    private TopKCollector[] scanSegment(VectorSegment segment, List<float[]> queries, float[] queryInvNorms,
+                                        int limit, float minScore) {
+        int queryCount = queries.size();
+        TopKCollector[] collectors = new TopKCollector[queryCount];
+        for (int q = 0; q < queryCount; q++) {
+            collectors[q] = new TopKCollector(limit, minScore);
+        }
+        float[] block = scanBuffers.get();
+        float[] dots = scoreBuffers.get();
+        int rowCount = segment.getRowCount();
+        for (int start = 0; start < rowCount; start += SCAN_BLOCK_ROWS) {
+            int count = Math.min(SCAN_BLOCK_ROWS, rowCount - start);
+            segment.readRows(start, count, block);
+            for (int q = 0; q < queryCount; q++) {
+                VectorMath.dotBatch(queries.get(q), block, 0, count, dots);
+                TopKCollector collector = collectors[q];
+                for (int i = 0; i < count; i++) {
+                    int row = start + i;
+                    float score = dots[i] * queryInvNorms[q] * segment.inverseNormAt(row);
+                    if (collector.accepts(score) && segment.isLive(row)) {
+                        collector.offer(segment.idAt(row), score);
+                    }
+                }
+            }
+        }
+        return collectors;
+    }
+
+    /**
+     * 计算查询向量与指定ID的余弦相似度，ID不存在时返回NaN
+     */
+    public float score(float[] query, String id) {
+        return score(query, inverseNorm(query), id);
+    }
+
+    /**
+     * 使用调用方预先算好的查询范数倒数打分，行数据读入线程内缓冲区，存储向量使用段内缓存的范数倒数
+     */
+    public float score(float[] query, float queryInvNorm, String id) {
+        checkDimension(query);
+        long location = locations.get(id);
+        if (location == IdLocationIndex.ABSENT) {
+            return Float.NaN;
+        }
+        VectorSegment segment = segmentsById.get(segmentOf(location));
+        if (segment == null) {
+            return Float.NaN;
+        }
+        int row = rowOf(location);
+        float[] buffer = scanBuffers.get();
+        segment.readRows(row, 1, buffer);
+        return VectorMath.dot(query, 0, buffer, 0, dimension) * queryInvNorm * segment.inverseNormAt(row);
+    }
+
+    /**
+     * 遍历所有有效向量，遍历期间的并发写入不保证可见
+     */
+    public void forEachLive(BiConsumer<String, float[]> consumer) {
+        for (VectorSegment segment : segments) {
+            int rowCount = segment.getRowCount();
+            for (int row = 0; row < rowCount; row++) {
+                if (segment.isLive(row)) {
+                    consumer.accept(segment.idAt(row), segment.read(row));
+                }
+            }
+        }
+    }
+
+    /**
+     * 合并有效行比例低于阈值的封存段，返回被回收的段数
+     */
+    public int merge(double liveRatioThreshold) throws IOException {
+        synchronized (mergeLock) {
+            return mergeSegments(liveRatioThreshold);
+        }
+    }
+
+    private int mergeSegments(double liveRatioThreshold) throws IOException {
+        List<VectorSegment> candidates = new ArrayList<>();
+        VectorSegment active;
+        synchronized (writeLock) {
+            active = activeSegment;
+        }
+        for (VectorSegment segment : segments) {
+            if (segment != active && segment.getLiveCount() < segment.getRowCount() * liveRatioThreshold) {
+                candidates.add(segment);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        // 先在锁外复制有效行，再在锁内切换位置映射
+        List<VectorSegment> merged = new ArrayList<>();
+        List<long[]> moved = new ArrayList<>();
+        VectorSegment target = null;
+        for (VectorSegment source : candidates) {
+            int rowCount = source.getRowCount();
+            for (int row = 0; row < rowCount; row++) {
+                if (!source.isLive(row)) {
+                    continue;
+                }
+                if (target == null || target.isFull()) {
+                    target = VectorSegment.create(directory, nextSegmentId.getAndIncrement(), dimension, segmentCapacity);
+                    merged.add(target);
+                }
+                int newRow = target.append(source.idAt(row), source.read(row), source.sequenceAt(row));
+                moved.add(new long[]{location(source.getSegmentId(), row), location(target.getSegmentId(), newRow)});
+            }
+        }
+        for (VectorSegment segment : merged) {
+            segment.flush();
+        }
+
+        synchronized (writeLock) {
+            for (VectorSegment segment : merged) {
+                segmentsById.put(segment.getSegmentId(), segment);
+            }
+            for (long[] move : moved) {
+                VectorSegment targetSegment = segmentsById.get(segmentOf(move[1]));
+                String id = targetSegment.idAt(rowOf(move[1]));
+                // 复制期间被删除或覆盖的行在新段中同样标记删除
+                if (!locations.replace(id, move[0], move[1])) {
+                    targetSegment.delete(rowOf(move[1]));
+                }
+            }
+            List<VectorSegment> updated = new ArrayList<>(segments);
+            updated.removeAll(candidates);
+            updated.addAll(merged);
+            updated.sort(Comparator.comparingInt(VectorSegment::getSegmentId));
+            segments = Collections.unmodifiableList(updated);
+            for (VectorSegment segment : candidates) {
+                segmentsById.remove(segment.getSegmentId());
+                segment.deleteFiles();
+            }
+        }
+        return candidates.size();
+    }
+
+    public void flush() throws IOException {
+        for (VectorSegment segment : segments) {
+            segment.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            IOException failure = null;
+            for (VectorSegment segment : segments) {
+                try {
+                    segment.flush();
+                    segment.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Integer> segmentIds = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.vec")) {
+            for (Path path : stream) {
+                Matcher matcher = SEGMENT_FILE.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    segmentIds.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        Collections.sort(segmentIds);
+
+        List<VectorSegment> opened = new ArrayList<>();
+        long maxSequence = 0;
+        for (int segmentId : segmentIds) {
+            VectorSegment segment = VectorSegment.open(directory, segmentId, dimension, segmentCapacity);
+            opened.add(segment);
+            segmentsById.put(segmentId, segment);
+            for (int row = 0; row < segment.getRowCount(); row++) {
+                if (!segment.isLive(row)) {
+                    continue;
+                }
+                long rowSequence = segment.sequenceAt(row);
+                maxSequence = Math.max(maxSequence, rowSequence);
+                long location = location(segmentId, row);
+                long existing = locations.get(segment.idAt(row));
+                if (existing == IdLocationIndex.ABSENT) {
+                    locations.put(segment.idAt(row), location);
+                } else if (sequenceAt(existing) <= rowSequence) {
+                    // 崩溃可能导致同一ID有多个有效行，保留序号最大的并持久化删除其余行
+                    locations.put(segment.idAt(row), location);
+                    deleteAt(existing);
+                } else {
+                    segment.delete(row);
+                }
+            }
+        }
+        sequence.set(maxSequence);
+        nextSegmentId.set(segmentIds.isEmpty() ? 1 : segmentIds.get(segmentIds.size() - 1) + 1);
+        segments = Collections.unmodifiableList(opened);
+
+        if (opened.isEmpty() || opened.get(opened.size() - 1).isFull()) {
+            rollSegment();
+        } else {
+            activeSegment = opened.get(opened.size() - 1);
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        VectorSegment segment = VectorSegment.create(directory, nextSegmentId.getAndIncrement(), dimension, segmentCapacity);
+        segmentsById.put(segment.getSegmentId(), segment);
+        List<VectorSegment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        segments = Collections.unmodifiableList(updated);
+        if (activeSegment != null) {
+            activeSegment.flush();
+        }
+        activeSegment = segment;
+    }
+
+    private void deleteAt(long location) throws IOException {
+        VectorSegment segment = segmentsById.get(segmentOf(location));
+        if (segment != null) {
+            segment.delete(rowOf(location));
+        }
+    }
+
+    private long sequenceAt(long location) {
+        return segmentsById.get(segmentOf(location)).sequenceAt(rowOf(location));
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不一致: 期望 " + dimension);
+        }
+    }
+
+    private static long location(int segmentId, int row) {
+        return ((long) segmentId << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int rowOf(long location) {
+        return (int) location;
+    }
+
+    private static float inverseNorm(float[] vector) {
+        return VectorMath.inverseNorm(vector);
+    }
+}
@@ -0,0 +1,40 @@
+package com.marsreg.vector.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 对只能顺序遍历的向量集合做蓄水池抽样，一次遍历得到均匀随机的样本
+ */
+public final class VectorSampler {
+
+    private VectorSampler() {
+    }
+
+    /**
+     * @param source 接收遍历回调的遍历函数，如 {@code store::forEachLive}
+     * @return 最多 count 个向量的副本
+     */
+    public static List<float[]> reservoir(Consumer<BiConsumer<String, float[]>> source, int count, Random random) {
+        List<float[]> samples = new ArrayList<>(Math.max(0, count));
+        if (count <= 0) {
+            return samples;
+        }
+        long[] seen = {0};
+        source.accept((id, vector) -> {
+            long index = seen[0]++;
+            if (samples.size() < count) {
+                samples.add(vector.clone());
+            } else {
+                long slot = (long) (random.nextDouble() * (index + 1));
+                if (slot < count) {
+                    samples.set((int) slot, vector.clone());
+                }
+            }
+        });
+        return samples;
+    }
+}
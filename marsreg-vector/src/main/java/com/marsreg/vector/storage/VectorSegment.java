@@ -0,0 +1,304 @@
+package com.marsreg.vector.storage;
+
+import com.marsreg.vector.similarity.VectorMath;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 单个向量段文件。
+ *
+ * <p>数据文件 {@code segment-N.vec} 是定长的 float32 行（小端序），通过内存映射访问；
+ * 日志文件 {@code segment-N.log} 追加记录行的写入和删除，是行是否有效的唯一依据。
+ * 写入时先写行数据再写日志，崩溃后没有日志记录的行会被忽略。</p>
+ */
+public class VectorSegment implements Closeable {
+
+    private static final int MAGIC = 0x4D564543;
+    private static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private final int segmentId;
+    private final int dimension;
+    private final int capacity;
+    private final Path dataPath;
+    private final Path logPath;
+    private final FileChannel dataChannel;
+    private final FileChannel logChannel;
+    private final MappedByteBuffer mapped;
+    private final FloatBuffer rows;
+
+    private final String[] ids;
+    private final long[] sequences;
+    private final float[] inverseNorms;
+    private final AtomicLongArray liveBits;
+    private final AtomicInteger liveCount = new AtomicInteger();
+    private volatile int rowCount;
+
+    private VectorSegment(Path directory, int segmentId, int dimension, int capacity, boolean create) throws IOException {
+        this.segmentId = segmentId;
+        this.dimension = dimension;
+        this.capacity = capacity;
+        this.dataPath = directory.resolve(dataFileName(segmentId));
+        this.logPath = directory.resolve(logFileName(segmentId));
+
+        StandardOpenOption[] options = create
+            ? new StandardOpenOption[]{StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE}
+            : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+        this.dataChannel = FileChannel.open(dataPath, options);
+        this.logChannel = FileChannel.open(logPath, create
+            ? new StandardOpenOption[]{StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE}
+            : new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE});
+
+        long fileSize = HEADER_BYTES + (long) capacity * dimension * Float.BYTES;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("段文件过大，请减小段容量: " + capacity);
+        }
+        this.mapped = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (create) {
+            mapped.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, dimension).putInt(12, capacity);
+        } else {
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException("无效的向量段文件: " + dataPath);
+            }
+            if (mapped.getInt(8) != dimension || mapped.getInt(12) != capacity) {
+                throw new IOException("向量段维度或容量不匹配: " + dataPath);
+            }
+        }
+        this.rows = mapped.slice(HEADER_BYTES, (int) fileSize - HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+
+        this.ids = new String[capacity];
+        this.sequences = new long[capacity];
+        this.inverseNorms = new float[capacity];
+        this.liveBits = new AtomicLongArray((capacity + 63) >>> 6);
+    }
+
+    public static VectorSegment create(Path directory, int segmentId, int dimension, int capacity) throws IOException {
+        return new VectorSegment(directory, segmentId, dimension, capacity, true);
+    }
+
+    /**
+     * 打开已有段并重放日志
+     */
+    public static VectorSegment open(Path directory, int segmentId, int dimension, int capacity) throws IOException {
+        VectorSegment segment = new VectorSegment(directory, segmentId, dimension, capacity, false);
+        segment.replayLog();
+        return segment;
+    }
+
+    public static String dataFileName(int segmentId) {
+        return String.format("segment-%08d.vec", segmentId);
+    }
+
+    public static String logFileName(int segmentId) {
+        return String.format("segment-%08d.log", segmentId);
+    }
+
+    /**
+     * 追加一行，段已满时返回 -1。调用方需保证同一段上的写入串行执行
+     */
+    public int append(String id, float[] vector, long sequence) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不一致: 期望 " + dimension + ", 实际 " + vector.length);
+        }
+        int row = rowCount;
+        if (row >= capacity) {
+            return -1;
+        }
+        rows.put(row * dimension, vector);
+
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(1 + 4 + 8 + 2 + idBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        record.put(OP_PUT).putInt(row).putLong(sequence).putShort((short) idBytes.length).put(idBytes).flip();
+        writeLog(record);
+
+        activate(row, id, sequence, inverseNorm(vector));
+        rowCount = row + 1;
+        return row;
+    }
+
+    /**
+     * 标记删除并写入日志，返回该行此前是否有效
+     */
+    public boolean delete(int row) throws IOException {
+        if (!clearLive(row)) {
+            return false;
+        }
+        ByteBuffer record = ByteBuffer.allocate(1 + 4).order(ByteOrder.LITTLE_ENDIAN);
+        record.put(OP_DELETE).putInt(row).flip();
+        writeLog(record);
+        return true;
+    }
+
+    public boolean isLive(int row) {
+        return (liveBits.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    public float[] read(int row) {
+        float[] vector = new float[dimension];
+        rows.get(row * dimension, vector);
+        return vector;
+    }
+
+    /**
+     * 连续读取多行到目标数组
+     */
+    public void readRows(int startRow, int count, float[] target) {
+        rows.get(startRow * dimension, target, 0, count * dimension);
+    }
+
+    public String idAt(int row) {
+        return ids[row];
+    }
+
+    public long sequenceAt(int row) {
+        return sequences[row];
+    }
+
+    public float inverseNormAt(int row) {
+        return inverseNorms[row];
+    }
+
+    public int getSegmentId() {
+        return segmentId;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getLiveCount() {
+        return liveCount.get();
+    }
+
+    public boolean isFull() {
+        return rowCount >= capacity;
+    }
+
+    public void flush() throws IOException {
+        mapped.force();
+        logChannel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            logChannel.close();
+        } finally {
+            dataChannel.close();
+        }
+    }
+
+    /**
+     * 关闭并删除段文件。已映射的内存在没有引用后由GC回收，正在进行的读取不受影响
+     */
+    public void deleteFiles() throws IOException {
+        close();
+        Files.deleteIfExists(logPath);
+        Files.deleteIfExists(dataPath);
+    }
+
+    private void replayLog() throws IOException {
+        long size = logChannel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE)).order(ByteOrder.LITTLE_ENDIAN);
+        logChannel.read(buffer, 0);
+        buffer.flip();
+
+        int maxRow = -1;
+        long validLength = 0;
+        while (buffer.hasRemaining()) {
+            byte op = buffer.get();
+            if (op == OP_PUT && buffer.remaining() >= 4 + 8 + 2) {
+                int row = buffer.getInt();
+                long sequence = buffer.getLong();
+                int length = buffer.getShort() & 0xFFFF;
+                if (buffer.remaining() < length || row >= capacity) {
+                    break;
+                }
+                byte[] idBytes = new byte[length];
+                buffer.get(idBytes);
+                activate(row, new String(idBytes, StandardCharsets.UTF_8), sequence, inverseNorm(read(row)));
+                maxRow = Math.max(maxRow, row);
+            } else if (op == OP_DELETE && buffer.remaining() >= 4) {
+                int row = buffer.getInt();
+                if (row < capacity) {
+                    clearLive(row);
+                }
+            } else {
+                break;
+            }
+            validLength = buffer.position();
+        }
+        // 截掉崩溃时写了一半的记录
+        if (validLength < size) {
+            logChannel.truncate(validLength);
+        }
+        rowCount = maxRow + 1;
+    }
+
+    private void writeLog(ByteBuffer record) throws IOException {
+        synchronized (logChannel) {
+            long position = logChannel.size();
+            while (record.hasRemaining()) {
+                position += logChannel.write(record, position);
+            }
+        }
+    }
+
+    private void activate(int row, String id, long sequence, float inverseNorm) {
+        ids[row] = id;
+        sequences[row] = sequence;
+        inverseNorms[row] = inverseNorm;
+        long mask = 1L << row;
+        int word = row >>> 6;
+        long current;
+        do {
+            current = liveBits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!liveBits.compareAndSet(word, current, current | mask));
+        liveCount.incrementAndGet();
+    }
+
+    private boolean clearLive(int row) {
+        long mask = 1L << row;
+        int word = row >>> 6;
+        long current;
+        do {
+            current = liveBits.get(word);
+            if ((current & mask) == 0) {
+                return false;
+            }
+        } while (!liveBits.compareAndSet(word, current, current & ~mask));
+        liveCount.decrementAndGet();
+        return true;
+    }
+
+    private static float inverseNorm(float[] vector) {
+        return VectorMath.inverseNorm(vector);
+    }
+}
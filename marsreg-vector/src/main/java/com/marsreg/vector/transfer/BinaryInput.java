@@ -0,0 +1,86 @@
+package com.marsreg.vector.transfer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 小端序文件的缓冲顺序读取，按记录向缓冲区补充数据，整行向量用一次批量拷贝读出
+ */
+final class BinaryInput implements Closeable {
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    BinaryInput(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.limit(0);
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * 保证缓冲区中至少有 bytes 个未读字节，文件先结束时返回false
+     */
+    boolean request(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        if (bytes > buffer.capacity()) {
+            throw new IOException("单条记录超过读缓冲区大小: " + bytes);
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+
+    /**
+     * 与 {@link #request(int)} 相同，文件先结束时视为截断
+     */
+    void require(int bytes) throws IOException {
+        if (!request(bytes)) {
+            throw new EOFException("文件在记录中间结束");
+        }
+    }
+
+    /**
+     * 当前缓冲区，调用方须先通过 {@link #require(int)} 保证数据足够
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    void readFloats(float[] target) throws IOException {
+        int bytes = target.length * Float.BYTES;
+        require(bytes);
+        buffer.asFloatBuffer().get(target);
+        buffer.position(buffer.position() + bytes);
+    }
+
+    void readInts(int[] target) throws IOException {
+        int bytes = target.length * Integer.BYTES;
+        require(bytes);
+        buffer.asIntBuffer().get(target);
+        buffer.position(buffer.position() + bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,79 @@
+package com.marsreg.vector.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 小端序文件的缓冲顺序写入，缓冲区写满后整块落盘
+ */
+final class BinaryOutput implements Closeable {
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    BinaryOutput(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 返回至少有 bytes 个剩余空间的缓冲区，调用方写入后自行推进位置
+     */
+    ByteBuffer reserve(int bytes) throws IOException {
+        if (bytes > buffer.capacity()) {
+            throw new IOException("单条记录超过写缓冲区大小: " + bytes);
+        }
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+        return buffer;
+    }
+
+    void writeFloats(float[] values) throws IOException {
+        int bytes = values.length * Float.BYTES;
+        reserve(bytes).asFloatBuffer().put(values);
+        buffer.position(buffer.position() + bytes);
+    }
+
+    void writeInts(int[] values) throws IOException {
+        int bytes = values.length * Integer.BYTES;
+        reserve(bytes).asIntBuffer().put(values);
+        buffer.position(buffer.position() + bytes);
+    }
+
+    /**
+     * 先落盘缓冲区，再覆盖文件中指定位置的内容，用于回填文件头
+     */
+    void overwrite(long position, byte[] bytes) throws IOException {
+        flush();
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        while (data.hasRemaining()) {
+            channel.write(data, position + data.position());
+        }
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
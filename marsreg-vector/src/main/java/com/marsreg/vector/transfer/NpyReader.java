@@ -0,0 +1,166 @@
+package com.marsreg.vector.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * NumPy .npy 文件读取，支持 1.0/2.0/3.0 版本头部、C 顺序的一维或二维小端序数组，
+ * 元素类型为 float32/float64/int32/int64。二维数组每行是一个向量，一维整数数组可作为ID列表按行读取
+ */
+public class NpyReader implements VectorSource {
+
+    static final byte[] MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y'};
+
+    private static final Pattern DESCR = Pattern.compile("'descr'\\s*:\\s*'([^']*)'");
+    private static final Pattern FORTRAN_ORDER = Pattern.compile("'fortran_order'\\s*:\\s*(True|False)");
+    private static final Pattern SHAPE = Pattern.compile("'shape'\\s*:\\s*\\(([^)]*)\\)");
+
+    private final BinaryInput input;
+    private final char kind;
+    private final int itemSize;
+    private final long rows;
+    private final int columns;
+    private long read;
+
+    public NpyReader(Path path) throws IOException {
+        this.input = new BinaryInput(path);
+        try {
+            input.require(MAGIC.length + 4);
+            ByteBuffer buffer = input.buffer();
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("不是 npy 文件");
+            }
+            int major = buffer.get() & 0xff;
+            buffer.get();
+            int headerLength;
+            int prefixLength;
+            if (major == 1) {
+                headerLength = buffer.getShort() & 0xffff;
+                prefixLength = MAGIC.length + 4;
+            } else if (major == 2 || major == 3) {
+                input.require(Integer.BYTES);
+                headerLength = buffer.getInt();
+                prefixLength = MAGIC.length + 6;
+            } else {
+                throw new IOException("不支持的 npy 版本: " + major);
+            }
+            input.require(headerLength);
+            byte[] headerBytes = new byte[headerLength];
+            buffer.get(headerBytes);
+            String header = new String(headerBytes, major == 3 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+
+            String descr = match(DESCR, header, "descr");
+            if (descr.length() < 3 || descr.charAt(0) == '>') {
+                throw new IOException("不支持的 npy 元素类型: " + descr + "，需要小端序");
+            }
+            this.kind = descr.charAt(1);
+            this.itemSize = Integer.parseInt(descr.substring(2));
+            if (!((kind == 'f' || kind == 'i') && (itemSize == 4 || itemSize == 8))) {
+                throw new IOException("不支持的 npy 元素类型: " + descr);
+            }
+
+            long[] shape = Arrays.stream(match(SHAPE, header, "shape").split(","))
+                .map(String::trim)
+                .filter(dimension -> !dimension.isEmpty())
+                .mapToLong(Long::parseLong)
+                .toArray();
+            if (shape.length == 1) {
+                this.rows = shape[0];
+                this.columns = 1;
+            } else if (shape.length == 2) {
+                this.rows = shape[0];
+                this.columns = Math.toIntExact(shape[1]);
+            } else {
+                throw new IOException("只支持一维或二维 npy 数组: shape=" + Arrays.toString(shape));
+            }
+            if ("True".equals(match(FORTRAN_ORDER, header, "fortran_order")) && columns > 1 && rows > 1) {
+                throw new IOException("不支持 Fortran 顺序的 npy 数组");
+            }
+            long expected = prefixLength + (long) headerLength + rows * columns * itemSize;
+            if (input.size() != expected) {
+                throw new IOException("npy 数据长度与形状不符: size=" + input.size() + ", expected=" + expected);
+            }
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    private static String match(Pattern pattern, String header, String key) throws IOException {
+        Matcher matcher = pattern.matcher(header);
+        if (!matcher.find()) {
+            throw new IOException("npy 头部缺少 " + key + ": " + header.trim());
+        }
+        return matcher.group(1);
+    }
+
+    @Override
+    public int getDimension() {
+        return rows == 0 ? 0 : columns;
+    }
+
+    @Override
+    public long getCount() {
+        return rows;
+    }
+
+    public boolean isFloatingPoint() {
+        return kind == 'f';
+    }
+
+    /**
+     * 读取下一行，整数元素转换为 float
+     */
+    @Override
+    public float[] next() throws IOException {
+        if (read >= rows) {
+            return null;
+        }
+        read++;
+        float[] vector = new float[columns];
+        if (kind == 'f' && itemSize == Float.BYTES) {
+            input.readFloats(vector);
+            return vector;
+        }
+        input.require(columns * itemSize);
+        ByteBuffer buffer = input.buffer();
+        for (int i = 0; i < columns; i++) {
+            vector[i] = (float) readElement(buffer);
+        }
+        return vector;
+    }
+
+    /**
+     * 读取每行只有一个整数元素的数组的下一行，读完时返回null
+     */
+    public Long nextLong() throws IOException {
+        if (kind != 'i' || columns != 1) {
+            throw new IOException("只有一维整数 npy 数组可以按整数读取");
+        }
+        if (read >= rows) {
+            return null;
+        }
+        read++;
+        input.require(itemSize);
+        return itemSize == Integer.BYTES ? input.buffer().getInt() : input.buffer().getLong();
+    }
+
+    private double readElement(ByteBuffer buffer) {
+        if (kind == 'f') {
+            return itemSize == Float.BYTES ? buffer.getFloat() : buffer.getDouble();
+        }
+        return itemSize == Integer.BYTES ? buffer.getInt() : buffer.getLong();
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
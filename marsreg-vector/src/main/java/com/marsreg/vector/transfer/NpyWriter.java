@@ -0,0 +1,69 @@
+package com.marsreg.vector.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * NumPy .npy 文件写入，输出 float32 二维数组。行数事先未知，先写入定长的 1.0 版本头部占位，
+ * 关闭时回填实际形状，因此整个过程只需顺序写一遍数据
+ */
+public class NpyWriter implements VectorSink {
+
+    // 头部总长度为64的倍数，足够容纳任意 long 行数
+    private static final int HEADER_BYTES = 128;
+
+    private final BinaryOutput output;
+    private int dimension = -1;
+    private long count;
+
+    public NpyWriter(Path path) throws IOException {
+        this.output = new BinaryOutput(path);
+        output.reserve(HEADER_BYTES).put(header(0, 0));
+    }
+
+    @Override
+    public void write(float[] vector) throws IOException {
+        if (dimension < 0) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不一致: " + vector.length + " != " + dimension);
+        }
+        output.writeFloats(vector);
+        count++;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            output.overwrite(0, header(count, Math.max(dimension, 0)));
+        } finally {
+            output.close();
+        }
+    }
+
+    static byte[] header(long rows, int columns) {
+        int dictionaryLength = HEADER_BYTES - NpyReader.MAGIC.length - 4;
+        StringBuilder dictionary = new StringBuilder(dictionaryLength)
+            .append("{'descr': '<f4', 'fortran_order': False, 'shape': (")
+            .append(rows).append(", ").append(columns).append("), }");
+        while (dictionary.length() < dictionaryLength - 1) {
+            dictionary.append(' ');
+        }
+        dictionary.append('\n');
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(NpyReader.MAGIC);
+        buffer.put((byte) 1);
+        buffer.put((byte) 0);
+        buffer.putShort((short) dictionaryLength);
+        buffer.put(dictionary.toString().getBytes(StandardCharsets.ISO_8859_1));
+        return buffer.array();
+    }
+}
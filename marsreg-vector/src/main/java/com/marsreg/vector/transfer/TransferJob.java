@@ -0,0 +1,153 @@
+package com.marsreg.vector.transfer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次导入或导出任务的进度，工作线程更新计数，查询线程读取快照
+ */
+public class TransferJob {
+
+    public enum Type {
+        IMPORT, EXPORT
+    }
+
+    public enum State {
+        PENDING, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    private final String id;
+    private final Type type;
+    private final String vectorsFile;
+    private final String idsFile;
+    private final String idPrefix;
+    private final AtomicLong processed = new AtomicLong();
+    private final long createdAt = System.currentTimeMillis();
+    private volatile State state = State.PENDING;
+    private volatile long total = -1;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile long lastReportedAt;
+    private volatile String error;
+    private volatile boolean cancelRequested;
+
+    TransferJob(String id, Type type, String vectorsFile, String idsFile, String idPrefix) {
+        this.id = id;
+        this.type = type;
+        this.vectorsFile = vectorsFile;
+        this.idsFile = idsFile;
+        this.idPrefix = idPrefix;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * 待处理的向量总数，事先未知时为-1
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    String getVectorsFile() {
+        return vectorsFile;
+    }
+
+    String getIdsFile() {
+        return idsFile;
+    }
+
+    String getIdPrefix() {
+        return idPrefix;
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED || state == State.CANCELLED;
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    void start() {
+        startedAt = System.currentTimeMillis();
+        lastReportedAt = startedAt;
+        state = State.RUNNING;
+    }
+
+    void setTotal(long total) {
+        this.total = total;
+    }
+
+    void advance(long count) {
+        processed.addAndGet(count);
+    }
+
+    /**
+     * 距离上次报告超过间隔时返回true并记录本次报告时间，只在工作线程中调用
+     */
+    boolean shouldReport(long intervalMillis) {
+        long now = System.currentTimeMillis();
+        if (now - lastReportedAt < intervalMillis) {
+            return false;
+        }
+        lastReportedAt = now;
+        return true;
+    }
+
+    void finish(State state, String error) {
+        this.error = error;
+        this.finishedAt = System.currentTimeMillis();
+        this.state = state;
+    }
+
+    /**
+     * 每秒处理的向量数，未开始时为0
+     */
+    public double getRate() {
+        if (startedAt == 0) {
+            return 0;
+        }
+        long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+        return processed.get() * 1000.0 / Math.max(1, end - startedAt);
+    }
+
+    public Map<String, Object> toStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        long done = processed.get();
+        status.put("id", id);
+        status.put("type", type.name());
+        status.put("state", state.name());
+        status.put("vectorsFile", vectorsFile);
+        status.put("idsFile", idsFile);
+        status.put("processed", done);
+        status.put("total", total);
+        status.put("progress", total > 0 ? Math.min(1.0, done / (double) total) : (state == State.COMPLETED ? 1.0 : 0.0));
+        status.put("vectorsPerSecond", Math.round(getRate()));
+        status.put("createdAt", createdAt);
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        if (error != null) {
+            status.put("error", error);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,17 @@
+package com.marsreg.vector.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 按行顺序写入的向量文件，维度由第一行决定
+ */
+public interface VectorSink extends Closeable {
+
+    void write(float[] vector) throws IOException;
+
+    /**
+     * 已写入的向量数
+     */
+    long getCount();
+}
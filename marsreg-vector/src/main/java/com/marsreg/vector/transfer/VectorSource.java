@@ -0,0 +1,25 @@
+package com.marsreg.vector.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 按行顺序读取的向量文件
+ */
+public interface VectorSource extends Closeable {
+
+    /**
+     * 向量维度，空文件为0
+     */
+    int getDimension();
+
+    /**
+     * 文件中的向量数
+     */
+    long getCount();
+
+    /**
+     * 读取下一行，每次返回新数组，读完时返回null
+     */
+    float[] next() throws IOException;
+}
@@ -0,0 +1,670 @@
+package com.marsreg.vector.transfer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.exception.VectorizationException;
+import com.marsreg.vector.model.VectorMetadata;
+import com.marsreg.vector.projection.VectorProjection;
+import com.marsreg.vector.service.VectorStorageService;
+import com.marsreg.vector.service.impl.ProjectedVectorStorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 向量批量导入导出：在当前存储和 fvecs/ivecs、NumPy .npy 文件之间流式搬运向量，不经过模型推理，
+ * 用于不同存储之间的迁移和基准测试数据的准备。
+ *
+ * <p>导出通过 {@link VectorStorageService#forEachVector} 顺序遍历存储，向量写入 .fvecs 或 .npy，ID 按行写入文本文件，
+ * 文档ID和标量元数据按行写入与向量文件同名的 .meta 文件（NDJSON），存储未记录元数据时从 {@code 文档ID_分块ID}
+ * 形式的ID中取出文档ID。.meta 文件的第一行记录向量维度和导出时的投影版本，启用投影时导入据此判断文件中是原始向量
+ * 还是已投影的向量，已投影的向量直接写入底层存储，不再投影第二次。导入边读边按批写入，批内按元数据分组调用
+ * {@link VectorStorageService#storeDocumentVectorsAsync(String, Map, VectorMetadata)}，迁移后文档分区键和元数据过滤仍然有效，
+ * 没有文档ID的向量调用 {@link VectorStorageService#storeVectorsAsync}。同时在途的批次数有上限，
+ * 支持异步写入的存储可以流水线化。任务在后台线程中依次执行，进度通过任务状态查询并定期写日志</p>
+ */
+@Slf4j
+@Service
+public class VectorTransferService {
+
+    // 保留的任务数，超出时丢弃最早结束的任务
+    private static final int MAX_RETAINED_JOBS = 32;
+
+    private static final String IDS_SUFFIX = ".ids";
+    private static final String METADATA_SUFFIX = ".meta";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final VectorStorageService vectorStorageService;
+    private final VectorizationConfig.Transfer config;
+    private final Path baseDir;
+    private final ExecutorService executor;
+    private final AtomicLong jobSequence = new AtomicLong();
+    private final Map<String, TransferJob> jobs = new LinkedHashMap<>();
+
+    @Autowired
+    public VectorTransferService(VectorStorageService vectorStorageService, VectorizationConfig vectorizationConfig) {
+        this(vectorStorageService, vectorizationConfig.getTransfer());
+    }
+
+    public VectorTransferService(VectorStorageService vectorStorageService, VectorizationConfig.Transfer config) {
+        this.vectorStorageService = vectorStorageService;
+        this.config = config;
+        this.baseDir = Paths.get(config.getBaseDir()).toAbsolutePath().normalize();
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "vector-transfer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 把向量文件导入当前存储，ID相同的向量被覆盖
+     * @param vectorsFile .fvecs 或浮点 .npy 向量文件，相对于导入导出目录
+     * @param idsFile ID文件：每行一个ID的文本文件、每条记录一个整数的 .ivecs 或一维整数 .npy。
+     *                为空时使用与向量文件同名的 .ids 文件，该文件也不存在时按 idPrefix + 行号生成。
+     *                与向量文件同名的 .meta 文件存在时按行读取元数据，否则从ID中取出文档ID
+     * @param idPrefix 生成ID时的前缀
+     * @return 任务状态
+     */
+    public Map<String, Object> startImport(String vectorsFile, String idsFile, String idPrefix) {
+        Path vectors = resolve(vectorsFile);
+        checkVectorFormat(vectors);
+        if (!Files.isRegularFile(vectors)) {
+            throw new VectorizationException("向量文件不存在: " + vectorsFile);
+        }
+        String ids = idsFile;
+        if (ids == null || ids.isBlank()) {
+            String sibling = siblingIdsFile(vectorsFile);
+            ids = Files.isRegularFile(resolve(sibling)) ? sibling : null;
+        } else if (!Files.isRegularFile(resolve(ids))) {
+            throw new VectorizationException("ID文件不存在: " + ids);
+        }
+        TransferJob job = new TransferJob(nextJobId(), TransferJob.Type.IMPORT, vectorsFile, ids,
+            idPrefix == null ? "" : idPrefix);
+        return submit(job, this::runImport);
+    }
+
+    /**
+     * 把当前存储中的全部向量导出到文件，已存在的同名文件被覆盖。启用投影时导出的是投影后的向量，
+     * .meta 文件首行记录投影版本，这样的文件只能导入启用同一投影版本的实例
+     * @param vectorsFile .fvecs 或 .npy 向量文件，相对于导入导出目录
+     * @param idsFile 每行一个ID的文本文件，为空时使用与向量文件同名的 .ids 文件。元数据总是写入与向量文件同名的 .meta 文件
+     * @return 任务状态
+     */
+    public Map<String, Object> startExport(String vectorsFile, String idsFile) {
+        Path vectors = resolve(vectorsFile);
+        checkVectorFormat(vectors);
+        String ids = idsFile == null || idsFile.isBlank() ? siblingIdsFile(vectorsFile) : idsFile;
+        if (resolve(ids).equals(vectors)) {
+            throw new VectorizationException("ID文件不能与向量文件相同: " + ids);
+        }
+        if (resolve(ids).equals(resolve(siblingMetadataFile(vectorsFile)))) {
+            throw new VectorizationException("ID文件不能与元数据文件相同: " + ids);
+        }
+        TransferJob job = new TransferJob(nextJobId(), TransferJob.Type.EXPORT, vectorsFile, ids, null);
+        return submit(job, this::runExport);
+    }
+
+    public Map<String, Object> getStatus(String jobId) {
+        return job(jobId).toStatus();
+    }
+
+    public List<Map<String, Object>> listJobs() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        synchronized (jobs) {
+            jobs.values().forEach(job -> result.add(job.toStatus()));
+        }
+        return result;
+    }
+
+    /**
+     * 请求取消任务，进行中的任务在下一批或下一条向量处停止。已导入的向量保留，未完成的导出文件被删除
+     */
+    public Map<String, Object> cancel(String jobId) {
+        TransferJob job = job(jobId);
+        job.requestCancel();
+        return job.toStatus();
+    }
+
+    private TransferJob job(String jobId) {
+        synchronized (jobs) {
+            TransferJob job = jobs.get(jobId);
+            if (job == null) {
+                throw new VectorizationException("导入导出任务不存在: " + jobId);
+            }
+            return job;
+        }
+    }
+
+    private String nextJobId() {
+        return "transfer-" + jobSequence.incrementAndGet();
+    }
+
+    private Map<String, Object> submit(TransferJob job, TransferTask task) {
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            Iterator<TransferJob> iterator = jobs.values().iterator();
+            while (jobs.size() > MAX_RETAINED_JOBS && iterator.hasNext()) {
+                if (iterator.next().isFinished()) {
+                    iterator.remove();
+                }
+            }
+        }
+        executor.submit(() -> run(job, task));
+        return job.toStatus();
+    }
+
+    private void run(TransferJob job, TransferTask task) {
+        String action = job.getType() == TransferJob.Type.IMPORT ? "导入" : "导出";
+        if (job.isCancelRequested()) {
+            job.finish(TransferJob.State.CANCELLED, null);
+            return;
+        }
+        job.start();
+        log.info("开始{}向量: job={}, vectorsFile={}, idsFile={}", action, job.getId(), job.getVectorsFile(),
+            job.getIdsFile());
+        try {
+            task.run(job);
+            job.finish(TransferJob.State.COMPLETED, null);
+            log.info("向量{}完成: job={}, count={}, {} 条/秒", action, job.getId(), job.getProcessed(),
+                Math.round(job.getRate()));
+        } catch (CancellationException e) {
+            job.finish(TransferJob.State.CANCELLED, null);
+            log.info("向量{}已取消: job={}, processed={}", action, job.getId(), job.getProcessed());
+        } catch (Exception e) {
+            log.error("向量" + action + "失败: job=" + job.getId(), e);
+            job.finish(TransferJob.State.FAILED, e.getMessage());
+        }
+    }
+
+    void runImport(TransferJob job) throws IOException {
+        int batchSize = Math.max(1, config.getBatchSize());
+        int maxInFlight = Math.max(1, config.getMaxInFlightBatches());
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Path idsPath = job.getIdsFile() == null ? null : resolve(job.getIdsFile());
+        Path metadataPath = resolve(siblingMetadataFile(job.getVectorsFile()));
+        try (VectorSource vectors = openVectors(resolve(job.getVectorsFile()));
+             IdSource ids = openIds(idsPath, job.getIdPrefix());
+             MetadataSource metadata = openMetadata(metadataPath)) {
+            job.setTotal(vectors.getCount());
+            VectorStorageService target = importTarget(vectors.getDimension(), metadata);
+            Map<String, float[]> batch = new LinkedHashMap<>(batchSize * 2);
+            Map<String, VectorMetadata> batchMetadata = new HashMap<>(batchSize * 2);
+            try {
+                long row = 0;
+                float[] vector;
+                while ((vector = vectors.next()) != null) {
+                    String id = ids.next();
+                    if (id == null) {
+                        throw new VectorizationException("ID数少于向量数，第 " + row + " 行没有对应的ID");
+                    }
+                    batch.put(id, vector);
+                    batchMetadata.put(id, metadata.next(id, row));
+                    row++;
+                    if (batch.size() >= batchSize) {
+                        submitBatch(job, target, batch, batchMetadata, inFlight, failure);
+                        batch = new LinkedHashMap<>(batchSize * 2);
+                        batchMetadata = new HashMap<>(batchSize * 2);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    submitBatch(job, target, batch, batchMetadata, inFlight, failure);
+                }
+            } finally {
+                // 出错或取消时也等待在途的批次结束，避免任务结束后仍有写入
+                inFlight.acquireUninterruptibly(maxInFlight);
+            }
+            Throwable cause = failure.get();
+            if (cause != null) {
+                throw new VectorizationException("写入向量存储失败: " + cause.getMessage(), cause);
+            }
+            if (ids.next() != null) {
+                log.warn("ID数多于向量数，多余的ID被忽略: job={}", job.getId());
+            }
+        }
+    }
+
+    /**
+     * 导入写入的存储。启用投影时，原始维度的向量经投影层写入；与投影输出维度相同且来自同一投影版本的向量
+     * 已经投影过，直接写入底层存储。投影后的向量不能导入未启用投影或投影版本不同的实例
+     */
+    private VectorStorageService importTarget(int dimension, MetadataSource metadata) {
+        String exportedProjection = metadata.getProjection();
+        if (!(vectorStorageService instanceof ProjectedVectorStorageService projected)) {
+            if (exportedProjection != null) {
+                throw new VectorizationException("向量文件是投影版本 " + exportedProjection + " 投影后的向量，当前存储未启用投影");
+            }
+            return vectorStorageService;
+        }
+        VectorProjection projection = projected.getProjection();
+        if (dimension == 0 || exportedProjection == null && dimension == projection.getInputDimension()) {
+            return vectorStorageService;
+        }
+        if (exportedProjection == null) {
+            throw new VectorizationException("向量维度 " + dimension + " 与投影输入维度 " + projection.getInputDimension()
+                + " 不一致，且元数据文件没有记录投影版本");
+        }
+        if (!exportedProjection.equals(projection.getVersion()) || dimension != projection.getOutputDimension()) {
+            throw new VectorizationException("向量文件使用投影版本 " + exportedProjection + "（" + dimension
+                + " 维），当前投影版本为 " + projection.getVersion() + "（" + projection.getOutputDimension() + " 维）");
+        }
+        return projected.getDelegate();
+    }
+
+    private void submitBatch(TransferJob job, VectorStorageService target, Map<String, float[]> batch,
+                             Map<String, VectorMetadata> metadata, Semaphore inFlight,
+                             AtomicReference<Throwable> failure) {
+        if (job.isCancelRequested()) {
+            throw new CancellationException();
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+        Throwable cause = failure.get();
+        if (cause != null) {
+            inFlight.release();
+            throw new VectorizationException("写入向量存储失败: " + cause.getMessage(), cause);
+        }
+        int size = batch.size();
+        // 同一文档、元数据相同的向量一起写入，文档ID作为分区键，元数据进入过滤索引
+        Map<VectorMetadata, Map<String, float[]>> documentGroups = new LinkedHashMap<>();
+        Map<String, float[]> plain = new LinkedHashMap<>();
+        batch.forEach((id, vector) -> {
+            VectorMetadata vectorMetadata = metadata.get(id);
+            if (vectorMetadata == null || vectorMetadata.getDocumentId() == null) {
+                plain.put(id, vector);
+            } else {
+                documentGroups.computeIfAbsent(vectorMetadata, key -> new LinkedHashMap<>()).put(id, vector);
+            }
+        });
+        List<CompletableFuture<Void>> writes = new ArrayList<>(documentGroups.size() + 1);
+        try {
+            if (!plain.isEmpty()) {
+                writes.add(target.storeVectorsAsync(plain));
+            }
+            documentGroups.forEach((vectorMetadata, group) -> writes.add(target.storeDocumentVectorsAsync(
+                vectorMetadata.getDocumentId(), group, vectorMetadata)));
+        } catch (RuntimeException e) {
+            // 已提交的写入结束后再归还许可
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]))
+                .whenComplete((ignored, ex) -> inFlight.release());
+            throw e;
+        }
+        CompletableFuture<Void> future = CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]));
+        future.whenComplete((ignored, e) -> {
+            if (e == null) {
+                job.advance(size);
+            } else {
+                failure.compareAndSet(null, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+            inFlight.release();
+        });
+        reportProgress(job);
+    }
+
+    void runExport(TransferJob job) throws IOException {
+        Path vectorsPath = resolve(job.getVectorsFile());
+        Path idsPath = resolve(job.getIdsFile());
+        Path metadataPath = resolve(siblingMetadataFile(job.getVectorsFile()));
+        Files.createDirectories(vectorsPath.getParent());
+        Files.createDirectories(idsPath.getParent());
+        String projection = vectorStorageService instanceof ProjectedVectorStorageService projected
+            ? projected.getProjection().getVersion() : null;
+        boolean[] headerWritten = new boolean[1];
+        boolean completed = false;
+        try (VectorSink sink = createSink(vectorsPath);
+             BufferedWriter idWriter = Files.newBufferedWriter(idsPath, StandardCharsets.UTF_8);
+             BufferedWriter metadataWriter = Files.newBufferedWriter(metadataPath, StandardCharsets.UTF_8)) {
+            vectorStorageService.forEachVector((id, vector) -> {
+                if (job.isCancelRequested()) {
+                    throw new CancellationException();
+                }
+                if (id.isEmpty() || id.indexOf('\n') >= 0 || id.indexOf('\r') >= 0) {
+                    throw new VectorizationException("向量ID为空或包含换行符，无法导出: " + id);
+                }
+                try {
+                    if (!headerWritten[0]) {
+                        metadataWriter.write(formatHeader(vector.length, projection));
+                        metadataWriter.write('\n');
+                        headerWritten[0] = true;
+                    }
+                    sink.write(vector);
+                    idWriter.write(id);
+                    idWriter.write('\n');
+                    metadataWriter.write(formatMetadata(id, metadataOf(id, vectorStorageService.getMetadata(id))));
+                    metadataWriter.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                job.advance(1);
+                reportProgress(job);
+            });
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(vectorsPath);
+                Files.deleteIfExists(idsPath);
+                Files.deleteIfExists(metadataPath);
+            }
+        }
+    }
+
+    private void reportProgress(TransferJob job) {
+        if (job.shouldReport(config.getProgressLogInterval() * 1000L)) {
+            log.info("向量{}进度: job={}, processed={}, total={}, {} 条/秒",
+                job.getType() == TransferJob.Type.IMPORT ? "导入" : "导出", job.getId(), job.getProcessed(),
+                job.getTotal(), Math.round(job.getRate()));
+        }
+    }
+
+    /**
+     * 解析相对于导入导出目录的路径，不允许越出该目录
+     */
+    Path resolve(String file) {
+        if (file == null || file.isBlank()) {
+            throw new VectorizationException("文件路径不能为空");
+        }
+        Path path = baseDir.resolve(file).normalize();
+        if (!path.startsWith(baseDir)) {
+            throw new VectorizationException("文件路径超出导入导出目录: " + file);
+        }
+        return path;
+    }
+
+    /**
+     * 把向量文件的扩展名替换为 .ids
+     */
+    static String siblingIdsFile(String vectorsFile) {
+        return sibling(vectorsFile, IDS_SUFFIX);
+    }
+
+    /**
+     * 把向量文件的扩展名替换为 .meta
+     */
+    static String siblingMetadataFile(String vectorsFile) {
+        return sibling(vectorsFile, METADATA_SUFFIX);
+    }
+
+    private static String sibling(String vectorsFile, String suffix) {
+        int separator = Math.max(vectorsFile.lastIndexOf('/'), vectorsFile.lastIndexOf('\\'));
+        int dot = vectorsFile.lastIndexOf('.');
+        return (dot > separator ? vectorsFile.substring(0, dot) : vectorsFile) + suffix;
+    }
+
+    /**
+     * 存储记录的元数据缺少文档ID时，从 {@code 文档ID_分块ID} 形式的向量ID中补全
+     */
+    static VectorMetadata metadataOf(String id, VectorMetadata stored) {
+        if (stored != null && stored.getDocumentId() != null) {
+            return stored;
+        }
+        String documentId = VectorMetadata.documentIdOf(id);
+        if (documentId == null) {
+            return stored;
+        }
+        if (stored == null) {
+            return VectorMetadata.ofDocument(documentId);
+        }
+        return VectorMetadata.builder().documentId(documentId).type(stored.getType()).tenant(stored.getTenant())
+            .timestamp(stored.getTimestamp()).build();
+    }
+
+    /**
+     * 一行元数据 NDJSON，为空的字段不输出，不含换行符
+     */
+    static String formatMetadata(String id, VectorMetadata metadata) throws IOException {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("id", id);
+        if (metadata != null) {
+            if (metadata.getDocumentId() != null) {
+                node.put("documentId", metadata.getDocumentId());
+            }
+            if (metadata.getType() != null) {
+                node.put("type", metadata.getType());
+            }
+            if (metadata.getTenant() != null) {
+                node.put("tenant", metadata.getTenant());
+            }
+            if (metadata.getTimestamp() != null) {
+                node.put("timestamp", metadata.getTimestamp());
+            }
+        }
+        return MAPPER.writeValueAsString(node);
+    }
+
+    /**
+     * 元数据文件的首行：向量维度和导出时的投影版本，未启用投影时不输出投影版本
+     */
+    static String formatHeader(int dimension, String projection) throws IOException {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("dimension", dimension);
+        if (projection != null) {
+            node.put("projection", projection);
+        }
+        return MAPPER.writeValueAsString(node);
+    }
+
+    /**
+     * 解析一行元数据 NDJSON，只有ID时返回null
+     */
+    static VectorMetadata parseMetadata(JsonNode node) {
+        String documentId = textOf(node, "documentId");
+        String type = textOf(node, "type");
+        String tenant = textOf(node, "tenant");
+        Long timestamp = node.hasNonNull("timestamp") ? node.get("timestamp").asLong() : null;
+        if (documentId == null && type == null && tenant == null && timestamp == null) {
+            return null;
+        }
+        return VectorMetadata.builder().documentId(documentId).type(type).tenant(tenant).timestamp(timestamp).build();
+    }
+
+    private static String textOf(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+
+    private static String extension(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot);
+    }
+
+    private static void checkVectorFormat(Path path) {
+        String extension = extension(path);
+        if (!".fvecs".equals(extension) && !".npy".equals(extension)) {
+            throw new VectorizationException("不支持的向量文件格式，仅支持 .fvecs 和 .npy: " + path.getFileName());
+        }
+    }
+
+    private static VectorSource openVectors(Path path) throws IOException {
+        if (".fvecs".equals(extension(path))) {
+            return new XvecsReader(path);
+        }
+        NpyReader reader = new NpyReader(path);
+        if (!reader.isFloatingPoint() || reader.getCount() > 0 && reader.getDimension() < 1) {
+            reader.close();
+            throw new VectorizationException("npy 向量文件必须是浮点数组: " + path.getFileName());
+        }
+        return reader;
+    }
+
+    private static VectorSink createSink(Path path) throws IOException {
+        return ".fvecs".equals(extension(path)) ? new XvecsWriter(path) : new NpyWriter(path);
+    }
+
+    private static IdSource openIds(Path path, String prefix) throws IOException {
+        if (path == null) {
+            AtomicLong row = new AtomicLong();
+            return () -> prefix + row.getAndIncrement();
+        }
+        String extension = extension(path);
+        if (".ivecs".equals(extension)) {
+            XvecsReader reader = new XvecsReader(path);
+            if (reader.getCount() > 0 && reader.getDimension() != 1) {
+                reader.close();
+                throw new VectorizationException("ivecs ID文件的每条记录只能有一个整数: " + path.getFileName());
+            }
+            return new IdSource() {
+                @Override
+                public String next() throws IOException {
+                    int[] values = reader.nextInts();
+                    return values == null ? null : String.valueOf(values[0]);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    reader.close();
+                }
+            };
+        }
+        if (".npy".equals(extension)) {
+            NpyReader reader = new NpyReader(path);
+            if (reader.isFloatingPoint() || reader.getCount() > 0 && reader.getDimension() != 1) {
+                reader.close();
+                throw new VectorizationException("npy ID文件必须是一维整数数组: " + path.getFileName());
+            }
+            return new IdSource() {
+                @Override
+                public String next() throws IOException {
+                    Long value = reader.nextLong();
+                    return value == null ? null : value.toString();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    reader.close();
+                }
+            };
+        }
+        BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        return new IdSource() {
+            @Override
+            public String next() throws IOException {
+                String line = reader.readLine();
+                if (line != null && line.isEmpty()) {
+                    throw new IOException("ID文件中有空行");
+                }
+                return line;
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    /**
+     * 元数据文件存在时逐行读取并校验ID与ID文件一致，否则从ID中取出文档ID
+     */
+    private static MetadataSource openMetadata(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return (id, row) -> metadataOf(id, null);
+        }
+        BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        // 没有ID字段的首行是文件头
+        JsonNode first;
+        try {
+            String line = reader.readLine();
+            first = line == null ? null : MAPPER.readTree(line);
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+        JsonNode header = first != null && !first.has("id") ? first : null;
+        return new MetadataSource() {
+            private JsonNode pending = header == null ? first : null;
+
+            @Override
+            public String getProjection() {
+                return header == null ? null : textOf(header, "projection");
+            }
+
+            @Override
+            public VectorMetadata next(String id, long row) throws IOException {
+                JsonNode node = pending;
+                pending = null;
+                if (node == null) {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        throw new VectorizationException("元数据文件行数少于向量数，第 " + row + " 行没有对应的元数据");
+                    }
+                    node = MAPPER.readTree(line);
+                }
+                if (!id.equals(textOf(node, "id"))) {
+                    throw new VectorizationException("元数据文件第 " + row + " 行的ID与ID文件不一致: " + id);
+                }
+                return metadataOf(id, parseMetadata(node));
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    /**
+     * 按行读取的ID序列，读完时返回null
+     */
+    private interface IdSource extends Closeable {
+        String next() throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    /**
+     * 与ID逐行对应的元数据序列
+     */
+    private interface MetadataSource extends Closeable {
+        VectorMetadata next(String id, long row) throws IOException;
+
+        /**
+         * 导出时使用的投影版本，未启用投影或文件没有记录时返回null
+         */
+        default String getProjection() {
+            return null;
+        }
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    @FunctionalInterface
+    private interface TransferTask {
+        void run(TransferJob job) throws IOException;
+    }
+}
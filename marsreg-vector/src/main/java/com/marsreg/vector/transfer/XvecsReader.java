@@ -0,0 +1,92 @@
+package com.marsreg.vector.transfer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * fvecs / ivecs 文件读取。每条记录是 int32 维度后跟 dimension 个 float32（fvecs）或 int32（ivecs），
+ * 均为小端序，所有记录维度相同，因此向量数可以由文件长度算出
+ */
+public class XvecsReader implements VectorSource {
+
+    private final BinaryInput input;
+    private final int dimension;
+    private final long count;
+    private long read;
+
+    public XvecsReader(Path path) throws IOException {
+        this.input = new BinaryInput(path);
+        try {
+            if (input.request(Integer.BYTES)) {
+                this.dimension = input.buffer().getInt(input.buffer().position());
+                if (dimension <= 0) {
+                    throw new IOException("xvecs 文件的维度无效: " + dimension);
+                }
+                long recordBytes = Integer.BYTES + (long) dimension * Integer.BYTES;
+                if (input.size() % recordBytes != 0) {
+                    throw new IOException("xvecs 文件长度与维度不符: size=" + input.size() + ", dimension=" + dimension);
+                }
+                this.count = input.size() / recordBytes;
+            } else {
+                this.dimension = 0;
+                this.count = 0;
+            }
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 按 fvecs 读取下一条记录
+     */
+    @Override
+    public float[] next() throws IOException {
+        if (!nextRecord()) {
+            return null;
+        }
+        float[] vector = new float[dimension];
+        input.readFloats(vector);
+        return vector;
+    }
+
+    /**
+     * 按 ivecs 读取下一条记录，读完时返回null
+     */
+    public int[] nextInts() throws IOException {
+        if (!nextRecord()) {
+            return null;
+        }
+        int[] values = new int[dimension];
+        input.readInts(values);
+        return values;
+    }
+
+    private boolean nextRecord() throws IOException {
+        if (read >= count) {
+            return false;
+        }
+        input.require(Integer.BYTES);
+        int recordDimension = input.buffer().getInt();
+        if (recordDimension != dimension) {
+            throw new IOException("第 " + read + " 条记录的维度 " + recordDimension + " 与首条记录 " + dimension + " 不一致");
+        }
+        read++;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,55 @@
+package com.marsreg.vector.transfer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * fvecs / ivecs 文件写入，格式见 {@link XvecsReader}
+ */
+public class XvecsWriter implements VectorSink {
+
+    private final BinaryOutput output;
+    private int dimension = -1;
+    private long count;
+
+    public XvecsWriter(Path path) throws IOException {
+        this.output = new BinaryOutput(path);
+    }
+
+    /**
+     * 写入一条 fvecs 记录
+     */
+    @Override
+    public void write(float[] vector) throws IOException {
+        writeHeader(vector.length);
+        output.writeFloats(vector);
+    }
+
+    /**
+     * 写入一条 ivecs 记录
+     */
+    public void writeInts(int[] values) throws IOException {
+        writeHeader(values.length);
+        output.writeInts(values);
+    }
+
+    private void writeHeader(int length) throws IOException {
+        if (dimension < 0) {
+            dimension = length;
+        } else if (length != dimension) {
+            throw new IllegalArgumentException("向量维度不一致: " + length + " != " + dimension);
+        }
+        output.reserve(Integer.BYTES).putInt(length);
+        count++;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,109 @@
+package com.marsreg.vector.transport;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 向量的二进制和 NDJSON 编码，避免 JSON 数组逐个格式化和解析浮点数。
+ *
+ * <p>二进制格式均为小端序：单个向量直接是 dimension 个 float32；
+ * 批量结果先写 int32 条数和 int32 维度，再按行连续写 float32。
+ * NDJSON 每行一个对象 {@code {"index":i,"vector":[...]}}，出错时为 {@code {"index":i,"error":"..."}}</p>
+ */
+public final class VectorCodec {
+
+    public static final String DIMENSION_HEADER = "X-Vector-Dimension";
+    public static final String COUNT_HEADER = "X-Vector-Count";
+    private static final int BATCH_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private VectorCodec() {
+    }
+
+    public static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    public static float[] decode(byte[] bytes) {
+        if (bytes.length % Float.BYTES != 0) {
+            throw new IllegalArgumentException("二进制向量长度不是4的整数倍: " + bytes.length);
+        }
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    public static byte[] encodeBatch(List<float[]> vectors) {
+        int dimension = vectors.isEmpty() ? 0 : vectors.get(0).length;
+        ByteBuffer buffer = ByteBuffer.allocate(BATCH_HEADER_BYTES + Math.multiplyExact(vectors.size(), dimension) * Float.BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(vectors.size());
+        buffer.putInt(dimension);
+        for (float[] vector : vectors) {
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException("向量维度不一致");
+            }
+            buffer.asFloatBuffer().put(vector);
+            buffer.position(buffer.position() + dimension * Float.BYTES);
+        }
+        return buffer.array();
+    }
+
+    public static List<float[]> decodeBatch(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int count = buffer.getInt();
+        int dimension = buffer.getInt();
+        if (bytes.length != BATCH_HEADER_BYTES + (long) count * dimension * Float.BYTES) {
+            throw new IllegalArgumentException("二进制批量向量长度与头部不符: count=" + count + ", dimension=" + dimension);
+        }
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[dimension];
+            buffer.asFloatBuffer().get(vector);
+            buffer.position(buffer.position() + dimension * Float.BYTES);
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    /**
+     * 一行 NDJSON，包含结尾换行符
+     */
+    public static byte[] ndjsonLine(int index, float[] vector) {
+        StringBuilder sb = new StringBuilder(32 + vector.length * 12);
+        sb.append("{\"index\":").append(index).append(",\"vector\":[");
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            float value = vector[i];
+            // JSON 不支持 NaN 和无穷大
+            sb.append(Float.isFinite(value) ? Float.toString(value) : "null");
+        }
+        sb.append("]}\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 一行错误 NDJSON，消息由 Jackson 转义，包含结尾换行符
+     */
+    public static byte[] ndjsonError(int index, String message) {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("index", index);
+        node.put("error", message == null ? "" : message);
+        try {
+            return (MAPPER.writeValueAsString(node) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("NDJSON错误行序列化失败", e);
+        }
+    }
+}
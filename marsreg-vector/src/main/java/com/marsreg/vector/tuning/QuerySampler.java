@@ -0,0 +1,67 @@
+package com.marsreg.vector.tuning;
+
+import com.marsreg.vector.config.VectorizationConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按比例抽样记录线上查询向量，保存在固定容量的环形缓冲区中，新样本覆盖最旧的样本。
+ * 抽样比例为0时 {@link #record(float[])} 不做任何事，不影响查询路径
+ */
+public class QuerySampler {
+
+    private final double rate;
+    private final AtomicReferenceArray<float[]> samples;
+    private final AtomicLong recorded = new AtomicLong();
+
+    public QuerySampler(int capacity, double rate) {
+        this.rate = rate;
+        this.samples = new AtomicReferenceArray<>(Math.max(1, capacity));
+    }
+
+    public static QuerySampler disabled() {
+        return new QuerySampler(1, 0);
+    }
+
+    /**
+     * 未启用自动调节时不抽样
+     */
+    public static QuerySampler of(VectorizationConfig.Storage.Tuning tuning) {
+        if (!Boolean.TRUE.equals(tuning.getEnabled())) {
+            return disabled();
+        }
+        return new QuerySampler(tuning.getSampleCapacity(), tuning.getSampleRate());
+    }
+
+    public void record(float[] queryVector) {
+        if (rate <= 0 || (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate)) {
+            return;
+        }
+        long slot = recorded.getAndIncrement();
+        samples.set((int) (slot % samples.length()), queryVector.clone());
+    }
+
+    /**
+     * 最多返回 max 个最近的样本
+     */
+    public List<float[]> recent(int max) {
+        long end = recorded.get();
+        int count = (int) Math.min(Math.min(end, samples.length()), Math.max(0, max));
+        List<float[]> result = new ArrayList<>(count);
+        for (long i = end - 1; i >= end - count; i--) {
+            float[] sample = samples.get((int) (i % samples.length()));
+            if (sample != null) {
+                result.add(sample);
+            }
+        }
+        return result;
+    }
+
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+}
@@ -0,0 +1,277 @@
+package com.marsreg.vector.tuning;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 搜索参数自动调节：定期取出抽样的线上查询，先用基准搜索得到真实的前k个结果，
+ * 再从小到大按倍增序列尝试参数，选出召回率达到目标的最小参数（参数越小延迟越低）作为默认参数。
+ * 所有参数都达不到目标时使用参数上限。选出的参数更大时立即生效，更小时要连续几轮都选出更小的值才降低，
+ * 避免抽样波动让参数在相邻两档之间来回切换。当前参数、召回率和延迟通过Micrometer指标暴露
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "marsreg.vector.storage.tuning", name = "enabled", havingValue = "true")
+public class SearchParameterTuner {
+
+    // 样本太少时召回率估计的方差过大，跳过本轮
+    private static final int MIN_QUERIES = 8;
+
+    private final VectorizationConfig.Storage.Tuning config;
+    private final TunableVectorSearch search;
+    private final MeterRegistry registry;
+    private final List<Evaluation> lastEvaluations = new ArrayList<>();
+    private volatile double recall = Double.NaN;
+    private volatile double latencyMillis = Double.NaN;
+    private volatile double exactLatencyMillis = Double.NaN;
+    private volatile long lastTunedAt;
+    // 连续选出更小参数的轮数，以及这几轮中最大的那个参数
+    private volatile int lowerStreak;
+    private int lowerCandidate;
+    private Counter roundCounter;
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public SearchParameterTuner(VectorizationConfig vectorizationConfig, ObjectProvider<TunableVectorSearch> searches,
+                                ObjectProvider<MeterRegistry> registries) {
+        this(vectorizationConfig.getStorage().getTuning(), searches.getIfAvailable(), registries.getIfAvailable());
+    }
+
+    public SearchParameterTuner(VectorizationConfig.Storage.Tuning config, TunableVectorSearch search,
+                                MeterRegistry registry) {
+        this.config = config;
+        this.search = search;
+        this.registry = registry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (search == null) {
+            log.warn("当前向量存储不支持搜索参数调节，自动调节不生效");
+            return;
+        }
+        registerMetrics();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "vector-search-tuner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::tuneSafely, config.getInterval(), config.getInterval(), TimeUnit.SECONDS);
+        log.info("搜索参数自动调节已启用: parameter={}, targetRecall={}, k={}",
+            search.getSearchParameterName(), config.getTargetRecall(), config.getK());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 执行一轮调节，抽样的查询不足时返回false
+     */
+    public synchronized boolean tune() {
+        if (search == null) {
+            return false;
+        }
+        List<float[]> queries = search.getQuerySampler().recent(config.getQueriesPerRound());
+        if (queries.size() < MIN_QUERIES) {
+            return false;
+        }
+        int k = config.getK();
+        List<float[]> measured = new ArrayList<>(queries.size());
+        List<Map<String, Float>> expected = new ArrayList<>(queries.size());
+        long exactStart = System.nanoTime();
+        for (float[] query : queries) {
+            Map<String, Float> exact = search.searchExact(query, k);
+            if (!exact.isEmpty()) {
+                measured.add(query);
+                expected.add(exact);
+            }
+        }
+        if (measured.size() < MIN_QUERIES) {
+            return false;
+        }
+        double exactMillis = (System.nanoTime() - exactStart) / 1e6 / measured.size();
+
+        List<Evaluation> evaluations = new ArrayList<>();
+        Evaluation chosen = null;
+        for (int value : candidates(search.getMinSearchParameter(k), search.getMaxSearchParameter())) {
+            Evaluation evaluation = evaluate(value, measured, expected);
+            evaluations.add(evaluation);
+            if (evaluation.recall >= config.getTargetRecall()) {
+                chosen = evaluation;
+                break;
+            }
+        }
+        if (chosen == null) {
+            chosen = evaluations.get(evaluations.size() - 1);
+            log.warn("参数上限 {}={} 的召回率 {} 仍未达到目标 {}", search.getSearchParameterName(), chosen.value,
+                chosen.recall, config.getTargetRecall());
+        }
+
+        int previous = search.getSearchParameter();
+        int value = settle(previous, chosen.value);
+        Evaluation applied = chosen;
+        if (value != chosen.value) {
+            applied = evaluations.stream()
+                .filter(evaluation -> evaluation.value == value)
+                .findFirst()
+                .orElseGet(() -> evaluate(value, measured, expected));
+        }
+        search.setSearchParameter(value);
+        synchronized (lastEvaluations) {
+            lastEvaluations.clear();
+            lastEvaluations.addAll(evaluations);
+        }
+        recall = applied.recall;
+        latencyMillis = applied.latencyMillis;
+        exactLatencyMillis = exactMillis;
+        lastTunedAt = System.currentTimeMillis();
+        if (roundCounter != null) {
+            roundCounter.increment();
+        }
+        if (previous != value) {
+            log.info("搜索参数调整: {} {} -> {}, recall@{}={}, 平均延迟={}ms", search.getSearchParameterName(),
+                previous, value, k, applied.recall, applied.latencyMillis);
+        }
+        return true;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", search != null);
+        if (search == null) {
+            return status;
+        }
+        status.put("parameter", search.getSearchParameterName());
+        status.put("value", search.getSearchParameter());
+        status.put("maxValue", search.getMaxSearchParameter());
+        status.put("targetRecall", config.getTargetRecall());
+        status.put("k", config.getK());
+        status.put("recall", recall);
+        status.put("latencyMillis", latencyMillis);
+        status.put("exactLatencyMillis", exactLatencyMillis);
+        status.put("sampledQueries", search.getQuerySampler().getRecordedCount());
+        status.put("lastTunedAt", lastTunedAt);
+        status.put("lowerStreak", lowerStreak);
+        List<Map<String, Object>> evaluations = new ArrayList<>();
+        synchronized (lastEvaluations) {
+            for (Evaluation evaluation : lastEvaluations) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("value", evaluation.value);
+                item.put("recall", evaluation.recall);
+                item.put("latencyMillis", evaluation.latencyMillis);
+                evaluations.add(item);
+            }
+        }
+        status.put("evaluations", evaluations);
+        return status;
+    }
+
+    /**
+     * 从下限开始按2倍递增直到上限，上限一定在序列中
+     */
+    static List<Integer> candidates(int min, int max) {
+        List<Integer> values = new ArrayList<>();
+        int upper = Math.max(1, max);
+        for (long value = Math.max(1, Math.min(min, upper)); value < upper; value *= 2) {
+            values.add((int) value);
+        }
+        values.add(upper);
+        return values;
+    }
+
+    /**
+     * 选出的参数不小于当前参数时直接采用；更小时累计连续轮数，
+     * 达到 lowerAfterRounds 后降到这几轮中最大的那个，之前保持当前参数
+     */
+    private int settle(int current, int chosen) {
+        if (chosen >= current) {
+            lowerStreak = 0;
+            return chosen;
+        }
+        lowerCandidate = lowerStreak == 0 ? chosen : Math.max(lowerCandidate, chosen);
+        if (++lowerStreak < Math.max(1, config.getLowerAfterRounds())) {
+            return current;
+        }
+        lowerStreak = 0;
+        return lowerCandidate;
+    }
+
+    private Evaluation evaluate(int value, List<float[]> queries, List<Map<String, Float>> expected) {
+        int k = config.getK();
+        double hits = 0;
+        long start = System.nanoTime();
+        for (int q = 0; q < queries.size(); q++) {
+            Map<String, Float> approximate = search.searchSimilar(queries.get(q), k, -1f, value);
+            Map<String, Float> exact = expected.get(q);
+            hits += approximate.keySet().stream().filter(exact::containsKey).count() / (double) exact.size();
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / queries.size();
+        return new Evaluation(value, hits / queries.size(), millis);
+    }
+
+    private void tuneSafely() {
+        try {
+            tune();
+        } catch (Exception e) {
+            log.error("搜索参数调节失败", e);
+        }
+    }
+
+    private void registerMetrics() {
+        if (registry == null) {
+            return;
+        }
+        String name = search.getSearchParameterName();
+        Gauge.builder("marsreg.vector.search.param", search, TunableVectorSearch::getSearchParameter)
+            .tag("param", name)
+            .description("当前默认搜索参数")
+            .register(registry);
+        Gauge.builder("marsreg.vector.search.recall", this, tuner -> tuner.recall)
+            .tag("param", name)
+            .description("当前参数在抽样查询上的recall@k")
+            .register(registry);
+        Gauge.builder("marsreg.vector.search.latency", this, tuner -> tuner.latencyMillis)
+            .tag("param", name)
+            .description("当前参数的平均查询延迟（毫秒）")
+            .register(registry);
+        Gauge.builder("marsreg.vector.search.exact.latency", this, tuner -> tuner.exactLatencyMillis)
+            .description("基准搜索的平均延迟（毫秒）")
+            .register(registry);
+        roundCounter = Counter.builder("marsreg.vector.search.tuning.rounds")
+            .description("完成的调节轮数")
+            .register(registry);
+    }
+
+    private static final class Evaluation {
+        private final int value;
+        private final double recall;
+        private final double latencyMillis;
+
+        private Evaluation(int value, double recall, double latencyMillis) {
+            this.value = value;
+            this.recall = recall;
+            this.latencyMillis = latencyMillis;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.marsreg.vector.tuning;
+
+import java.util.Map;
+
+/**
+ * 搜索精度可以通过单个整数参数调节的向量存储，如IVF索引的 nprobe、图索引的 ef。
+ * 参数越大召回率越高、延迟越高，由 {@link SearchParameterTuner} 在后台调节
+ */
+public interface TunableVectorSearch {
+
+    /**
+     * 参数名，如 nprobe、ef
+     */
+    String getSearchParameterName();
+
+    /**
+     * 当前默认查询使用的参数
+     */
+    int getSearchParameter();
+
+    void setSearchParameter(int value);
+
+    /**
+     * 参数取值下限。图索引的 ef 小于返回数量时按返回数量计算，下限取 limit
+     */
+    default int getMinSearchParameter(int limit) {
+        return 1;
+    }
+
+    /**
+     * 参数取值上限
+     */
+    int getMaxSearchParameter();
+
+    /**
+     * 按指定参数搜索，不改变默认参数
+     */
+    Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore, int searchParameter);
+
+    /**
+     * 作为召回率基准的搜索。进程内索引为精确扫描，外部索引取参数上限
+     */
+    Map<String, Float> searchExact(float[] queryVector, int limit);
+
+    /**
+     * 线上查询的抽样，用于在后台重放
+     */
+    QuerySampler getQuerySampler();
+}
@@ -0,0 +1,88 @@
+package com.marsreg.vector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 测试用的随机向量和精确 top-k 基准
+ */
+public final class TestVectors {
+
+    private TestVectors() {
+    }
+
+    /**
+     * 各分量服从标准正态分布的向量
+     */
+    public static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    public static List<float[]> randomVectors(Random random, int count, int dimension) {
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            vectors.add(randomVector(random, dimension));
+        }
+        return vectors;
+    }
+
+    /**
+     * 归一化为单位长度的随机向量
+     */
+    public static List<float[]> randomUnitVectors(Random random, int count, int dimension) {
+        List<float[]> vectors = randomVectors(random, count, dimension);
+        for (float[] vector : vectors) {
+            double sum = 0;
+            for (float value : vector) {
+                sum += value * value;
+            }
+            float inv = (float) (1.0 / Math.sqrt(sum));
+            for (int d = 0; d < dimension; d++) {
+                vector[d] *= inv;
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * 按余弦相似度暴力计算的 top-k，第 i 个向量的ID为 "v" + i，按相似度从高到低排列
+     */
+    public static List<String> exactTopK(List<float[]> vectors, float[] query, int k) {
+        return exactTopK(vectors, query, k, Collections.emptySet());
+    }
+
+    /**
+     * 跳过 excluded 中的下标后按余弦相似度暴力计算的 top-k
+     */
+    public static List<String> exactTopK(List<float[]> vectors, float[] query, int k, Set<Integer> excluded) {
+        List<Integer> order = new ArrayList<>(vectors.size());
+        double[] scores = new double[vectors.size()];
+        for (int i = 0; i < vectors.size(); i++) {
+            if (excluded.contains(i)) {
+                continue;
+            }
+            float[] vector = vectors.get(i);
+            double dot = 0, norm1 = 0, norm2 = 0;
+            for (int d = 0; d < query.length; d++) {
+                dot += query[d] * vector[d];
+                norm1 += query[d] * query[d];
+                norm2 += vector[d] * vector[d];
+            }
+            scores[i] = dot / Math.sqrt(norm1 * norm2);
+            order.add(i);
+        }
+        order.sort((a, b) -> Double.compare(scores[b], scores[a]));
+        List<String> ids = new ArrayList<>(Math.min(k, order.size()));
+        for (int i = 0; i < k && i < order.size(); i++) {
+            ids.add("v" + order.get(i));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,116 @@
+package com.marsreg.vector.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorCacheManagerTest {
+
+    private static final int DIMENSION = 384;
+
+    @Test
+    void testPutGetRemove() {
+        VectorCacheManager cache = new VectorCacheManager(100, 1 << 20, 3600, 4);
+        float[] vector = new float[DIMENSION];
+        cache.put("a", vector);
+        assertSame(vector, cache.getVector("a"));
+        assertNull(cache.getVector("b"));
+        assertEquals(1, cache.size());
+        assertEquals(VectorCacheManager.weigh("a", vector), cache.getCurrentMemory());
+
+        cache.put("a", new float[DIMENSION]);
+        assertEquals(1, cache.size());
+        cache.remove("a");
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getCurrentMemory());
+    }
+
+    @Test
+    void testEntryLimitBelowShardCount() {
+        // 条目上限小于配置的分片数时总条目数仍不超过上限
+        VectorCacheManager cache = new VectorCacheManager(5, 1 << 20, 3600, 16);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key-" + i, new float[DIMENSION]);
+            assertTrue(cache.size() <= 5);
+        }
+        assertTrue((Integer) cache.getStats().get("shards") <= 5);
+        cache.remove(null);
+    }
+
+    @Test
+    void testMemoryBudgetIsRespected() {
+        long entryWeight = VectorCacheManager.weigh("key-0000", new float[DIMENSION]);
+        long maxMemory = entryWeight * 50;
+        VectorCacheManager cache = new VectorCacheManager(10_000, maxMemory, 3600, 1);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(String.format("key-%04d", i), new float[DIMENSION]);
+            assertTrue(cache.getCurrentMemory() <= maxMemory);
+        }
+        assertTrue(cache.size() <= 50);
+        assertTrue((Long) cache.getStats().get("evictionCount") >= 950);
+    }
+
+    @Test
+    void testFrequentKeysSurviveScan() {
+        VectorCacheManager cache = new VectorCacheManager(100, Long.MAX_VALUE / 4, 3600, 1);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                String key = "hot-" + i;
+                if (cache.getVector(key) == null) {
+                    cache.put(key, new float[8]);
+                }
+            }
+        }
+        // 每次访问高频键之间插入5个一次性键，重用距离超过容量，纯LRU下高频键全部被冲掉
+        int hotHits = 0;
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("scan-" + i, new float[8]);
+            if (i % 5 == 4 && cache.getVector("hot-" + (i / 5) % 50) != null) {
+                hotHits++;
+            }
+        }
+        assertTrue(hotHits >= 1800, "hot hits: " + hotHits);
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    void testConcurrentAccessKeepsAccountingConsistent() throws Exception {
+        VectorCacheManager cache = new VectorCacheManager(500, 1 << 20, 3600, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; i++) {
+                    String key = "k" + random.nextInt(2000);
+                    if (cache.getVector(key) == null) {
+                        cache.put(key, new float[random.nextInt(1, 64)]);
+                    }
+                    if (i % 100 == 0) {
+                        cache.remove("k" + random.nextInt(2000));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertTrue(cache.getCurrentMemory() <= 1 << 20);
+        assertTrue(cache.size() <= 500);
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(8L * 20_000, (Long) stats.get("hitCount") + (Long) stats.get("missCount"));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getCurrentMemory());
+    }
+}
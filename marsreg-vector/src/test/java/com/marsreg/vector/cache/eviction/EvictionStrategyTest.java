@@ -0,0 +1,113 @@
+package com.marsreg.vector.cache.eviction;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvictionStrategyTest {
+
+    @Test
+    void testLruEvictsLeastRecentlyUsed() {
+        LRUEvictionStrategy strategy = new LRUEvictionStrategy();
+        strategy.recordInsert("a");
+        strategy.recordInsert("b");
+        strategy.recordInsert("c");
+        strategy.recordAccess("a");
+        strategy.recordRemoval("c");
+        assertEquals("b", strategy.evict());
+        assertEquals("a", strategy.evict());
+        assertNull(strategy.evict());
+    }
+
+    @Test
+    void testLfuEvictsLeastFrequentlyUsed() {
+        LFUEvictionStrategy strategy = new LFUEvictionStrategy();
+        strategy.recordInsert("a");
+        strategy.recordInsert("b");
+        strategy.recordInsert("c");
+        strategy.recordAccess("a");
+        strategy.recordAccess("a");
+        strategy.recordAccess("c");
+        assertEquals(3, strategy.frequency("a"));
+        assertEquals("b", strategy.evict());
+        // 频率相同时先淘汰较早进入该频率的键
+        strategy.recordInsert("d");
+        strategy.recordAccess("d");
+        assertEquals("c", strategy.evict());
+        assertEquals("d", strategy.evict());
+        assertEquals("a", strategy.evict());
+        assertNull(strategy.evict());
+    }
+
+    @Test
+    void testArcProtectsFrequentKeysFromScan() {
+        ARCEvictionStrategy strategy = new ARCEvictionStrategy(4);
+        int size = 0;
+        for (String key : new String[]{"a", "b"}) {
+            strategy.recordInsert(key);
+            strategy.recordAccess(key);
+            size++;
+        }
+        for (int i = 0; i < 100; i++) {
+            strategy.recordInsert("scan-" + i);
+            if (++size > 4) {
+                String victim = strategy.evict();
+                assertTrue(victim.startsWith("scan-"), victim);
+                size--;
+            }
+        }
+    }
+
+    @Test
+    void testArcAdaptsToGhostHits() {
+        ARCEvictionStrategy strategy = new ARCEvictionStrategy(2);
+        strategy.recordInsert("a");
+        strategy.recordAccess("a");
+        strategy.recordInsert("b");
+        strategy.recordInsert("c");
+        assertEquals("b", strategy.evict());
+        // 命中B1说明T1过小，目标大小增大，重新进入的键放入T2
+        strategy.recordInsert("b");
+        assertEquals(1, strategy.getTarget());
+        assertEquals("a", strategy.evict());
+    }
+
+    @Test
+    void testArcDropsKeyWhenT1FillsCapacity() {
+        ARCEvictionStrategy strategy = new ARCEvictionStrategy(2);
+        strategy.recordInsert("a");
+        strategy.recordInsert("b");
+        strategy.recordInsert("c");
+        assertEquals("a", strategy.evict());
+        // T1 占满容量时淘汰的键不进入B1，重新插入按全新键处理
+        strategy.recordInsert("a");
+        assertEquals(0, strategy.getTarget());
+        assertEquals("b", strategy.evict());
+    }
+
+    @Test
+    void testArcHistoryStaysWithinBounds() {
+        int capacity = 8;
+        ARCEvictionStrategy strategy = new ARCEvictionStrategy(capacity);
+        Random random = new Random(3);
+        Set<String> cached = new HashSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            String key = "k" + random.nextInt(40);
+            if (cached.contains(key)) {
+                strategy.recordAccess(key);
+                continue;
+            }
+            strategy.recordInsert(key);
+            cached.add(key);
+            if (cached.size() > capacity) {
+                assertTrue(cached.remove(strategy.evict()));
+            }
+            assertTrue(strategy.recencySize() <= capacity, "T1+B1 " + strategy.recencySize());
+            assertTrue(strategy.totalSize() <= 2 * capacity, "total " + strategy.totalSize());
+        }
+    }
+}
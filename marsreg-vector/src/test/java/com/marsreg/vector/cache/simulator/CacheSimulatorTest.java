@@ -0,0 +1,83 @@
+package com.marsreg.vector.cache.simulator;
+
+import com.marsreg.vector.cache.VectorCacheManager;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheSimulatorTest {
+
+    @Test
+    void testHitRatioOnRepeatedKeys() {
+        List<String> trace = List.of("a", "b", "a", "b", "c", "a");
+        // 容量足够时只有首次访问未命中
+        for (String policy : VectorCacheManager.POLICIES) {
+            assertEquals(0.5, CacheSimulator.hitRatio(policy, trace, 10), 1e-9, policy);
+        }
+    }
+
+    @Test
+    void testFrequencyAwarePoliciesBeatLruOnScans() {
+        // 高频热点键混入大量一次性扫描键
+        Random random = new Random(7);
+        List<String> trace = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            trace.add(random.nextInt(4) == 0 ? "hot-" + random.nextInt(100) : "scan-" + i);
+        }
+        Map<String, Map<Integer, Double>> result =
+            CacheSimulator.simulate(trace, VectorCacheManager.POLICIES, List.of(100, 200));
+        double lru = result.get(VectorCacheManager.POLICY_LRU).get(200);
+        for (String policy : List.of(VectorCacheManager.POLICY_TINY_LFU, VectorCacheManager.POLICY_ARC,
+                VectorCacheManager.POLICY_LFU)) {
+            assertTrue(result.get(policy).get(200) > lru, policy + " " + result);
+            assertTrue(result.get(policy).get(200) >= result.get(policy).get(100), policy + " " + result);
+        }
+        assertTrue(CacheSimulator.format(result, trace.size()).contains("tinylfu"));
+    }
+
+    @Test
+    void testTraceRecorderKeepsEveryThreadsOrder() throws Exception {
+        Path file = Files.createTempFile("cache-trace", ".txt");
+        int threads = 4;
+        int perThread = 5000;
+        Map<String, String> keyByHash = new HashMap<>();
+        try (CacheTraceRecorder recorder = new CacheTraceRecorder(file)) {
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String prefix = "t" + t + "-";
+                for (int i = 0; i < perThread; i++) {
+                    keyByHash.put(Long.toHexString(CacheTraceRecorder.hash(prefix + i)), prefix + i);
+                }
+                workers.add(new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        recorder.record(prefix + i);
+                    }
+                }));
+            }
+            workers.forEach(Thread::start);
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            assertEquals(0, recorder.droppedCount());
+        }
+
+        // 不同线程的记录交错，同一线程内保持调用顺序
+        List<String> trace = CacheSimulator.readTrace(file);
+        assertEquals(threads * perThread, trace.size());
+        int[] next = new int[threads];
+        for (String hash : trace) {
+            String key = keyByHash.get(hash);
+            int thread = key.charAt(1) - '0';
+            assertEquals(next[thread]++, Integer.parseInt(key.substring(key.indexOf('-') + 1)));
+        }
+        Files.delete(file);
+    }
+}
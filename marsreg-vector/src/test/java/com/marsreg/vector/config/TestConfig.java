@@ -104,6 +104,13 @@ public class TestConfig {
                 // 测试环境不需要实现
             }
 
+            @Override
+            public Map<String, Object> getModelUpdateStatus() {
+                Map<String, Object> status = new HashMap<>();
+                status.put("state", "IDLE");
+                return status;
+            }
+
             @Override
             public void warmupModel() {
                 // 测试环境不需要实现
@@ -0,0 +1,125 @@
+package com.marsreg.vector.filter;
+
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetadataIndexTest {
+
+    private static final long BUCKET = 1000L;
+
+    @Test
+    void testRemovedOrdinalIsReused() {
+        MetadataIndex index = new MetadataIndex(BUCKET);
+        int first = index.put("1_1", metadata("1", "pdf", "t1", 10L));
+        index.put("1_2", metadata("1", "pdf", "t1", 20L));
+
+        index.remove("1_1");
+        assertEquals(-1, index.ordinal("1_1"));
+        // 回收的序号分给新ID，旧ID的条件不再命中
+        int reused = index.put("2_1", metadata("2", "doc", "t2", 30L));
+        assertEquals(first, reused);
+        assertEquals(List.of("2_1"), index.keys(index.evaluate(filter(Set.of("2"), null, null))));
+        assertEquals(List.of("1_2"), index.keys(index.evaluate(filter(Set.of("1"), null, null))));
+        assertTrue(index.evaluate(filter(null, Set.of("pdf"), Set.of("t2"))).isEmpty());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void testReplaceUnindexesOldValues() {
+        MetadataIndex index = new MetadataIndex(BUCKET);
+        index.put("1_1", metadata("1", "pdf", "t1", 10L));
+        index.put("1_1", metadata("1", "doc", "t1", 5000L));
+
+        assertTrue(index.evaluate(filter(null, Set.of("pdf"), null)).isEmpty());
+        assertTrue(index.evaluate(VectorFilter.builder().toTimestamp(999L).build()).isEmpty());
+        assertEquals(List.of("1_1"), index.keys(index.evaluate(filter(null, Set.of("doc"), null))));
+        // putIfAbsent 不覆盖已有元数据
+        index.putIfAbsent("1_1", VectorMetadata.ofDocument("9"));
+        assertEquals("doc", index.get("1_1").getType());
+    }
+
+    @Test
+    void testTimeRangeAtBucketEdges() {
+        MetadataIndex index = new MetadataIndex(BUCKET);
+        index.put("a", metadata("1", null, null, 999L));
+        index.put("b", metadata("1", null, null, 1000L));
+        index.put("c", metadata("1", null, null, 1999L));
+        index.put("d", metadata("1", null, null, 2000L));
+        index.put("e", metadata("1", null, null, -1L));
+        index.put("f", metadata("1", null, null, null));
+
+        // 两端包含；完全覆盖的桶整体合并，部分覆盖的桶逐个比较
+        assertEquals(List.of("b", "c"), keys(index, 1000L, 1999L));
+        assertEquals(List.of("a", "b"), keys(index, 999L, 1000L));
+        assertEquals(List.of("c"), keys(index, 1001L, 1999L));
+        assertEquals(List.of("a", "e"), keys(index, null, 999L));
+        assertEquals(List.of("d"), keys(index, 2000L, null));
+        assertEquals(List.of(), keys(index, 1500L, 1400L));
+        // 没有时间戳的ID不会落入任何时间范围
+        assertFalse(keys(index, Long.MIN_VALUE + 1, Long.MAX_VALUE).contains("f"));
+    }
+
+    @Test
+    void testWriteAndReadRoundTrip() throws Exception {
+        MetadataIndex index = new MetadataIndex(BUCKET);
+        index.put("1_1", metadata("1", "pdf", "t1", 1500L));
+        index.put("1_2", metadata("1", null, null, null));
+        index.put("2_1", metadata("2", "doc", "租户", 42L));
+        index.remove("1_2");
+
+        Path directory = Files.createTempDirectory("metadata-index-test");
+        Path file = directory.resolve("metadata.idx");
+        try {
+            index.write(file);
+            MetadataIndex read = MetadataIndex.read(file, BUCKET);
+
+            assertEquals(2, read.size());
+            assertEquals(index.get("1_1"), read.get("1_1"));
+            assertEquals(index.get("2_1"), read.get("2_1"));
+            assertNull(read.get("1_2"));
+            assertEquals(List.of("2_1"), read.keys(read.evaluate(filter(null, null, Set.of("租户")))));
+            assertEquals(List.of("1_1"), keys(read, 1000L, 1999L));
+            // 文件不存在时得到空索引
+            assertEquals(0, MetadataIndex.read(directory.resolve("missing.idx"), BUCKET).size());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void testReconcileWithLiveIds() {
+        MetadataIndex index = new MetadataIndex(BUCKET);
+        index.put("1_1", metadata("1", "pdf", "t1", 10L));
+        index.put("1_2", metadata("1", "pdf", "t1", 10L));
+
+        // 1_2 已从存储删除，3_7 在快照之后写入
+        int added = index.reconcile(ids -> List.of("1_1", "3_7", "orphan").forEach(ids));
+
+        assertEquals(2, added);
+        assertNull(index.get("1_2"));
+        assertEquals("pdf", index.get("1_1").getType());
+        assertEquals(List.of("3_7"), index.keys(index.evaluate(filter(Set.of("3"), null, null))));
+        assertNull(index.get("orphan").getDocumentId());
+    }
+
+    private static List<String> keys(MetadataIndex index, Long from, Long to) {
+        return index.keys(index.evaluate(VectorFilter.builder().documentIds(Set.of("1")).fromTimestamp(from).toTimestamp(to).build()));
+    }
+
+    private static VectorFilter filter(Set<String> documentIds, Set<String> types, Set<String> tenants) {
+        return VectorFilter.builder().documentIds(documentIds).types(types).tenants(tenants).build();
+    }
+
+    private static VectorMetadata metadata(String documentId, String type, String tenant, Long timestamp) {
+        return new VectorMetadata(documentId, type, tenant, timestamp);
+    }
+}
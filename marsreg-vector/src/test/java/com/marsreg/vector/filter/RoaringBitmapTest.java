@@ -0,0 +1,71 @@
+package com.marsreg.vector.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoaringBitmapTest {
+
+    @Test
+    void testAddRemoveAcrossContainerConversion() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        BitSet expected = new BitSet();
+        // 同一个高16位下超过4096个元素时转为位图容器，删除后再转回数组容器
+        for (int i = 0; i < 10000; i++) {
+            bitmap.add(i * 3);
+            expected.set(i * 3);
+        }
+        bitmap.add(1 << 20);
+        expected.set(1 << 20);
+        assertEquals(expected.cardinality(), bitmap.cardinality());
+        assertEquals(0, bitmap.first());
+
+        for (int i = 0; i < 9000; i++) {
+            bitmap.remove(i * 3);
+            expected.clear(i * 3);
+        }
+        assertEquals(expected.cardinality(), bitmap.cardinality());
+        assertArrayEquals(expected.stream().toArray(), bitmap.toArray());
+        assertTrue(bitmap.contains(9000 * 3));
+        assertFalse(bitmap.contains(3));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+    }
+
+    @Test
+    void testSetOperationsMatchBitSet() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            // 稀疏和稠密分布混合，覆盖数组容器和位图容器的各种组合
+            BitSet a = randomBits(random, round % 2 == 0 ? 500 : 30000);
+            BitSet b = randomBits(random, round % 3 == 0 ? 500 : 30000);
+            RoaringBitmap ra = toBitmap(a);
+            RoaringBitmap rb = toBitmap(b);
+
+            BitSet and = (BitSet) a.clone();
+            and.and(b);
+            BitSet or = (BitSet) a.clone();
+            or.or(b);
+
+            assertArrayEquals(and.stream().toArray(), RoaringBitmap.and(ra, rb).toArray());
+            assertArrayEquals(or.stream().toArray(), RoaringBitmap.or(ra, rb).toArray());
+            assertEquals(and.cardinality(), RoaringBitmap.and(ra, rb).cardinality());
+        }
+    }
+
+    private static BitSet randomBits(Random random, int count) {
+        BitSet bits = new BitSet();
+        for (int i = 0; i < count; i++) {
+            bits.set(random.nextInt(200_000));
+        }
+        return bits;
+    }
+
+    private static RoaringBitmap toBitmap(BitSet bits) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bits.stream().forEach(bitmap::add);
+        return bitmap;
+    }
+}
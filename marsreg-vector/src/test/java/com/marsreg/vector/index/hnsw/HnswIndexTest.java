@@ -0,0 +1,151 @@
+package com.marsreg.vector.index.hnsw;
+
+import com.marsreg.vector.filter.RoaringBitmap;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.marsreg.vector.TestVectors.exactTopK;
+import static com.marsreg.vector.TestVectors.randomVector;
+import static com.marsreg.vector.TestVectors.randomVectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void testSearchRecall() {
+        Random random = new Random(42);
+        float[][] vectors = randomVectors(random, 2000, DIMENSION).toArray(new float[0][]);
+        HnswIndex index = new HnswIndex(16, 200);
+        IntStream.range(0, vectors.length).parallel().forEach(i -> index.add("v" + i, vectors[i]));
+        assertEquals(vectors.length, index.size());
+
+        double recall = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(random, DIMENSION);
+            Set<String> expected = new HashSet<>(exactTopK(Arrays.asList(vectors), query, 10));
+            Map<String, Float> results = index.search(query, 10, 100, -1f);
+            assertEquals(10, results.size());
+            recall += results.keySet().stream().filter(expected::contains).count() / 10.0;
+        }
+        assertTrue(recall / queries > 0.9, "召回率过低: " + recall / queries);
+    }
+
+    @Test
+    void testConcurrentInsertAndSearch() throws Exception {
+        Random random = new Random(3);
+        float[][] vectors = randomVectors(random, 3000, DIMENSION).toArray(new float[0][]);
+        HnswIndex index = new HnswIndex(8, 64);
+        index.add("v0", vectors[0]);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            AtomicInteger next = new AtomicInteger(1);
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < vectors.length; i = next.getAndIncrement()) {
+                        index.add("v" + i, vectors[i]);
+                    }
+                }));
+            }
+            // 插入期间并发搜索，入口节点和层数始终一致，搜索不会失败也不会漏掉已插入的入口
+            for (int t = 0; t < 4; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    Random queryRandom = new Random(seed);
+                    while (next.get() < vectors.length) {
+                        assertFalse(index.search(randomVector(queryRandom, DIMENSION), 5, 32, -1f).isEmpty());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(vectors.length, index.size());
+        int found = 0;
+        for (int i = 0; i < vectors.length; i += 30) {
+            if (index.search(vectors[i], 1, 64, -1f).containsKey("v" + i)) {
+                found++;
+            }
+        }
+        assertTrue(found >= 95, "并发插入后自查询命中过少: " + found);
+    }
+
+    @Test
+    void testDeletedVectorsAreExcluded() {
+        Random random = new Random(7);
+        float[][] vectors = randomVectors(random, 500, DIMENSION).toArray(new float[0][]);
+        HnswIndex index = new HnswIndex(8, 100);
+        for (int i = 0; i < vectors.length; i++) {
+            index.add("v" + i, vectors[i]);
+        }
+        for (int i = 0; i < vectors.length; i += 2) {
+            assertTrue(index.remove("v" + i));
+        }
+        assertEquals(250, index.size());
+        assertEquals(0.5, index.deletedRatio(), 0.0001);
+
+        Map<String, Float> results = index.search(vectors[0], 20, 50, -1f);
+        assertFalse(results.containsKey("v0"));
+        results.keySet().forEach(id -> assertEquals(1, Integer.parseInt(id.substring(1)) % 2));
+        assertNull(index.get("v0"));
+    }
+
+    @Test
+    void testUpsertReplacesVector() {
+        HnswIndex index = new HnswIndex(4, 16);
+        index.add("a", new float[]{1, 0});
+        index.add("b", new float[]{0, 1});
+        index.add("a", new float[]{0, 1});
+
+        assertEquals(2, index.size());
+        assertEquals(1, index.deletedCount());
+        assertArrayEquals(new float[]{0, 1}, index.get("a"));
+        assertEquals(1.0f, index.search(new float[]{0, 1}, 1, 10, 0f).values().iterator().next(), 0.0001f);
+    }
+
+    @Test
+    void testFilteredSearchOnlyReturnsAllowedTags() {
+        Random random = new Random(11);
+        float[][] vectors = randomVectors(random, 2000, DIMENSION).toArray(new float[0][]);
+        HnswIndex index = new HnswIndex(16, 200);
+        // 标签为 i % 10，过滤条件只允许标签3，选择率10%
+        IntStream.range(0, vectors.length).parallel().forEach(i -> index.add("v" + i, vectors[i], i % 10));
+        RoaringBitmap allowed = RoaringBitmap.of(3);
+        Set<Integer> excluded = new HashSet<>();
+        for (int i = 0; i < vectors.length; i++) {
+            if (i % 10 != 3) {
+                excluded.add(i);
+            }
+        }
+
+        double recall = 0;
+        int queries = 30;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(random, DIMENSION);
+            Map<String, Float> results = index.search(query, 10, 100, -1f, allowed, vectors.length);
+            assertNotNull(results);
+            assertEquals(10, results.size());
+            results.keySet().forEach(id -> assertEquals(3, Integer.parseInt(id.substring(1)) % 10));
+            Set<String> expected = new HashSet<>(exactTopK(Arrays.asList(vectors), query, 10, excluded));
+            recall += results.keySet().stream().filter(expected::contains).count() / 10.0;
+        }
+        assertTrue(recall / queries > 0.9, "过滤搜索召回率过低: " + recall / queries);
+
+        // 访问预算不足时返回null，由调用方退化为精确搜索
+        assertNull(index.search(vectors[0], 10, 100, -1f, allowed, 5));
+        assertTrue(index.search(vectors[0], 10, 100, -1f, new RoaringBitmap(), 100).isEmpty());
+    }
+}
@@ -0,0 +1,111 @@
+package com.marsreg.vector.index.ivf;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static com.marsreg.vector.TestVectors.exactTopK;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IvfIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void testSearchRecallGrowsWithNprobe() {
+        Random random = new Random(42);
+        float[][] vectors = clusteredVectors(random, 5000, 50);
+        float[] centroids = KMeans.train(Arrays.asList(vectors), 64, 20, 1024, 42L);
+        IvfIndex index = new IvfIndex(DIMENSION, centroids);
+        IntStream.range(0, vectors.length).parallel().forEach(i -> index.add("v" + i, vectors[i]));
+        assertEquals(vectors.length, index.size());
+        assertEquals(64, index.getNlist());
+
+        double lowRecall = 0;
+        double highRecall = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = vectors[random.nextInt(vectors.length)].clone();
+            query[0] += 0.1f;
+            Set<String> expected = new HashSet<>(exactTopK(Arrays.asList(vectors), query, 10));
+            lowRecall += recall(index.search(query, 10, 1, -1f).keySet(), expected);
+            highRecall += recall(index.search(query, 10, 16, -1f).keySet(), expected);
+            // 探测全部倒排表时与精确搜索一致
+            assertEquals(expected, index.search(query, 10, 64, -1f).keySet());
+        }
+        assertTrue(highRecall / queries > 0.95, "召回率过低: " + highRecall / queries);
+        assertTrue(highRecall >= lowRecall);
+        assertTrue(index.imbalanceFactor() < 3.0, "倒排表过于不均衡: " + index.imbalanceFactor());
+    }
+
+    @Test
+    void testUpsertAndRemoveKeepListsContiguous() {
+        Random random = new Random(7);
+        float[][] vectors = clusteredVectors(random, 1000, 10);
+        IvfIndex index = new IvfIndex(DIMENSION, KMeans.train(Arrays.asList(vectors), 10, 10, 256, 7L));
+        for (int i = 0; i < vectors.length; i++) {
+            index.add("v" + i, vectors[i]);
+        }
+        for (int i = 0; i < vectors.length; i += 2) {
+            assertTrue(index.remove("v" + i));
+        }
+        assertFalse(index.remove("v0"));
+        assertEquals(500, index.size());
+        assertEquals(500, Arrays.stream(index.listSizes()).sum());
+        assertNull(index.get("v0"));
+        assertArrayEquals(vectors[1], index.get("v1"));
+
+        // 覆盖为另一个簇的向量后会移动到新的倒排表
+        index.add("v1", vectors[2]);
+        assertEquals(500, index.size());
+        assertArrayEquals(vectors[2], index.get("v1"));
+        Map<String, Float> results = index.search(vectors[2], 1, index.getNlist(), -1f);
+        assertEquals(1.0f, results.get("v1"), 0.0001f);
+        results = index.search(vectors[2], 20, index.getNlist(), -1f);
+        results.keySet().forEach(id -> assertEquals(1, Integer.parseInt(id.substring(1)) % 2));
+
+        int[] count = {0};
+        index.forEachLive((id, vector) -> count[0]++);
+        assertEquals(500, count[0]);
+    }
+
+    @Test
+    void testFlatIndexIsExact() {
+        Random random = new Random(3);
+        float[][] vectors = clusteredVectors(random, 300, 5);
+        IvfIndex index = IvfIndex.flat(DIMENSION);
+        for (int i = 0; i < vectors.length; i++) {
+            index.add("v" + i, vectors[i]);
+        }
+        float[] query = vectors[17];
+        assertEquals(new HashSet<>(exactTopK(Arrays.asList(vectors), query, 10)), index.search(query, 10, 1, -1f).keySet());
+        assertEquals(1.0f, index.score(query, "v17"), 0.0001f);
+        assertTrue(Float.isNaN(index.score(query, "missing")));
+        assertThrows(IllegalArgumentException.class, () -> index.add("bad", new float[DIMENSION + 1]));
+    }
+
+    private static double recall(Set<String> actual, Set<String> expected) {
+        return actual.stream().filter(expected::contains).count() / (double) expected.size();
+    }
+
+    /**
+     * 围绕若干随机中心生成的向量，模拟嵌入向量的聚簇分布
+     */
+    private static float[][] clusteredVectors(Random random, int count, int clusters) {
+        float[][] centers = new float[clusters][DIMENSION];
+        for (float[] center : centers) {
+            for (int d = 0; d < DIMENSION; d++) {
+                center[d] = (float) random.nextGaussian();
+            }
+        }
+        float[][] vectors = new float[count][DIMENSION];
+        for (float[] vector : vectors) {
+            float[] center = centers[random.nextInt(clusters)];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = center[d] + 0.3f * (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
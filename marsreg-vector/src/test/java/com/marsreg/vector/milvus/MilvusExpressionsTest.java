@@ -0,0 +1,36 @@
+package com.marsreg.vector.milvus;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MilvusExpressionsTest {
+
+    @Test
+    void testInEscapesQuotes() {
+        assertEquals("id in [\"1_2\",\"a\\\"b\",\"c\\\\d\"]", MilvusExpressions.in("id", List.of("1_2", "a\"b", "c\\d")));
+        assertEquals("document_id == \"7\"", MilvusExpressions.eq("document_id", "7"));
+        assertEquals("id > \"a\\\"b\"", MilvusExpressions.gt("id", "a\"b"));
+    }
+
+    @Test
+    void testAndSkipsEmptyClauses() {
+        assertEquals("(tenant in [\"t1\"]) and (ts >= 10) and (ts <= 20)", MilvusExpressions.and(Arrays.asList(
+            MilvusExpressions.in("tenant", List.of("t1")), null, MilvusExpressions.ge("ts", 10), MilvusExpressions.le("ts", 20))));
+        assertNull(MilvusExpressions.and(Arrays.asList(null, "")));
+    }
+
+    @Test
+    void testPartition() {
+        List<Integer> values = IntStream.range(0, 2500).boxed().collect(Collectors.toList());
+        List<List<Integer>> parts = MilvusExpressions.partition(values, 1000);
+        assertEquals(3, parts.size());
+        assertEquals(500, parts.get(2).size());
+        assertEquals(Integer.valueOf(2000), parts.get(2).get(0));
+    }
+}
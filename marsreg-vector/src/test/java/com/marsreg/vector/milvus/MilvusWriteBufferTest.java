@@ -0,0 +1,90 @@
+package com.marsreg.vector.milvus;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MilvusWriteBufferTest {
+
+    @Test
+    void testFlushesByRowCount() {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        try (MilvusWriteBuffer buffer = new MilvusWriteBuffer((ids, metadata, vectors) -> batchSizes.add(ids.size()),
+            4, Long.MAX_VALUE, 60_000, 2, 0, 1)) {
+            List<CompletableFuture<Void>> acks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                acks.add(buffer.submit("1", Map.of("v" + i, new float[]{i})));
+            }
+            CompletableFuture.allOf(acks.toArray(new CompletableFuture[0])).join();
+            assertEquals(List.of(4, 4), batchSizes);
+            assertEquals(0, buffer.pendingRows());
+        }
+    }
+
+    @Test
+    void testFlushesByMaxDelay() {
+        List<String> written = new CopyOnWriteArrayList<>();
+        try (MilvusWriteBuffer buffer = new MilvusWriteBuffer((ids, metadata, vectors) -> written.addAll(ids),
+            1000, Long.MAX_VALUE, 20, 1, 0, 1)) {
+            buffer.submit("1", Map.of("a", new float[]{1})).join();
+            assertEquals(List.of("a"), written);
+        }
+    }
+
+    @Test
+    void testRetriesThenFails() {
+        AtomicInteger attempts = new AtomicInteger();
+        try (MilvusWriteBuffer buffer = new MilvusWriteBuffer((ids, metadata, vectors) -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("unavailable");
+            }
+        }, 1, Long.MAX_VALUE, 60_000, 1, 2, 1)) {
+            buffer.submit("1", Map.of("a", new float[]{1})).join();
+            assertEquals(3, attempts.get());
+
+            attempts.set(-10);
+            CompletableFuture<Void> ack = buffer.submit("1", Map.of("b", new float[]{1}));
+            assertThrows(CompletionException.class, ack::join);
+        }
+    }
+
+    @Test
+    void testWritesAndRetriesOnlyRunOnFlushThreads() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        // 单个写入线程且每批前两次失败：旧实现在队列满时由提交线程或定时线程执行写入和退避等待
+        try (MilvusWriteBuffer buffer = new MilvusWriteBuffer((ids, metadata, vectors) -> {
+            threads.add(Thread.currentThread().getName());
+            if (attempts.computeIfAbsent(ids.get(0), id -> new AtomicInteger()).incrementAndGet() < 3) {
+                throw new IllegalStateException("unavailable");
+            }
+        }, 2, Long.MAX_VALUE, 5, 1, 2, 1)) {
+            List<CompletableFuture<Void>> acks = new ArrayList<>();
+            for (int i = 0; i < 21; i++) {
+                acks.add(buffer.submit("1", Map.of("v" + i, new float[]{i})));
+            }
+            CompletableFuture.allOf(acks.toArray(new CompletableFuture[0])).join();
+        }
+        assertFalse(threads.isEmpty());
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("milvus-write-flush")), threads.toString());
+    }
+
+    @Test
+    void testByteLimitCountsEncodedStrings() throws Exception {
+        List<String> written = new CopyOnWriteArrayList<>();
+        // 4 字节向量 + "中文" 6 字节 + "1" 1 字节，恰好达到上限后立即写出，不等待最大延迟
+        try (MilvusWriteBuffer buffer = new MilvusWriteBuffer((ids, metadata, vectors) -> written.addAll(ids),
+            1000, 11, 60_000, 1, 0, 1)) {
+            buffer.submit("1", Map.of("中文", new float[]{1})).get(5, TimeUnit.SECONDS);
+            assertEquals(List.of("中文"), written);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.marsreg.vector.model;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.scheduler.EmbeddingScheduler;
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.similarity.VectorMath;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 推理后端的精度与速度对比，需要 convert_model.py 导出的本地模型目录，不作为单元测试运行：
+ * {@code java -Dmodel.path=models/all-MiniLM-L6-v2 ... EmbeddingBackendComparison [文本数]}
+ * <p>
+ * 以 djl 全精度输出为基准，统计每个候选后端的吞吐、与基准向量的余弦相似度，
+ * 以及用文本互相检索时 top-10 近邻与基准的重合率
+ */
+public class EmbeddingBackendComparison {
+
+    private static final int K = 10;
+
+    public static void main(String[] args) {
+        String path = System.getProperty("model.path");
+        if (path == null) {
+            System.err.println("请通过 -Dmodel.path 指定本地模型目录");
+            System.exit(1);
+        }
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        List<String> texts = EmbeddingThroughputBenchmark.generateTexts(
+            LengthBucketerTest.realisticLengths(count, 7), new Random(7));
+
+        Run reference = run(texts, path, EmbeddingBackend.DJL, null);
+        print(reference, null);
+        for (String modelFile : List.of("model.onnx", "model_quantized.onnx")) {
+            print(run(texts, path, EmbeddingBackend.ONNX, modelFile), reference);
+        }
+    }
+
+    private static Run run(List<String> texts, String path, String backend, String onnxFile) {
+        VectorizationConfig.Model config = new VectorizationConfig.Model();
+        config.setPath(path);
+        config.setBackend(backend);
+        config.setMaxSequenceLength(512);
+        config.getMicroBatch().setEnabled(false);
+        if (onnxFile != null) {
+            config.getOnnx().setModelFile(onnxFile);
+        }
+        EmbeddingScheduler scheduler = new EmbeddingScheduler(new VectorizationConfig.Scheduler());
+        SentenceTransformerModel model = new SentenceTransformerModel(config, scheduler);
+        try {
+            model.encode(texts.subList(0, Math.min(64, texts.size())));
+            long start = System.nanoTime();
+            List<float[]> vectors = model.encode(texts);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            vectors.replaceAll(VectorMath::normalize);
+            return new Run(onnxFile == null ? backend : backend + "/" + onnxFile, vectors, seconds);
+        } finally {
+            model.destroy();
+            scheduler.close();
+        }
+    }
+
+    private static void print(Run run, Run reference) {
+        System.out.printf("%-28s %8.1f texts/s  (%.2fs)", run.name, run.vectors.size() / run.seconds, run.seconds);
+        if (reference != null) {
+            int n = run.vectors.size();
+            float[] cosines = new float[n];
+            for (int i = 0; i < n; i++) {
+                cosines[i] = VectorMath.dot(run.vectors.get(i), reference.vectors.get(i));
+            }
+            Arrays.sort(cosines);
+            double mean = 0;
+            for (float cosine : cosines) {
+                mean += cosine;
+            }
+            System.out.printf("  speedup=%.2fx  cosine mean=%.5f p1=%.5f min=%.5f  top%d-overlap=%.4f",
+                reference.seconds / run.seconds, mean / n, cosines[n / 100], cosines[0], K,
+                neighbourOverlap(run.vectors, reference.vectors));
+        }
+        System.out.println();
+    }
+
+    /**
+     * 每条文本作为查询在其余文本中检索 top-K，与基准结果的平均重合率
+     */
+    private static double neighbourOverlap(List<float[]> candidate, List<float[]> reference) {
+        int queries = Math.min(200, candidate.size());
+        long hits = 0;
+        long total = 0;
+        for (int q = 0; q < queries; q++) {
+            Set<String> expected = topK(reference, q).keySet();
+            Set<String> actual = topK(candidate, q).keySet();
+            hits += actual.stream().filter(expected::contains).count();
+            total += expected.size();
+        }
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    private static Map<String, Float> topK(List<float[]> vectors, int query) {
+        TopKCollector collector = new TopKCollector(K, -1f);
+        for (int i = 0; i < vectors.size(); i++) {
+            if (i != query) {
+                collector.offer(String.valueOf(i), VectorMath.dot(vectors.get(query), vectors.get(i)));
+            }
+        }
+        return collector.drainDescending();
+    }
+
+    private record Run(String name, List<float[]> vectors, double seconds) {
+    }
+}
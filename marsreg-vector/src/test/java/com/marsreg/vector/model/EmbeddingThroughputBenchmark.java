@@ -0,0 +1,68 @@
+package com.marsreg.vector.model;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.scheduler.EmbeddingScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 分桶策略的吞吐对比，需要本地模型，不作为单元测试运行：
+ * {@code java -Dmodel.path=models/all-MiniLM-L6-v2 ... EmbeddingThroughputBenchmark [文本数]}
+ * <p>
+ * 输入长度分布与 {@link LengthBucketerTest#realisticLengths} 相同
+ */
+public class EmbeddingThroughputBenchmark {
+
+    private static final String[] WORDS = {
+        "向量", "检索", "文档", "模型", "embedding", "search", "index", "query", "vector", "chunk",
+        "分块", "相似度", "缓存", "批处理", "latency", "throughput", "token", "注意力", "语义", "召回"
+    };
+
+    public static void main(String[] args) {
+        String path = System.getProperty("model.path");
+        if (path == null) {
+            System.err.println("请通过 -Dmodel.path 指定本地模型目录");
+            System.exit(1);
+        }
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        List<String> texts = generateTexts(LengthBucketerTest.realisticLengths(count, 42), new Random(42));
+
+        for (String strategy : List.of(LengthBucketer.NONE, LengthBucketer.BOUNDARIES, LengthBucketer.SORTED)) {
+            VectorizationConfig.Model config = new VectorizationConfig.Model();
+            config.setPath(path);
+            config.setBatchSize(32);
+            config.setMaxSequenceLength(512);
+            config.getBucketing().setStrategy(strategy);
+            config.getBucketing().setMaxTokensPerBatch(strategy.equals(LengthBucketer.NONE) ? 0 : 16384);
+            EmbeddingScheduler scheduler = new EmbeddingScheduler(new VectorizationConfig.Scheduler());
+            SentenceTransformerModel model = new SentenceTransformerModel(config, scheduler);
+            try {
+                model.encode(texts.subList(0, Math.min(64, texts.size())));
+                long start = System.nanoTime();
+                model.encode(texts);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-12s %8.1f texts/s  (%.2fs)%n", strategy, texts.size() / seconds, seconds);
+            } finally {
+                model.destroy();
+                scheduler.close();
+            }
+        }
+    }
+
+    static List<String> generateTexts(int[] lengths, Random random) {
+        List<String> texts = new ArrayList<>(lengths.length);
+        for (int length : lengths) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    sb.append(' ');
+                }
+                sb.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            texts.add(sb.toString());
+        }
+        return texts;
+    }
+}
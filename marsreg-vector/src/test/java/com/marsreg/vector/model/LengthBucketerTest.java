@@ -0,0 +1,88 @@
+package com.marsreg.vector.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LengthBucketerTest {
+
+    private static final List<Integer> BOUNDARIES = List.of(16, 32, 64, 128, 256, 512);
+
+    /**
+     * 检索查询与文档分块混合：约30%为5~30个token的短查询，其余分块长度服从对数正态分布并截断到512
+     */
+    static int[] realisticLengths(int count, long seed) {
+        Random random = new Random(seed);
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (random.nextDouble() < 0.3) {
+                lengths[i] = 5 + random.nextInt(26);
+            } else {
+                lengths[i] = (int) Math.min(512, Math.max(8, Math.exp(5.0 + 0.6 * random.nextGaussian())));
+            }
+        }
+        return lengths;
+    }
+
+    @Test
+    void testPlanCoversEveryInputOnceWithinLimits() {
+        int[] lengths = realisticLengths(1000, 1);
+        for (String strategy : List.of(LengthBucketer.NONE, LengthBucketer.SORTED, LengthBucketer.BOUNDARIES)) {
+            LengthBucketer bucketer = new LengthBucketer(strategy, 32, 8192, 64, BOUNDARIES);
+            boolean[] seen = new boolean[lengths.length];
+            for (int[] batch : bucketer.plan(lengths)) {
+                assertTrue(batch.length <= 64, strategy);
+                int max = 0;
+                for (int index : batch) {
+                    assertFalse(seen[index], strategy);
+                    seen[index] = true;
+                    max = Math.max(max, lengths[index]);
+                }
+                assertTrue(batch.length == 1 || (long) batch.length * max <= 8192, strategy);
+            }
+            for (boolean s : seen) {
+                assertTrue(s, strategy);
+            }
+        }
+    }
+
+    @Test
+    void testSortedBucketingReducesPadding() {
+        int[] lengths = realisticLengths(5000, 2);
+        long real = 0;
+        for (int length : lengths) {
+            real += length;
+        }
+        long none = LengthBucketer.paddedTokens(lengths,
+            new LengthBucketer(LengthBucketer.NONE, 32, 0, 0, BOUNDARIES).plan(lengths));
+        long sorted = LengthBucketer.paddedTokens(lengths,
+            new LengthBucketer(LengthBucketer.SORTED, 32, 0, 0, BOUNDARIES).plan(lengths));
+        long boundaries = LengthBucketer.paddedTokens(lengths,
+            new LengthBucketer(LengthBucketer.BOUNDARIES, 32, 0, 0, BOUNDARIES).plan(lengths));
+
+        // 排序后填充几乎消失，原始顺序下大部分计算浪费在填充上
+        assertTrue(sorted < real * 1.05, "sorted=" + sorted + ", real=" + real);
+        assertTrue(none > sorted * 2, "none=" + none + ", sorted=" + sorted);
+        assertTrue(boundaries < none / 2, "boundaries=" + boundaries + ", none=" + none);
+    }
+
+    @Test
+    void testTokenBudgetGrowsShortBatches() {
+        int[] lengths = new int[256];
+        Arrays.fill(lengths, 0, 128, 10);
+        Arrays.fill(lengths, 128, 256, 400);
+        // 短文本的批次按token预算超过batch-size，受最大条数限制
+        List<int[]> batches = new LengthBucketer(LengthBucketer.SORTED, 32, 4000, 100, BOUNDARIES).plan(lengths);
+        assertEquals(100, batches.get(0).length);
+        assertEquals(28, batches.get(1).length);
+        assertEquals(10, batches.get(2).length);
+
+        // 未设置token预算时只按batch-size切分
+        batches = new LengthBucketer(LengthBucketer.SORTED, 32, 0, 100, BOUNDARIES).plan(lengths);
+        assertEquals(32, batches.get(0).length);
+    }
+}
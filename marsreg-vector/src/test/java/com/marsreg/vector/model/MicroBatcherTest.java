@@ -0,0 +1,103 @@
+package com.marsreg.vector.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MicroBatcherTest {
+
+    @Test
+    void testConcurrentSubmitsAreBatched() {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test-batcher", inputs -> {
+            batchSizes.add(inputs.size());
+            return inputs.stream().map(i -> i * 2).collect(Collectors.toList());
+        }, 16, 50)) {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(batcher.submit(i));
+            }
+            for (int i = 0; i < 64; i++) {
+                assertEquals(Integer.valueOf(i * 2), futures.get(i).join());
+            }
+            assertTrue(batchSizes.stream().allMatch(size -> size <= 16));
+            assertTrue(batchSizes.size() < 64, "batches: " + batchSizes);
+            assertTrue(batcher.getAverageBatchSize() > 1.0);
+        }
+    }
+
+    @Test
+    void testSingleRequestWaitsAtMostMaxDelay() {
+        try (MicroBatcher<String, String> batcher =
+                 new MicroBatcher<>("test-batcher", inputs -> inputs, 32, 20)) {
+            long start = System.nanoTime();
+            assertEquals("a", batcher.submit("a").join());
+            assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        }
+    }
+
+    @Test
+    void testFailurePropagatesToWholeBatch() {
+        try (MicroBatcher<String, String> batcher = new MicroBatcher<>("test-batcher", inputs -> {
+            throw new IllegalStateException("boom");
+        }, 8, 10)) {
+            CompletionException e = assertThrows(CompletionException.class, () -> batcher.submit("a").join());
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    void testAsyncBatchesRunConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        try (MicroBatcher<String, String> batcher = MicroBatcher.async("test-batcher", inputs ->
+                CompletableFuture.supplyAsync(() -> {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return inputs;
+                }, executor), 1, 0)) {
+            CompletableFuture<String> first = batcher.submit("a");
+            CompletableFuture<String> second = batcher.submit("b");
+            // 第一批未完成时第二批已经开始执行
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            release.countDown();
+            assertEquals("a", first.join());
+            assertEquals("b", second.join());
+            assertEquals(2, batcher.getBatchCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testAsyncFailureUnwrapsCause() {
+        try (MicroBatcher<String, String> batcher = MicroBatcher.async("test-batcher",
+                inputs -> CompletableFuture.failedFuture(new IllegalStateException("boom")), 8, 10)) {
+            CompletionException e = assertThrows(CompletionException.class, () -> batcher.submit("a").join());
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    void testSubmitAfterCloseFails() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("test-batcher", inputs -> inputs, 8, 10);
+        batcher.close();
+        assertTrue(batcher.submit("a").isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,116 @@
+package com.marsreg.vector.model;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ModelVersionTest {
+
+    @Test
+    void testRetireWaitsForInFlightRequests() {
+        FakeBackend backend = new FakeBackend(3);
+        ModelVersion version = version("v1", backend);
+        assertTrue(version.acquire());
+        assertTrue(version.acquire());
+
+        CompletableFuture<Void> drained = version.retire();
+        // 退役后不再接受新请求，进行中的请求结束前不关闭
+        assertFalse(version.acquire());
+        assertEquals(2, version.getInFlight());
+        version.release();
+        assertFalse(drained.isDone());
+        assertFalse(backend.closed);
+
+        version.release();
+        assertTrue(drained.isDone());
+        assertTrue(backend.closed);
+    }
+
+    @Test
+    void testRetireWithoutRequestsClosesImmediately() {
+        FakeBackend backend = new FakeBackend(3);
+        ModelVersion version = version("v1", backend);
+        version.acquire();
+        version.release();
+
+        assertTrue(version.retire().isDone());
+        assertTrue(backend.closed);
+        // 重复关闭只释放一次资源
+        version.close();
+        assertEquals(1, backend.closeCount);
+    }
+
+    /**
+     * 分词器用 mock 代替，每条文本编码为两个 token
+     */
+    static ModelVersion version(String id, FakeBackend backend) {
+        HuggingFaceTokenizer tokenizer = mock(HuggingFaceTokenizer.class);
+        when(tokenizer.batchEncode(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            Encoding[] encodings = new Encoding[texts.size()];
+            for (int i = 0; i < encodings.length; i++) {
+                encodings[i] = mock(Encoding.class);
+                when(encodings[i].getIds()).thenReturn(new long[]{101, 102});
+            }
+            return encodings;
+        });
+        return new ModelVersion(id, "/models/" + id, tokenizer, backend);
+    }
+
+    /**
+     * 输出固定维度的零向量，可设置闸门让推理阻塞，用于观察切换过程中的排空
+     */
+    static final class FakeBackend implements EmbeddingBackend {
+        final int dimension;
+        volatile CountDownLatch entered = new CountDownLatch(1);
+        volatile CountDownLatch gate;
+        volatile boolean closed;
+        volatile int closeCount;
+
+        FakeBackend(int dimension) {
+            this.dimension = dimension;
+        }
+
+        @Override
+        public String getName() {
+            return "fake";
+        }
+
+        @Override
+        public List<float[]> embed(List<Encoding> encodings) throws Exception {
+            entered.countDown();
+            CountDownLatch current = gate;
+            if (current != null && !current.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("推理闸门超时");
+            }
+            List<float[]> outputs = new ArrayList<>(encodings.size());
+            for (int i = 0; i < encodings.size(); i++) {
+                outputs.add(new float[dimension]);
+            }
+            return outputs;
+        }
+
+        @Override
+        public Map<String, Object> getStats() {
+            return Map.of();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            closeCount++;
+        }
+    }
+}
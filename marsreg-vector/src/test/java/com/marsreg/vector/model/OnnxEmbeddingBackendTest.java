@@ -0,0 +1,74 @@
+package com.marsreg.vector.model;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OnnxEmbeddingBackendTest {
+
+    @Test
+    void packPadsToLongestEncodingWithZeroMask() {
+        List<Encoding> encodings = List.of(
+            encoding(new long[]{101, 7, 8, 102}, new long[]{0, 0, 1, 1}),
+            encoding(new long[]{101, 102}, new long[]{0, 0}));
+
+        OnnxEmbeddingBackend.Inputs inputs = OnnxEmbeddingBackend.Inputs.pack(encodings, true);
+
+        // 行优先的 [2, 4] 输入，第二行从第3个位置开始是填充
+        assertArrayEquals(new long[]{2, 4}, inputs.shape());
+        assertArrayEquals(new long[]{101, 7, 8, 102, 101, 102, 0, 0}, inputs.ids);
+        assertArrayEquals(new long[]{1, 1, 1, 1, 1, 1, 0, 0}, inputs.mask);
+        assertArrayEquals(new long[]{0, 0, 1, 1, 0, 0, 0, 0}, inputs.types);
+    }
+
+    @Test
+    void packOmitsTokenTypesWhenModelDoesNotDeclareThem() {
+        OnnxEmbeddingBackend.Inputs inputs = OnnxEmbeddingBackend.Inputs.pack(
+            List.of(encoding(new long[]{101, 102}, new long[]{0, 0})), false);
+
+        assertNull(inputs.types);
+        assertArrayEquals(new long[]{1, 2}, inputs.shape());
+    }
+
+    @Test
+    void meanPoolIgnoresPaddedTokens() {
+        float[] tokens = {
+            1f, 2f, 3f, 4f, 100f, 100f,
+            2f, 0f, 100f, 100f, 100f, 100f
+        };
+        long[] mask = {1, 1, 0, 1, 0, 0};
+
+        List<float[]> pooled = OnnxEmbeddingBackend.meanPool(tokens, 2, 3, 2, mask);
+
+        // 每行按有效 token 数取平均，不受填充长度影响
+        assertEquals(2, pooled.size());
+        assertArrayEquals(new float[]{2f, 3f}, pooled.get(0), 1e-6f);
+        assertArrayEquals(new float[]{2f, 0f}, pooled.get(1), 1e-6f);
+    }
+
+    @Test
+    void meanPoolOfFullyMaskedRowIsZero() {
+        float[] tokens = {5f, 5f};
+        long[] mask = {0};
+
+        assertArrayEquals(new float[]{0f, 0f}, OnnxEmbeddingBackend.meanPool(tokens, 1, 1, 2, mask).get(0), 1e-6f);
+    }
+
+    private static Encoding encoding(long[] ids, long[] typeIds) {
+        Encoding encoding = mock(Encoding.class);
+        long[] attentionMask = new long[ids.length];
+        Arrays.fill(attentionMask, 1);
+        when(encoding.getIds()).thenReturn(ids);
+        when(encoding.getTypeIds()).thenReturn(typeIds);
+        when(encoding.getAttentionMask()).thenReturn(attentionMask);
+        return encoding;
+    }
+}
@@ -0,0 +1,96 @@
+package com.marsreg.vector.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PredictorPoolTest {
+
+    private static final class FakePredictor implements AutoCloseable {
+        final AtomicInteger closed;
+
+        FakePredictor(AtomicInteger closed) {
+            this.closed = closed;
+        }
+
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+        }
+    }
+
+    @Test
+    void testPoolNeverExceedsMaxSize() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        PredictorPool<FakePredictor> pool = new PredictorPool<>(() -> {
+            created.incrementAndGet();
+            return new FakePredictor(closed);
+        }, 3, 10_000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(executor.submit(() -> {
+                FakePredictor predictor = pool.borrow();
+                peak.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inUse.decrementAndGet();
+                    pool.release(predictor);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertTrue(created.get() <= 3);
+        assertTrue(peak.get() <= 3);
+        assertEquals(200L, pool.getStats().get("borrowCount"));
+        assertTrue((Long) pool.getStats().get("waitCount") > 0);
+
+        pool.close();
+        assertEquals(created.get(), closed.get());
+        assertThrows(IllegalStateException.class, pool::borrow);
+    }
+
+    @Test
+    void testBorrowTimesOut() {
+        PredictorPool<FakePredictor> pool = new PredictorPool<>(() -> new FakePredictor(new AtomicInteger()), 1, 50);
+        FakePredictor predictor = pool.borrow();
+        assertThrows(IllegalStateException.class, pool::borrow);
+        assertEquals(1L, pool.getStats().get("timeoutCount"));
+        pool.release(predictor);
+        assertSame(predictor, pool.borrow());
+    }
+
+    @Test
+    void testInvalidateFreesSlotAndReleaseAfterCloseClosesPredictor() {
+        AtomicInteger closed = new AtomicInteger();
+        PredictorPool<FakePredictor> pool = new PredictorPool<>(() -> new FakePredictor(closed), 1, 1_000);
+        FakePredictor broken = pool.borrow();
+        pool.invalidate(broken);
+        assertEquals(1, closed.get());
+
+        FakePredictor replacement = pool.borrow();
+        assertNotSame(broken, replacement);
+        pool.close();
+        pool.release(replacement);
+        assertEquals(2, closed.get());
+    }
+}
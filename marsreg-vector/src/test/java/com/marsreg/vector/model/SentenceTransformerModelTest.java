@@ -0,0 +1,120 @@
+package com.marsreg.vector.model;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.exception.VectorizationException;
+import com.marsreg.vector.model.ModelVersionTest.FakeBackend;
+import com.marsreg.vector.scheduler.EmbeddingScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SentenceTransformerModelTest {
+
+    private static final int DIMENSION = 3;
+
+    private EmbeddingScheduler scheduler;
+    private SentenceTransformerModel model;
+    // 按模型路径准备的推理后端，加载时按路径取用
+    private final Map<String, FakeBackend> backends = new ConcurrentHashMap<>();
+    private volatile CountDownLatch loadGate;
+
+    @BeforeEach
+    void setUp() {
+        VectorizationConfig.Model config = new VectorizationConfig.Model();
+        config.setDimension(DIMENSION);
+        config.setPath("/models/initial");
+        config.getMicroBatch().setEnabled(false);
+        scheduler = new EmbeddingScheduler(new VectorizationConfig.Scheduler());
+        model = new SentenceTransformerModel(config, scheduler);
+        model.setVersionLoader((id, path, modelConfig) -> {
+            CountDownLatch gate = loadGate;
+            if (gate != null) {
+                gate.await(10, TimeUnit.SECONDS);
+            }
+            return ModelVersionTest.version(id, backends.computeIfAbsent(path, key -> new FakeBackend(DIMENSION)));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        model.destroy();
+        scheduler.close();
+    }
+
+    @Test
+    void testSwapDrainsPreviousVersion() throws Exception {
+        assertEquals(DIMENSION, model.encode(List.of("初始版本")).get(0).length);
+        FakeBackend initial = backends.get("/models/initial");
+
+        // 旧版本上有一个进行中的请求
+        initial.entered = new CountDownLatch(1);
+        initial.gate = new CountDownLatch(1);
+        CompletableFuture<List<float[]>> inFlight = CompletableFuture.supplyAsync(() -> model.encode(List.of("进行中")));
+        assertTrue(initial.entered.await(5, TimeUnit.SECONDS));
+
+        model.update("/models/next");
+        awaitState(SentenceTransformerModel.SwapState.DRAINING);
+        assertEquals("v2", model.getSwapStatus().get("activeVersion"));
+        assertEquals("v1", model.getSwapStatus().get("previousVersion"));
+        assertFalse(initial.closed);
+
+        // 请求结束后旧版本关闭，切换完成
+        initial.gate.countDown();
+        assertEquals(DIMENSION, inFlight.get(5, TimeUnit.SECONDS).get(0).length);
+        awaitState(SentenceTransformerModel.SwapState.COMPLETED);
+        assertTrue(initial.closed);
+        assertEquals("/models/next", model.getModelPath());
+    }
+
+    @Test
+    void testSwapRejectsDimensionMismatch() throws Exception {
+        model.encode(List.of("初始版本"));
+        FakeBackend wrongDimension = new FakeBackend(DIMENSION + 1);
+        backends.put("/models/wrong", wrongDimension);
+
+        model.update("/models/wrong");
+        awaitState(SentenceTransformerModel.SwapState.FAILED);
+
+        // 预热输出维度不一致时保留旧版本，新版本被关闭
+        assertEquals("v1", model.getSwapStatus().get("activeVersion"));
+        assertTrue(wrongDimension.closed);
+        assertFalse(backends.get("/models/initial").closed);
+        assertTrue(((String) model.getSwapStatus().get("message")).contains("维度"));
+    }
+
+    @Test
+    void testConcurrentUpdateIsRejected() throws Exception {
+        model.encode(List.of("初始版本"));
+        loadGate = new CountDownLatch(1);
+        model.update("/models/next");
+        assertEquals(SentenceTransformerModel.SwapState.LOADING.name(), model.getSwapStatus().get("state"));
+
+        assertThrows(VectorizationException.class, () -> model.update("/models/other"));
+
+        loadGate.countDown();
+        awaitState(SentenceTransformerModel.SwapState.COMPLETED);
+        // 上一次切换结束后可以再次切换
+        model.update("/models/other");
+        awaitState(SentenceTransformerModel.SwapState.COMPLETED);
+        assertEquals("/models/other", model.getModelPath());
+    }
+
+    private void awaitState(SentenceTransformerModel.SwapState state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!state.name().equals(model.getSwapStatus().get("state"))) {
+            if (System.nanoTime() > deadline) {
+                fail("模型切换未进入" + state + ": " + model.getSwapStatus());
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.marsreg.vector.projection;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProjectionRegistryTest {
+
+    private static final int DIMENSION = 32;
+    private static final int PROJECTED = 8;
+
+    private Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("projection-registry-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void testBindEmptyStoreRecordsVersion() throws IOException {
+        ProjectionRegistry registry = registry(root.resolve("a"), true, VectorProjection.RANDOM);
+        VectorProjection projection = registry.getActive();
+
+        registry.bindStore(projection, List::of);
+
+        assertEquals(projection.getVersion(), registry.getStatus().get("storedVersion"));
+        // 已记录版本后不再抽样检查存储
+        registry.bindStore(projection, () -> fail("不应再次抽样"));
+    }
+
+    @Test
+    void testBindRejectsStoreWithUnprojectedVectors() {
+        ProjectionRegistry registry = registry(root.resolve("a"), true, VectorProjection.RANDOM);
+        VectorProjection projection = registry.getActive();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> registry.bindStore(projection, () -> List.of(new float[DIMENSION])));
+        assertTrue(e.getMessage().contains(String.valueOf(DIMENSION)));
+        // 校验失败时不记录版本，换到新集合后仍可绑定
+        assertNull(registry.getStatus().get("storedVersion"));
+        registry.bindStore(projection, () -> List.of(new float[PROJECTED]));
+        assertEquals(projection.getVersion(), registry.getStatus().get("storedVersion"));
+    }
+
+    @Test
+    void testBindRejectsDifferentStoredVersion() {
+        ProjectionRegistry registry = registry(root.resolve("a"), true, VectorProjection.RANDOM);
+        registry.bindStore(registry.getActive(), List::of);
+
+        VectorProjection other = VectorProjection.random(DIMENSION, PROJECTED, 7L);
+        assertThrows(IllegalStateException.class, () -> registry.bindStore(other, List::of));
+    }
+
+    @Test
+    void testEnabledPcaWithoutTrainedProjectionFails() {
+        assertThrows(IllegalStateException.class, () -> registry(root.resolve("b"), true, VectorProjection.PCA));
+    }
+
+    @Test
+    void testTrainForNewCollectionWritesItsDirectory() {
+        Path source = root.resolve("a");
+        Path target = root.resolve("b");
+        ProjectionRegistry trainer = registry(source, false, VectorProjection.PCA);
+
+        Map<String, Object> report = trainer.train(VectorProjection.PCA, PROJECTED, samples(new Random(1), 300), target.toString());
+
+        // 新集合目录下有训练好的版本，启用PCA投影可以直接启动
+        assertEquals(target.toString(), report.get("path"));
+        assertEquals(Boolean.FALSE, report.get("requiresRebuild"));
+        assertNull(trainer.getActive());
+        ProjectionRegistry next = registry(target, true, VectorProjection.PCA);
+        assertEquals(report.get("version"), next.getActive().getVersion());
+        assertEquals(PROJECTED, next.getActive().getOutputDimension());
+    }
+
+    @Test
+    void testTrainWithoutTargetUsesOwnDirectory() {
+        ProjectionRegistry registry = registry(root.resolve("a"), false, VectorProjection.PCA);
+
+        Map<String, Object> report = registry.train(VectorProjection.PCA, PROJECTED, samples(new Random(2), 300));
+
+        assertEquals(report.get("version"), registry.getActive().getVersion());
+        assertEquals(report.get("version"), registry(root.resolve("a"), true, VectorProjection.PCA).getActive().getVersion());
+    }
+
+    private static ProjectionRegistry registry(Path directory, boolean enabled, String method) {
+        VectorizationConfig config = new VectorizationConfig();
+        config.getModel().setDimension(DIMENSION);
+        VectorizationConfig.Storage.Projection projection = config.getStorage().getProjection();
+        projection.setEnabled(enabled);
+        projection.setMethod(method);
+        projection.setDimension(PROJECTED);
+        projection.setPath(directory.toString());
+        projection.setEvalQueries(20);
+        ProjectionRegistry registry = new ProjectionRegistry(config);
+        registry.init();
+        return registry;
+    }
+
+    private static List<float[]> samples(Random random, int count) {
+        List<float[]> samples = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            samples.add(vector);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,140 @@
+package com.marsreg.vector.projection;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.marsreg.vector.TestVectors.randomVector;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorProjectionTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    void testEigenDecompositionOfKnownMatrix() {
+        SymmetricEigen eigen = SymmetricEigen.decompose(new double[][]{
+            {2, 1, 0},
+            {1, 2, 0},
+            {0, 0, 5}
+        });
+
+        assertArrayEquals(new double[]{5, 3, 1}, eigen.getValues(), 1e-9);
+        double[] top = eigen.getVectors()[0];
+        assertEquals(1.0, Math.abs(top[2]), 1e-9);
+        double[] second = eigen.getVectors()[1];
+        assertEquals(Math.abs(second[0]), Math.abs(second[1]), 1e-9);
+        assertEquals(Math.signum(second[0]), Math.signum(second[1]));
+    }
+
+    @Test
+    void testPcaRecoversLowRankData() {
+        // 样本位于过原点的 8 维子空间内，投影到 8 维应保留几乎全部方差且余弦近邻不变
+        List<float[]> samples = lowRankVectors(new Random(1), 600, 8, false);
+        VectorProjection projection = VectorProjection.pca(samples, 8);
+
+        assertEquals(VectorProjection.PCA, projection.getMethod());
+        assertEquals(8, projection.getOutputDimension());
+        assertTrue(projection.getExplainedVariance() > 0.999, "保留方差: " + projection.getExplainedVariance());
+        double recall = projection.measureRecall(samples, 50, 10);
+        assertTrue(recall > 0.95, "recall: " + recall);
+    }
+
+    @Test
+    void testPcaPreservesDistancesWithinSubspace() {
+        // 欧氏距离不受中心化影响，带偏移的样本在子空间内的距离应保持不变
+        List<float[]> samples = lowRankVectors(new Random(2), 300, 4, true);
+        VectorProjection projection = VectorProjection.pca(samples, 4);
+
+        float[] a = samples.get(0);
+        float[] b = samples.get(1);
+        assertEquals(distance(a, b), distance(projection.project(a), projection.project(b)), 1e-3);
+    }
+
+    @Test
+    void testRandomProjectionIsDeterministicAndOrthonormal() {
+        VectorProjection first = VectorProjection.random(DIMENSION, 16, 42L);
+        VectorProjection second = VectorProjection.random(DIMENSION, 16, 42L);
+        VectorProjection other = VectorProjection.random(DIMENSION, 16, 43L);
+
+        assertEquals(first.getVersion(), second.getVersion());
+        assertNotEquals(first.getVersion(), other.getVersion());
+        assertTrue(Double.isNaN(first.getExplainedVariance()));
+
+        // 投影基向量得到矩阵的列，各行正交归一时 W W^T = I
+        float[][] columns = new float[DIMENSION][];
+        for (int c = 0; c < DIMENSION; c++) {
+            float[] basis = new float[DIMENSION];
+            basis[c] = 1f;
+            columns[c] = first.project(basis);
+        }
+        for (int i = 0; i < 16; i++) {
+            for (int j = 0; j < 16; j++) {
+                double dot = 0;
+                for (float[] column : columns) {
+                    dot += column[i] * column[j];
+                }
+                assertEquals(i == j ? 1.0 : 0.0, dot, 1e-5);
+            }
+        }
+    }
+
+    @Test
+    void testWriteAndReadKeepVersion() throws Exception {
+        VectorProjection projection = VectorProjection.pca(lowRankVectors(new Random(3), 200, 6, true), 6);
+        Path directory = Files.createTempDirectory("projection-test");
+        Path file = directory.resolve(projection.getVersion() + ".projection");
+        try {
+            projection.write(file);
+            VectorProjection loaded = VectorProjection.read(file);
+
+            assertEquals(projection.getVersion(), loaded.getVersion());
+            assertEquals(projection.getExplainedVariance(), loaded.getExplainedVariance());
+            float[] vector = randomVector(new Random(4), DIMENSION);
+            assertArrayEquals(projection.project(vector), loaded.project(vector));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void testRejectsInvalidDimensions() {
+        assertThrows(IllegalArgumentException.class, () -> VectorProjection.random(DIMENSION, DIMENSION + 1, 1L));
+        VectorProjection projection = VectorProjection.random(DIMENSION, 8, 1L);
+        assertThrows(IllegalArgumentException.class, () -> projection.project(new float[DIMENSION - 1]));
+    }
+
+    private static List<float[]> lowRankVectors(Random random, int count, int rank, boolean shifted) {
+        float[][] basis = new float[rank][];
+        for (int r = 0; r < rank; r++) {
+            basis[r] = randomVector(random, DIMENSION);
+        }
+        float[] offset = shifted ? randomVector(random, DIMENSION) : new float[DIMENSION];
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = offset.clone();
+            for (float[] direction : basis) {
+                float weight = (float) random.nextGaussian();
+                for (int d = 0; d < DIMENSION; d++) {
+                    vector[d] += weight * direction[d];
+                }
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    private static double distance(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            double diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+}
@@ -0,0 +1,89 @@
+package com.marsreg.vector.quantization;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.marsreg.vector.TestVectors.exactTopK;
+import static com.marsreg.vector.TestVectors.randomUnitVectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorQuantizerTest {
+
+    private static final int DIMENSION = 32;
+    private static final int COUNT = 2000;
+
+    @Test
+    void testScalarQuantizerPreservesRanking() {
+        assertRecall(new ScalarQuantizer(DIMENSION), 0.9);
+    }
+
+    @Test
+    void testProductQuantizerWithRerankWindow() {
+        assertRecall(new ProductQuantizer(DIMENSION, 8, 10, 7L), 0.9);
+    }
+
+    @Test
+    void testRemovedCodesAreNotReturned() {
+        Random random = new Random(3);
+        List<float[]> vectors = randomUnitVectors(random, 100, DIMENSION);
+        ScalarQuantizer quantizer = new ScalarQuantizer(DIMENSION);
+        quantizer.train(vectors);
+        QuantizedCodeStore codes = new QuantizedCodeStore(quantizer);
+        for (int i = 0; i < vectors.size(); i++) {
+            codes.put("v" + i, vectors.get(i));
+        }
+        codes.remove("v5");
+        codes.put("v100", vectors.get(6));
+
+        assertEquals(100, codes.size());
+        assertFalse(codes.topCandidates(vectors.get(5), 100).contains("v5"));
+        assertTrue(codes.topCandidates(vectors.get(6), 2).contains("v100"));
+    }
+
+    @Test
+    void testFilterIsAppliedDuringScan() {
+        Random random = new Random(4);
+        List<float[]> vectors = randomUnitVectors(random, 200, DIMENSION);
+        ScalarQuantizer quantizer = new ScalarQuantizer(DIMENSION);
+        quantizer.train(vectors);
+        QuantizedCodeStore codes = new QuantizedCodeStore(quantizer);
+        for (int i = 0; i < vectors.size(); i++) {
+            codes.put("v" + i, vectors.get(i));
+        }
+
+        // 候选数不因过滤而减少，且全部满足条件
+        List<String> candidates = codes.topCandidates(vectors.get(1), 10, id -> Integer.parseInt(id.substring(1)) % 2 == 0);
+        assertEquals(10, candidates.size());
+        assertFalse(candidates.contains("v1"));
+        candidates.forEach(id -> assertEquals(0, Integer.parseInt(id.substring(1)) % 2));
+    }
+
+    /**
+     * 量化域取 k*4 个候选，其中应包含精确 top-k 的大部分
+     */
+    private void assertRecall(VectorQuantizer quantizer, double expected) {
+        Random random = new Random(1);
+        List<float[]> vectors = randomUnitVectors(random, COUNT, DIMENSION);
+        quantizer.train(vectors);
+        QuantizedCodeStore codes = new QuantizedCodeStore(quantizer);
+        for (int i = 0; i < vectors.size(); i++) {
+            codes.put("v" + i, vectors.get(i));
+        }
+
+        int k = 10;
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = vectors.get(random.nextInt(COUNT));
+            Set<String> candidates = new HashSet<>(codes.topCandidates(query, k * 4));
+            for (String id : exactTopK(vectors, query, k)) {
+                if (candidates.contains(id)) {
+                    hits++;
+                }
+            }
+        }
+        double recall = (double) hits / (queries * k);
+        assertTrue(recall >= expected, quantizer.getName() + " recall=" + recall);
+    }
+}
@@ -0,0 +1,153 @@
+package com.marsreg.vector.scheduler;
+
+import com.marsreg.vector.exception.VectorizationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddingSchedulerTest {
+
+    @Test
+    void testInteractiveOvertakesBackfillBacklog() throws Exception {
+        try (EmbeddingScheduler scheduler = new EmbeddingScheduler(1, specs(1024, false, 0))) {
+            CountDownLatch gate = new CountDownLatch(1);
+            List<EmbeddingLane> order = new CopyOnWriteArrayList<>();
+            CompletableFuture<Object> blocker = scheduler.submit(EmbeddingLane.BACKFILL, 1, () -> await(gate));
+            List<CompletableFuture<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(scheduler.submit(EmbeddingLane.BACKFILL, 1, () -> order.add(EmbeddingLane.current())));
+            }
+            for (int i = 0; i < 5; i++) {
+                futures.add(scheduler.submit(EmbeddingLane.INTERACTIVE, 1, () -> order.add(EmbeddingLane.current())));
+            }
+            gate.countDown();
+            blocker.join();
+            futures.forEach(CompletableFuture::join);
+
+            assertEquals(25, order.size());
+            assertEquals(List.of(EmbeddingLane.INTERACTIVE, EmbeddingLane.INTERACTIVE, EmbeddingLane.INTERACTIVE,
+                EmbeddingLane.INTERACTIVE, EmbeddingLane.INTERACTIVE), order.subList(0, 5));
+        }
+    }
+
+    @Test
+    void testBackloggedLanesShareByWeight() throws Exception {
+        try (EmbeddingScheduler scheduler = new EmbeddingScheduler(1, specs(1024, false, 0))) {
+            CountDownLatch gate = new CountDownLatch(1);
+            List<EmbeddingLane> order = new CopyOnWriteArrayList<>();
+            CompletableFuture<Object> blocker = scheduler.submit(EmbeddingLane.INTERACTIVE, 1, () -> await(gate));
+            List<CompletableFuture<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                futures.add(scheduler.submit(EmbeddingLane.BACKFILL, 4, () -> order.add(EmbeddingLane.current())));
+                futures.add(scheduler.submit(EmbeddingLane.INGEST, 4, () -> order.add(EmbeddingLane.current())));
+            }
+            gate.countDown();
+            blocker.join();
+            futures.forEach(CompletableFuture::join);
+
+            // 入库权重是批量重建的2倍，两者都积压时约按2:1交替
+            long ingest = order.subList(0, 30).stream().filter(lane -> lane == EmbeddingLane.INGEST).count();
+            assertTrue(ingest >= 19 && ingest <= 21, "ingest=" + ingest);
+        }
+    }
+
+    @Test
+    void testRejectWhenQueueFull() throws Exception {
+        try (EmbeddingScheduler scheduler = new EmbeddingScheduler(1, specs(2, true, 0))) {
+            CountDownLatch gate = new CountDownLatch(1);
+            CompletableFuture<Object> blocker = scheduler.submit(EmbeddingLane.INTERACTIVE, 1, () -> await(gate));
+            waitUntilQueued(scheduler, EmbeddingLane.INTERACTIVE, 0);
+            scheduler.submit(EmbeddingLane.INTERACTIVE, 1, () -> 1);
+            scheduler.submit(EmbeddingLane.INTERACTIVE, 1, () -> 2);
+            assertThrows(VectorizationException.class, () -> scheduler.submit(EmbeddingLane.INTERACTIVE, 1, () -> 3));
+            // 其他通道的队列不受影响
+            CompletableFuture<Integer> ingest = scheduler.submit(EmbeddingLane.INGEST, 1, () -> 4);
+            gate.countDown();
+            blocker.join();
+            assertEquals(Integer.valueOf(4), ingest.join());
+            assertEquals(1L, lane(scheduler, EmbeddingLane.INTERACTIVE).get("rejected"));
+        }
+    }
+
+    @Test
+    void testBlockingSubmitWaitsForSpaceThenTimesOut() throws Exception {
+        try (EmbeddingScheduler scheduler = new EmbeddingScheduler(1, specs(1, false, 200))) {
+            CountDownLatch gate = new CountDownLatch(1);
+            CompletableFuture<Object> blocker = scheduler.submit(EmbeddingLane.INGEST, 1, () -> await(gate));
+            waitUntilQueued(scheduler, EmbeddingLane.INGEST, 0);
+            scheduler.submit(EmbeddingLane.INGEST, 1, () -> 1);
+
+            long start = System.nanoTime();
+            assertThrows(VectorizationException.class, () -> scheduler.submit(EmbeddingLane.INGEST, 1, () -> 2));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+
+            // 队列腾出空间后阻塞的提交继续
+            CompletableFuture<CompletableFuture<Integer>> pending = CompletableFuture.supplyAsync(
+                () -> scheduler.submit(EmbeddingLane.INGEST, 1, () -> 3));
+            gate.countDown();
+            blocker.join();
+            assertEquals(Integer.valueOf(3), pending.get(5, TimeUnit.SECONDS).join());
+        }
+    }
+
+    @Test
+    void testNestedExecuteRunsInlineOnWorker() {
+        try (EmbeddingScheduler scheduler = new EmbeddingScheduler(1, specs(16, true, 0))) {
+            EmbeddingLane nested = EmbeddingLane.BACKFILL.call(() -> scheduler.execute(EmbeddingLane.current(), 1,
+                () -> scheduler.execute(EmbeddingLane.INTERACTIVE, 1, EmbeddingLane::current)));
+            assertEquals(EmbeddingLane.BACKFILL, nested);
+            assertEquals(EmbeddingLane.INTERACTIVE, EmbeddingLane.current());
+        }
+    }
+
+    @Test
+    void testExecutePropagatesTaskFailure() {
+        try (EmbeddingScheduler scheduler = new EmbeddingScheduler(2, specs(16, true, 0))) {
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> scheduler.execute(EmbeddingLane.INGEST, 1, () -> {
+                    throw new IllegalStateException("boom");
+                }));
+            assertEquals("boom", e.getMessage());
+            assertEquals(1L, lane(scheduler, EmbeddingLane.INGEST).get("failed"));
+        }
+    }
+
+    private static Map<EmbeddingLane, EmbeddingScheduler.LaneSpec> specs(int capacity, boolean reject, long timeoutMillis) {
+        Map<EmbeddingLane, EmbeddingScheduler.LaneSpec> specs = new EnumMap<>(EmbeddingLane.class);
+        specs.put(EmbeddingLane.INTERACTIVE, new EmbeddingScheduler.LaneSpec(8, capacity, reject, timeoutMillis));
+        specs.put(EmbeddingLane.INGEST, new EmbeddingScheduler.LaneSpec(2, capacity, reject, timeoutMillis));
+        specs.put(EmbeddingLane.BACKFILL, new EmbeddingScheduler.LaneSpec(1, capacity, reject, timeoutMillis));
+        return specs;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> lane(EmbeddingScheduler scheduler, EmbeddingLane lane) {
+        return (Map<String, Object>) scheduler.getStats().get(lane.name().toLowerCase());
+    }
+
+    private static void waitUntilQueued(EmbeddingScheduler scheduler, EmbeddingLane lane, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Integer.valueOf(queued).equals(lane(scheduler, lane).get("queued"))) {
+            assertTrue(System.nanoTime() < deadline, "等待队列超时");
+            Thread.sleep(5);
+        }
+    }
+
+    private static Object await(CountDownLatch gate) {
+        try {
+            gate.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,160 @@
+package com.marsreg.vector.service.impl;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.marsreg.vector.TestVectors.randomVector;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IvfVectorStorageServiceTest {
+
+    private static final int DIMENSION = 32;
+    private static final int NLIST = 8;
+    private static final int TRAINING_SAMPLES = 2000;
+
+    private IvfVectorStorageService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.destroy();
+        }
+    }
+
+    @Test
+    void testWritesDuringTrainingAreReplayed() throws Exception {
+        service = service(8);
+        Random random = new Random(1);
+        Map<String, float[]> initial = new LinkedHashMap<>();
+        for (int i = 0; i < TRAINING_SAMPLES; i++) {
+            initial.put("v" + i, randomVector(random, DIMENSION));
+        }
+
+        // 达到训练样本数后后台开始训练，训练期间持续写入和删除
+        service.storeVectors(initial);
+        List<String> written = new ArrayList<>();
+        int deleted = 0;
+        int duringTraining = 0;
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (trainingCount() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待IVF训练超时");
+            if (Boolean.TRUE.equals(service.getStats().get("training"))) {
+                duringTraining++;
+            }
+            String id = "w" + written.size();
+            service.storeVector(id, randomVector(random, DIMENSION));
+            written.add(id);
+            if (deleted < 200) {
+                service.deleteVector("v" + deleted++);
+            }
+        }
+
+        assertTrue(duringTraining > 0, "训练期间没有发生写入");
+        assertEquals(NLIST, service.getStats().get("nlist"));
+        assertEquals(TRAINING_SAMPLES - deleted + written.size(), service.getStats().get("size"));
+        for (String id : written) {
+            assertNotNull(service.getVector(id), "训练期间写入的向量丢失: " + id);
+        }
+        for (int i = 0; i < deleted; i++) {
+            assertNull(service.getVector("v" + i), "训练期间删除的向量仍然存在: v" + i);
+        }
+    }
+
+    @Test
+    void testImbalancedListsTriggerRetrain() throws Exception {
+        service = service(8);
+        storeAndTrain(new Random(2));
+
+        // 倒排表均衡时不重新训练
+        service.retrainIfImbalanced();
+        assertEquals(Boolean.FALSE, service.getStats().get("training"));
+
+        // 大量写入集中在同一处，倒排表严重不均衡
+        Random random = new Random(3);
+        float[] center = randomVector(random, DIMENSION);
+        for (int i = 0; i < 4 * TRAINING_SAMPLES; i++) {
+            float[] vector = randomVector(random, DIMENSION);
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = center[d] * 3 + 0.3f * vector[d];
+            }
+            service.storeVector("hot" + i, vector);
+        }
+        double before = (Double) service.getStats().get("imbalanceFactor");
+        assertTrue(before > 2.0, "不均衡系数: " + before);
+
+        service.retrainIfImbalanced();
+        awaitTrainingCount(2);
+        // 重新训练后的索引保留全部向量
+        assertEquals(5 * TRAINING_SAMPLES, service.getStats().get("size"));
+        assertEquals(NLIST, service.getStats().get("nlist"));
+    }
+
+    @Test
+    void testFilteredSearchScalesNprobeBySelectivity() throws Exception {
+        service = service(1);
+        Random random = new Random(4);
+        Map<String, List<String>> idsByDocument = new HashMap<>();
+        Map<String, Map<String, float[]>> vectorsByDocument = new LinkedHashMap<>();
+        for (int i = 0; i < TRAINING_SAMPLES; i++) {
+            String documentId = "d" + (i % 10);
+            String id = documentId + "_" + i;
+            vectorsByDocument.computeIfAbsent(documentId, key -> new LinkedHashMap<>()).put(id, randomVector(random, DIMENSION));
+            idsByDocument.computeIfAbsent(documentId, key -> new ArrayList<>()).add(id);
+        }
+        for (Map.Entry<String, Map<String, float[]>> entry : vectorsByDocument.entrySet()) {
+            service.storeDocumentVectorsAsync(entry.getKey(), entry.getValue(), VectorMetadata.ofDocument(entry.getKey())).join();
+        }
+        awaitTrainingCount(1);
+
+        // 每个文档占十分之一，nprobe=1 按选择率放大为全部倒排表，过滤搜索与精确扫描一致
+        VectorFilter filter = VectorFilter.builder().documentIds(Set.of("d3")).build();
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random, DIMENSION);
+            Map<String, Float> expected = service.searchSimilarInRange(query, idsByDocument.get("d3"), 10, -1f);
+            assertEquals(10, expected.size());
+            assertEquals(expected.keySet(), service.searchSimilarFiltered(query, filter, 10, -1f).keySet());
+        }
+    }
+
+    private void storeAndTrain(Random random) throws InterruptedException {
+        Map<String, float[]> vectors = new LinkedHashMap<>();
+        for (int i = 0; i < TRAINING_SAMPLES; i++) {
+            vectors.put("v" + i, randomVector(random, DIMENSION));
+        }
+        service.storeVectors(vectors);
+        awaitTrainingCount(1);
+    }
+
+    private static IvfVectorStorageService service(int nprobe) {
+        VectorizationConfig config = new VectorizationConfig();
+        config.getModel().setDimension(DIMENSION);
+        VectorizationConfig.Storage.Ivf ivf = config.getStorage().getIvf();
+        ivf.setNlist(NLIST);
+        ivf.setNprobe(nprobe);
+        ivf.setTrainingSampleSize(TRAINING_SAMPLES);
+        ivf.setKmeansIterations(25);
+        ivf.setKmeansBatchSize(512);
+        ivf.setRetrainCheckInterval(3600);
+        config.getStorage().getFilter().setBruteForceThreshold(50);
+        IvfVectorStorageService service = new IvfVectorStorageService(config);
+        service.init();
+        return service;
+    }
+
+    private long trainingCount() {
+        return (Long) service.getStats().get("trainingCount");
+    }
+
+    private void awaitTrainingCount(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (trainingCount() < expected) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待IVF训练超时");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.marsreg.vector.service.impl;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.model.ShardedSearchResult;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.service.VectorStorageService;
+import com.marsreg.vector.similarity.TopKCollector;
+import com.marsreg.vector.similarity.VectorMath;
+import com.marsreg.vector.storage.VectorSampler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import static com.marsreg.vector.TestVectors.randomVector;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedVectorStorageServiceTest {
+
+    private static final int DIMENSION = 8;
+
+    private ShardedVectorStorageService sharded;
+
+    @AfterEach
+    void tearDown() {
+        if (sharded != null) {
+            sharded.destroy();
+        }
+    }
+
+    @Test
+    void testRoutesByIdAndMergesTopK() {
+        List<FlatStore> stores = List.of(new FlatStore(0), new FlatStore(0), new FlatStore(0), new FlatStore(0));
+        sharded = new ShardedVectorStorageService(new ArrayList<>(stores), sharding(true));
+        FlatStore reference = new FlatStore(0);
+
+        Random random = new Random(42);
+        Map<String, float[]> vectors = new LinkedHashMap<>();
+        for (int i = 0; i < 400; i++) {
+            vectors.put("chunk-" + i, randomVector(random, DIMENSION));
+        }
+        sharded.storeVectors(vectors);
+        reference.storeVectors(vectors);
+
+        // 每个ID只落在一个分片，各分片都有数据
+        assertEquals(400, stores.stream().mapToInt(store -> store.vectors.size()).sum());
+        stores.forEach(store -> assertTrue(store.vectors.size() > 50, "分片过于不均衡: " + store.vectors.size()));
+        assertArrayEquals(vectors.get("chunk-7"), sharded.getVector("chunk-7"));
+
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random, DIMENSION);
+            ShardedSearchResult result = sharded.searchSimilarScattered(query, 10, -1f);
+            assertFalse(result.isPartial());
+            assertEquals(4, result.getRespondedShards());
+            assertEquals(new ArrayList<>(reference.searchSimilar(query, 10, -1f).keySet()),
+                new ArrayList<>(result.getResults().keySet()));
+        }
+
+        List<String> range = List.of("chunk-1", "chunk-2", "chunk-3", "chunk-300");
+        assertEquals(reference.searchSimilarInRange(vectors.get("chunk-2"), range, 3, -1f),
+            sharded.searchSimilarInRange(vectors.get("chunk-2"), range, 3, -1f));
+
+        sharded.deleteVectors(List.of("chunk-7", "chunk-8"));
+        assertNull(sharded.getVector("chunk-7"));
+        assertEquals(398, stores.stream().mapToInt(store -> store.vectors.size()).sum());
+    }
+
+    @Test
+    void testSlowShardReturnsPartialResult() {
+        FlatStore fast = new FlatStore(0);
+        FlatStore slow = new FlatStore(2000);
+        sharded = new ShardedVectorStorageService(List.of(fast, slow), sharding(true));
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            sharded.storeVector("v" + i, randomVector(random, DIMENSION));
+        }
+
+        long start = System.currentTimeMillis();
+        ShardedSearchResult result = sharded.searchSimilarScattered(randomVector(random, DIMENSION), 5, -1f);
+        assertTrue(System.currentTimeMillis() - start < 1500, "没有在超时后返回");
+        assertTrue(result.isPartial());
+        assertEquals(List.of(1), result.getTimedOutShards());
+        assertEquals(1, result.getRespondedShards());
+        result.getResults().keySet().forEach(id -> assertTrue(fast.vectors.containsKey(id)));
+        assertEquals(1L, sharded.getStats().get("partialSearches"));
+    }
+
+    @Test
+    void testTimedOutShardSearchIsInterrupted() throws InterruptedException {
+        FlatStore slow = new FlatStore(10_000);
+        sharded = new ShardedVectorStorageService(List.of(new FlatStore(0), slow), sharding(true));
+        sharded.storeVector("a", randomVector(new Random(4), DIMENSION));
+
+        ShardedSearchResult result = sharded.searchSimilarScattered(randomVector(new Random(5), DIMENSION), 5, -1f);
+
+        // 超时后取消分片任务，执行慢分片搜索的线程被中断而不是继续占用搜索线程
+        assertEquals(List.of(1), result.getTimedOutShards());
+        assertTrue(slow.interrupted.await(1, TimeUnit.SECONDS), "超时分片的搜索线程没有被中断");
+    }
+
+    @Test
+    void testPartialResultsCanBeRejected() {
+        sharded = new ShardedVectorStorageService(List.of(new FlatStore(0), new FlatStore(2000)), sharding(false));
+        sharded.storeVector("a", randomVector(new Random(1), DIMENSION));
+        assertThrows(RuntimeException.class, () -> sharded.searchSimilar(randomVector(new Random(2), DIMENSION), 5, -1f));
+    }
+
+    @Test
+    void testUnsupportedOperationIsNotTreatedAsShardFailure() {
+        sharded = new ShardedVectorStorageService(List.of(new FlatStore(0), new FlatStore(0)), sharding(true));
+        assertThrows(UnsupportedOperationException.class,
+            () -> sharded.searchSimilarFiltered(randomVector(new Random(3), DIMENSION), null, 5, -1f));
+    }
+
+    @Test
+    void testDocumentSearchUsesPartitionKeyWhenShardsSupportIt() {
+        Random random = new Random(8);
+        Map<String, float[]> vectors = new LinkedHashMap<>();
+        for (int i = 0; i < 120; i++) {
+            vectors.put((i % 3 + 1) + "_" + i, randomVector(random, DIMENSION));
+        }
+        List<String> documentIds = vectors.keySet().stream().filter(id -> id.startsWith("2_")).toList();
+        FlatStore reference = new FlatStore(0);
+        reference.storeVectors(vectors);
+        float[] query = randomVector(random, DIMENSION);
+        Map<String, Float> expected = reference.searchSimilarInRange(query, documentIds, 5, -1f);
+
+        // 分片都按文档ID分区时扇出到全部分片，不加载分块ID
+        sharded = new ShardedVectorStorageService(List.of(new FlatStore(0, true), new FlatStore(0, true)), sharding(true));
+        sharded.storeVectors(vectors);
+        assertTrue(sharded.supportsDocumentPartition());
+        assertEquals(expected, sharded.searchSimilarInDocument("2", () -> fail("支持分区键时不应加载分块ID"), query, 5, -1f));
+        sharded.destroy();
+
+        // 分片需要ID范围时按分片分组，只加载一次分块ID
+        sharded = new ShardedVectorStorageService(List.of(new FlatStore(0), new FlatStore(0, true)), sharding(true));
+        sharded.storeVectors(vectors);
+        assertFalse(sharded.supportsDocumentPartition());
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals(expected, sharded.searchSimilarInDocument("2", () -> {
+            loads.incrementAndGet();
+            return documentIds;
+        }, query, 5, -1f));
+        assertEquals(1, loads.get());
+    }
+
+    private static VectorizationConfig.Storage.Sharding sharding(boolean allowPartial) {
+        VectorizationConfig.Storage.Sharding sharding = new VectorizationConfig.Storage.Sharding();
+        sharding.setSearchTimeoutMillis(200L);
+        sharding.setAllowPartialResults(allowPartial);
+        sharding.setSearchThreads(4);
+        return sharding;
+    }
+
+    /**
+     * 精确扫描的测试分片，可以为搜索加上固定延迟
+     */
+    private static final class FlatStore implements VectorStorageService {
+        private final Map<String, float[]> vectors = new ConcurrentHashMap<>();
+        private final long searchDelayMillis;
+        private final boolean partitioned;
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        FlatStore(long searchDelayMillis) {
+            this(searchDelayMillis, false);
+        }
+
+        /**
+         * @param partitioned 是否模拟按 文档ID_分块ID 中的文档ID分区
+         */
+        FlatStore(long searchDelayMillis, boolean partitioned) {
+            this.searchDelayMillis = searchDelayMillis;
+            this.partitioned = partitioned;
+        }
+
+        @Override
+        public void storeVector(String id, float[] vector) {
+            vectors.put(id, vector);
+        }
+
+        @Override
+        public void storeVectors(Map<String, float[]> vectors) {
+            this.vectors.putAll(vectors);
+        }
+
+        @Override
+        public float[] getVector(String id) {
+            return vectors.get(id);
+        }
+
+        @Override
+        public Map<String, float[]> getVectors(List<String> ids) {
+            Map<String, float[]> result = new HashMap<>();
+            ids.forEach(id -> Optional.ofNullable(vectors.get(id)).ifPresent(v -> result.put(id, v)));
+            return result;
+        }
+
+        @Override
+        public void deleteVector(String id) {
+            vectors.remove(id);
+        }
+
+        @Override
+        public void deleteVectors(List<String> ids) {
+            ids.forEach(vectors::remove);
+        }
+
+        @Override
+        public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore) {
+            return searchSimilarInRange(queryVector, new ArrayList<>(vectors.keySet()), limit, minScore);
+        }
+
+        @Override
+        public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit, float minScore) {
+            if (searchDelayMillis > 0) {
+                try {
+                    Thread.sleep(searchDelayMillis);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    Thread.currentThread().interrupt();
+                }
+            }
+            TopKCollector collector = new TopKCollector(limit, minScore);
+            for (String id : vectorIds) {
+                float[] vector = vectors.get(id);
+                if (vector != null) {
+                    collector.offer(id, VectorMath.cosine(queryVector, vector));
+                }
+            }
+            return collector.drainDescending();
+        }
+
+        @Override
+        public Map<String, Float> searchSimilarInDocument(String documentId, Supplier<List<String>> vectorIds,
+                                                          float[] queryVector, int limit, float minScore) {
+            if (!partitioned) {
+                return searchSimilarInRange(queryVector, vectorIds.get(), limit, minScore);
+            }
+            List<String> ids = vectors.keySet().stream().filter(id -> id.startsWith(documentId + "_")).toList();
+            return searchSimilarInRange(queryVector, ids, limit, minScore);
+        }
+
+        @Override
+        public boolean supportsDocumentPartition() {
+            return partitioned;
+        }
+
+        @Override
+        public Map<String, Float> searchSimilarFiltered(float[] queryVector, VectorFilter filter, int limit, float minScore) {
+            throw new UnsupportedOperationException("测试分片不支持元数据过滤");
+        }
+
+        @Override
+        public List<float[]> sampleVectors(int count, long seed) {
+            return VectorSampler.reservoir(this::forEachVector, count, new Random(seed));
+        }
+
+        @Override
+        public void forEachVector(BiConsumer<String, float[]> consumer) {
+            vectors.forEach(consumer);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.marsreg.vector.similarity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimilarityMatrixTest {
+
+    @Test
+    void testBlockedMatrixMatchesPairwiseCosine() {
+        List<float[]> vectors = randomVectors(new Random(3), 150, 37);
+        // 150 不是分块大小的整数倍，覆盖不完整的边缘分块
+        SimilarityMatrix matrix = SimilarityMatrix.compute(vectors, 16);
+
+        assertEquals(150, matrix.getSize());
+        assertEquals(150 * 151 / 2, matrix.getValues().length);
+        for (int i = 0; i < vectors.size(); i++) {
+            for (int j = 0; j < vectors.size(); j++) {
+                assertEquals(VectorMath.cosine(vectors.get(i), vectors.get(j)), matrix.get(i, j), 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    void testPackedIndexIsRowMajorUpperTriangle() {
+        int n = 5;
+        int expected = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                assertEquals(expected++, SimilarityMatrix.index(n, i, j));
+            }
+        }
+        assertEquals(SimilarityMatrix.index(n, 1, 3), SimilarityMatrix.index(n, 3, 1));
+    }
+
+    @Test
+    void testToRowsAndEmptyInput() {
+        List<float[]> vectors = List.of(new float[]{1f, 0f}, new float[]{0f, 2f}, new float[]{1f, 1f});
+        List<List<Float>> rows = SimilarityMatrix.compute(vectors).toRows();
+        assertEquals(3, rows.size());
+        assertEquals(0f, rows.get(0).get(1), 1e-6f);
+        assertEquals(rows.get(2).get(0), rows.get(0).get(2), 1e-6f);
+        assertEquals(1f, rows.get(1).get(1), 1e-6f);
+
+        assertEquals(0, SimilarityMatrix.compute(new ArrayList<>()).getSize());
+    }
+
+    @Test
+    void testDimensionMismatchRejected() {
+        List<float[]> vectors = List.of(new float[]{1f, 0f}, new float[]{1f, 0f, 0f});
+        assertThrows(IllegalArgumentException.class, () -> SimilarityMatrix.compute(vectors));
+    }
+
+    @Test
+    void testTopKNeighborsMatchBruteForce() {
+        List<float[]> vectors = randomVectors(new Random(4), 130, 24);
+        int k = 7;
+        SimilarityNeighbors neighbors = SimilarityNeighbors.compute(vectors, k, -1f, 16);
+        SimilarityMatrix matrix = SimilarityMatrix.compute(vectors);
+
+        assertEquals(130, neighbors.getSize());
+        for (int i = 0; i < vectors.size(); i++) {
+            TopKCollector expected = new TopKCollector(k, -1f);
+            for (int j = 0; j < vectors.size(); j++) {
+                if (j != i) {
+                    expected.offer(String.valueOf(j), matrix.get(i, j));
+                }
+            }
+            List<String> expectedIds = new ArrayList<>(expected.drainDescending().keySet());
+            for (int r = 0; r < k; r++) {
+                assertEquals(expectedIds.get(r), String.valueOf(neighbors.getIndices()[i * k + r]));
+            }
+            for (int r = 1; r < k; r++) {
+                assertTrue(neighbors.getScores()[i * k + r - 1] >= neighbors.getScores()[i * k + r]);
+            }
+        }
+    }
+
+    @Test
+    void testTopKPadsRowsBelowMinScore() {
+        List<float[]> vectors = List.of(new float[]{1f, 0f}, new float[]{0.9f, 0.1f}, new float[]{-1f, 0f});
+        SimilarityNeighbors neighbors = SimilarityNeighbors.compute(vectors, 2, 0.5f);
+
+        assertEquals(1, neighbors.getIndices()[0]);
+        assertEquals(-1, neighbors.getIndices()[1]);
+        assertEquals(-1, neighbors.getIndices()[4]);
+        assertEquals(0f, neighbors.getScores()[5], 1e-6f);
+    }
+
+    private static List<float[]> randomVectors(Random random, int count, int dimension) {
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[dimension];
+            for (int d = 0; d < dimension; d++) {
+                vector[d] = random.nextFloat() * 2 - 1;
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,69 @@
+package com.marsreg.vector.similarity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.marsreg.vector.TestVectors.randomVector;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorMathTest {
+
+    @Test
+    void testKernelsAgreeOnOddLengths() {
+        Random random = new Random(1);
+        SimilarityKernel scalar = new ScalarKernel();
+        for (int length : new int[]{1, 3, 7, 16, 33, 384}) {
+            float[] a = randomVector(random, length);
+            float[] b = randomVector(random, length);
+            float expected = 0;
+            for (int i = 0; i < length; i++) {
+                expected += a[i] * b[i];
+            }
+            assertEquals(expected, scalar.dot(a, 0, b, 0, length), 1e-4f);
+            assertEquals(expected, VectorMath.dot(a, b), 1e-4f);
+        }
+    }
+
+    @Test
+    void testDotBatchMatchesSingleDot() {
+        Random random = new Random(2);
+        int dimension = 37;
+        int rows = 5;
+        float[] query = randomVector(random, dimension);
+        float[] block = randomVector(random, dimension * rows + 3);
+        float[] scores = new float[rows];
+        VectorMath.dotBatch(query, block, 3, rows, scores);
+        for (int r = 0; r < rows; r++) {
+            assertEquals(VectorMath.dot(query, 0, block, 3 + r * dimension, dimension), scores[r], 1e-4f);
+        }
+    }
+
+    @Test
+    void testCosineOfZeroVector() {
+        assertEquals(0f, VectorMath.cosine(new float[3], new float[]{1, 2, 3}));
+        assertEquals(1f, VectorMath.cosine(new float[]{1, 2, 3}, new float[]{2, 4, 6}), 1e-6f);
+    }
+
+    @Test
+    void testTopKCollectorKeepsHighestScores() {
+        Random random = new Random(3);
+        List<Float> all = new ArrayList<>();
+        TopKCollector collector = new TopKCollector(10, 0.2f);
+        for (int i = 0; i < 1000; i++) {
+            float score = random.nextFloat();
+            all.add(score);
+            collector.offer("id" + i, score);
+        }
+        all.sort((a, b) -> Float.compare(b, a));
+        Map<String, Float> results = collector.drainDescending();
+        assertEquals(10, results.size());
+        int i = 0;
+        for (float score : results.values()) {
+            assertEquals(all.get(i++), score);
+        }
+    }
+}
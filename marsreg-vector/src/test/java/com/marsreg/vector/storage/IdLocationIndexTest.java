@@ -0,0 +1,73 @@
+package com.marsreg.vector.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdLocationIndexTest {
+
+    @Test
+    void testMatchesHashMapUnderRandomOperations() {
+        IdLocationIndex index = new IdLocationIndex();
+        Map<String, Long> expected = new HashMap<>();
+        Random random = new Random(5);
+        // 键空间大于初始容量，覆盖扩容和删除后移补位
+        for (int i = 0; i < 200000; i++) {
+            String id = "chunk-" + random.nextInt(5000);
+            long location = random.nextInt(Integer.MAX_VALUE);
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(Long.valueOf(expected.getOrDefault(id, IdLocationIndex.ABSENT)),
+                        Long.valueOf(index.remove(id)));
+                    expected.remove(id);
+                    break;
+                case 1:
+                    long current = expected.getOrDefault(id, IdLocationIndex.ABSENT);
+                    boolean replaced = current != IdLocationIndex.ABSENT && random.nextBoolean();
+                    long expectedValue = replaced ? current : current + 1;
+                    assertEquals(replaced, index.replace(id, expectedValue, location));
+                    if (replaced) {
+                        expected.put(id, location);
+                    }
+                    break;
+                default:
+                    Long previous = expected.put(id, location);
+                    assertEquals(Long.valueOf(previous == null ? IdLocationIndex.ABSENT : previous),
+                        Long.valueOf(index.put(id, location)));
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        for (int i = 0; i < 5000; i++) {
+            String id = "chunk-" + i;
+            assertEquals(Long.valueOf(expected.getOrDefault(id, IdLocationIndex.ABSENT)), Long.valueOf(index.get(id)));
+            assertEquals(expected.containsKey(id), index.containsKey(id));
+        }
+    }
+
+    @Test
+    void testConcurrentReadsDuringResize() throws InterruptedException {
+        IdLocationIndex index = new IdLocationIndex();
+        int count = 50000;
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                index.put("id-" + i, i);
+            }
+        });
+        writer.start();
+        // 读线程只能看到不存在或正确的位置
+        while (writer.isAlive()) {
+            for (int i = 0; i < count; i += 97) {
+                long location = index.get("id-" + i);
+                assertTrue(location == IdLocationIndex.ABSENT || location == i);
+            }
+        }
+        writer.join();
+        for (int i = 0; i < count; i++) {
+            assertEquals(Long.valueOf(i), Long.valueOf(index.get("id-" + i)));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.marsreg.vector.storage;
+
+import com.marsreg.vector.similarity.VectorMath;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static com.marsreg.vector.TestVectors.randomVector;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentVectorStoreTest {
+
+    private static final int DIMENSION = 8;
+    private static final int SEGMENT_CAPACITY = 16;
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("segment-store-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void testPutSearchAndRecover() throws IOException {
+        Random random = new Random(1);
+        float[][] vectors = new float[40][];
+        try (SegmentVectorStore store = new SegmentVectorStore(directory, DIMENSION, SEGMENT_CAPACITY)) {
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = randomVector(random, DIMENSION);
+                store.put("v" + i, vectors[i]);
+            }
+            store.delete("v3");
+            store.put("v5", vectors[6]);
+
+            assertEquals(39, store.size());
+            assertEquals(3, store.segmentCount());
+            Map<String, Float> results = store.search(vectors[7], 2, -1f);
+            assertEquals(1.0f, results.get("v7"), 0.0001f);
+        }
+
+        try (SegmentVectorStore reopened = new SegmentVectorStore(directory, DIMENSION, SEGMENT_CAPACITY)) {
+            assertEquals(39, reopened.size());
+            assertNull(reopened.get("v3"));
+            assertArrayEquals(vectors[6], reopened.get("v5"));
+            assertArrayEquals(vectors[39], reopened.get("v39"));
+
+            reopened.put("v40", vectors[0]);
+            assertArrayEquals(vectors[0], reopened.get("v40"));
+        }
+    }
+
+    @Test
+    void testMergeReclaimsSparseSegments() throws IOException {
+        Random random = new Random(2);
+        float[][] vectors = new float[48][];
+        try (SegmentVectorStore store = new SegmentVectorStore(directory, DIMENSION, SEGMENT_CAPACITY)) {
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = randomVector(random, DIMENSION);
+                store.put("v" + i, vectors[i]);
+            }
+            for (int i = 0; i < 32; i++) {
+                if (i % 4 != 0) {
+                    store.delete("v" + i);
+                }
+            }
+
+            assertEquals(2, store.merge(0.5));
+            assertEquals(24, store.size());
+            for (int i = 0; i < 32; i += 4) {
+                assertArrayEquals(vectors[i], store.get("v" + i));
+            }
+            assertEquals(1.0f, store.search(vectors[8], 1, -1f).get("v8"), 0.0001f);
+            // 合并后按ID打分仍读到搬迁后的行及其缓存的范数
+            assertEquals(VectorMath.cosine(vectors[0], vectors[44]), store.score(vectors[0], "v44"), 0.0001f);
+            assertEquals(1.0f, store.score(vectors[16], "v16"), 0.0001f);
+            assertTrue(Float.isNaN(store.score(vectors[0], "v13")));
+        }
+
+        try (SegmentVectorStore reopened = new SegmentVectorStore(directory, DIMENSION, SEGMENT_CAPACITY)) {
+            assertEquals(24, reopened.size());
+            assertArrayEquals(vectors[12], reopened.get("v12"));
+            assertNull(reopened.get("v13"));
+        }
+    }
+
+    @Test
+    void testSearchBatchMatchesSingleSearch() throws IOException {
+        Random random = new Random(3);
+        try (SegmentVectorStore store = new SegmentVectorStore(directory, DIMENSION, SEGMENT_CAPACITY)) {
+            for (int i = 0; i < 50; i++) {
+                store.put("v" + i, randomVector(random, DIMENSION));
+            }
+            store.delete("v10");
+            List<float[]> queries = List.of(randomVector(random, DIMENSION), randomVector(random, DIMENSION), randomVector(random, DIMENSION));
+            List<LinkedHashMap<String, Float>> batch = store.searchBatch(queries, 5, -1f);
+            assertEquals(3, batch.size());
+            for (int q = 0; q < queries.size(); q++) {
+                assertEquals(store.search(queries.get(q), 5, -1f), batch.get(q));
+            }
+        }
+    }
+}
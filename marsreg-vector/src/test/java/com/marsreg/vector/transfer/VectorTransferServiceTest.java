@@ -0,0 +1,406 @@
+package com.marsreg.vector.transfer;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.exception.VectorizationException;
+import com.marsreg.vector.model.VectorFilter;
+import com.marsreg.vector.model.VectorMetadata;
+import com.marsreg.vector.projection.VectorProjection;
+import com.marsreg.vector.service.VectorStorageService;
+import com.marsreg.vector.service.impl.ProjectedVectorStorageService;
+import com.marsreg.vector.similarity.VectorMath;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.marsreg.vector.TestVectors.randomVector;
+import static com.marsreg.vector.TestVectors.randomVectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorTransferServiceTest {
+
+    private static final int DIMENSION = 12;
+
+    private Path directory;
+    private final List<VectorTransferService> services = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("vector-transfer-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        services.forEach(VectorTransferService::destroy);
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void testXvecsAndNpyRoundTrip() throws IOException {
+        List<float[]> vectors = randomVectors(new Random(1), 300, DIMENSION);
+        Path fvecs = directory.resolve("base.fvecs");
+        Path npy = directory.resolve("base.npy");
+        try (XvecsWriter xvecsWriter = new XvecsWriter(fvecs); NpyWriter npyWriter = new NpyWriter(npy)) {
+            for (float[] vector : vectors) {
+                xvecsWriter.write(vector);
+                npyWriter.write(vector);
+            }
+        }
+        assertEquals(300L * (4 + DIMENSION * 4), Files.size(fvecs));
+        assertEquals(128 + 300L * DIMENSION * 4, Files.size(npy));
+
+        for (Path path : List.of(fvecs, npy)) {
+            try (VectorSource source = path == fvecs ? new XvecsReader(path) : new NpyReader(path)) {
+                assertEquals(300, source.getCount());
+                assertEquals(DIMENSION, source.getDimension());
+                for (float[] expected : vectors) {
+                    assertArrayEquals(expected, source.next());
+                }
+                assertNull(source.next());
+            }
+        }
+
+        Path ivecs = directory.resolve("ids.ivecs");
+        try (XvecsWriter writer = new XvecsWriter(ivecs)) {
+            writer.writeInts(new int[]{7});
+            writer.writeInts(new int[]{-3});
+        }
+        try (XvecsReader reader = new XvecsReader(ivecs)) {
+            assertArrayEquals(new int[]{7}, reader.nextInts());
+            assertArrayEquals(new int[]{-3}, reader.nextInts());
+            assertNull(reader.nextInts());
+        }
+    }
+
+    @Test
+    void testReadsNumpyWrittenArrays() throws IOException {
+        // 与 numpy.save 输出相同的 1.0 版本头部：float64 二维数组和 int64 一维数组
+        Path vectors = directory.resolve("float64.npy");
+        ByteBuffer data = ByteBuffer.allocate(6 * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 6; i++) {
+            data.putDouble(i * 0.5);
+        }
+        Files.write(vectors, npy("{'descr': '<f8', 'fortran_order': False, 'shape': (3, 2), }", data.array()));
+        try (NpyReader reader = new NpyReader(vectors)) {
+            assertTrue(reader.isFloatingPoint());
+            assertEquals(3, reader.getCount());
+            assertArrayEquals(new float[]{0f, 0.5f}, reader.next());
+            assertArrayEquals(new float[]{1f, 1.5f}, reader.next());
+            assertArrayEquals(new float[]{2f, 2.5f}, reader.next());
+            assertNull(reader.next());
+        }
+
+        Path ids = directory.resolve("ids.npy");
+        ByteBuffer idData = ByteBuffer.allocate(2 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        idData.putLong(1L << 40).putLong(5);
+        Files.write(ids, npy("{'descr': '<i8', 'fortran_order': False, 'shape': (2,), }", idData.array()));
+        try (NpyReader reader = new NpyReader(ids)) {
+            assertFalse(reader.isFloatingPoint());
+            assertEquals(Long.valueOf(1L << 40), reader.nextLong());
+            assertEquals(Long.valueOf(5), reader.nextLong());
+            assertNull(reader.nextLong());
+        }
+
+        Path truncated = directory.resolve("truncated.npy");
+        Files.write(truncated, npy("{'descr': '<f4', 'fortran_order': False, 'shape': (4, 2), }", new byte[8]));
+        assertThrows(IOException.class, () -> new NpyReader(truncated));
+    }
+
+    @Test
+    void testExportThenImportMigratesAllVectors() throws Exception {
+        MapStore source = new MapStore();
+        Random random = new Random(7);
+        for (int i = 0; i < 2500; i++) {
+            source.vectors.put("chunk-" + i, randomVector(random, DIMENSION));
+        }
+        VectorTransferService exporter = service(source);
+        Map<String, Object> exported = await(exporter, exporter.startExport("migration/base.npy", null));
+        assertEquals("COMPLETED", exported.get("state"));
+        assertEquals(2500L, exported.get("processed"));
+        assertEquals(2500, Files.readAllLines(directory.resolve("migration/base.ids")).size());
+
+        // 未指定ID文件时使用同名的 .ids 文件
+        MapStore target = new MapStore();
+        VectorTransferService importer = service(target);
+        Map<String, Object> imported = await(importer, importer.startImport("migration/base.npy", null, null));
+        assertEquals("COMPLETED", imported.get("state"));
+        assertEquals(2500L, imported.get("total"));
+        assertEquals(2500L, imported.get("processed"));
+        assertEquals(1.0, imported.get("progress"));
+        assertEquals(source.vectors.keySet(), target.vectors.keySet());
+        source.vectors.forEach((id, vector) -> assertArrayEquals(vector, target.vectors.get(id)));
+        // 每批不超过配置的批大小
+        assertTrue(target.batchSizes.stream().allMatch(size -> size <= 100));
+        assertEquals(25, target.batchSizes.size());
+    }
+
+    @Test
+    void testMigrationKeepsDocumentIdAndMetadata() throws Exception {
+        MapStore source = new MapStore();
+        Random random = new Random(11);
+        for (int document = 1; document <= 4; document++) {
+            Map<String, float[]> chunks = new LinkedHashMap<>();
+            for (int chunk = 0; chunk < 60; chunk++) {
+                chunks.put(document + "_" + chunk, randomVector(random, DIMENSION));
+            }
+            VectorMetadata metadata = VectorMetadata.builder().documentId(String.valueOf(document))
+                .type(document % 2 == 0 ? "pdf" : "docx").tenant("tenant-" + document % 3)
+                .timestamp(1700000000000L + document).build();
+            source.storeDocumentVectorsAsync(String.valueOf(document), chunks, metadata).join();
+        }
+        // 写入时没有记录元数据的分块按ID补全文档ID，不是 文档ID_分块ID 形式的ID没有文档
+        for (int chunk = 0; chunk < 30; chunk++) {
+            source.storeVector("5_" + chunk, randomVector(random, DIMENSION));
+            source.storeVector("bench-" + chunk, randomVector(random, DIMENSION));
+        }
+
+        VectorTransferService exporter = service(source);
+        assertEquals("COMPLETED", await(exporter, exporter.startExport("migration/docs.fvecs", null)).get("state"));
+        // 首行为文件头，其后每个向量一行
+        List<String> metadataLines = Files.readAllLines(directory.resolve("migration/docs.meta"));
+        assertEquals(301, metadataLines.size());
+        assertEquals("{\"dimension\":" + DIMENSION + "}", metadataLines.get(0));
+
+        MapStore target = new MapStore();
+        VectorTransferService importer = service(target);
+        assertEquals("COMPLETED", await(importer, importer.startImport("migration/docs.fvecs", null, null)).get("state"));
+        assertEquals(source.vectors.keySet(), target.vectors.keySet());
+        source.vectors.keySet().forEach(id ->
+            assertEquals(VectorTransferService.metadataOf(id, source.getMetadata(id)), target.getMetadata(id), id));
+        assertNull(target.getMetadata("bench-0"));
+        assertEquals(VectorMetadata.ofDocument("5"), target.getMetadata("5_0"));
+        assertDocumentSearch(source, target, random);
+
+        // 没有元数据文件时从ID中取出文档ID，文档内搜索仍然只返回该文档的分块
+        Files.delete(directory.resolve("migration/docs.meta"));
+        MapStore derived = new MapStore();
+        VectorTransferService derivedImporter = service(derived);
+        assertEquals("COMPLETED",
+            await(derivedImporter, derivedImporter.startImport("migration/docs.fvecs", null, null)).get("state"));
+        assertEquals(VectorMetadata.ofDocument("2"), derived.getMetadata("2_0"));
+        assertNull(derived.getMetadata("bench-0"));
+        assertDocumentSearch(source, derived, random);
+    }
+
+    @Test
+    void testProjectedExportIsNotProjectedTwice() throws Exception {
+        VectorProjection projection = VectorProjection.random(DIMENSION, 4, 1L);
+        MapStore sourceStore = new MapStore();
+        ProjectedVectorStorageService source = new ProjectedVectorStorageService(sourceStore, projection);
+        Random random = new Random(13);
+        Map<String, float[]> chunks = new LinkedHashMap<>();
+        for (int chunk = 0; chunk < 50; chunk++) {
+            chunks.put("1_" + chunk, randomVector(random, DIMENSION));
+        }
+        source.storeDocumentVectorsAsync("1", chunks, VectorMetadata.ofDocument("1")).join();
+
+        // 导出的是投影后的向量，文件头记录投影版本
+        VectorTransferService exporter = service(source);
+        assertEquals("COMPLETED", await(exporter, exporter.startExport("projected/base.npy", null)).get("state"));
+        assertTrue(Files.readAllLines(directory.resolve("projected/base.meta")).get(0).contains(projection.getVersion()));
+
+        // 同一投影版本的实例直接写入底层存储
+        MapStore targetStore = new MapStore();
+        VectorTransferService importer = service(new ProjectedVectorStorageService(targetStore, projection));
+        assertEquals("COMPLETED", await(importer, importer.startImport("projected/base.npy", null, null)).get("state"));
+        assertEquals(sourceStore.vectors.keySet(), targetStore.vectors.keySet());
+        sourceStore.vectors.forEach((id, vector) -> assertArrayEquals(vector, targetStore.vectors.get(id)));
+        assertEquals(VectorMetadata.ofDocument("1"), targetStore.getMetadata("1_0"));
+
+        // 投影版本不同或未启用投影的实例拒绝导入
+        VectorTransferService otherProjection = service(new ProjectedVectorStorageService(new MapStore(),
+            VectorProjection.random(DIMENSION, 4, 2L)));
+        Map<String, Object> mismatched = await(otherProjection, otherProjection.startImport("projected/base.npy", null, null));
+        assertEquals("FAILED", mismatched.get("state"));
+        assertTrue(((String) mismatched.get("error")).contains("投影版本"));
+        MapStore plainStore = new MapStore();
+        VectorTransferService plain = service(plainStore);
+        assertEquals("FAILED", await(plain, plain.startImport("projected/base.npy", null, null)).get("state"));
+        assertTrue(plainStore.vectors.isEmpty());
+    }
+
+    private static void assertDocumentSearch(MapStore source, MapStore target, Random random) {
+        for (String document : List.of("1", "2", "3", "4", "5")) {
+            float[] query = randomVector(random, DIMENSION);
+            Map<String, Float> results = target.searchSimilarInDocument(document,
+                () -> fail("支持分区键的存储不应加载分块ID"), query, 10, -1f);
+            assertEquals(10, results.size());
+            assertTrue(results.keySet().stream().allMatch(id -> id.startsWith(document + "_")), results.toString());
+            Stream<Map.Entry<String, float[]>> chunks = source.vectors.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(document + "_"));
+            assertEquals(topK(chunks, query, 10, -1f).keySet(), results.keySet());
+        }
+    }
+
+    private static Map<String, Float> topK(Stream<Map.Entry<String, float[]>> candidates, float[] queryVector,
+                                           int limit, float minScore) {
+        return candidates
+            .map(entry -> Map.entry(entry.getKey(), VectorMath.cosine(queryVector, entry.getValue())))
+            .filter(entry -> entry.getValue() >= minScore)
+            .sorted(Map.Entry.<String, Float>comparingByValue().reversed())
+            .limit(limit)
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    @Test
+    void testImportGeneratesIdsAndValidatesInput() throws Exception {
+        List<float[]> vectors = randomVectors(new Random(3), 10, DIMENSION);
+        try (XvecsWriter writer = new XvecsWriter(directory.resolve("bench.fvecs"))) {
+            for (float[] vector : vectors) {
+                writer.write(vector);
+            }
+        }
+        MapStore store = new MapStore();
+        VectorTransferService service = service(store);
+        assertEquals("COMPLETED", await(service, service.startImport("bench.fvecs", null, "bench-")).get("state"));
+        assertArrayEquals(vectors.get(9), store.vectors.get("bench-9"));
+
+        Files.write(directory.resolve("short.txt"), "a\nb\n".getBytes(StandardCharsets.UTF_8));
+        Map<String, Object> failed = await(service, service.startImport("bench.fvecs", "short.txt", null));
+        assertEquals("FAILED", failed.get("state"));
+        assertTrue(((String) failed.get("error")).contains("ID数少于向量数"));
+
+        assertThrows(VectorizationException.class, () -> service.startExport("../escape.npy", null));
+        assertThrows(VectorizationException.class, () -> service.startExport("vectors.csv", null));
+        assertThrows(VectorizationException.class, () -> service.startImport("missing.fvecs", null, null));
+    }
+
+    private VectorTransferService service(VectorStorageService store) {
+        VectorizationConfig.Transfer config = new VectorizationConfig.Transfer();
+        config.setBaseDir(directory.toString());
+        config.setBatchSize(100);
+        config.setMaxInFlightBatches(2);
+        VectorTransferService service = new VectorTransferService(store, config);
+        services.add(service);
+        return service;
+    }
+
+    private static Map<String, Object> await(VectorTransferService service, Map<String, Object> started)
+            throws InterruptedException {
+        String jobId = (String) started.get("id");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Object> status = service.getStatus(jobId);
+            if (!"PENDING".equals(status.get("state")) && !"RUNNING".equals(status.get("state"))) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("任务未在超时前结束: " + jobId);
+    }
+
+    private static byte[] npy(String dictionary, byte[] data) {
+        StringBuilder header = new StringBuilder(dictionary);
+        while ((10 + header.length() + 1) % 64 != 0) {
+            header.append(' ');
+        }
+        header.append('\n');
+        byte[] headerBytes = header.toString().getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer buffer = ByteBuffer.allocate(10 + headerBytes.length + data.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(NpyReader.MAGIC).put((byte) 1).put((byte) 0).putShort((short) headerBytes.length);
+        buffer.put(headerBytes).put(data);
+        return buffer.array();
+    }
+
+    /**
+     * 记录每次批量写入大小的内存存储，按写入时的文档ID做文档内搜索，模拟以文档ID为分区键的存储
+     */
+    private static final class MapStore implements VectorStorageService {
+        private final Map<String, float[]> vectors = new ConcurrentHashMap<>();
+        private final Map<String, VectorMetadata> metadata = new ConcurrentHashMap<>();
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void storeVector(String id, float[] vector) {
+            vectors.put(id, vector);
+        }
+
+        @Override
+        public void storeVectors(Map<String, float[]> vectors) {
+            batchSizes.add(vectors.size());
+            this.vectors.putAll(vectors);
+        }
+
+        @Override
+        public CompletableFuture<Void> storeDocumentVectorsAsync(String documentId, Map<String, float[]> vectors,
+                                                                 VectorMetadata vectorMetadata) {
+            vectors.keySet().forEach(id -> metadata.put(id, vectorMetadata));
+            return storeVectorsAsync(vectors);
+        }
+
+        @Override
+        public float[] getVector(String id) {
+            return vectors.get(id);
+        }
+
+        @Override
+        public VectorMetadata getMetadata(String id) {
+            return metadata.get(id);
+        }
+
+        @Override
+        public Map<String, float[]> getVectors(List<String> ids) {
+            Map<String, float[]> result = new HashMap<>();
+            ids.forEach(id -> Optional.ofNullable(vectors.get(id)).ifPresent(v -> result.put(id, v)));
+            return result;
+        }
+
+        @Override
+        public void deleteVector(String id) {
+            vectors.remove(id);
+        }
+
+        @Override
+        public void deleteVectors(List<String> ids) {
+            ids.forEach(vectors::remove);
+        }
+
+        @Override
+        public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Float> searchSimilarInRange(float[] queryVector, List<String> vectorIds, int limit,
+                                                       float minScore) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Float> searchSimilarInDocument(String documentId, Supplier<List<String>> vectorIds,
+                                                          float[] queryVector, int limit, float minScore) {
+            return topK(vectors.entrySet().stream().filter(entry -> metadata.containsKey(entry.getKey())
+                && documentId.equals(metadata.get(entry.getKey()).getDocumentId())), queryVector, limit, minScore);
+        }
+
+        @Override
+        public Map<String, Float> searchSimilarFiltered(float[] queryVector, VectorFilter filter, int limit, float minScore) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<float[]> sampleVectors(int count, long seed) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void forEachVector(BiConsumer<String, float[]> consumer) {
+            vectors.forEach(consumer);
+        }
+    }
+}
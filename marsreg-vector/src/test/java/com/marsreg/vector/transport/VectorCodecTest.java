@@ -0,0 +1,70 @@
+package com.marsreg.vector.transport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorCodecTest {
+
+    @Test
+    void testSingleVectorIsLittleEndianFloat32() {
+        float[] vector = {1.5f, -2.25f, 0f};
+        byte[] bytes = VectorCodec.encode(vector);
+
+        assertEquals(12, bytes.length);
+        assertEquals(1.5f, ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getFloat(0));
+        assertArrayEquals(vector, VectorCodec.decode(bytes));
+    }
+
+    @Test
+    void testBatchRoundTripWithHeader() {
+        List<float[]> vectors = List.of(new float[]{1f, 2f}, new float[]{3f, 4f}, new float[]{5f, 6f});
+        byte[] bytes = VectorCodec.encodeBatch(vectors);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(3, buffer.getInt(0));
+        assertEquals(2, buffer.getInt(4));
+        assertEquals(8 + 3 * 2 * 4, bytes.length);
+        List<float[]> decoded = VectorCodec.decodeBatch(bytes);
+        for (int i = 0; i < vectors.size(); i++) {
+            assertArrayEquals(vectors.get(i), decoded.get(i));
+        }
+        assertEquals(0, VectorCodec.decodeBatch(VectorCodec.encodeBatch(List.of())).size());
+    }
+
+    @Test
+    void testTruncatedBatchRejected() {
+        byte[] bytes = VectorCodec.encodeBatch(List.of(new float[]{1f, 2f}));
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        assertThrows(IllegalArgumentException.class, () -> VectorCodec.decodeBatch(truncated));
+    }
+
+    @Test
+    void testNdjsonLines() {
+        assertEquals("{\"index\":2,\"vector\":[0.5,-1.0,null]}\n",
+            new String(VectorCodec.ndjsonLine(2, new float[]{0.5f, -1f, Float.NaN}), StandardCharsets.UTF_8));
+        assertEquals("{\"index\":0,\"error\":\"bad \\\"input\\\"\\n\"}\n",
+            new String(VectorCodec.ndjsonError(0, "bad \"input\"\n"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNdjsonErrorEscapesControlCharacters() throws Exception {
+        String message = "tab\there \u0001 反斜杠\\ 结束";
+        byte[] line = VectorCodec.ndjsonError(3, message);
+
+        String text = new String(line, StandardCharsets.UTF_8);
+        assertTrue(text.endsWith("}\n"));
+        assertEquals(1, text.split("\n").length);
+        JsonNode node = new ObjectMapper().readTree(text);
+        assertEquals(3, node.get("index").asInt());
+        assertEquals(message, node.get("error").asText());
+    }
+}
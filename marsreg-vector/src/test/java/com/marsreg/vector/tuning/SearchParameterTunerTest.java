@@ -0,0 +1,163 @@
+package com.marsreg.vector.tuning;
+
+import com.marsreg.vector.config.VectorizationConfig;
+import com.marsreg.vector.index.ivf.IvfIndex;
+import com.marsreg.vector.index.ivf.KMeans;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.marsreg.vector.TestVectors.randomVectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchParameterTunerTest {
+
+    private static final int DIMENSION = 16;
+
+    @Test
+    void testChoosesSmallestParameterMeetingTarget() {
+        IvfSearch search = sampledSearch(new Random(42), 1);
+
+        VectorizationConfig.Storage.Tuning config = new VectorizationConfig.Storage.Tuning();
+        config.setTargetRecall(0.9);
+        config.setQueriesPerRound(32);
+        SearchParameterTuner tuner = new SearchParameterTuner(config, search, null);
+        assertTrue(tuner.tune());
+
+        int chosen = search.getSearchParameter();
+        assertTrue(chosen > 1 && chosen <= 64, "nprobe=" + chosen);
+        assertTrue((Double) tuner.getStatus().get("recall") >= 0.9);
+        // 序列中的前一个参数达不到目标
+        List<?> evaluations = (List<?>) tuner.getStatus().get("evaluations");
+        assertTrue(evaluations.size() >= 2);
+        Map<?, ?> previous = (Map<?, ?>) evaluations.get(evaluations.size() - 2);
+        assertTrue((Double) previous.get("recall") < 0.9);
+        assertEquals(chosen, ((Map<?, ?>) evaluations.get(evaluations.size() - 1)).get("value"));
+    }
+
+    @Test
+    void testLowersOnlyAfterConsecutiveRounds() {
+        IvfSearch search = sampledSearch(new Random(7), 64);
+        VectorizationConfig.Storage.Tuning config = new VectorizationConfig.Storage.Tuning();
+        config.setTargetRecall(0.9);
+        config.setQueriesPerRound(32);
+        config.setLowerAfterRounds(3);
+        SearchParameterTuner tuner = new SearchParameterTuner(config, search, null);
+
+        // 前两轮选出更小的参数也保持不变，报告的是当前参数的召回率
+        for (int round = 1; round < 3; round++) {
+            assertTrue(tuner.tune());
+            assertEquals(64, search.getSearchParameter());
+            assertEquals(1.0, (Double) tuner.getStatus().get("recall"), 1e-9);
+            assertEquals(round, tuner.getStatus().get("lowerStreak"));
+        }
+        // 连续第三轮才降低
+        assertTrue(tuner.tune());
+        int lowered = search.getSearchParameter();
+        assertTrue(lowered < 64, "nprobe=" + lowered);
+        assertTrue((Double) tuner.getStatus().get("recall") >= 0.9);
+        assertEquals(0, tuner.getStatus().get("lowerStreak"));
+
+        // 参数不足时立即提高
+        search.setSearchParameter(1);
+        assertTrue(tuner.tune());
+        assertTrue(search.getSearchParameter() > 1);
+    }
+
+    @Test
+    void testSkipsWhenTooFewSampledQueries() {
+        IvfSearch search = new IvfSearch(IvfIndex.flat(DIMENSION), 3);
+        search.getQuerySampler().record(new float[DIMENSION]);
+        SearchParameterTuner tuner = new SearchParameterTuner(new VectorizationConfig.Storage.Tuning(), search, null);
+        assertFalse(tuner.tune());
+        assertEquals(3, search.getSearchParameter());
+    }
+
+    @Test
+    void testCandidatesDoubleUpToMax() {
+        assertEquals(List.of(1, 2, 4, 8, 16, 32, 50), SearchParameterTuner.candidates(1, 50));
+        assertEquals(List.of(10, 20, 40, 80, 100), SearchParameterTuner.candidates(10, 100));
+        assertEquals(List.of(8), SearchParameterTuner.candidates(10, 8));
+    }
+
+    @Test
+    void testQuerySamplerKeepsMostRecent() {
+        QuerySampler sampler = new QuerySampler(4, 1.0);
+        for (int i = 0; i < 10; i++) {
+            sampler.record(new float[]{i});
+        }
+        List<float[]> recent = sampler.recent(10);
+        assertEquals(4, recent.size());
+        assertEquals(9f, recent.get(0)[0]);
+        assertEquals(6f, recent.get(3)[0]);
+        assertEquals(10, sampler.getRecordedCount());
+
+        QuerySampler disabled = QuerySampler.disabled();
+        disabled.record(new float[]{1});
+        assertTrue(disabled.recent(10).isEmpty());
+    }
+
+    /**
+     * 4000个随机向量的IVF索引，抽样记录64个查询
+     */
+    private static IvfSearch sampledSearch(Random random, int nprobe) {
+        List<float[]> vectors = randomVectors(random, 4000, DIMENSION);
+        IvfIndex index = new IvfIndex(DIMENSION, KMeans.train(vectors, 64, 15, 1024, 42L));
+        for (int i = 0; i < vectors.size(); i++) {
+            index.add("v" + i, vectors.get(i));
+        }
+        IvfSearch search = new IvfSearch(index, nprobe);
+        for (int q = 0; q < 64; q++) {
+            search.getQuerySampler().record(vectors.get(random.nextInt(vectors.size())));
+        }
+        return search;
+    }
+
+    private static final class IvfSearch implements TunableVectorSearch {
+        private final IvfIndex index;
+        private final QuerySampler sampler = new QuerySampler(64, 1.0);
+        private int nprobe;
+
+        IvfSearch(IvfIndex index, int nprobe) {
+            this.index = index;
+            this.nprobe = nprobe;
+        }
+
+        @Override
+        public String getSearchParameterName() {
+            return "nprobe";
+        }
+
+        @Override
+        public int getSearchParameter() {
+            return nprobe;
+        }
+
+        @Override
+        public void setSearchParameter(int value) {
+            nprobe = value;
+        }
+
+        @Override
+        public int getMaxSearchParameter() {
+            return index.getNlist();
+        }
+
+        @Override
+        public Map<String, Float> searchSimilar(float[] queryVector, int limit, float minScore, int searchParameter) {
+            return index.search(queryVector, limit, searchParameter, minScore);
+        }
+
+        @Override
+        public Map<String, Float> searchExact(float[] queryVector, int limit) {
+            return index.search(queryVector, limit, index.getNlist(), -1f);
+        }
+
+        @Override
+        public QuerySampler getQuerySampler() {
+            return sampler;
+        }
+    }
+}